@@ -34,6 +34,9 @@ public class Args {
     @Parameter(names = {"--useJarLocation"})
     private boolean useJarLocation;
 
+    @Parameter(names = {"--offline"})
+    private boolean offline;
+
     private final List<String> unknownOptions;
 
     private Args() {
@@ -64,6 +67,10 @@ public class Args {
         return this.unknownOptions;
     }
 
+    public boolean isOffline() {
+        return this.offline;
+    }
+
     public Path getWorkDir() {
         Path workDir;
 
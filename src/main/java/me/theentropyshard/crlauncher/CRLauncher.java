@@ -20,8 +20,11 @@ package me.theentropyshard.crlauncher;
 
 import me.theentropyshard.crlauncher.cosmic.account.AccountManager;
 import me.theentropyshard.crlauncher.cosmic.icon.IconManager;
+import me.theentropyshard.crlauncher.cosmic.logs.GameLogStore;
+import me.theentropyshard.crlauncher.cosmic.logs.LogSearchIndex;
 import me.theentropyshard.crlauncher.cosmic.mods.cosmicquilt.QuiltManager;
 import me.theentropyshard.crlauncher.cosmic.mods.puzzle.PuzzleManager;
+import me.theentropyshard.crlauncher.cosmic.process.GameSupervisor;
 import me.theentropyshard.crlauncher.cosmic.version.VersionManager;
 import me.theentropyshard.crlauncher.crmm.CrmmApi;
 import me.theentropyshard.crlauncher.github.GithubApi;
@@ -34,16 +37,27 @@ import me.theentropyshard.crlauncher.instance.InstanceManager;
 import me.theentropyshard.crlauncher.java.JavaLocator;
 import me.theentropyshard.crlauncher.logging.Log;
 import me.theentropyshard.crlauncher.network.UserAgentInterceptor;
+import me.theentropyshard.crlauncher.network.cache.HttpCachePolicy;
+import me.theentropyshard.crlauncher.network.cache.HttpMetadataCache;
+import me.theentropyshard.crlauncher.network.cache.MetadataCacheInterceptor;
+import me.theentropyshard.crlauncher.network.download.DownloadScheduler;
+import me.theentropyshard.crlauncher.network.progress.ProgressNetworkInterceptor;
+import me.theentropyshard.crlauncher.utils.DiskUsage;
+import me.theentropyshard.crlauncher.utils.FileHashIndex;
 import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.HashUtils;
 import me.theentropyshard.crlauncher.utils.ListUtils;
 import me.theentropyshard.crlauncher.utils.ResourceUtils;
+import me.theentropyshard.crlauncher.utils.SaveQueue;
 import me.theentropyshard.crlauncher.utils.SemanticVersion;
+import me.theentropyshard.crlauncher.utils.Trash;
 import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
 
 import javax.swing.*;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
@@ -67,10 +81,18 @@ public class CRLauncher {
     private final Path instancesDir;
     private final Path versionsDir;
     private final Path languagesDir;
+    private final Path cacheDir;
 
+    private final SaveQueue saveQueue;
     private final Path settingsFile;
     private final Settings settings;
 
+    private final FileHashIndex hashIndex;
+    private final DiskUsage diskUsage;
+    private final Trash trash;
+
+    private final DownloadScheduler downloadScheduler;
+    private final MetadataCacheInterceptor metadataCacheInterceptor;
     private final OkHttpClient httpClient;
     private final CrmmApi crmmApi;
 
@@ -80,6 +102,9 @@ public class CRLauncher {
     private final QuiltManager quiltManager;
     private final PuzzleManager puzzleManager;
     private final AccountManager accountManager;
+    private final GameLogStore gameLogStore;
+    private final LogSearchIndex logSearchIndex;
+    private final GameSupervisor gameSupervisor;
 
     private final ExecutorService taskPool;
 
@@ -109,10 +134,30 @@ public class CRLauncher {
         this.instancesDir = this.cosmicDir.resolve("instances");
         this.versionsDir = this.cosmicDir.resolve("versions");
         this.languagesDir = this.workDir.resolve("languages");
+        this.cacheDir = this.workDir.resolve("cache");
         this.createDirectories();
 
+        this.hashIndex = new FileHashIndex(this.cacheDir.resolve("hashes.idx"));
+        try {
+            this.hashIndex.load();
+        } catch (IOException e) {
+            Log.error("Unable to load hash index", e);
+        }
+        HashUtils.setIndex(this.hashIndex);
+
+        this.diskUsage = new DiskUsage(this.cacheDir.resolve("disk-usage.json"));
+        this.diskUsage.load();
+
+        this.trash = new Trash(this.workDir.resolve("trash"));
+        this.trash.emptyLater();
+
+        this.saveQueue = new SaveQueue(500L, 5000L);
+
         this.settingsFile = this.workDir.resolve("settings.json");
         this.settings = Settings.load(this.settingsFile);
+        if (Files.exists(this.settingsFile)) {
+            this.saveQueue.remember(this.settingsFile, this.settings.toJson());
+        }
 
         this.languages = new LinkedHashMap<>();
 
@@ -164,8 +209,21 @@ public class CRLauncher {
         UIManager.put("OptionPane.okButtonText", language.getString("gui.general.ok"));
         UIManager.put("OptionPane.cancelButtonText", language.getString("gui.general.cancel"));
 
+        this.downloadScheduler = new DownloadScheduler(DownloadScheduler.MAX_CONNECTIONS, this.settings.downloadSpeedLimitKiB * 1024L);
+
+        this.metadataCacheInterceptor = new MetadataCacheInterceptor(
+            new HttpMetadataCache(this.cacheDir.resolve("http")), HttpCachePolicy.DEFAULTS
+        );
+        this.metadataCacheInterceptor.setOffline(this.args.isOffline() || this.settings.offlineMode);
+
+        if (this.metadataCacheInterceptor.isOffline()) {
+            Log.info("Running in offline mode, only cached responses will be used");
+        }
+
         this.httpClient = new OkHttpClient.Builder()
+            .addInterceptor(this.metadataCacheInterceptor)
             .addNetworkInterceptor(new UserAgentInterceptor(CRLauncher.USER_AGENT))
+            .addNetworkInterceptor(new ProgressNetworkInterceptor(this.downloadScheduler.getBandwidthLimiter()))
             .connectTimeout(30, TimeUnit.SECONDS)
             .readTimeout(5, TimeUnit.MINUTES)
             .writeTimeout(5, TimeUnit.MINUTES)
@@ -183,12 +241,8 @@ public class CRLauncher {
             Log.error("Unable to load accounts", e);
         }
 
-        this.instanceManager = new InstanceManager(this.instancesDir);
-        try {
-            this.instanceManager.load();
-        } catch (IOException e) {
-            Log.error("Unable to load instances", e);
-        }
+        // instances are loaded by the play view, so that it can show them as they come
+        this.instanceManager = new InstanceManager(this.instancesDir, this.cacheDir.resolve("instances.json"));
 
         Path iconsDir = this.cosmicDir.resolve("icons");
         this.iconManager = new IconManager(iconsDir);
@@ -200,6 +254,26 @@ public class CRLauncher {
             Log.error("Unable to load icons", e);
         }
 
+        Path logsDir = this.workDir.resolve("logs");
+        this.gameLogStore = new GameLogStore(logsDir.resolve("sessions"), this.settings.gameLogSessionsToKeep);
+        try {
+            this.gameLogStore.load();
+        } catch (IOException e) {
+            Log.error("Unable to load game session index", e);
+        }
+
+        this.logSearchIndex = new LogSearchIndex(this.gameLogStore, logsDir.resolve("latest.log"),
+            logsDir.resolve("sessions").resolve("search.idx"));
+        try {
+            this.logSearchIndex.load();
+        } catch (IOException e) {
+            Log.error("Unable to load log search index, it will be rebuilt", e);
+        }
+        this.gameLogStore.addListener(this.logSearchIndex::updateLater);
+        this.logSearchIndex.updateLater();
+
+        this.gameSupervisor = new GameSupervisor(this.settings.maxConcurrentGames);
+
         this.quiltManager = new QuiltManager(this.cosmicDir.resolve("cosmic-quilt"));
         this.puzzleManager = new PuzzleManager(this.cosmicDir.resolve("puzzle"));
 
@@ -208,7 +282,7 @@ public class CRLauncher {
         this.gui = new Gui(BuildConfig.APP_NAME, this.settings.darkTheme);
         this.gui.getFrame().addWindowListener(new WindowClosingListener(e -> CRLauncher.this.shutdown()));
 
-        if (this.settings.checkUpdatesStartup) {
+        if (this.settings.checkUpdatesStartup && !this.metadataCacheInterceptor.isOffline()) {
             this.taskPool.execute(() -> {
                 Log.info("Checking for updates...");
 
@@ -310,6 +384,7 @@ public class CRLauncher {
             FileUtils.createDirectoryIfNotExists(this.instancesDir);
             FileUtils.createDirectoryIfNotExists(this.versionsDir);
             FileUtils.createDirectoryIfNotExists(this.languagesDir);
+            FileUtils.createDirectoryIfNotExists(this.cacheDir);
         } catch (IOException e) {
             Log.error("Unable to create launcher directories", e);
         }
@@ -327,6 +402,10 @@ public class CRLauncher {
         this.shutdown = true;
 
         this.taskPool.shutdown();
+        this.downloadScheduler.shutdown();
+        this.gameLogStore.shutdown();
+        this.logSearchIndex.shutdown();
+        this.gameSupervisor.shutdown();
 
         try {
             this.accountManager.save();
@@ -334,6 +413,7 @@ public class CRLauncher {
             Log.error("Exception while saving accounts", e);
         }
 
+        // only instances that actually changed are written
         this.instanceManager.getInstances().forEach(instance -> {
             try {
                 instance.save();
@@ -346,6 +426,26 @@ public class CRLauncher {
 
         this.settings.save(this.settingsFile);
 
+        this.saveQueue.shutdown();
+
+        try {
+            this.instanceManager.saveSnapshot();
+        } catch (IOException e) {
+            Log.error("Exception while saving instance snapshot", e);
+        }
+
+        try {
+            this.diskUsage.save();
+        } catch (IOException e) {
+            Log.error("Exception while saving disk usage cache", e);
+        }
+
+        try {
+            this.hashIndex.close();
+        } catch (IOException e) {
+            Log.error("Exception while closing hash index", e);
+        }
+
         System.exit(0);
     }
 
@@ -377,6 +477,14 @@ public class CRLauncher {
         return this.httpClient;
     }
 
+    public MetadataCacheInterceptor getMetadataCacheInterceptor() {
+        return this.metadataCacheInterceptor;
+    }
+
+    public DownloadScheduler getDownloadScheduler() {
+        return this.downloadScheduler;
+    }
+
     public CrmmApi getCrmmApi() {
         return this.crmmApi;
     }
@@ -401,6 +509,18 @@ public class CRLauncher {
         return this.accountManager;
     }
 
+    public GameLogStore getGameLogStore() {
+        return this.gameLogStore;
+    }
+
+    public LogSearchIndex getLogSearchIndex() {
+        return this.logSearchIndex;
+    }
+
+    public GameSupervisor getGameSupervisor() {
+        return this.gameSupervisor;
+    }
+
     public Settings getSettings() {
         return this.settings;
     }
@@ -429,6 +549,55 @@ public class CRLauncher {
         return this.versionsDir;
     }
 
+    public Path getCacheDir() {
+        return this.cacheDir;
+    }
+
+    public FileHashIndex getHashIndex() {
+        return this.hashIndex;
+    }
+
+    public Trash getTrash() {
+        return this.trash;
+    }
+
+    public DiskUsage getDiskUsage() {
+        return this.diskUsage;
+    }
+
+    /**
+     * Directories the launcher keeps its files in, grouped the way the disk usage breakdown shows them
+     */
+    public Map<String, List<Path>> getDiskUsageGroups() {
+        List<Path> loaders = new ArrayList<>();
+        loaders.add(this.librariesDir);
+        loaders.add(this.cosmicDir.resolve("cosmic-quilt"));
+        loaders.add(this.cosmicDir.resolve("puzzle"));
+
+        try {
+            for (Path path : FileUtils.list(this.cosmicDir)) {
+                if (path.getFileName().toString().startsWith("fabric-loader-")) {
+                    loaders.add(path);
+                }
+            }
+        } catch (IOException e) {
+            Log.warn("Could not list '" + this.cosmicDir + "': " + e.getMessage());
+        }
+
+        Map<String, List<Path>> groups = new LinkedHashMap<>();
+        groups.put("versions", List.of(this.versionsDir));
+        groups.put("loaders", loaders);
+        groups.put("instances", List.of(this.instancesDir));
+        groups.put("cache", List.of(this.cacheDir));
+        groups.put("logs", List.of(this.workDir.resolve("logs")));
+
+        return groups;
+    }
+
+    public SaveQueue getSaveQueue() {
+        return this.saveQueue;
+    }
+
     public InstanceManager getInstanceManager() {
         return this.instanceManager;
     }
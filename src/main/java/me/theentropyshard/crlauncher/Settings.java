@@ -44,6 +44,12 @@ public class Settings {
     public int whenCRLaunchesOption = 0;
     public int whenCRExitsOption = 0;
     public boolean consoleScrollDown = true;
+    public int consoleMaxLines = 20000;
+    public int gameLogSessionsToKeep = 50;
+    public int maxConcurrentGames = 0;
+    public int downloadSpeedLimitKiB = 0;
+    public boolean offlineMode = false;
+    public boolean useClassDataSharing = true;
 
     public Settings() {
 
@@ -64,10 +70,10 @@ public class Settings {
     }
 
     public void save(Path file) {
-        try {
-            FileUtils.writeUtf8(file, this.writePrettyJson ? Json.writePretty(this) : Json.write(this));
-        } catch (IOException e) {
-            Log.error("Could not save settings to " + file);
-        }
+        CRLauncher.getInstance().getSaveQueue().submit(file, this.toJson());
+    }
+
+    public String toJson() {
+        return this.writePrettyJson ? Json.writePretty(this) : Json.write(this);
     }
 }
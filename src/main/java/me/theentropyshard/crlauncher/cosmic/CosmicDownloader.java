@@ -3,13 +3,12 @@ package me.theentropyshard.crlauncher.cosmic;
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.cosmic.version.Version;
 import me.theentropyshard.crlauncher.cosmic.version.VersionManager;
+import me.theentropyshard.crlauncher.network.download.DownloadPriority;
 import me.theentropyshard.crlauncher.network.download.HttpDownload;
 import me.theentropyshard.crlauncher.network.progress.ProgressListener;
-import me.theentropyshard.crlauncher.network.progress.ProgressNetworkInterceptor;
 import me.theentropyshard.crlauncher.utils.FileUtils;
 import me.theentropyshard.crlauncher.utils.HashUtils;
 import me.theentropyshard.crlauncher.utils.json.Json;
-import okhttp3.OkHttpClient;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -31,23 +30,23 @@ public class CosmicDownloader {
             FileUtils.writeUtf8(versionJson, pretty ? Json.writePretty(version) : Json.write(version));
         }
 
-        if (!Files.exists(filePath) || !HashUtils.sha256(filePath).equals(version.getSha256())) {
+        if (!Files.exists(filePath) || (version.getSize() > 0 && Files.size(filePath) != version.getSize()) ||
+            !HashUtils.sha256(filePath).equalsIgnoreCase(version.getSha256())) {
+
             if (Files.exists(filePath)) {
                 FileUtils.delete(filePath);
             }
 
-            OkHttpClient httpClient = CRLauncher.getInstance().getHttpClient().newBuilder()
-                    .addNetworkInterceptor(new ProgressNetworkInterceptor(listener))
-                    .build();
-
             HttpDownload download = new HttpDownload.Builder()
                     .url(version.getUrl())
                     .expectedSize(version.getSize())
-                    .httpClient(httpClient)
+                    .sha256(version.getSha256())
+                    .httpClient(CRLauncher.getInstance().getHttpClient())
+                    .progressListener(listener)
                     .saveAs(filePath)
                     .build();
 
-            download.execute();
+            CRLauncher.getInstance().getDownloadScheduler().download(download, DownloadPriority.FOREGROUND);
         }
     }
 }
@@ -19,32 +19,40 @@
 package me.theentropyshard.crlauncher.cosmic;
 
 import me.theentropyshard.crlauncher.CRLauncher;
-import me.theentropyshard.crlauncher.gui.LauncherConsole;
+import me.theentropyshard.crlauncher.gui.ConsoleText;
 import me.theentropyshard.crlauncher.logging.LogEvent;
 import me.theentropyshard.crlauncher.logging.LogLevel;
-import me.theentropyshard.crlauncher.utils.ansi.AnsiColor;
-import me.theentropyshard.crlauncher.utils.ansi.AnsiParser;
-import me.theentropyshard.crlauncher.utils.ansi.AnsiPart;
+import me.theentropyshard.crlauncher.utils.ansi.AnsiRuns;
+import me.theentropyshard.crlauncher.utils.ansi.AnsiStyle;
 import org.apache.logging.log4j.Logger;
 
 import java.awt.*;
-import java.util.List;
 
 public class CosmicLogEvent extends LogEvent {
-    public CosmicLogEvent(String message) {
+    private final CosmicLogSession session;
+
+    /**
+     * @param session session of the game the line came from, it carries styles over from one line to the next
+     */
+    public CosmicLogEvent(String message, CosmicLogSession session) {
         super(LogLevel.INFO, message);
+
+        this.session = session;
     }
 
     @Override
-    public void appConsole(String message) {
-        if (LauncherConsole.instance == null) {
-            return;
-        }
+    public void post(Logger log, ConsoleText console) {
+        this.session.parse(this.getMessage());
+
+        super.post(log, console);
+    }
 
-        LauncherConsole c = LauncherConsole.instance;
-        List<AnsiPart> ansiParts = AnsiParser.parseAnsiString(message);
-        for (AnsiPart part : ansiParts) {
-            Color color = part.getColor().getColor();
+    @Override
+    public void appConsole(ConsoleText console, String message) {
+        AnsiRuns runs = this.session.getRuns();
+
+        for (int run = 0; run < runs.size(); run++) {
+            Color color = runs.getColor(run);
             if (color == null) {
                 if (CRLauncher.getInstance().getSettings().darkTheme) {
                     color = Color.WHITE;
@@ -52,12 +60,17 @@ public class CosmicLogEvent extends LogEvent {
                     color = Color.BLACK;
                 }
             }
-            c.setColor(color).write(AnsiColor.stripAnsiCodes(part.getText()));
+
+            int style = runs.getStyle(run);
+            int start = runs.getStart(run);
+
+            console.append(runs.getChars(), start, runs.getEnd(run) - start, color,
+                AnsiStyle.isBold(style), AnsiStyle.isItalic(style));
         }
     }
 
     @Override
     public void fileLog4j(Logger log, String message) {
-        super.fileLog4j(log, AnsiColor.stripAnsiCodes(message));
+        super.fileLog4j(log, this.session.getRuns().toPlainString());
     }
 }
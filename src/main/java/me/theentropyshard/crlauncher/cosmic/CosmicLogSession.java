@@ -0,0 +1,50 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic;
+
+import me.theentropyshard.crlauncher.utils.ansi.AnsiParser;
+import me.theentropyshard.crlauncher.utils.ansi.AnsiRuns;
+
+/**
+ * Escape sequence state of one running game. Its lines are only parsed on the log thread,
+ * one after another, so a single buffer is filled again for every line
+ */
+public class CosmicLogSession {
+    private final AnsiParser parser;
+    private final AnsiRuns runs;
+
+    public CosmicLogSession() {
+        this.parser = new AnsiParser();
+        this.runs = new AnsiRuns();
+    }
+
+    /**
+     * @return runs of the line, valid until the next line of this session is parsed
+     */
+    public AnsiRuns parse(String line) {
+        this.runs.clear();
+        this.parser.parse(line, this.runs);
+
+        return this.runs;
+    }
+
+    public AnsiRuns getRuns() {
+        return this.runs;
+    }
+}
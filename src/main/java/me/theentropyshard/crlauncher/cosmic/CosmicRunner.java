@@ -21,46 +21,55 @@ package me.theentropyshard.crlauncher.cosmic;
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.Settings;
 import me.theentropyshard.crlauncher.cosmic.launcher.AbstractCosmicLauncher;
+import me.theentropyshard.crlauncher.cosmic.launcher.ClassDataSharing;
 import me.theentropyshard.crlauncher.cosmic.launcher.CosmicLauncher;
 import me.theentropyshard.crlauncher.cosmic.launcher.CosmicLauncherFactory;
 import me.theentropyshard.crlauncher.cosmic.launcher.LaunchType;
+import me.theentropyshard.crlauncher.cosmic.logs.GameLogWriter;
 import me.theentropyshard.crlauncher.cosmic.mods.Mod;
 import me.theentropyshard.crlauncher.cosmic.mods.jar.JarMod;
+import me.theentropyshard.crlauncher.cosmic.mods.jar.JarModMerger;
+import me.theentropyshard.crlauncher.cosmic.process.GameSupervisor;
 import me.theentropyshard.crlauncher.cosmic.version.Version;
 import me.theentropyshard.crlauncher.cosmic.version.VersionList;
 import me.theentropyshard.crlauncher.cosmic.version.VersionManager;
 import me.theentropyshard.crlauncher.gui.LauncherConsole;
 import me.theentropyshard.crlauncher.gui.components.InstanceItem;
 import me.theentropyshard.crlauncher.gui.dialogs.ProgressDialog;
+import me.theentropyshard.crlauncher.gui.utils.MessageBox;
 import me.theentropyshard.crlauncher.instance.Instance;
 import me.theentropyshard.crlauncher.instance.InstanceType;
 import me.theentropyshard.crlauncher.java.JavaLocator;
+import me.theentropyshard.crlauncher.java.gc.HeapAdvisor;
 import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.progress.CompositeProgress;
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
 import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.HashUtils;
 import me.theentropyshard.crlauncher.utils.SystemProperty;
+import me.theentropyshard.crlauncher.utils.TaskGraph;
 import me.theentropyshard.crlauncher.utils.TimeUtils;
-import net.lingala.zip4j.ZipFile;
-import net.lingala.zip4j.model.ZipParameters;
 
 import javax.swing.*;
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class CosmicRunner extends Thread {
-
+    private static final long MERGED_JAR_MAX_AGE_DAYS = 30L;
 
     private final Instance instance;
     private final InstanceItem item;
 
-    private Path clientCopyTmp;
-
     public CosmicRunner(Instance instance, InstanceItem item) {
         this.instance = instance;
         this.item = item;
@@ -74,6 +83,15 @@ public class CosmicRunner extends Thread {
             return;
         }
 
+        GameSupervisor supervisor = CRLauncher.getInstance().getGameSupervisor();
+        if (!supervisor.tryReserve()) {
+            MessageBox.showWarningMessage(CRLauncher.frame,
+                CRLauncher.getInstance().getLanguage().getString("messages.gui.playView.tooManyGames")
+                    .replace("$$LIMIT$$", String.valueOf(supervisor.getMaxConcurrentGames())));
+
+            return;
+        }
+
         this.instance.setRunning(true);
         this.item.setEnabled(false);
 
@@ -82,88 +100,11 @@ public class CosmicRunner extends Thread {
 
     @Override
     public void run() {
-        VersionManager versionManager = CRLauncher.getInstance().getVersionManager();
-
-        this.updateCosmicVersion();
-
         try {
-            Version version = versionManager.getVersion(this.instance.getCosmicVersion());
-
-            ProgressDialog dialog = new ProgressDialog("Downloading Cosmic Reach");
-            SwingUtilities.invokeLater(() -> dialog.setVisible(true));
-            versionManager.downloadVersion(version, dialog);
-            dialog.getDialog().dispose();
-
-            Path saveDirPath = this.instance.getCosmicDir();
-
-            Path versionsDir = CRLauncher.getInstance().getVersionsDir();
-            Path clientPath = versionsDir.resolve(version.getId()).resolve(version.getId() + ".jar").toAbsolutePath();
+            CosmicLauncher launcher = this.prepareLaunch();
 
             this.instance.setLastTimePlayed(LocalDateTime.now());
 
-            CosmicLauncher launcher;
-
-            String javaPath = this.instance.getJavaPath();
-            if (javaPath == null || javaPath.isEmpty()) {
-                javaPath = JavaLocator.getJavaPath();
-                this.instance.setJavaPath(javaPath);
-            }
-
-            if (this.instance.getType() == InstanceType.VANILLA) {
-                clientPath = this.applyJarMods(version, versionsDir);
-
-                launcher = CosmicLauncherFactory.getLauncher(
-                    javaPath,
-                    LaunchType.VANILLA,
-                    saveDirPath,
-                    saveDirPath,
-                    clientPath
-                );
-            } else {
-                launcher = switch (this.instance.getType()) {
-                    case FABRIC -> CosmicLauncherFactory.getLauncher(
-                        javaPath,
-                        LaunchType.FABRIC,
-                        saveDirPath,
-                        saveDirPath,
-                        clientPath,
-                        this.instance.getFabricModsDir(),
-                        this.instance.getFabricVersion()
-                    );
-                    case QUILT -> CosmicLauncherFactory.getLauncher(
-                        javaPath,
-                        LaunchType.QUILT,
-                        saveDirPath,
-                        saveDirPath,
-                        clientPath,
-                        this.instance.getQuiltModsDir(),
-                        this.instance.getQuiltVersion()
-                    );
-                    case PUZZLE -> CosmicLauncherFactory.getLauncher(
-                        javaPath,
-                        LaunchType.PUZZLE,
-                        saveDirPath,
-                        saveDirPath,
-                        clientPath,
-                        this.instance.getPuzzleModsDir(),
-                        this.instance.getPuzzleVersion()
-                    );
-                    default -> throw new IllegalArgumentException("Unknown instance type: " + this.instance.getType());
-                };
-
-                switch (this.instance.getType()) {
-                    case VANILLA -> {
-
-                    }
-                    case FABRIC ->
-                        this.updateMods(this.instance.getFabricMods(), this.instance.getFabricModsDir(), this.instance.getDisabledFabricModsDir());
-                    case QUILT ->
-                        this.updateMods(this.instance.getQuiltMods(), this.instance.getQuiltModsDir(), this.instance.getDisabledQuiltModsDir());
-                    case PUZZLE ->
-                        this.updateMods(this.instance.getPuzzleMods(), this.instance.getPuzzleModsDir(), this.instance.getDisabledPuzzleModsDir());
-                }
-            }
-
             Settings settings = CRLauncher.getInstance().getSettings();
 
             int launchOption = settings.whenCRLaunchesOption;
@@ -178,26 +119,36 @@ public class CosmicRunner extends Thread {
                 }
             }
 
-            if (launcher instanceof AbstractCosmicLauncher abstractLauncher) {
-                String title = this.instance.getCustomWindowTitle();
-
-                if (title != null && !title.trim().isEmpty()) {
-                    abstractLauncher.defineProperty(new SystemProperty("crloader.windowTitle", title));
-                }
-            }
+            GameLogWriter logWriter = this.startLogSession();
+            // styles carry over between lines of one game's output, and never leak into another game's
+            CosmicLogSession logSession = new CosmicLogSession();
 
             long start = System.currentTimeMillis();
+            long gameLinesBefore = Log.getMetrics().getGameLines();
 
-            int exitCode = launcher.launch(line -> {
-                InstanceType type = this.instance.getType();
-                if (type == InstanceType.VANILLA || type == InstanceType.FABRIC) {
-                    Log.cosmicReachVanilla(line);
-                } else {
-                    Log.cosmicReachModded(line);
-                }
-            }, launchOption == 3);
+            int exitCode = -1;
+            long end;
+
+            try {
+                exitCode = launcher.launch(line -> {
+                    if (logWriter != null) {
+                        logWriter.write(line);
+                    }
 
-            long end = System.currentTimeMillis();
+                    InstanceType type = this.instance.getType();
+                    if (type == InstanceType.VANILLA || type == InstanceType.FABRIC) {
+                        Log.cosmicReachVanilla(line, logSession);
+                    } else {
+                        Log.cosmicReachModded(line, logSession);
+                    }
+                }, launchOption == 3);
+            } finally {
+                end = System.currentTimeMillis();
+
+                if (logWriter != null) {
+                    logWriter.finish(exitCode, end - start);
+                }
+            }
 
             int exitsOption = settings.whenCRExitsOption;
             if (exitsOption == 0) {
@@ -214,6 +165,10 @@ public class CosmicRunner extends Thread {
 
             Log.info("Cosmic Reach process finished with exit code " + exitCode);
 
+            long gameLines = Log.getMetrics().getGameLines() - gameLinesBefore;
+            Log.info("Cosmic Reach wrote " + gameLines + " log line(s), " +
+                (gameLines * 1000L / Math.max(1L, end - start)) + " per second on average");
+
             long timePlayedSeconds = (end - start) / 1000;
             String timePlayed = TimeUtils.getHoursMinutesSeconds(timePlayedSeconds);
             if (!timePlayed.trim().isEmpty()) {
@@ -221,25 +176,189 @@ public class CosmicRunner extends Thread {
             }
 
             this.instance.updatePlaytime(timePlayedSeconds);
+            HeapAdvisor.afterSession(this.instance);
             this.instance.save();
 
+            // the game rewrites world files in place, which directory times do not show
+            CRLauncher.getInstance().getDiskUsage().invalidate(this.instance.getWorkDir());
+
             if (exitCode == 0 && exitsOption == 1) {
                 CRLauncher.getInstance().shutdown();
             }
         } catch (Exception e) {
             Log.error("Exception occurred while trying to start Cosmic Reach", e);
+
+            MessageBox.showErrorMessage(CRLauncher.frame, "Could not start Cosmic Reach: " + e.getMessage());
         } finally {
+            CRLauncher.getInstance().getGameSupervisor().release();
+
             this.instance.setRunning(false);
             this.item.setEnabled(true);
+        }
 
-            if (this.clientCopyTmp != null && Files.exists(this.clientCopyTmp)) {
-                try {
-                    Files.delete(this.clientCopyTmp);
-                } catch (IOException e) {
-                    Log.error("Unable to delete temporary client", e);
-                }
+        // a big world can take a while to walk, the instance is playable again in the meantime
+        CRLauncher.getInstance().doTask(() -> {
+            try {
+                CRLauncher.getInstance().getDiskUsage().getSize(this.instance.getWorkDir());
+            } catch (IOException e) {
+                Log.warn("Could not calculate the size of instance '" + this.instance.getName() + "': " + e.getMessage());
             }
+        });
+    }
+
+    private GameLogWriter startLogSession() {
+        try {
+            return CRLauncher.getInstance().getGameLogStore().startSession(this.instance);
+        } catch (IOException e) {
+            Log.error("Could not start game log session, the output will only be in the launcher log", e);
         }
+
+        return null;
+    }
+
+    /**
+     * Sets everything up that goes into the launch command, so the launch plan can be checked before the loader is prepared
+     */
+    private void configureLauncher(CosmicLauncher launcher, Settings settings) throws IOException {
+        if (launcher instanceof AbstractCosmicLauncher abstractLauncher) {
+            String title = this.instance.getCustomWindowTitle();
+
+            if (title != null && !title.trim().isEmpty()) {
+                abstractLauncher.defineProperty(new SystemProperty("crloader.windowTitle", title));
+            }
+
+            abstractLauncher.setLaunchPlanFile(this.instance.getWorkDir().resolve("launch-plan.json"));
+            abstractLauncher.setProcessListener(process ->
+                CRLauncher.getInstance().getGameSupervisor().register(this.instance, process));
+
+            if (settings.useClassDataSharing) {
+                abstractLauncher.setClassDataSharing(new ClassDataSharing(this.instance.getWorkDir().resolve("cds")));
+            }
+
+            Files.deleteIfExists(HeapAdvisor.getGcLogFile(this.instance));
+
+            for (String argument : HeapAdvisor.getJvmArguments(this.instance, abstractLauncher.getRunDir())) {
+                abstractLauncher.addJvmArgument(argument);
+            }
+        }
+    }
+
+    /**
+     * Runs the steps before launch as a graph, so the client download, the mod loader download
+     * and moving mods around all happen at the same time, reporting to one progress dialog
+     */
+    private CosmicLauncher prepareLaunch() throws Exception {
+        VersionManager versionManager = CRLauncher.getInstance().getVersionManager();
+        Path versionsDir = CRLauncher.getInstance().getVersionsDir();
+
+        ProgressDialog dialog = new ProgressDialog("Preparing Cosmic Reach");
+        dialog.setStage("Preparing " + this.instance.getName() + "...");
+        CompositeProgress progress = new CompositeProgress(dialog);
+
+        AtomicReference<Version> version = new AtomicReference<>();
+        AtomicReference<CosmicLauncher> launcher = new AtomicReference<>();
+
+        TaskGraph graph = new TaskGraph("Pre-launch");
+        graph.setRunningTasksListener(running -> {
+            if (!running.isEmpty()) {
+                SwingUtilities.invokeLater(() -> dialog.setStage(String.join(", ", running) + "..."));
+            }
+        });
+
+        TaskGraph.Node versionTask = graph.add("Resolving version", () -> {
+            this.updateCosmicVersion();
+            version.set(versionManager.getVersion(this.instance.getCosmicVersion()));
+        });
+
+        TaskGraph.Node javaTask = graph.add("Locating Java", () -> {
+            String javaPath = this.instance.getJavaPath();
+            if (javaPath == null || javaPath.isEmpty()) {
+                this.instance.setJavaPath(JavaLocator.getJavaPath());
+            }
+        });
+
+        ProgressListener clientProgress = progress.part();
+        TaskGraph.Node clientTask = graph.add("Downloading client", () -> {
+            versionManager.downloadVersion(version.get(), clientProgress);
+        }, versionTask);
+
+        ProgressListener loaderProgress = progress.part();
+        TaskGraph.Node loaderTask = graph.add("Downloading loader", () -> {
+            Path clientPath = versionManager.getVersionPath(version.get()).toAbsolutePath();
+            CosmicLauncher cosmicLauncher = this.createLauncher(this.instance.getJavaPath(), clientPath);
+            this.configureLauncher(cosmicLauncher, CRLauncher.getInstance().getSettings());
+            launcher.set(cosmicLauncher);
+
+            // a valid plan means every file the loader would fetch is on disk and unchanged since the last launch
+            if (cosmicLauncher instanceof AbstractCosmicLauncher abstractLauncher && abstractLauncher.loadLaunchPlan()) {
+                Log.info("Launch plan is up to date, skipping loader preparation");
+
+                return;
+            }
+
+            cosmicLauncher.prepare(loaderProgress);
+        }, versionTask, javaTask);
+
+        graph.add("Syncing mods", this::updateMods);
+
+        if (this.instance.getType() == InstanceType.VANILLA) {
+            graph.add("Applying jar mods", () -> {
+                if (launcher.get() instanceof AbstractCosmicLauncher abstractLauncher) {
+                    abstractLauncher.setClientPath(this.applyJarMods(version.get(), versionsDir));
+                }
+            }, clientTask, loaderTask);
+        }
+
+        SwingUtilities.invokeLater(() -> dialog.setVisible(true));
+
+        try {
+            graph.run();
+        } finally {
+            SwingUtilities.invokeLater(() -> dialog.getDialog().dispose());
+        }
+
+        return launcher.get();
+    }
+
+    private CosmicLauncher createLauncher(String javaPath, Path clientPath) {
+        Path saveDirPath = this.instance.getCosmicDir();
+
+        return switch (this.instance.getType()) {
+            case VANILLA -> CosmicLauncherFactory.getLauncher(
+                javaPath,
+                LaunchType.VANILLA,
+                saveDirPath,
+                saveDirPath,
+                clientPath
+            );
+            case FABRIC -> CosmicLauncherFactory.getLauncher(
+                javaPath,
+                LaunchType.FABRIC,
+                saveDirPath,
+                saveDirPath,
+                clientPath,
+                this.instance.getFabricModsDir(),
+                this.instance.getFabricVersion()
+            );
+            case QUILT -> CosmicLauncherFactory.getLauncher(
+                javaPath,
+                LaunchType.QUILT,
+                saveDirPath,
+                saveDirPath,
+                clientPath,
+                this.instance.getQuiltModsDir(),
+                this.instance.getQuiltVersion()
+            );
+            case PUZZLE -> CosmicLauncherFactory.getLauncher(
+                javaPath,
+                LaunchType.PUZZLE,
+                saveDirPath,
+                saveDirPath,
+                clientPath,
+                this.instance.getPuzzleModsDir(),
+                this.instance.getPuzzleVersion()
+            );
+        };
     }
 
     private void updateCosmicVersion() {
@@ -272,46 +391,45 @@ public class CosmicRunner extends Thread {
             return originalClientPath;
         } else {
             try {
-                this.clientCopyTmp = Files.copy(originalClientPath, this.instance.getWorkDir()
-                    .resolve(originalClientPath.getFileName().toString() + System.currentTimeMillis() + ".jar"));
+                List<Path> inputs = new ArrayList<>();
+                inputs.add(originalClientPath);
 
-                List<File> zipFilesToMerge = new ArrayList<>();
+                StringBuilder key = new StringBuilder(version.getSha256() != null ?
+                    version.getSha256() : HashUtils.sha256(originalClientPath));
 
                 for (JarMod jarMod : jarMods) {
                     if (!jarMod.isActive()) {
                         continue;
                     }
 
-                    zipFilesToMerge.add(Paths.get(jarMod.getFullPath()).toFile());
+                    Path modPath = Paths.get(jarMod.getFullPath());
+                    inputs.add(modPath);
+                    key.append('\n').append(HashUtils.sha256(modPath));
                 }
 
-                try (ZipFile copyZip = new ZipFile(this.clientCopyTmp.toFile())) {
-                    for (File modFile : zipFilesToMerge) {
-                        Path unpackDir = this.instance.getWorkDir().resolve(modFile.getName().replace(".", "_"));
-                        try (ZipFile modZip = new ZipFile(modFile)) {
-                            if (Files.exists(unpackDir)) {
-                                FileUtils.delete(unpackDir);
-                            }
-                            FileUtils.createDirectoryIfNotExists(unpackDir);
+                Path mergedDir = CRLauncher.getInstance().getCacheDir().resolve("jar-mods");
+                Path mergedPath = mergedDir.resolve(HashUtils.sha256(key.toString()) + ".jar");
 
-                            modZip.extractAll(unpackDir.toAbsolutePath().toString());
-                        }
+                if (Files.exists(mergedPath)) {
+                    Log.info("Using cached client with jar mods applied: " + mergedPath);
+                    CosmicRunner.markUsed(mergedPath);
 
-                        List<Path> modFiles = FileUtils.walk(unpackDir);
+                    return mergedPath;
+                }
 
-                        ZipParameters zipParameters = new ZipParameters();
+                FileUtils.createDirectoryIfNotExists(mergedDir);
+                this.deleteUnusedMergedJars(mergedDir);
 
-                        for (Path modFileToAdd : modFiles) {
-                            String relative = unpackDir.toAbsolutePath().toUri().relativize(modFileToAdd.toAbsolutePath().toUri()).getPath();
-                            zipParameters.setFileNameInZip(relative);
-                            copyZip.addFile(modFileToAdd.toFile(), zipParameters);
-                        }
+                long start = System.currentTimeMillis();
 
-                        FileUtils.delete(unpackDir);
-                    }
-                }
+                Path tmpPath = mergedDir.resolve(mergedPath.getFileName() + ".tmp");
+                JarModMerger.merge(inputs, tmpPath);
+                Files.move(tmpPath, mergedPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                CosmicRunner.markUsed(mergedPath);
 
-                return this.clientCopyTmp;
+                Log.info("Applied " + (inputs.size() - 1) + " jar mod(s) in " + (System.currentTimeMillis() - start) + " ms");
+
+                return mergedPath;
             } catch (IOException e) {
                 Log.error("Exception while applying jar mods", e);
             }
@@ -320,6 +438,72 @@ public class CosmicRunner extends Thread {
         return originalClientPath;
     }
 
+    /**
+     * Remembers when a merged jar was last used next to it. The jar itself is left alone,
+     * because the launch plan takes a changed modification time as a changed client
+     */
+    private static void markUsed(Path mergedPath) {
+        Path usedFile = CosmicRunner.getUsedFile(mergedPath);
+
+        try {
+            if (Files.exists(usedFile)) {
+                Files.setLastModifiedTime(usedFile, FileTime.from(Instant.now()));
+            } else {
+                Files.createFile(usedFile);
+            }
+        } catch (IOException e) {
+            Log.warn("Could not mark " + mergedPath + " as used: " + e.getMessage());
+        }
+    }
+
+    private static Path getUsedFile(Path mergedPath) {
+        return mergedPath.resolveSibling(mergedPath.getFileName() + ".used");
+    }
+
+    private void deleteUnusedMergedJars(Path mergedDir) {
+        long threshold = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(CosmicRunner.MERGED_JAR_MAX_AGE_DAYS);
+
+        try {
+            for (Path path : FileUtils.list(mergedDir)) {
+                String fileName = path.getFileName().toString();
+
+                if (fileName.endsWith(".used")) {
+                    if (!Files.exists(path.resolveSibling(fileName.substring(0, fileName.length() - ".used".length())))) {
+                        Files.deleteIfExists(path);
+                    }
+
+                    continue;
+                }
+
+                Path usedFile = CosmicRunner.getUsedFile(path);
+                long lastUsed = Files.exists(usedFile) ?
+                    Files.getLastModifiedTime(usedFile).toMillis() :
+                    Files.getLastModifiedTime(path).toMillis();
+
+                if (lastUsed < threshold) {
+                    FileUtils.delete(path);
+                    Files.deleteIfExists(usedFile);
+                }
+            }
+        } catch (IOException e) {
+            Log.warn("Could not clean up merged jars: " + e.getMessage());
+        }
+    }
+
+    private void updateMods() throws IOException {
+        switch (this.instance.getType()) {
+            case VANILLA -> {
+
+            }
+            case FABRIC ->
+                this.updateMods(this.instance.getFabricMods(), this.instance.getFabricModsDir(), this.instance.getDisabledFabricModsDir());
+            case QUILT ->
+                this.updateMods(this.instance.getQuiltMods(), this.instance.getQuiltModsDir(), this.instance.getDisabledQuiltModsDir());
+            case PUZZLE ->
+                this.updateMods(this.instance.getPuzzleMods(), this.instance.getPuzzleModsDir(), this.instance.getDisabledPuzzleModsDir());
+        }
+    }
+
     private void updateMods(List<? extends Mod> mods, Path enabledModsDir, Path disabledModsDir) throws IOException {
         if (mods.isEmpty()) {
             return;
@@ -18,24 +18,18 @@
 
 package me.theentropyshard.crlauncher.cosmic;
 
-import me.theentropyshard.crlauncher.gui.LauncherConsole;
+import me.theentropyshard.crlauncher.gui.ConsoleText;
 import me.theentropyshard.crlauncher.logging.LogEvent;
 
 public class TimeCosmicLogEvent extends CosmicLogEvent {
-    public TimeCosmicLogEvent(String message) {
-        super(message);
+    public TimeCosmicLogEvent(String message, CosmicLogSession session) {
+        super(message, session);
     }
 
     @Override
-    public void appConsole(String message) {
-        if (LauncherConsole.instance == null) {
-            return;
-        }
+    public void appConsole(ConsoleText console, String message) {
+        console.append("[" + LogEvent.currentTime() + "]: ", this.getLevel().color(), true);
 
-        LauncherConsole c = LauncherConsole.instance;
-        c.setColor(this.getLevel().color()).setBold(true).write("[" + LogEvent.currentTime() + "]: ");
-        c.setBold(false);
-
-        super.appConsole(message);
+        super.appConsole(console, message);
     }
 }
@@ -63,6 +63,8 @@ public class AccountManager {
         if (this.accountStorage == null) {
             throw new IOException("Could not load account storage from '" + this.accountsFile + "'");
         }
+
+        CRLauncher.getInstance().getSaveQueue().remember(this.accountsFile, this.toJson());
     }
 
     public boolean saveAccount(Account account) {
@@ -85,10 +87,17 @@ public class AccountManager {
         this.accountStorage.setSelected(account.getUsername());
     }
 
+    /**
+     * Queues the accounts to be written, so adding or removing several accounts in a row writes the file once
+     */
     public void save() throws IOException {
+        CRLauncher.getInstance().getSaveQueue().submit(this.accountsFile, this.toJson());
+    }
+
+    private String toJson() {
         Settings settings = CRLauncher.getInstance().getSettings();
-        String json = settings.writePrettyJson ? Json.writePretty(this.accountStorage) : Json.write(this.accountStorage);
-        FileUtils.writeUtf8(this.accountsFile, json);
+
+        return settings.writePrettyJson ? Json.writePretty(this.accountStorage) : Json.write(this.accountStorage);
     }
 
     public List<Account> getAccounts() {
@@ -18,22 +18,38 @@
 
 package me.theentropyshard.crlauncher.cosmic.launcher;
 
+import me.theentropyshard.crlauncher.BuildConfig;
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.java.JavaLocator;
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
+import me.theentropyshard.crlauncher.utils.HashUtils;
 import me.theentropyshard.crlauncher.utils.ProcessReader;
 import me.theentropyshard.crlauncher.utils.SystemProperty;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public abstract class AbstractCosmicLauncher implements CosmicLauncher {
     private final String javaPath;
     private final Path runDir;
     private final Path gameFilesLocation;
-    private final Path clientPath;
     private final List<String> command;
     private final List<SystemProperty> properties;
+    private final List<String> jvmArguments;
+
+    private Path clientPath;
+    private ClassDataSharing classDataSharing;
+    private Path launchPlanFile;
+    private String loadedPlanKey;
+    private List<String> loadedPlan;
+    private Consumer<Process> processListener;
 
     public AbstractCosmicLauncher(String javaPath, Path runDir, Path gameFilesLocation, Path clientPath) {
         this.javaPath = javaPath;
@@ -42,16 +58,27 @@ public abstract class AbstractCosmicLauncher implements CosmicLauncher {
         this.clientPath = clientPath;
         this.command = new ArrayList<>();
         this.properties = new ArrayList<>();
+        this.jvmArguments = new ArrayList<>();
     }
 
     public void defineProperty(SystemProperty property) {
         this.properties.add(property);
     }
 
+    public void addJvmArgument(String argument) {
+        this.jvmArguments.add(argument);
+    }
+
+    @Override
+    public void prepare(ProgressListener listener) throws IOException {
+
+    }
+
     public void buildCommand(List<String> command) {
         command.clear();
 
         command.add(this.getJavaPath());
+        command.addAll(this.jvmArguments);
 
         for (SystemProperty property : this.properties) {
             command.add(property.asJvmArg());
@@ -60,21 +87,140 @@ public abstract class AbstractCosmicLauncher implements CosmicLauncher {
 
     @Override
     public int launch(LogConsumer log, boolean exitAfterLaunch) throws Exception {
-        this.buildCommand(this.command);
+        String planKey = null;
+        List<String> plannedCommand = null;
+
+        if (this.launchPlanFile != null) {
+            planKey = this.getLaunchPlanKey();
+
+            // nothing that goes into the command changed since loadLaunchPlan, so the plan is not checked again
+            plannedCommand = planKey.equals(this.loadedPlanKey) ? this.loadedPlan : LaunchPlan.load(this.launchPlanFile, planKey);
+        }
+
+        LaunchPlan newPlan = null;
+
+        if (plannedCommand != null) {
+            Log.info("Using cached launch plan");
+
+            this.command.clear();
+            this.command.addAll(plannedCommand);
+        } else {
+            this.buildCommand(this.command);
+
+            if (planKey != null) {
+                newPlan = LaunchPlan.create(planKey, this.command);
+            }
+        }
+
+        if (this.classDataSharing != null) {
+            this.command.addAll(1, this.classDataSharing.prepare(this.javaPath, this.command, this.getModDirs()));
+        }
 
         ProcessBuilder processBuilder = new ProcessBuilder(this.command);
         processBuilder.directory(this.runDir.toFile());
         processBuilder.redirectErrorStream(true);
 
+        long start = System.nanoTime();
+        AtomicLong startupMillis = new AtomicLong(-1L);
+
         Process process = processBuilder.start();
 
+        if (this.processListener != null) {
+            this.processListener.accept(process);
+        }
+
         if (exitAfterLaunch) {
             CRLauncher.getInstance().shutdown();
         }
 
-        new ProcessReader(process).read(log::line);
+        new ProcessReader(process).read(line -> {
+            if (startupMillis.get() == -1L) {
+                startupMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+
+            log.line(line);
+        });
+
+        int exitCode = process.waitFor();
+
+        // only a command that worked is remembered, buildCommand does not report failures
+        if (newPlan != null && exitCode == 0) {
+            try {
+                newPlan.save(this.launchPlanFile);
+            } catch (IOException e) {
+                Log.warn("Could not save launch plan: " + e.getMessage());
+            }
+        }
+
+        if (this.classDataSharing != null) {
+            this.classDataSharing.finish(startupMillis.get());
+        }
 
-        return process.waitFor();
+        return exitCode;
+    }
+
+    /**
+     * Checks the launch plan ahead of time, before anything is prepared for the launch
+     *
+     * @return true if the plan is valid for the current settings, so the command does not have to be built
+     */
+    public boolean loadLaunchPlan() {
+        if (this.launchPlanFile == null) {
+            return false;
+        }
+
+        this.loadedPlanKey = this.getLaunchPlanKey();
+        this.loadedPlan = LaunchPlan.load(this.launchPlanFile, this.loadedPlanKey);
+
+        return this.loadedPlan != null;
+    }
+
+    private String getLaunchPlanKey() {
+        StringBuilder builder = new StringBuilder()
+            .append(BuildConfig.APP_VERSION).append('\n')
+            .append(this.getClass().getName()).append('\n')
+            .append(this.javaPath).append('\n')
+            .append(this.runDir).append('\n')
+            .append(this.gameFilesLocation).append('\n')
+            .append(this.clientPath).append('\n')
+            .append(this.getLoaderVersion()).append('\n')
+            .append(this.getModDirs()).append('\n')
+            .append(this.jvmArguments).append('\n');
+
+        for (SystemProperty property : this.properties) {
+            builder.append(property.asJvmArg()).append('\n');
+        }
+
+        return HashUtils.sha256(builder.toString());
+    }
+
+    /**
+     * @return version of the mod loader, or null if the game is launched without one
+     */
+    public String getLoaderVersion() {
+        return null;
+    }
+
+    /**
+     * @return directories the game loads classes from, that are not on the command line
+     */
+    public List<Path> getModDirs() {
+        return Collections.emptyList();
+    }
+
+    public void setClassDataSharing(ClassDataSharing classDataSharing) {
+        this.classDataSharing = classDataSharing;
+    }
+
+    public void setLaunchPlanFile(Path launchPlanFile) {
+        this.launchPlanFile = launchPlanFile;
+    }
+
+    /**
+     * @param processListener called with the game process right after it is started
+     */
+    public void setProcessListener(Consumer<Process> processListener) {
+        this.processListener = processListener;
     }
 
     public String getJavaPath() {
@@ -92,4 +238,8 @@ public abstract class AbstractCosmicLauncher implements CosmicLauncher {
     public Path getClientPath() {
         return this.clientPath;
     }
+
+    public void setClientPath(Path clientPath) {
+        this.clientPath = clientPath;
+    }
 }
@@ -0,0 +1,311 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.launcher;
+
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.HashUtils;
+import me.theentropyshard.crlauncher.utils.MathUtils;
+import me.theentropyshard.crlauncher.utils.json.Json;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Manages a dynamic AppCDS archive for one instance. The first launch with a new classpath runs with
+ * {@code -XX:ArchiveClassesAtExit}, so the JVM dumps the classes it loaded when the game exits. Later launches map
+ * that archive with {@code -XX:SharedArchiveFile} and skip most of the class loading and verification.
+ * The archive is tied to a fingerprint of the Java runtime, the command line, the size and modification time of
+ * every jar on it and the contents of the mods folders, and is recreated when any of these change.
+ */
+public class ClassDataSharing {
+    private static final int MIN_JAVA_VERSION = 13;
+    private static final int MAX_ATTEMPTS = 2;
+    private static final String ARCHIVE_FILE = "game.jsa";
+    private static final String STATE_FILE = "cds.json";
+
+    private final Path dir;
+    private final Path archiveFile;
+    private final Path stateFile;
+
+    private State state;
+    private Mode mode = Mode.OFF;
+
+    public ClassDataSharing(Path dir) {
+        this.dir = dir;
+        this.archiveFile = dir.resolve(ClassDataSharing.ARCHIVE_FILE);
+        this.stateFile = dir.resolve(ClassDataSharing.STATE_FILE);
+    }
+
+    /**
+     * Decides whether to create or use the archive for this command
+     *
+     * @param command the complete command, without CDS options
+     * @param dirs    directories whose files are loaded by the game, but are not on the command line
+     * @return JVM options to insert after the java executable
+     */
+    public List<String> prepare(String javaPath, List<String> command, List<Path> dirs) {
+        this.mode = Mode.OFF;
+
+        String javaVersion = ClassDataSharing.getJavaVersion(javaPath);
+        if (javaVersion == null || ClassDataSharing.getFeatureVersion(javaVersion) < ClassDataSharing.MIN_JAVA_VERSION) {
+            Log.info("Not using a CDS archive, Java " + javaVersion + " does not support dynamic archives");
+
+            return Collections.emptyList();
+        }
+
+        String fingerprint;
+
+        try {
+            fingerprint = ClassDataSharing.fingerprint(javaPath, javaVersion, command, dirs);
+        } catch (IOException e) {
+            Log.warn("Could not fingerprint the classpath, not using a CDS archive: " + e.getMessage());
+
+            return Collections.emptyList();
+        }
+
+        State state = this.loadState();
+
+        if (state != null && fingerprint.equals(state.fingerprint)) {
+            if (Files.exists(this.archiveFile)) {
+                this.state = state;
+                this.mode = Mode.USE;
+
+                return List.of("-XX:SharedArchiveFile=" + this.archiveFile);
+            }
+
+            if (state.attempts >= ClassDataSharing.MAX_ATTEMPTS) {
+                Log.info("Not using a CDS archive, the JVM did not create one for this classpath");
+
+                return Collections.emptyList();
+            }
+        } else {
+            state = new State();
+            state.fingerprint = fingerprint;
+        }
+
+        try {
+            FileUtils.createDirectoryIfNotExists(this.dir);
+
+            // the JVM creates the archive read-only, which prevents deleting it on Windows
+            if (Files.exists(this.archiveFile)) {
+                this.archiveFile.toFile().setWritable(true);
+                Files.delete(this.archiveFile);
+            }
+        } catch (IOException e) {
+            Log.warn("Could not prepare CDS archive directory: " + e.getMessage());
+
+            return Collections.emptyList();
+        }
+
+        state.attempts++;
+        this.state = state;
+        this.mode = Mode.CREATE;
+        this.saveState();
+
+        Log.info("Classpath changed, a CDS archive will be created when the game exits");
+
+        return List.of("-XX:ArchiveClassesAtExit=" + this.archiveFile, "-Xlog:cds=off", "-Xlog:cds+dynamic=off");
+    }
+
+    /**
+     * Records how long the game took to produce its first output in this launch, and reports it
+     * along with the time of the other mode
+     *
+     * @param startupMillis time from process start to first output, or -1 if there was no output
+     */
+    public void finish(long startupMillis) {
+        switch (this.mode) {
+            case OFF -> {
+                if (startupMillis >= 0) {
+                    Log.info("Game started in " + startupMillis + " ms");
+                }
+
+                return;
+            }
+            case CREATE -> {
+                this.state.startupWithoutArchive = startupMillis;
+
+                if (Files.exists(this.archiveFile)) {
+                    this.state.attempts = 0;
+
+                    try {
+                        double size = Files.size(this.archiveFile) / 1024.0D / 1024.0D;
+                        Log.info("Created CDS archive (" + MathUtils.round(size, 2) + " MiB), game started in " +
+                            startupMillis + " ms without it");
+                    } catch (IOException e) {
+                        Log.warn("Could not get size of " + this.archiveFile + ": " + e.getMessage());
+                    }
+                } else {
+                    Log.warn("The JVM did not create a CDS archive");
+                }
+            }
+            case USE -> {
+                this.state.startupWithArchive = startupMillis;
+
+                String message = "Game started in " + startupMillis + " ms with CDS archive";
+                if (this.state.startupWithoutArchive > 0) {
+                    message += ", " + this.state.startupWithoutArchive + " ms without it";
+                }
+
+                Log.info(message);
+            }
+        }
+
+        this.saveState();
+    }
+
+    private State loadState() {
+        if (!Files.exists(this.stateFile)) {
+            return null;
+        }
+
+        try {
+            return Json.parse(FileUtils.readUtf8(this.stateFile), State.class);
+        } catch (Exception e) {
+            Log.warn("Could not read " + this.stateFile + ": " + e.getMessage());
+
+            return null;
+        }
+    }
+
+    private void saveState() {
+        try {
+            FileUtils.writeUtf8(this.stateFile, Json.write(this.state));
+        } catch (IOException e) {
+            Log.warn("Could not save " + this.stateFile + ": " + e.getMessage());
+        }
+    }
+
+    private static String fingerprint(String javaPath, String javaVersion, List<String> command, List<Path> dirs) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append(javaPath).append(' ').append(javaVersion).append('\n');
+
+        for (int i = 1; i < command.size(); i++) {
+            String arg = command.get(i);
+
+            if (arg.startsWith("-D")) {
+                continue;
+            }
+
+            builder.append(arg).append('\n');
+
+            String paths = arg.startsWith("-javaagent:") ? arg.substring("-javaagent:".length()) : arg;
+            for (String path : paths.split(File.pathSeparator)) {
+                ClassDataSharing.appendFile(builder, path);
+            }
+        }
+
+        for (Path dir : dirs) {
+            if (dir == null || !Files.isDirectory(dir)) {
+                continue;
+            }
+
+            List<Path> files = new ArrayList<>(FileUtils.list(dir));
+            Collections.sort(files);
+
+            for (Path file : files) {
+                ClassDataSharing.appendFile(builder, file.toString());
+            }
+        }
+
+        return HashUtils.sha256(builder.toString());
+    }
+
+    private static void appendFile(StringBuilder builder, String path) throws IOException {
+        if (path.isEmpty() || path.startsWith("-")) {
+            return;
+        }
+
+        Path file;
+
+        try {
+            file = Paths.get(path);
+        } catch (RuntimeException e) {
+            return;
+        }
+
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        builder.append(file).append(' ')
+            .append(attributes.size()).append(' ')
+            .append(attributes.lastModifiedTime().toMillis()).append('\n');
+    }
+
+    private static String getJavaVersion(String javaPath) {
+        Path binDir = Paths.get(javaPath).toAbsolutePath().getParent();
+        if (binDir == null || binDir.getParent() == null) {
+            return null;
+        }
+
+        Path releaseFile = binDir.getParent().resolve("release");
+        if (!Files.exists(releaseFile)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+
+        try (BufferedReader reader = Files.newBufferedReader(releaseFile)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return null;
+        }
+
+        String version = properties.getProperty("JAVA_VERSION");
+
+        return version == null ? null : version.replace("\"", "");
+    }
+
+    private static int getFeatureVersion(String version) {
+        String[] parts = version.split("[.\\-+_]");
+
+        try {
+            int feature = Integer.parseInt(parts[0]);
+
+            return feature == 1 && parts.length > 1 ? Integer.parseInt(parts[1]) : feature;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private enum Mode {
+        OFF,
+        CREATE,
+        USE
+    }
+
+    private static final class State {
+        private String fingerprint;
+        private int attempts;
+        private long startupWithoutArchive = -1L;
+        private long startupWithArchive = -1L;
+    }
+}
@@ -1,5 +1,14 @@
 package me.theentropyshard.crlauncher.cosmic.launcher;
 
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
+
+import java.io.IOException;
+
 public interface CosmicLauncher {
+    /**
+     * Downloads everything the launcher needs besides the client itself, may run concurrently with the client download
+     */
+    void prepare(ProgressListener listener) throws IOException;
+
     int launch(LogConsumer log, boolean exitAfterLaunch) throws Exception;
 }
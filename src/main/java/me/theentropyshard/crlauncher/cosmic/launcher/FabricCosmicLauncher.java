@@ -22,14 +22,13 @@ import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.cosmic.mods.fabric.FabricProperties;
 import me.theentropyshard.crlauncher.github.GithubApi;
 import me.theentropyshard.crlauncher.github.GithubRelease;
-import me.theentropyshard.crlauncher.gui.dialogs.ProgressDialog;
 import me.theentropyshard.crlauncher.gui.utils.MessageBox;
 import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
 import me.theentropyshard.crlauncher.utils.FileUtils;
 import me.theentropyshard.crlauncher.utils.ListUtils;
 import net.lingala.zip4j.ZipFile;
 
-import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -47,55 +46,56 @@ public class FabricCosmicLauncher extends ModdedLocationOverrideCosmicLauncher {
         this.version = version;
     }
 
-    private void downloadFabricLoader(Path loaderDir, String version) {
-        try {
-            if (Files.exists(loaderDir) && FileUtils.countFiles(loaderDir) != 0) {
-                return;
-            }
-
-            Path loaderArchivePath = loaderDir.resolve("fabric_loader_%s.zip".formatted(version));
-
-            FileUtils.createDirectoryIfNotExists(loaderDir);
+    @Override
+    public String getLoaderVersion() {
+        return this.version;
+    }
 
-            ProgressDialog downloadDialog = new ProgressDialog("Downloading Fabric");
-            downloadDialog.setStage("Downloading Fabric mod loader...");
+    @Override
+    public void prepare(ProgressListener listener) throws IOException {
+        super.prepare(listener);
 
-            SwingUtilities.invokeLater(() -> downloadDialog.setVisible(true));
+        this.downloadFabricLoader(this.getLoaderDir(), this.version, listener);
+    }
 
-            GithubApi downloader = new GithubApi();
+    private void downloadFabricLoader(Path loaderDir, String version, ProgressListener listener) throws IOException {
+        if (Files.isDirectory(loaderDir) && !FileUtils.isEmptyDirectory(loaderDir)) {
+            return;
+        }
 
-            List<GithubRelease> allReleases =
-                    downloader.getAllReleases("ForwarD-Nern", "CosmicReach-Mod-Loader");
-            GithubRelease release = ListUtils.search(allReleases, resp -> resp.tag_name.equals(version));
+        Path loaderArchivePath = loaderDir.resolve("fabric_loader_%s.zip".formatted(version));
 
-            if (release == null) {
-                Log.error("Could find version " + version);
+        FileUtils.createDirectoryIfNotExists(loaderDir);
 
-                SwingUtilities.invokeLater(() -> downloadDialog.getDialog().dispose());
+        GithubApi downloader = new GithubApi();
 
-                return;
-            }
+        List<GithubRelease> allReleases =
+                downloader.getAllReleases("ForwarD-Nern", "CosmicReach-Mod-Loader");
+        GithubRelease release = ListUtils.search(allReleases, resp -> resp.tag_name.equals(version));
 
-            downloader.downloadRelease(
-                    loaderArchivePath,
-                    release,
-                    0,
-                    downloadDialog
-            );
+        if (release == null) {
+            throw new IOException("Could not find Fabric loader version " + version);
+        }
 
-            SwingUtilities.invokeLater(() -> downloadDialog.getDialog().dispose());
+        downloader.downloadRelease(
+                loaderArchivePath,
+                release,
+                0,
+                listener
+        );
 
-            try (ZipFile loaderArchive = new ZipFile(loaderArchivePath.toFile())) {
-                loaderArchive.removeFile("launch.bat");
-                loaderArchive.removeFile("launch.sh");
+        try (ZipFile loaderArchive = new ZipFile(loaderArchivePath.toFile())) {
+            loaderArchive.removeFile("launch.bat");
+            loaderArchive.removeFile("launch.sh");
 
-                loaderArchive.extractAll(loaderDir.toString());
-            }
-        } catch (IOException e) {
-            Log.error("Exception while downloading Fabric loader", e);
+            loaderArchive.extractAll(loaderDir.toString());
         }
     }
 
+    private Path getLoaderDir() {
+        return CRLauncher.getInstance().getCosmicDir().resolve("fabric-loader-%s".formatted(this.version));
+    }
+
     private Path findFabricJar(Path loaderDir) {
         Path fabricJar = null;
 
@@ -151,8 +151,7 @@ public class FabricCosmicLauncher extends ModdedLocationOverrideCosmicLauncher {
 
         super.buildCommand(command);
 
-        Path fabricLoaderDir = CRLauncher.getInstance().getCosmicDir().resolve("fabric-loader-%s".formatted(this.version));
-        this.downloadFabricLoader(fabricLoaderDir, this.version);
+        Path fabricLoaderDir = this.getLoaderDir();
 
         command.add("-classpath");
 
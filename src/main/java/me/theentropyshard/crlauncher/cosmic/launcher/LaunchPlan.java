@@ -0,0 +1,168 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.launcher;
+
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.json.Json;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fully built command line, remembered together with the size and modification time of every file on it
+ * and the modification time of the directories those files are in. As long as none of them changed, the command
+ * can be started again without downloading checks, listing directories or parsing dependency files.
+ */
+public class LaunchPlan {
+    private static final int FORMAT = 1;
+
+    private int format;
+    private String key;
+    private List<String> command;
+    private List<FileStamp> files;
+
+    public LaunchPlan() {
+
+    }
+
+    public static LaunchPlan create(String key, List<String> command) throws IOException {
+        LaunchPlan plan = new LaunchPlan();
+        plan.format = LaunchPlan.FORMAT;
+        plan.key = key;
+        plan.command = new ArrayList<>(command);
+        plan.files = new ArrayList<>();
+
+        Map<Path, Boolean> paths = new LinkedHashMap<>();
+
+        for (String arg : command) {
+            if (arg.startsWith("-D")) {
+                continue;
+            }
+
+            String value = arg.startsWith("-javaagent:") ? arg.substring("-javaagent:".length()) : arg;
+
+            for (String part : value.split(File.pathSeparator)) {
+                Path path = LaunchPlan.toPath(part);
+
+                if (path != null && Files.isRegularFile(path)) {
+                    paths.put(path, false);
+
+                    if (path.getParent() != null) {
+                        paths.putIfAbsent(path.getParent(), true);
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<Path, Boolean> entry : paths.entrySet()) {
+            plan.files.add(FileStamp.of(entry.getKey(), entry.getValue()));
+        }
+
+        return plan;
+    }
+
+    /**
+     * @return the remembered command, if the plan in the file was made for this key and is still valid, null otherwise
+     */
+    public static List<String> load(Path file, String key) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        LaunchPlan plan;
+
+        try {
+            plan = Json.parse(FileUtils.readUtf8(file), LaunchPlan.class);
+        } catch (Exception e) {
+            Log.warn("Could not read launch plan " + file + ": " + e.getMessage());
+
+            return null;
+        }
+
+        if (plan == null || plan.format != LaunchPlan.FORMAT || !key.equals(plan.key) || plan.command == null || plan.files == null) {
+            return null;
+        }
+
+        for (FileStamp stamp : plan.files) {
+            if (!stamp.isValid()) {
+                Log.debug("Launch plan is outdated, " + stamp.path + " changed");
+
+                return null;
+            }
+        }
+
+        return plan.command;
+    }
+
+    public void save(Path file) throws IOException {
+        FileUtils.writeUtf8Atomically(file, Json.write(this));
+    }
+
+    private static Path toPath(String s) {
+        if (s.isEmpty() || s.startsWith("-")) {
+            return null;
+        }
+
+        try {
+            return Paths.get(s);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static final class FileStamp {
+        private String path;
+        private boolean directory;
+        private long size;
+        private long modified;
+
+        private static FileStamp of(Path path, boolean directory) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+            FileStamp stamp = new FileStamp();
+            stamp.path = path.toString();
+            stamp.directory = directory;
+            stamp.size = directory ? -1L : attributes.size();
+            stamp.modified = attributes.lastModifiedTime().toMillis();
+
+            return stamp;
+        }
+
+        private boolean isValid() {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(Paths.get(this.path), BasicFileAttributes.class);
+
+                return attributes.isDirectory() == this.directory &&
+                    (this.directory || attributes.size() == this.size) &&
+                    attributes.lastModifiedTime().toMillis() == this.modified;
+            } catch (IOException | RuntimeException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -21,11 +21,9 @@ package me.theentropyshard.crlauncher.cosmic.launcher;
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.github.GithubApi;
 import me.theentropyshard.crlauncher.github.GithubRelease;
-import me.theentropyshard.crlauncher.gui.dialogs.ProgressDialog;
-import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
 import me.theentropyshard.crlauncher.utils.*;
 
-import javax.swing.*;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -40,8 +38,15 @@ public class LocationOverrideCosmicLauncher extends AbstractCosmicLauncher {
         super(javaPath, runDir, gameFilesLocation, clientPath);
     }
 
-    private void downloadLoader(Path path) throws IOException {
-        if (Files.exists(path) && HashUtils.sha256(path).equals(LocationOverrideCosmicLauncher.CR_LOADER_SHA256)) {
+    @Override
+    public void prepare(ProgressListener listener) throws IOException {
+        super.prepare(listener);
+
+        this.downloadLoader(this.getLoaderPath(), listener);
+    }
+
+    private void downloadLoader(Path path, ProgressListener listener) throws IOException {
+        if (Files.exists(path) && HashUtils.sha256(path).equalsIgnoreCase(LocationOverrideCosmicLauncher.CR_LOADER_SHA256)) {
             return;
         }
 
@@ -55,25 +60,16 @@ public class LocationOverrideCosmicLauncher extends AbstractCosmicLauncher {
             throw new IOException("Could not find release v" + loaderVersion);
         }
 
-        ProgressDialog dialog = new ProgressDialog("Downloading CRLoader");
-        dialog.setStage("Downloading " + LocationOverrideCosmicLauncher.CR_LOADER_JAR);
-        SwingUtilities.invokeLater(() -> dialog.setVisible(true));
-
         GithubRelease.Asset asset = ListUtils.search(releaseResponse.assets, a -> a.name.equals(LocationOverrideCosmicLauncher.CR_LOADER_JAR));
-        downloader.downloadRelease(path, releaseResponse, releaseResponse.assets.indexOf(asset), dialog);
+        downloader.downloadRelease(path, releaseResponse, releaseResponse.assets.indexOf(asset), listener);
+    }
 
-        SwingUtilities.invokeLater(() -> dialog.getDialog().dispose());
+    private Path getLoaderPath() {
+        return CRLauncher.getInstance().getLibrariesDir().resolve(LocationOverrideCosmicLauncher.CR_LOADER_JAR);
     }
 
     @Override
     public void buildCommand(List<String> command) {
-        Path loaderPath = CRLauncher.getInstance().getLibrariesDir().resolve(LocationOverrideCosmicLauncher.CR_LOADER_JAR);
-        try {
-            this.downloadLoader(loaderPath);
-        } catch (IOException e) {
-            Log.error("Could not download " + LocationOverrideCosmicLauncher.CR_LOADER_JAR, e);
-        }
-
         String gameFilesLocation = this.getGameFilesLocation().toString();
         if (OperatingSystem.isWindows()) {
             gameFilesLocation = gameFilesLocation.replace("\\", "\\\\");
@@ -83,6 +79,6 @@ public class LocationOverrideCosmicLauncher extends AbstractCosmicLauncher {
 
         super.buildCommand(command);
 
-        command.add("-javaagent:" + loaderPath);
+        command.add("-javaagent:" + this.getLoaderPath());
     }
 }
@@ -19,6 +19,7 @@
 package me.theentropyshard.crlauncher.cosmic.launcher;
 
 import java.nio.file.Path;
+import java.util.List;
 
 public class ModdedLocationOverrideCosmicLauncher extends LocationOverrideCosmicLauncher {
     private final Path modsDir;
@@ -32,4 +33,9 @@ public class ModdedLocationOverrideCosmicLauncher extends LocationOverrideCosmic
     public Path getModsDir() {
         return this.modsDir;
     }
+
+    @Override
+    public List<Path> getModDirs() {
+        return List.of(this.modsDir);
+    }
 }
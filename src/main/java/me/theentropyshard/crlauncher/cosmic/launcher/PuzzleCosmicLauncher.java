@@ -21,11 +21,10 @@ package me.theentropyshard.crlauncher.cosmic.launcher;
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.cosmic.mods.puzzle.PuzzleManager;
 import me.theentropyshard.crlauncher.cosmic.mods.puzzle.PuzzleProperties;
-import me.theentropyshard.crlauncher.gui.dialogs.ProgressDialog;
 import me.theentropyshard.crlauncher.gui.utils.MessageBox;
 import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
 
-import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -41,27 +40,22 @@ public class PuzzleCosmicLauncher extends ModdedLocationOverrideCosmicLauncher {
     }
 
     @Override
-    public void buildCommand(List<String> command) {
-        super.buildCommand(command);
-
-        PuzzleManager puzzleManager = CRLauncher.getInstance().getPuzzleManager();
+    public String getLoaderVersion() {
+        return this.version;
+    }
 
-        try {
-            ProgressDialog dialog = new ProgressDialog("Downloading Puzzle");
-            dialog.setStage("Downloading Puzzle " + this.version);
+    @Override
+    public void prepare(ProgressListener listener) throws IOException {
+        super.prepare(listener);
 
-            SwingUtilities.invokeLater(() -> dialog.setVisible(true));
-            puzzleManager.downloadPuzzle(this.version, dialog);
-            SwingUtilities.invokeLater(() -> dialog.getDialog().dispose());
-        } catch (IOException e) {
-            Log.error("Could not download Puzzle " + this.version, e);
+        CRLauncher.getInstance().getPuzzleManager().downloadPuzzle(this.version, listener);
+    }
 
-            MessageBox.showErrorMessage(
-                CRLauncher.frame, "Could not download Puzzle " + this.version + ": " + e.getMessage()
-            );
+    @Override
+    public void buildCommand(List<String> command) {
+        super.buildCommand(command);
 
-            return;
-        }
+        PuzzleManager puzzleManager = CRLauncher.getInstance().getPuzzleManager();
 
         String classpath;
         try {
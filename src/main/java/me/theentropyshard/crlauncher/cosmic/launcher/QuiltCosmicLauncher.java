@@ -20,13 +20,12 @@ package me.theentropyshard.crlauncher.cosmic.launcher;
 
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.cosmic.mods.cosmicquilt.CosmicQuiltProperties;
-import me.theentropyshard.crlauncher.gui.dialogs.ProgressDialog;
 import me.theentropyshard.crlauncher.gui.utils.MessageBox;
 import me.theentropyshard.crlauncher.logging.Log;
 import me.theentropyshard.crlauncher.cosmic.mods.cosmicquilt.QuiltManager;
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
 import me.theentropyshard.crlauncher.utils.SemanticVersion;
 
-import javax.swing.*;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
@@ -40,6 +39,18 @@ public class QuiltCosmicLauncher extends ModdedCosmicLauncher {
         this.version = version;
     }
 
+    @Override
+    public String getLoaderVersion() {
+        return this.version;
+    }
+
+    @Override
+    public void prepare(ProgressListener listener) throws IOException {
+        super.prepare(listener);
+
+        CRLauncher.getInstance().getQuiltManager().downloadCosmicQuilt(this.version, listener);
+    }
+
     @Override
     public void buildCommand(List<String> command) {
         this.defineProperty(CosmicQuiltProperties.LAUNCH_DIR.copy(this.getGameFilesLocation()));
@@ -50,23 +61,6 @@ public class QuiltCosmicLauncher extends ModdedCosmicLauncher {
 
         QuiltManager quiltManager = CRLauncher.getInstance().getQuiltManager();
 
-        try {
-            ProgressDialog dialog = new ProgressDialog("Downloading Cosmic Quilt");
-            dialog.setStage("Downloading Cosmic Quilt " + this.version);
-
-            SwingUtilities.invokeLater(() -> dialog.setVisible(true));
-            quiltManager.downloadCosmicQuilt(this.version, dialog);
-            SwingUtilities.invokeLater(() -> dialog.getDialog().dispose());
-        } catch (IOException e) {
-            Log.error("Could not download Cosmic Quilt " + this.version, e);
-
-            MessageBox.showErrorMessage(
-                CRLauncher.frame, "Could not download Cosmic Quilt " + this.version + ": " + e.getMessage()
-            );
-
-            return;
-        }
-
         command.add("-classpath");
         try {
             command.add(quiltManager.getClasspathFor(this.version));
@@ -0,0 +1,546 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.logs;
+
+import com.google.gson.reflect.TypeToken;
+import me.theentropyshard.crlauncher.instance.Instance;
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.json.Json;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the output of every game session in its own file, one directory per instance, together with an index
+ * of all sessions. Finished sessions are compressed in the background in blocks, and the index remembers
+ * where each block starts, so the end of any session, or any part of it, can be read without
+ * decompressing the whole file.
+ */
+public class GameLogStore {
+    private static final String INDEX_FILE_NAME = "sessions.json";
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private static final int TAIL_CHUNK_SIZE = 64 * 1024;
+    private static final DateTimeFormatter ID_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss-SSS")
+        .withZone(ZoneId.systemDefault());
+
+    private final Path dir;
+    private final Path indexFile;
+    private final List<GameSession> sessions;
+    private final ExecutorService compressor;
+    private final List<Runnable> listeners;
+
+    private int sessionsToKeep;
+
+    public GameLogStore(Path dir, int sessionsToKeep) {
+        this.dir = dir;
+        this.indexFile = dir.resolve(GameLogStore.INDEX_FILE_NAME);
+        this.sessions = new ArrayList<>();
+        this.compressor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "CRL-GameLogCompressor");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.sessionsToKeep = sessionsToKeep;
+    }
+
+    public void load() throws IOException {
+        FileUtils.createDirectoryIfNotExists(this.dir);
+
+        List<GameSession> loaded = null;
+
+        if (Files.exists(this.indexFile)) {
+            loaded = Json.parse(FileUtils.readUtf8(this.indexFile), new TypeToken<List<GameSession>>() {}.getType());
+        }
+
+        synchronized (this) {
+            this.sessions.clear();
+
+            if (loaded != null) {
+                for (GameSession session : loaded) {
+                    if (Files.exists(this.getFile(session))) {
+                        this.sessions.add(session);
+                    }
+                }
+            }
+
+            for (GameSession session : this.sessions) {
+                if (session.isCompressed()) {
+                    continue;
+                }
+
+                // the launcher was closed while the game was running, or before the output got compressed
+                if (!session.isFinished()) {
+                    session.finish(-1, 0L);
+                }
+
+                this.compressLater(session);
+            }
+
+            this.saveIndex();
+        }
+    }
+
+    public GameLogWriter startSession(Instance instance) throws IOException {
+        long start = System.currentTimeMillis();
+        String instanceDir = instance.getWorkDir().getFileName().toString();
+        String id = GameLogStore.ID_FORMATTER.format(Instant.ofEpochMilli(start));
+
+        GameSession session = new GameSession(id, instance.getName(), instanceDir, start, id + ".log");
+
+        Path file = this.getFile(session);
+        FileUtils.createDirectoryIfNotExists(file.getParent());
+
+        GameLogWriter writer = new GameLogWriter(this, session, file);
+
+        synchronized (this) {
+            this.sessions.add(session);
+            this.saveIndex();
+        }
+
+        return writer;
+    }
+
+    void finishSession(GameSession session, int exitCode, long duration) {
+        synchronized (this) {
+            session.finish(exitCode, duration);
+            this.deleteOldSessions(session.getInstanceDir());
+            this.saveIndex();
+        }
+
+        this.compressLater(session);
+    }
+
+    public synchronized List<GameSession> getSessions() {
+        List<GameSession> sessions = new ArrayList<>(this.sessions.size());
+
+        for (GameSession session : this.sessions) {
+            sessions.add(session.copy());
+        }
+
+        return sessions;
+    }
+
+    public synchronized List<GameSession> getSessions(Instance instance) {
+        String instanceDir = instance.getWorkDir().getFileName().toString();
+        List<GameSession> sessions = new ArrayList<>();
+
+        for (GameSession session : this.sessions) {
+            if (session.getInstanceDir().equals(instanceDir)) {
+                sessions.add(session.copy());
+            }
+        }
+
+        return sessions;
+    }
+
+    public synchronized GameSession getSession(String id) {
+        for (GameSession session : this.sessions) {
+            if (session.getId().equals(id)) {
+                return session.copy();
+            }
+        }
+
+        return null;
+    }
+
+    public Path getFile(GameSession session) {
+        return this.dir.resolve(session.getInstanceDir()).resolve(session.getFile());
+    }
+
+    /**
+     * Opens the whole output of a session as plain text
+     */
+    public InputStream open(GameSession session) throws IOException {
+        GameSession current = this.current(session);
+        if (current.isCompressed() && current.getBlocks().isEmpty()) {
+            return InputStream.nullInputStream();
+        }
+
+        InputStream in = new BufferedInputStream(Files.newInputStream(this.getFile(current)), GameLogStore.TAIL_CHUNK_SIZE);
+
+        return current.isCompressed() ? new GZIPInputStream(in, GameLogStore.TAIL_CHUNK_SIZE) : in;
+    }
+
+    /**
+     * Reads at most {@code maxLines} last lines of a session. Only the blocks at the end of a compressed
+     * session are decompressed, and a running session is read backwards from its end.
+     *
+     * @return the lines and the position right after the last complete one, to continue from with {@link #read}
+     */
+    public Tail tail(GameSession session, int maxLines) throws IOException {
+        GameSession current = this.current(session);
+        Path file = this.getFile(current);
+
+        byte[] bytes;
+        long end;
+
+        if (current.isCompressed()) {
+            List<GameSession.Block> blocks = current.getBlocks();
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteArrayOutputStream text = new ByteArrayOutputStream();
+                byte[] tail = new byte[0];
+                long blockEnd = current.getCompressedSize();
+
+                for (int i = blocks.size() - 1; i >= 0; i--) {
+                    GameSession.Block block = blocks.get(i);
+
+                    text.reset();
+                    text.write(GameLogStore.readBlock(channel, block.getOffset(), blockEnd));
+                    text.write(tail);
+                    tail = text.toByteArray();
+                    blockEnd = block.getOffset();
+
+                    if (GameLogStore.countLines(tail, 0, tail.length) > maxLines) {
+                        break;
+                    }
+                }
+
+                bytes = tail;
+                end = current.getRawSize();
+            }
+        } else {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+                end = raf.length();
+                bytes = new byte[0];
+
+                while (bytes.length < end && GameLogStore.countLines(bytes, 0, bytes.length) <= maxLines) {
+                    long from = Math.max(0L, end - bytes.length - GameLogStore.TAIL_CHUNK_SIZE);
+                    byte[] chunk = new byte[(int) (end - from)];
+
+                    raf.seek(from);
+                    raf.readFully(chunk, 0, chunk.length - bytes.length);
+                    System.arraycopy(bytes, 0, chunk, chunk.length - bytes.length, bytes.length);
+
+                    bytes = chunk;
+                }
+            }
+        }
+
+        // a running game may be in the middle of writing a line
+        int length = bytes.length;
+        while (length > 0 && bytes[length - 1] != '\n') {
+            length--;
+        }
+
+        List<String> lines = new ArrayList<>();
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == '\n') {
+                lines.add(new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                lineStart = i + 1;
+            }
+        }
+
+        List<String> result = lines.subList(Math.max(0, lines.size() - maxLines), lines.size());
+
+        return new Tail(new ArrayList<>(result), end - (bytes.length - length));
+    }
+
+    /**
+     * Reads complete lines of a session starting at the given position of its text. For a compressed session
+     * only the blocks from the one containing this position are decompressed.
+     *
+     * @return the position right after the last complete line that was read
+     */
+    public long read(GameSession session, long position, Consumer<String> lineConsumer) throws IOException {
+        GameSession current = this.current(session);
+        Path file = this.getFile(current);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            InputStream in;
+            long skip;
+
+            if (current.isCompressed()) {
+                if (position >= current.getRawSize()) {
+                    return position;
+                }
+
+                GameSession.Block start = null;
+                for (GameSession.Block block : current.getBlocks()) {
+                    if (block.getRawOffset() > position) {
+                        break;
+                    }
+
+                    start = block;
+                }
+
+                if (start == null) {
+                    return position;
+                }
+
+                channel.position(start.getOffset());
+                in = new BufferedInputStream(
+                    new GZIPInputStream(Channels.newInputStream(channel), GameLogStore.TAIL_CHUNK_SIZE),
+                    GameLogStore.TAIL_CHUNK_SIZE
+                );
+                skip = position - start.getRawOffset();
+            } else {
+                channel.position(position);
+                in = new BufferedInputStream(Channels.newInputStream(channel), GameLogStore.TAIL_CHUNK_SIZE);
+                skip = 0L;
+            }
+
+            try (InputStream stream = in) {
+                stream.skipNBytes(skip);
+
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                byte[] buffer = new byte[GameLogStore.TAIL_CHUNK_SIZE];
+                long lineEnd = position;
+                long read = position;
+                int n;
+
+                while ((n = stream.read(buffer)) != -1) {
+                    int lineStart = 0;
+
+                    for (int i = 0; i < n; i++) {
+                        if (buffer[i] != '\n') {
+                            continue;
+                        }
+
+                        if (line.size() == 0) {
+                            lineConsumer.accept(new String(buffer, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                        } else {
+                            line.write(buffer, lineStart, i - lineStart);
+                            lineConsumer.accept(line.toString(StandardCharsets.UTF_8));
+                            line.reset();
+                        }
+
+                        lineStart = i + 1;
+                        lineEnd = read + lineStart;
+                    }
+
+                    line.write(buffer, lineStart, n - lineStart);
+                    read += n;
+                }
+
+                return lineEnd;
+
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that is called after a session got archived or old sessions got deleted
+     */
+    public void addListener(Runnable listener) {
+        this.listeners.add(listener);
+    }
+
+    public void setSessionsToKeep(int sessionsToKeep) {
+        this.sessionsToKeep = sessionsToKeep;
+    }
+
+    public void shutdown() {
+        this.compressor.shutdown();
+    }
+
+    private synchronized GameSession current(GameSession session) throws IOException {
+        for (GameSession s : this.sessions) {
+            if (s.getId().equals(session.getId()) && s.getInstanceDir().equals(session.getInstanceDir())) {
+                return s.copy();
+            }
+        }
+
+        throw new IOException("Session " + session.getId() + " of " + session.getInstanceName() + " no longer exists");
+    }
+
+    private void compressLater(GameSession session) {
+        this.compressor.execute(() -> {
+            try {
+                this.compress(session);
+            } catch (IOException e) {
+                Log.error("Could not compress game log of session " + session.getId(), e);
+            }
+        });
+    }
+
+    private void compress(GameSession session) throws IOException {
+        Path rawFile;
+        synchronized (this) {
+            if (!this.sessions.contains(session) || session.isCompressed()) {
+                return;
+            }
+
+            rawFile = this.getFile(session);
+        }
+
+        String gzFileName = session.getId() + ".log.gz";
+        Path gzFile = rawFile.resolveSibling(gzFileName);
+        Path tmpFile = rawFile.resolveSibling(gzFileName + ".tmp");
+
+        long start = System.currentTimeMillis();
+
+        List<GameSession.Block> blocks = new ArrayList<>();
+        long rawSize = 0L;
+        long compressedSize = 0L;
+        long lineCount = 0L;
+
+        byte[] buffer = new byte[GameLogStore.BLOCK_SIZE];
+        int filled = 0;
+        ByteArrayOutputStream member = new ByteArrayOutputStream();
+
+        try (InputStream in = Files.newInputStream(rawFile);
+             OutputStream out = Files.newOutputStream(tmpFile)) {
+
+            while (true) {
+                int n = in.readNBytes(buffer, filled, buffer.length - filled);
+                filled += n;
+
+                if (filled == 0) {
+                    break;
+                }
+
+                // end blocks on a line break when there is one, so every block starts with a whole line
+                int blockLength = filled;
+                if (n > 0 && filled == buffer.length) {
+                    for (int i = filled - 1; i >= 0; i--) {
+                        if (buffer[i] == '\n') {
+                            blockLength = i + 1;
+
+                            break;
+                        }
+                    }
+                }
+
+                member.reset();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(member)) {
+                    gzip.write(buffer, 0, blockLength);
+                }
+
+                blocks.add(new GameSession.Block(rawSize, compressedSize, lineCount));
+                member.writeTo(out);
+
+                rawSize += blockLength;
+                compressedSize += member.size();
+                lineCount += GameLogStore.countLines(buffer, 0, blockLength);
+
+                System.arraycopy(buffer, blockLength, buffer, 0, filled - blockLength);
+                filled -= blockLength;
+            }
+        }
+
+        Files.move(tmpFile, gzFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            if (!this.sessions.contains(session)) {
+                FileUtils.delete(gzFile);
+
+                return;
+            }
+
+            session.compressed(gzFileName, rawSize, compressedSize, lineCount, blocks);
+            this.saveIndex();
+        }
+
+        try {
+            FileUtils.delete(rawFile);
+        } catch (IOException e) {
+            // someone may still be reading it, it will not be used anymore anyway
+            Log.warn("Could not delete " + rawFile + ": " + e.getMessage());
+        }
+
+        Log.info("Compressed game log of session " + session.getId() + ": " + rawSize + " -> " + compressedSize +
+            " bytes in " + blocks.size() + " block(s), " + (System.currentTimeMillis() - start) + " ms");
+
+        this.listeners.forEach(Runnable::run);
+    }
+
+    private void deleteOldSessions(String instanceDir) {
+        List<GameSession> instanceSessions = new ArrayList<>();
+        for (GameSession session : this.sessions) {
+            if (session.getInstanceDir().equals(instanceDir) && session.isFinished()) {
+                instanceSessions.add(session);
+            }
+        }
+
+        for (int i = 0; i < instanceSessions.size() - this.sessionsToKeep; i++) {
+            GameSession session = instanceSessions.get(i);
+
+            try {
+                FileUtils.delete(this.getFile(session));
+                this.sessions.remove(session);
+            } catch (IOException e) {
+                Log.warn("Could not delete game log of session " + session.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void saveIndex() {
+        try {
+            FileUtils.writeUtf8Atomically(this.indexFile, Json.write(this.sessions));
+        } catch (IOException e) {
+            Log.error("Could not save game session index", e);
+        }
+    }
+
+    private static byte[] readBlock(FileChannel channel, long from, long to) throws IOException {
+        byte[] compressed = new byte[(int) (to - from)];
+        channel.position(from);
+
+        InputStream in = Channels.newInputStream(channel);
+        int read = in.readNBytes(compressed, 0, compressed.length);
+
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed, 0, read))) {
+            return gzip.readAllBytes();
+        }
+    }
+
+    private static int countLines(byte[] bytes, int from, int to) {
+        int lines = 0;
+
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') {
+                lines++;
+            }
+        }
+
+        return lines;
+    }
+
+    public record Tail(List<String> lines, long position) {
+
+    }
+}
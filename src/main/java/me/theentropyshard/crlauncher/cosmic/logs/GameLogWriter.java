@@ -0,0 +1,154 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.logs;
+
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.ansi.AnsiParser;
+import me.theentropyshard.crlauncher.utils.ansi.AnsiRuns;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the output of one game session to its file on a separate thread. Lines are taken from the queue in
+ * batches and flushed once per batch, so the file can be tailed while the game is running
+ * without a write and a flush for every line.
+ */
+public class GameLogWriter {
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // compared by reference, tells the writer thread that the game has exited
+    private static final String END = new String("");
+
+    private final GameLogStore store;
+    private final GameSession session;
+    private final BlockingQueue<String> queue;
+    private final Writer writer;
+    private final AnsiParser parser;
+    private final AnsiRuns runs;
+    private final Thread thread;
+
+    private volatile boolean stopped;
+
+    GameLogWriter(GameLogStore store, GameSession session, Path file) throws IOException {
+        this.store = store;
+        this.session = session;
+        this.queue = new ArrayBlockingQueue<>(GameLogWriter.QUEUE_CAPACITY);
+        this.writer = new OutputStreamWriter(
+            new BufferedOutputStream(Files.newOutputStream(file), GameLogWriter.BUFFER_SIZE),
+            StandardCharsets.UTF_8
+        );
+        this.parser = new AnsiParser();
+        this.runs = new AnsiRuns();
+
+        this.thread = new Thread(this::run, "CRL-GameLog-" + session.getId());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void write(String line) {
+        this.put(line);
+    }
+
+    public void finish(int exitCode, long duration) {
+        this.put(GameLogWriter.END);
+
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.store.finishSession(this.session, exitCode, duration);
+    }
+
+    public GameSession getSession() {
+        return this.session;
+    }
+
+    private void put(String line) {
+        // waiting here only happens when the disk can't keep up, the same way the console queue behaves
+        try {
+            while (!this.stopped) {
+                if (this.queue.offer(line, 100L, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<String> batch = new ArrayList<>(GameLogWriter.MAX_BATCH_SIZE);
+        boolean end = false;
+
+        try (Writer writer = this.writer) {
+            while (!end) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch, GameLogWriter.MAX_BATCH_SIZE - 1);
+
+                for (String line : batch) {
+                    if (line == GameLogWriter.END) {
+                        end = true;
+
+                        break;
+                    }
+
+                    this.writeLine(writer, line);
+                }
+
+                writer.flush();
+                batch.clear();
+            }
+        } catch (IOException e) {
+            Log.error("Could not write game log of session " + this.session.getId(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.stopped = true;
+            this.queue.clear();
+        }
+    }
+
+    private void writeLine(Writer writer, String line) throws IOException {
+        this.runs.clear();
+        this.parser.parse(line, this.runs);
+
+        char[] chars = this.runs.getChars();
+        for (int run = 0; run < this.runs.size(); run++) {
+            int start = this.runs.getStart(run);
+            writer.write(chars, start, this.runs.getEnd(run) - start);
+        }
+
+        writer.write('\n');
+    }
+}
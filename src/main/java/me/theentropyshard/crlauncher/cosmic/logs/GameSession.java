@@ -0,0 +1,173 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.logs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One run of the game as it is remembered in the session index. While the game is running the output is
+ * a plain text file, once it finished it gets compressed as a sequence of independent gzip blocks,
+ * so reading any part of it only needs the blocks that cover that part.
+ */
+public class GameSession {
+    private String id;
+    private String instanceName;
+    private String instanceDir;
+    private long start;
+    private long duration;
+    private int exitCode;
+    private boolean finished;
+    private String file;
+    private boolean compressed;
+    private long rawSize;
+    private long compressedSize;
+    private long lineCount;
+    private List<Block> blocks;
+
+    public GameSession() {
+
+    }
+
+    public GameSession(String id, String instanceName, String instanceDir, long start, String file) {
+        this.id = id;
+        this.instanceName = instanceName;
+        this.instanceDir = instanceDir;
+        this.start = start;
+        this.file = file;
+    }
+
+    GameSession copy() {
+        GameSession copy = new GameSession(this.id, this.instanceName, this.instanceDir, this.start, this.file);
+        copy.duration = this.duration;
+        copy.exitCode = this.exitCode;
+        copy.finished = this.finished;
+        copy.compressed = this.compressed;
+        copy.rawSize = this.rawSize;
+        copy.compressedSize = this.compressedSize;
+        copy.lineCount = this.lineCount;
+        copy.blocks = this.blocks;
+
+        return copy;
+    }
+
+    public boolean isRunning() {
+        return !this.finished;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public String getInstanceName() {
+        return this.instanceName;
+    }
+
+    public String getInstanceDir() {
+        return this.instanceDir;
+    }
+
+    public long getStart() {
+        return this.start;
+    }
+
+    public long getDuration() {
+        return this.duration;
+    }
+
+    public int getExitCode() {
+        return this.exitCode;
+    }
+
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+    void finish(int exitCode, long duration) {
+        this.exitCode = exitCode;
+        this.duration = duration;
+        this.finished = true;
+    }
+
+    public String getFile() {
+        return this.file;
+    }
+
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+
+    void compressed(String file, long rawSize, long compressedSize, long lineCount, List<Block> blocks) {
+        this.file = file;
+        this.rawSize = rawSize;
+        this.compressedSize = compressedSize;
+        this.lineCount = lineCount;
+        this.blocks = new ArrayList<>(blocks);
+        this.compressed = true;
+    }
+
+    public long getRawSize() {
+        return this.rawSize;
+    }
+
+    public long getCompressedSize() {
+        return this.compressedSize;
+    }
+
+    public long getLineCount() {
+        return this.lineCount;
+    }
+
+    public List<Block> getBlocks() {
+        return this.blocks == null ? Collections.emptyList() : Collections.unmodifiableList(this.blocks);
+    }
+
+    /**
+     * A gzip member of a compressed session: where its text starts in the original output,
+     * where its bytes start in the compressed file and which line it starts with
+     */
+    public static class Block {
+        private long rawOffset;
+        private long offset;
+        private long firstLine;
+
+        public Block() {
+
+        }
+
+        public Block(long rawOffset, long offset, long firstLine) {
+            this.rawOffset = rawOffset;
+            this.offset = offset;
+            this.firstLine = firstLine;
+        }
+
+        public long getRawOffset() {
+            return this.rawOffset;
+        }
+
+        public long getOffset() {
+            return this.offset;
+        }
+
+        public long getFirstLine() {
+            return this.firstLine;
+        }
+    }
+}
@@ -0,0 +1,588 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.logs;
+
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An inverted index over archived game sessions and the launcher log. Every session is one document, and for
+ * every term the index keeps the sorted ids of the documents that contain it, so a query is a few lookups
+ * and set intersections instead of reading logs. Sessions are added as they get archived and removed when
+ * the store deletes them, and the number of terms taken from one document is limited,
+ * so the index stays about as big as the number of kept sessions allows.
+ */
+public class LogSearchIndex {
+    private static final int MAGIC = 0x4352_4C49; // CRLI
+    private static final int FORMAT = 1;
+    private static final int MAX_WORDS_PER_DOCUMENT = 50_000;
+    private static final String LAUNCHER_LOG_KEY = "latest.log";
+    private static final Charset LAUNCHER_LOG_CHARSET = Charset.forName("IBM866");
+
+    private final GameLogStore store;
+    private final Path launcherLog;
+    private final Path indexFile;
+    private final Map<Integer, Document> documents;
+    private final TreeMap<String, Postings> terms;
+    private final ExecutorService executor;
+    private final AtomicBoolean updateScheduled;
+
+    private int nextId;
+    private int removedSinceCompaction;
+
+    public LogSearchIndex(GameLogStore store, Path launcherLog, Path indexFile) {
+        this.store = store;
+        this.launcherLog = launcherLog;
+        this.indexFile = indexFile;
+        this.documents = new HashMap<>();
+        this.terms = new TreeMap<>();
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "CRL-LogIndexer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            return thread;
+        });
+        this.updateScheduled = new AtomicBoolean();
+    }
+
+    public synchronized void load() throws IOException {
+        if (!Files.exists(this.indexFile)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.indexFile)))) {
+            if (in.readInt() != LogSearchIndex.MAGIC || in.readInt() != LogSearchIndex.FORMAT) {
+                Log.warn("Log search index " + this.indexFile + " has an unknown format, it will be rebuilt");
+
+                return;
+            }
+
+            this.nextId = in.readInt();
+
+            int documentCount = in.readInt();
+            for (int i = 0; i < documentCount; i++) {
+                Document document = new Document(
+                    in.readInt(), in.readUTF(), in.readUTF(), in.readUTF(), in.readLong(), in.readLong()
+                );
+                this.documents.put(document.id(), document);
+            }
+
+            int termCount = in.readInt();
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                int size = in.readInt();
+
+                Postings postings = new Postings(size);
+                int id = 0;
+                for (int j = 0; j < size; j++) {
+                    id += in.readInt();
+                    postings.add(id);
+                }
+
+                this.terms.put(term, postings);
+            }
+        } catch (IOException e) {
+            this.documents.clear();
+            this.terms.clear();
+            this.nextId = 0;
+
+            throw e;
+        }
+    }
+
+    /**
+     * Brings the index up to date in the background. Requests made while an update is pending are merged into it
+     */
+    public void updateLater() {
+        if (!this.updateScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.executor.execute(() -> {
+            this.updateScheduled.set(false);
+
+            try {
+                this.update();
+            } catch (Exception e) {
+                Log.error("Could not update log search index", e);
+            }
+        });
+    }
+
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    private void update() throws IOException {
+        long start = System.currentTimeMillis();
+        boolean changed = false;
+
+        Map<String, GameSession> archived = new HashMap<>();
+        for (GameSession session : this.store.getSessions()) {
+            if (session.isCompressed()) {
+                archived.put(LogSearchIndex.key(session), session);
+            }
+        }
+
+        Set<String> indexed = new HashSet<>();
+
+        synchronized (this) {
+            Iterator<Document> iterator = this.documents.values().iterator();
+            while (iterator.hasNext()) {
+                Document document = iterator.next();
+
+                if (document.key().equals(LogSearchIndex.LAUNCHER_LOG_KEY) || archived.containsKey(document.key())) {
+                    indexed.add(document.key());
+                } else {
+                    iterator.remove();
+                    this.removedSinceCompaction++;
+                    changed = true;
+                }
+            }
+        }
+
+        int added = 0;
+        for (Map.Entry<String, GameSession> entry : archived.entrySet()) {
+            if (indexed.contains(entry.getKey())) {
+                continue;
+            }
+
+            GameSession session = entry.getValue();
+            TermCollector collector = new TermCollector();
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(this.store.open(session), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    collector.add(line);
+                }
+            } catch (IOException e) {
+                // most likely deleted by the store right now
+                Log.warn("Could not index game log of session " + session.getId() + ": " + e.getMessage());
+
+                continue;
+            }
+
+            synchronized (this) {
+                this.addDocument(new Document(this.nextId++, entry.getKey(), session.getInstanceName(),
+                    session.getId(), session.getStart(), 0L), collector.terms);
+            }
+
+            added++;
+            changed = true;
+        }
+
+        changed |= this.updateLauncherLog();
+
+        if (!changed) {
+            return;
+        }
+
+        synchronized (this) {
+            if (this.removedSinceCompaction > this.documents.size()) {
+                this.compact();
+            }
+
+            this.save();
+        }
+
+        Log.debug("Updated log search index: " + added + " new session(s), " + this.documents.size() + " document(s), " +
+            this.terms.size() + " term(s), " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Reads the part of the launcher log written since the last update. When the log got rolled over
+     * its document starts over
+     */
+    private boolean updateLauncherLog() throws IOException {
+        if (!Files.exists(this.launcherLog)) {
+            return false;
+        }
+
+        Document document;
+        synchronized (this) {
+            document = this.findDocument(LogSearchIndex.LAUNCHER_LOG_KEY);
+        }
+
+        long size = Files.size(this.launcherLog);
+        long from = document == null || size < document.indexedBytes() ? 0L : document.indexedBytes();
+
+        if (document != null && from == size) {
+            return false;
+        }
+
+        TermCollector collector = new TermCollector();
+        long indexedBytes = from;
+
+        try (FileChannel channel = FileChannel.open(this.launcherLog, StandardOpenOption.READ)) {
+            channel.position(from);
+
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+            byte[] line = new byte[1024];
+            int length = 0;
+            int b;
+
+            // only whole lines, the last one may still be being written
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    collector.add(new String(line, 0, length, LogSearchIndex.LAUNCHER_LOG_CHARSET));
+                    indexedBytes += length + 1;
+                    length = 0;
+                } else {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+
+                    line[length++] = (byte) b;
+                }
+            }
+        }
+
+        long time = Files.getLastModifiedTime(this.launcherLog).toMillis();
+
+        synchronized (this) {
+            if (document != null && from == 0L) {
+                this.documents.remove(document.id());
+                this.removedSinceCompaction++;
+                document = null;
+            }
+
+            if (document == null) {
+                document = new Document(this.nextId++, LogSearchIndex.LAUNCHER_LOG_KEY, "Launcher",
+                    LogSearchIndex.LAUNCHER_LOG_KEY, time, indexedBytes);
+                this.addDocument(document, collector.terms);
+            } else {
+                this.documents.put(document.id(), document.updated(time, indexedBytes));
+
+                int id = document.id();
+                collector.terms.forEach(term -> this.terms.computeIfAbsent(term, t -> new Postings(1)).add(id));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds the documents matching all parts of a query. A part is a word, a word prefix ending with {@code *},
+     * or one of {@code level:}, {@code exception:}, {@code frame:} (which also takes a prefix),
+     * {@code instance:} and {@code since:} with a duration like {@code 7d}, {@code 12h} or {@code 30m}.
+     *
+     * @return matching sessions, newest first
+     */
+    public synchronized List<Hit> search(String query) {
+        BitSet result = null;
+        long since = Long.MIN_VALUE;
+        String instance = null;
+
+        for (String part : query.trim().split("\\s+")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+
+            int colon = part.indexOf(':');
+            String field = colon == -1 ? "" : part.substring(0, colon).toLowerCase(Locale.ROOT);
+            String value = colon == -1 ? part : part.substring(colon + 1);
+
+            BitSet matches;
+
+            switch (field) {
+                case "since" -> {
+                    since = System.currentTimeMillis() - LogSearchIndex.parseDuration(value).toMillis();
+
+                    continue;
+                }
+                case "instance" -> {
+                    instance = value.toLowerCase(Locale.ROOT);
+
+                    continue;
+                }
+                case "level" -> matches = this.match(LogTokenizer.LEVEL, value);
+                case "exception" -> matches = this.match(LogTokenizer.EXCEPTION, value);
+                case "frame" -> matches = this.match(LogTokenizer.FRAME, value);
+                default -> matches = this.match(LogTokenizer.TOKEN, part);
+            }
+
+            if (result == null) {
+                result = matches;
+            } else {
+                result.and(matches);
+            }
+        }
+
+        // only filters, like since:1d, list every session they let through
+        if (result == null) {
+            result = new BitSet();
+            this.documents.keySet().forEach(result::set);
+        }
+
+        List<Hit> hits = new ArrayList<>();
+
+        for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1)) {
+            Document document = this.documents.get(id);
+
+            if (document == null || document.time() < since) {
+                continue;
+            }
+
+            if (instance != null && !document.instanceName().toLowerCase(Locale.ROOT).contains(instance)) {
+                continue;
+            }
+
+            hits.add(new Hit(document.instanceName(), document.sessionId(), document.time()));
+        }
+
+        hits.sort(Comparator.comparingLong(Hit::time).reversed());
+
+        return hits;
+    }
+
+    private BitSet match(String prefix, String value) {
+        String term = prefix + value.toLowerCase(Locale.ROOT);
+        BitSet matches = new BitSet();
+
+        if (term.endsWith("*")) {
+            String termPrefix = term.substring(0, term.length() - 1);
+            SortedMap<String, Postings> range = this.terms.subMap(termPrefix, termPrefix + Character.MAX_VALUE);
+
+            for (Postings postings : range.values()) {
+                postings.addTo(matches);
+            }
+        } else {
+            Postings postings = this.terms.get(term);
+
+            if (postings != null) {
+                postings.addTo(matches);
+            }
+        }
+
+        return matches;
+    }
+
+    private void addDocument(Document document, Set<String> documentTerms) {
+        this.documents.put(document.id(), document);
+
+        for (String term : documentTerms) {
+            this.terms.computeIfAbsent(term, t -> new Postings(1)).add(document.id());
+        }
+    }
+
+    private Document findDocument(String key) {
+        for (Document document : this.documents.values()) {
+            if (document.key().equals(key)) {
+                return document;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Drops removed documents from all postings, and terms that are left without documents
+     */
+    private void compact() {
+        Iterator<Postings> iterator = this.terms.values().iterator();
+        while (iterator.hasNext()) {
+            Postings postings = iterator.next();
+            postings.retain(this.documents.keySet());
+
+            if (postings.size == 0) {
+                iterator.remove();
+            }
+        }
+
+        this.removedSinceCompaction = 0;
+    }
+
+    private void save() {
+        Path tmpFile = this.indexFile.resolveSibling(this.indexFile.getFileName() + ".tmp");
+
+        try {
+            FileUtils.createDirectoryIfNotExists(this.indexFile.getParent());
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(LogSearchIndex.MAGIC);
+                out.writeInt(LogSearchIndex.FORMAT);
+                out.writeInt(this.nextId);
+
+                out.writeInt(this.documents.size());
+                for (Document document : this.documents.values()) {
+                    out.writeInt(document.id());
+                    out.writeUTF(document.key());
+                    out.writeUTF(document.instanceName());
+                    out.writeUTF(document.sessionId());
+                    out.writeLong(document.time());
+                    out.writeLong(document.indexedBytes());
+                }
+
+                out.writeInt(this.terms.size());
+                for (Map.Entry<String, Postings> entry : this.terms.entrySet()) {
+                    Postings postings = entry.getValue();
+
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(postings.size);
+
+                    int previous = 0;
+                    for (int i = 0; i < postings.size; i++) {
+                        out.writeInt(postings.ids[i] - previous);
+                        previous = postings.ids[i];
+                    }
+                }
+            }
+
+            Files.move(tmpFile, this.indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.error("Could not save log search index", e);
+        }
+    }
+
+    private static String key(GameSession session) {
+        return session.getInstanceDir() + "/" + session.getId();
+    }
+
+    private static Duration parseDuration(String value) {
+        String lowerCase = value.toLowerCase(Locale.ROOT);
+
+        try {
+            long amount = Long.parseLong(lowerCase.substring(0, lowerCase.length() - 1));
+
+            return switch (lowerCase.charAt(lowerCase.length() - 1)) {
+                case 'w' -> Duration.ofDays(amount * 7L);
+                case 'd' -> Duration.ofDays(amount);
+                case 'h' -> Duration.ofHours(amount);
+                case 'm' -> Duration.ofMinutes(amount);
+                default -> throw new IllegalArgumentException("Unknown duration unit in '" + value + "'");
+            };
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid duration '" + value + "', expected something like 7d, 12h or 30m");
+        }
+    }
+
+    public record Hit(String instanceName, String sessionId, long time) {
+
+    }
+
+    private record Document(int id, String key, String instanceName, String sessionId, long time, long indexedBytes) {
+        Document updated(long time, long indexedBytes) {
+            return new Document(this.id, this.key, this.instanceName, this.sessionId, time, indexedBytes);
+        }
+    }
+
+    private static final class TermCollector {
+        private final Set<String> terms = new HashSet<>();
+        private int words;
+
+        void add(String line) {
+            LogTokenizer.tokenize(line, term -> {
+                // levels, exceptions and frames are what crashes are searched by, so only plain words are limited
+                if (!term.startsWith(LogTokenizer.TOKEN)) {
+                    this.terms.add(term);
+                } else if (this.words < LogSearchIndex.MAX_WORDS_PER_DOCUMENT && this.terms.add(term)) {
+                    this.words++;
+                }
+            });
+        }
+    }
+
+    /**
+     * Sorted ids of the documents containing a term. New documents get growing ids, so adding is almost always
+     * an append, only the launcher log document gets new terms after others were added
+     */
+    private static final class Postings {
+        private int[] ids;
+        private int size;
+
+        Postings(int capacity) {
+            this.ids = new int[Math.max(1, capacity)];
+        }
+
+        void add(int id) {
+            int index = this.size;
+
+            if (this.size > 0 && this.ids[this.size - 1] >= id) {
+                index = Arrays.binarySearch(this.ids, 0, this.size, id);
+
+                if (index >= 0) {
+                    return;
+                }
+
+                index = -index - 1;
+            }
+
+            if (this.size == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            }
+
+            System.arraycopy(this.ids, index, this.ids, index + 1, this.size - index);
+            this.ids[index] = id;
+            this.size++;
+        }
+
+        void addTo(BitSet set) {
+            for (int i = 0; i < this.size; i++) {
+                set.set(this.ids[i]);
+            }
+        }
+
+        void retain(Set<Integer> alive) {
+            int kept = 0;
+
+            for (int i = 0; i < this.size; i++) {
+                if (alive.contains(this.ids[i])) {
+                    this.ids[kept++] = this.ids[i];
+                }
+            }
+
+            this.size = kept;
+        }
+    }
+}
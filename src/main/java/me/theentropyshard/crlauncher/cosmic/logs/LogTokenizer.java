@@ -0,0 +1,165 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.logs;
+
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Splits a log line into the terms the search index knows about. Every term has a prefix saying what it is:
+ * {@code t:} for a word, {@code l:} for a log level, {@code e:} for an exception class
+ * and {@code f:} for the method of a stack frame.
+ */
+public final class LogTokenizer {
+    public static final String TOKEN = "t:";
+    public static final String LEVEL = "l:";
+    public static final String EXCEPTION = "e:";
+    public static final String FRAME = "f:";
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 48;
+    private static final int MAX_FRAME_LENGTH = 256;
+
+    // levels are only looked for at the start of a line, so a word like "error" in a message is just a word
+    private static final int LEVEL_SEARCH_LENGTH = 64;
+
+    public static void tokenize(String line, Consumer<String> terms) {
+        String trimmed = line.trim();
+
+        if (trimmed.startsWith("at ")) {
+            LogTokenizer.frame(trimmed, terms);
+        }
+
+        int length = line.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = line.charAt(i);
+
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                i++;
+
+                continue;
+            }
+
+            // a qualified name, like com.example.Foo$Bar, is taken as a whole first and then split into words
+            int start = i;
+            while (i < length && LogTokenizer.isNamePart(line.charAt(i))) {
+                i++;
+            }
+
+            int end = i;
+            while (end > start && !Character.isLetterOrDigit(line.charAt(end - 1))) {
+                end--;
+            }
+
+            LogTokenizer.name(line, start, end, terms);
+        }
+    }
+
+    private static void name(String line, int start, int end, Consumer<String> terms) {
+        String name = line.substring(start, end);
+
+        if (start < LogTokenizer.LEVEL_SEARCH_LENGTH) {
+            String level = LogTokenizer.level(name);
+            if (level != null) {
+                terms.accept(LogTokenizer.LEVEL + level);
+            }
+        }
+
+        if (LogTokenizer.isExceptionName(name)) {
+            String lowerCase = name.toLowerCase(Locale.ROOT);
+            terms.accept(LogTokenizer.EXCEPTION + lowerCase);
+
+            int simpleNameStart = Math.max(lowerCase.lastIndexOf('.'), lowerCase.lastIndexOf('$')) + 1;
+            if (simpleNameStart > 0) {
+                terms.accept(LogTokenizer.EXCEPTION + lowerCase.substring(simpleNameStart));
+            }
+        }
+
+        int wordStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || !Character.isLetterOrDigit(line.charAt(i))) {
+                LogTokenizer.word(line, wordStart, i, terms);
+                wordStart = i + 1;
+            }
+        }
+    }
+
+    private static void word(String line, int start, int end, Consumer<String> terms) {
+        int length = end - start;
+        if (length < LogTokenizer.MIN_TOKEN_LENGTH || length > LogTokenizer.MAX_TOKEN_LENGTH) {
+            return;
+        }
+
+        // numbers are mostly coordinates, ids and timestamps, they would only make the index bigger
+        boolean hasLetter = false;
+        for (int i = start; i < end && !hasLetter; i++) {
+            hasLetter = Character.isLetter(line.charAt(i));
+        }
+
+        if (hasLetter) {
+            terms.accept(LogTokenizer.TOKEN + line.substring(start, end).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static void frame(String trimmed, Consumer<String> terms) {
+        int end = trimmed.indexOf('(');
+        if (end == -1) {
+            end = trimmed.length();
+        }
+
+        String signature = trimmed.substring(3, end).trim();
+
+        // drop the module, like java.base/java.lang.Thread.run
+        int slash = signature.lastIndexOf('/');
+        if (slash != -1) {
+            signature = signature.substring(slash + 1);
+        }
+
+        if (!signature.isEmpty() && signature.length() <= LogTokenizer.MAX_FRAME_LENGTH) {
+            terms.accept(LogTokenizer.FRAME + signature.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static String level(String name) {
+        return switch (name) {
+            case "TRACE" -> "trace";
+            case "DEBUG" -> "debug";
+            case "INFO" -> "info";
+            case "WARN", "WARNING" -> "warn";
+            case "ERROR", "SEVERE" -> "error";
+            case "FATAL" -> "fatal";
+            default -> null;
+        };
+    }
+
+    private static boolean isExceptionName(String name) {
+        return (name.endsWith("Exception") || name.endsWith("Error") || name.endsWith("Throwable")) &&
+            name.length() <= LogTokenizer.MAX_FRAME_LENGTH && Character.isLetter(name.charAt(0));
+    }
+
+    private static boolean isNamePart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '$';
+    }
+
+    private LogTokenizer() {
+        throw new UnsupportedOperationException();
+    }
+}
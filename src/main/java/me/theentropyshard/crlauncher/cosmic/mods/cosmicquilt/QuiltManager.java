@@ -38,6 +38,7 @@ import java.util.List;
 public class QuiltManager {
     private static final String COSMIC_QUILT_FILE_NAME = "cosmic-quilt-%s.jar";
     private static final String DEPS_FILE = "deps.json";
+    private static final String LOCK_FILE = "deps.lock.json";
 
     private final Path versionsDir;
     private final Path depsDir;
@@ -66,7 +67,9 @@ public class QuiltManager {
 
         String cosmicQuiltJar = QuiltManager.COSMIC_QUILT_FILE_NAME.formatted(version);
 
-        List<MavenArtifact> deps = MavenDownloader.downloadRelease(version, this.depsDir, versionDir.resolve(cosmicQuiltJar), downloads);
+        List<MavenArtifact> deps = MavenDownloader.downloadRelease(
+            version, this.depsDir, versionDir.resolve(cosmicQuiltJar), versionDir.resolve(QuiltManager.LOCK_FILE), downloads
+        );
         deps.removeIf(mavenArtifact -> mavenArtifact.artifactId().equals("quilt-loader-dependencies"));
 
         downloadList.addAll(downloads);
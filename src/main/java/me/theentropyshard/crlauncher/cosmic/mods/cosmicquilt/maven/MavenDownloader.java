@@ -19,24 +19,17 @@
 package me.theentropyshard.crlauncher.cosmic.mods.cosmicquilt.maven;
 
 import me.theentropyshard.crlauncher.CRLauncher;
+import me.theentropyshard.crlauncher.logging.Log;
 import me.theentropyshard.crlauncher.network.HttpRequest;
+import me.theentropyshard.crlauncher.network.download.DownloadScheduler;
 import me.theentropyshard.crlauncher.network.download.HttpDownload;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+
 import java.io.IOException;
-import java.io.StringReader;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class MavenDownloader {
     public static final String QUILT_LOADER_DOWNLOAD = "https://jitpack.io/org/codeberg/CRModders/cosmic-quilt/%s/%s";
@@ -47,7 +40,7 @@ public class MavenDownloader {
             "https://jitpack.io/",
     };
 
-    public static List<MavenArtifact> downloadRelease(String version, Path saveDir, Path cqPath, List<HttpDownload> downloads) throws IOException {
+    public static List<MavenArtifact> downloadRelease(String version, Path saveDir, Path cqPath, Path lockFile, List<HttpDownload> downloads) throws IOException {
         String jarUrl = MavenDownloader.QUILT_LOADER_DOWNLOAD.formatted(version, "cosmic-quilt-%s.jar".formatted(version));
 
         HttpDownload cqDownload = new HttpDownload.Builder()
@@ -58,119 +51,80 @@ public class MavenDownloader {
 
         downloads.add(cqDownload);
 
-        Map<String, MavenArtifact> deps = new HashMap<>();
+        MavenLockfile lockfile = MavenLockfile.load(lockFile);
 
-        try (HttpRequest request = new HttpRequest(CRLauncher.getInstance().getHttpClient())) {
-            String pomURL = MavenDownloader.QUILT_LOADER_DOWNLOAD.formatted(version, "cosmic-quilt-%s.pom".formatted(version));
-            String pomContent = request.asString(pomURL);
+        if (lockfile == null || !version.equals(lockfile.getVersion())) {
+            Set<MavenArtifact> missing = new HashSet<>();
+            lockfile = new MavenLockfile(version, MavenDownloader.resolve(version, missing));
 
-            MavenDownloader.getDependencies(deps, pomContent, null, 0);
-            for (MavenArtifact mavenArtifact : deps.values()) {
-                MavenDownloader.downloadDependencies(mavenArtifact, MavenDownloader.MAVEN_REPOSITORIES, downloads, saveDir);
+            // an incomplete graph is used for this launch only, the next one resolves again
+            if (missing.isEmpty()) {
+                lockfile.save(lockFile);
+            } else {
+                Log.warn("Not saving dependency lock of Cosmic Quilt " + version + ", no repository has " + missing);
             }
         }
 
-        return new ArrayList<>(deps.values());
-    }
+        for (MavenLockfile.Entry entry : lockfile.getEntries()) {
+            MavenArtifact artifact = entry.toArtifact();
 
-    private static void getDependencies(Map<String, MavenArtifact> dependencies, String pom, String search, int depth) throws IOException {
-        if (pom == null || depth > 9) return;
-        try {
-            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(pom)));
-            NodeList dependencyList = document.getElementsByTagName("dependency");
-            for (int i = 0; i < dependencyList.getLength(); i++) {
-                Element dependency = (Element) dependencyList.item(i);
-                String groupId = dependency.getElementsByTagName("groupId").item(0).getTextContent();
-                String artifactId = dependency.getElementsByTagName("artifactId").item(0).getTextContent();
-                if (search != null && !artifactId.equalsIgnoreCase(search)) continue;
-                Node optionalNode = dependency.getElementsByTagName("optional").item(0);
-                if (optionalNode != null && optionalNode.getTextContent().equalsIgnoreCase("true")) continue;
-                if (dependency.getElementsByTagName("version").item(0) != null) {
-                    String version = dependency.getElementsByTagName("version").item(0).getTextContent();
-                    if (version.equals("${project.version}")) { // replace with parent version
-                        NodeList parentList = document.getElementsByTagName("parent");
-                        if (parentList != null && parentList.getLength() > 0) {
-                            Element parent = (Element) parentList.item(0);
-                            version = parent.getElementsByTagName("version").item(0).getTextContent();
-                        }
-                    }
-                    if (version.matches("\\$\\{.*}")) continue;
-                    Node scope = dependency.getElementsByTagName("scope").item(0);
-                    if ((scope == null || (!scope.getTextContent().equalsIgnoreCase("test") ||
-                            artifactId.equals("slf4j-api"))) && (!dependencies.containsKey(artifactId) ||
-                            MavenDownloader.compare(dependencies.get(artifactId).version(), version) == 1) &&
-                            !artifactId.equalsIgnoreCase("cosmicreach")) {
-                        dependencies.put(artifactId, new MavenArtifact(groupId, artifactId, version));
-                        for (String repository : MavenDownloader.MAVEN_REPOSITORIES) {
-                            try (HttpRequest request = new HttpRequest(CRLauncher.getInstance().getHttpClient())) {
-                                String url = repository + groupId.replace('.', '/') +
-                                        "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + ".pom";
-                                String nextPom = request.asString(url);
-                                if (nextPom != null && request.code() / 100 == 2) {
-                                    getDependencies(dependencies, nextPom, null, depth + 1);
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                } else {
-                    NodeList parentList = document.getElementsByTagName("parent");
-                    if (parentList.getLength() > 0) {
-                        Element parent = (Element) parentList.item(0);
-                        String parentGroupId = parent.getElementsByTagName("groupId").item(0).getTextContent();
-                        String parentArtifactId = parent.getElementsByTagName("artifactId").item(0).getTextContent();
-                        String parentVersion = parent.getElementsByTagName("version").item(0).getTextContent();
-                        for (String repository : MavenDownloader.MAVEN_REPOSITORIES) {
-                            try (HttpRequest request = new HttpRequest(CRLauncher.getInstance().getHttpClient())) {
-                                String url = repository +
-                                        parentGroupId.replace('.', '/') + "/" + parentArtifactId + "/" +
-                                        parentVersion + "/" + parentArtifactId + "-" + parentVersion + ".pom";
-                                String parentPom = request.asString(url);
-                                if (parentPom != null && request.code() / 100 == 2) {
-                                    getDependencies(dependencies, parentPom, artifactId, depth + 1);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+            HttpDownload download = new HttpDownload.Builder()
+                    .url(entry.getRepository() + artifact.url())
+                    .saveAs(saveDir.resolve(artifact.jar()))
+                    .httpClient(CRLauncher.getInstance().getHttpClient())
+                    .build();
 
-        } catch (SAXException | IOException | ParserConfigurationException e) {
-            throw new IOException("Failed to parse POM", e);
+            downloads.add(download);
         }
+
+        return lockfile.getArtifacts();
     }
 
-    private static void downloadDependencies(MavenArtifact mavenArtifact, String[] repositories, List<HttpDownload> downloads, Path saveDir) throws IOException {
-        if (mavenArtifact == null) {
-            return;
+    private static Map<MavenArtifact, String> resolve(String version, Set<MavenArtifact> missing) throws IOException {
+        String pomURL = MavenDownloader.QUILT_LOADER_DOWNLOAD.formatted(version, "cosmic-quilt-%s.pom".formatted(version));
+
+        Pom root;
+
+        DownloadScheduler scheduler = CRLauncher.getInstance().getDownloadScheduler();
+        String host = DownloadScheduler.hostOf(pomURL);
+
+        scheduler.acquireConnection(host);
+
+        try (HttpRequest request = new HttpRequest(CRLauncher.getInstance().getHttpClient())) {
+            String pomContent = request.asString(pomURL);
+
+            if (request.code() / 100 != 2) {
+                throw new IOException("Could not get POM of Cosmic Quilt " + version + ": HTTP " + request.code());
+            }
+
+            root = Pom.parse(pomContent);
+        } finally {
+            scheduler.releaseConnection(host);
         }
 
-        String groupId = mavenArtifact.groupId();
-        String artifactId = mavenArtifact.artifactId();
-        String version = mavenArtifact.version();
-        for (String repository : repositories) {
-            String pomURL = repository + groupId.replace('.', '/') + "/" + artifactId +
-                    "/" + version + "/" + mavenArtifact.pom();
+        Path mavenCacheDir = CRLauncher.getInstance().getCacheDir().resolve("maven");
 
-            try (HttpRequest request = new HttpRequest(CRLauncher.getInstance().getHttpClient())) {
-                request.asString(pomURL);
+        RepositoryRouter router = new RepositoryRouter(mavenCacheDir.resolve("routes.json"), MavenDownloader.MAVEN_REPOSITORIES);
+        router.load();
 
-                if (request.code() / 100 != 2) {
-                    continue;
-                }
+        PomCache pomCache = new PomCache(mavenCacheDir, router);
 
-                HttpDownload download = new HttpDownload.Builder()
-                        .url(repository + groupId.replace('.', '/') + "/" + artifactId +
-                                "/" + version + "/" + mavenArtifact.jar())
-                        .saveAs(saveDir.resolve(mavenArtifact.jar()))
-                        .httpClient(CRLauncher.getInstance().getHttpClient())
-                        .build();
+        long start = System.currentTimeMillis();
+        Map<MavenArtifact, String> resolved;
 
-                downloads.add(download);
+        MavenResolver resolver = new MavenResolver(pomCache);
 
-                break;
-            }
+        try {
+            resolved = resolver.resolve(root);
+            missing.addAll(resolver.getMissing());
+        } finally {
+            router.save();
         }
+
+        Log.info("Resolved " + resolved.size() + " dependencies of Cosmic Quilt " + version + " in " +
+            (System.currentTimeMillis() - start) + " ms");
+
+        return resolved;
     }
 
     public static int compare(String o1, String o2) {
@@ -0,0 +1,118 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.mods.cosmicquilt.maven;
+
+import me.theentropyshard.crlauncher.CRLauncher;
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.json.Json;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of resolving the dependencies of a Cosmic Quilt version, with the repository of every artifact,
+ * so the graph does not have to be walked again
+ */
+public class MavenLockfile {
+    private String version;
+    private List<Entry> artifacts;
+
+    public MavenLockfile() {
+
+    }
+
+    public MavenLockfile(String version, Map<MavenArtifact, String> resolved) {
+        this.version = version;
+        this.artifacts = new ArrayList<>();
+
+        resolved.forEach((artifact, repository) -> this.artifacts.add(new Entry(artifact, repository)));
+    }
+
+    public static MavenLockfile load(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            MavenLockfile lockfile = Json.parse(FileUtils.readUtf8(file), MavenLockfile.class);
+
+            if (lockfile != null && lockfile.version != null && lockfile.artifacts != null) {
+                return lockfile;
+            }
+        } catch (Exception e) {
+            Log.warn("Could not read lockfile " + file + ": " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    public void save(Path file) throws IOException {
+        boolean pretty = CRLauncher.getInstance().getSettings().writePrettyJson;
+        FileUtils.writeUtf8Atomically(file, pretty ? Json.writePretty(this) : Json.write(this));
+    }
+
+    public List<MavenArtifact> getArtifacts() {
+        List<MavenArtifact> list = new ArrayList<>();
+
+        for (Entry entry : this.artifacts) {
+            list.add(entry.toArtifact());
+        }
+
+        return list;
+    }
+
+    public String getVersion() {
+        return this.version;
+    }
+
+    public List<Entry> getEntries() {
+        return this.artifacts;
+    }
+
+    public static class Entry {
+        private String groupId;
+        private String artifactId;
+        private String version;
+        private String repository;
+
+        public Entry() {
+
+        }
+
+        public Entry(MavenArtifact artifact, String repository) {
+            this.groupId = artifact.groupId();
+            this.artifactId = artifact.artifactId();
+            this.version = artifact.version();
+            this.repository = repository;
+        }
+
+        public MavenArtifact toArtifact() {
+            return new MavenArtifact(this.groupId, this.artifactId, this.version);
+        }
+
+        public String getRepository() {
+            return this.repository;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.mods.cosmicquilt.maven;
+
+import me.theentropyshard.crlauncher.logging.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the runtime dependency graph of a POM level by level. All POMs of a level are fetched in parallel,
+ * and when the same artifact is reached with different versions the newest one wins, like it did
+ * with the old recursive walk. Parent POMs, properties, dependencyManagement and imported BOMs
+ * are applied, so versions are not guessed from whatever parent happens to mention the artifact.
+ */
+public class MavenResolver {
+    private static final int THREADS = 8;
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_PARENTS = 16;
+    private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)}");
+
+    private final PomCache pomCache;
+    private final Map<String, Model> models;
+    private final Set<MavenArtifact> missing;
+
+    public MavenResolver(PomCache pomCache) {
+        this.pomCache = pomCache;
+        this.models = new ConcurrentHashMap<>();
+        this.missing = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * @return every artifact of the graph that has a jar, mapped to the repository it was found in
+     */
+    public Map<MavenArtifact, String> resolve(Pom root) throws IOException {
+        Map<String, MavenArtifact> selected = new LinkedHashMap<>();
+        Map<String, Model> selectedModels = new HashMap<>();
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(MavenResolver.THREADS, r -> {
+            Thread thread = new Thread(r, "CRL-Maven-Resolver-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        try {
+            List<MavenArtifact> frontier = this.dependencies(this.buildModel(root, 0));
+
+            for (int depth = 0; !frontier.isEmpty() && depth < MavenResolver.MAX_DEPTH; depth++) {
+                Map<String, MavenArtifact> level = new LinkedHashMap<>();
+
+                for (MavenArtifact artifact : frontier) {
+                    String key = MavenResolver.key(artifact);
+
+                    if (MavenResolver.isNotNewer(selected.get(key), artifact) || MavenResolver.isNotNewer(level.get(key), artifact)) {
+                        continue;
+                    }
+
+                    level.put(key, artifact);
+                }
+
+                Map<MavenArtifact, Future<Model>> futures = new LinkedHashMap<>();
+                for (MavenArtifact artifact : level.values()) {
+                    futures.put(artifact, executorService.submit(() -> this.getModel(artifact, 0)));
+                }
+
+                List<MavenArtifact> next = new ArrayList<>();
+
+                for (Map.Entry<MavenArtifact, Future<Model>> entry : futures.entrySet()) {
+                    MavenArtifact artifact = entry.getKey();
+                    Model model = MavenResolver.await(entry.getValue());
+
+                    if (model == null) {
+                        Log.warn("Could not find POM of " + artifact + " in any repository");
+
+                        continue;
+                    }
+
+                    selected.put(MavenResolver.key(artifact), artifact);
+                    selectedModels.put(MavenResolver.key(artifact), model);
+                    next.addAll(this.dependencies(model));
+                }
+
+                frontier = next;
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Map<MavenArtifact, String> resolved = new LinkedHashMap<>();
+
+        for (Map.Entry<String, MavenArtifact> entry : selected.entrySet()) {
+            Model model = selectedModels.get(entry.getKey());
+
+            if ("pom".equals(model.pom.getPackaging())) {
+                continue;
+            }
+
+            resolved.put(entry.getValue(), model.pom.getRepository());
+        }
+
+        return resolved;
+    }
+
+    // compare is positive when the second version is newer, suffixes can make it any positive number
+    private static boolean isNotNewer(MavenArtifact current, MavenArtifact candidate) {
+        return current != null && MavenDownloader.compare(current.version(), candidate.version()) <= 0;
+    }
+
+    private static Model await(Future<Model> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while resolving dependencies");
+        }
+    }
+
+    private List<MavenArtifact> dependencies(Model model) {
+        List<MavenArtifact> dependencies = new ArrayList<>();
+
+        for (Pom.Dependency dependency : model.pom.getDependencies()) {
+            if (dependency.isOptional()) {
+                continue;
+            }
+
+            String scope = dependency.getScope();
+            if (("test".equals(scope) && !"slf4j-api".equals(dependency.getArtifactId())) ||
+                "system".equals(scope) || "import".equals(scope)) {
+
+                continue;
+            }
+
+            if ("cosmicreach".equalsIgnoreCase(dependency.getArtifactId())) {
+                continue;
+            }
+
+            String groupId = model.interpolate(dependency.getGroupId());
+            String artifactId = model.interpolate(dependency.getArtifactId());
+            String version = dependency.getVersion() == null ?
+                model.managedVersions.get(groupId + ":" + artifactId) :
+                model.interpolate(dependency.getVersion());
+
+            if (version == null || version.contains("${") || version.startsWith("[") || version.startsWith("(")) {
+                Log.debug("Skipping " + groupId + ":" + artifactId + ", could not determine version '" + version + "'");
+
+                continue;
+            }
+
+            dependencies.add(new MavenArtifact(groupId, artifactId, version));
+        }
+
+        return dependencies;
+    }
+
+    private Model getModel(MavenArtifact artifact, int depth) throws IOException {
+        String key = MavenResolver.key(artifact) + ":" + artifact.version();
+
+        Model model = this.models.get(key);
+        if (model != null) {
+            return model;
+        }
+
+        Pom pom = this.pomCache.get(artifact);
+        if (pom == null) {
+            this.missing.add(artifact);
+
+            return null;
+        }
+
+        model = this.buildModel(pom, depth);
+        this.models.put(key, model);
+
+        return model;
+    }
+
+    private Model buildModel(Pom pom, int depth) throws IOException {
+        if (depth > MavenResolver.MAX_PARENTS) {
+            throw new IOException("Too many nested parents or imports in POM of " + pom.getArtifactId());
+        }
+
+        Model parent = null;
+        if (pom.getParent() != null) {
+            parent = this.getModel(pom.getParent(), depth + 1);
+
+            if (parent == null) {
+                Log.warn("Could not find parent POM " + pom.getParent() + " of " + pom.getArtifactId());
+            }
+        }
+
+        Model model = new Model(pom);
+        model.groupId = pom.getGroupId() != null ? pom.getGroupId() : parent != null ? parent.groupId : null;
+        model.version = pom.getVersion() != null ? pom.getVersion() : parent != null ? parent.version : null;
+
+        if (parent != null) {
+            model.properties.putAll(parent.properties);
+            model.managedVersions.putAll(parent.managedVersions);
+        }
+
+        model.properties.putAll(pom.getProperties());
+        model.properties.put("project.groupId", model.groupId);
+        model.properties.put("project.artifactId", pom.getArtifactId());
+        model.properties.put("project.version", model.version);
+        model.properties.put("pom.version", model.version);
+        model.properties.put("version", model.version);
+
+        if (pom.getParent() != null) {
+            model.properties.put("project.parent.groupId", pom.getParent().groupId());
+            model.properties.put("project.parent.version", pom.getParent().version());
+        }
+
+        Map<String, String> declared = new HashMap<>();
+
+        for (Pom.Dependency dependency : pom.getManagedDependencies()) {
+            String groupId = model.interpolate(dependency.getGroupId());
+            String artifactId = model.interpolate(dependency.getArtifactId());
+            String version = model.interpolate(dependency.getVersion());
+
+            if (version == null) {
+                continue;
+            }
+
+            if ("import".equals(dependency.getScope()) && "pom".equals(dependency.getType())) {
+                Model bom = this.getModel(new MavenArtifact(groupId, artifactId, version), depth + 1);
+
+                if (bom != null) {
+                    model.managedVersions.putAll(bom.managedVersions);
+                }
+            } else {
+                declared.put(groupId + ":" + artifactId, version);
+            }
+        }
+
+        model.managedVersions.putAll(declared);
+
+        return model;
+    }
+
+    /**
+     * @return artifacts, parents and imported BOMs whose POM no repository has, the graph without them is incomplete
+     */
+    public Set<MavenArtifact> getMissing() {
+        return this.missing;
+    }
+
+    private static String key(MavenArtifact artifact) {
+        return artifact.groupId() + ":" + artifact.artifactId();
+    }
+
+    private static final class Model {
+        private final Pom pom;
+        private final Map<String, String> properties;
+        private final Map<String, String> managedVersions;
+
+        private String groupId;
+        private String version;
+
+        private Model(Pom pom) {
+            this.pom = pom;
+            this.properties = new HashMap<>();
+            this.managedVersions = new HashMap<>();
+        }
+
+        private String interpolate(String value) {
+            if (value == null) {
+                return null;
+            }
+
+            for (int i = 0; i < 8 && value.contains("${"); i++) {
+                Matcher matcher = MavenResolver.PROPERTY.matcher(value);
+                StringBuilder builder = new StringBuilder();
+
+                while (matcher.find()) {
+                    String replacement = this.properties.get(matcher.group(1));
+                    matcher.appendReplacement(builder, Matcher.quoteReplacement(replacement == null ? matcher.group() : replacement));
+                }
+
+                matcher.appendTail(builder);
+
+                String interpolated = builder.toString();
+                if (interpolated.equals(value)) {
+                    break;
+                }
+
+                value = interpolated;
+            }
+
+            return value;
+        }
+    }
+}
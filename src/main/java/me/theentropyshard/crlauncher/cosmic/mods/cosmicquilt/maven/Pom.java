@@ -0,0 +1,246 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.mods.cosmicquilt.maven;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of a POM that matter for dependency resolution, as declared (not interpolated, parents not applied).
+ * Instances are stored as JSON in the POM cache, so the XML is only ever parsed once per coordinate.
+ */
+public class Pom {
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(() -> {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(false);
+            factory.setExpandEntityReferences(false);
+
+            return factory.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    });
+
+    private String repository;
+    private String groupId;
+    private String artifactId;
+    private String version;
+    private String packaging;
+    private MavenArtifact parent;
+    private Map<String, String> properties;
+    private List<Dependency> dependencies;
+    private List<Dependency> managedDependencies;
+
+    public Pom() {
+
+    }
+
+    public static Pom parse(String xml) throws IOException {
+        Document document;
+
+        try {
+            DocumentBuilder builder = Pom.DOCUMENT_BUILDER.get();
+            builder.reset();
+            document = builder.parse(new InputSource(new StringReader(xml)));
+        } catch (SAXException e) {
+            throw new IOException("Failed to parse POM", e);
+        }
+
+        Element project = document.getDocumentElement();
+
+        Pom pom = new Pom();
+        pom.groupId = Pom.childText(project, "groupId");
+        pom.artifactId = Pom.childText(project, "artifactId");
+        pom.version = Pom.childText(project, "version");
+        pom.packaging = Pom.childText(project, "packaging");
+        pom.properties = new LinkedHashMap<>();
+        pom.dependencies = new ArrayList<>();
+        pom.managedDependencies = new ArrayList<>();
+
+        Element parent = Pom.child(project, "parent");
+        if (parent != null) {
+            pom.parent = new MavenArtifact(
+                Pom.childText(parent, "groupId"), Pom.childText(parent, "artifactId"), Pom.childText(parent, "version")
+            );
+        }
+
+        Element properties = Pom.child(project, "properties");
+        if (properties != null) {
+            for (Element property : Pom.children(properties)) {
+                pom.properties.put(property.getTagName(), property.getTextContent().trim());
+            }
+        }
+
+        Pom.readDependencies(Pom.child(project, "dependencies"), pom.dependencies);
+
+        Element dependencyManagement = Pom.child(project, "dependencyManagement");
+        if (dependencyManagement != null) {
+            Pom.readDependencies(Pom.child(dependencyManagement, "dependencies"), pom.managedDependencies);
+        }
+
+        return pom;
+    }
+
+    private static void readDependencies(Element dependencies, List<Dependency> list) {
+        if (dependencies == null) {
+            return;
+        }
+
+        for (Element element : Pom.children(dependencies)) {
+            if (!"dependency".equals(element.getTagName())) {
+                continue;
+            }
+
+            Dependency dependency = new Dependency();
+            dependency.groupId = Pom.childText(element, "groupId");
+            dependency.artifactId = Pom.childText(element, "artifactId");
+            dependency.version = Pom.childText(element, "version");
+            dependency.scope = Pom.childText(element, "scope");
+            dependency.type = Pom.childText(element, "type");
+            dependency.optional = "true".equalsIgnoreCase(Pom.childText(element, "optional"));
+
+            if (dependency.groupId != null && dependency.artifactId != null) {
+                list.add(dependency);
+            }
+        }
+    }
+
+    private static List<Element> children(Element element) {
+        List<Element> children = new ArrayList<>();
+
+        NodeList nodes = element.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                children.add((Element) node);
+            }
+        }
+
+        return children;
+    }
+
+    private static Element child(Element element, String name) {
+        for (Element child : Pom.children(element)) {
+            if (name.equals(child.getTagName())) {
+                return child;
+            }
+        }
+
+        return null;
+    }
+
+    private static String childText(Element element, String name) {
+        Element child = Pom.child(element, name);
+
+        return child == null ? null : child.getTextContent().trim();
+    }
+
+    public String getRepository() {
+        return this.repository;
+    }
+
+    public void setRepository(String repository) {
+        this.repository = repository;
+    }
+
+    public String getGroupId() {
+        return this.groupId;
+    }
+
+    public String getArtifactId() {
+        return this.artifactId;
+    }
+
+    public String getVersion() {
+        return this.version;
+    }
+
+    public String getPackaging() {
+        return this.packaging == null ? "jar" : this.packaging;
+    }
+
+    public MavenArtifact getParent() {
+        return this.parent;
+    }
+
+    public Map<String, String> getProperties() {
+        return this.properties;
+    }
+
+    public List<Dependency> getDependencies() {
+        return this.dependencies;
+    }
+
+    public List<Dependency> getManagedDependencies() {
+        return this.managedDependencies;
+    }
+
+    public static class Dependency {
+        private String groupId;
+        private String artifactId;
+        private String version;
+        private String scope;
+        private String type;
+        private boolean optional;
+
+        public Dependency() {
+
+        }
+
+        public String getGroupId() {
+            return this.groupId;
+        }
+
+        public String getArtifactId() {
+            return this.artifactId;
+        }
+
+        public String getVersion() {
+            return this.version;
+        }
+
+        public String getScope() {
+            return this.scope;
+        }
+
+        public String getType() {
+            return this.type;
+        }
+
+        public boolean isOptional() {
+            return this.optional;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.mods.cosmicquilt.maven;
+
+import me.theentropyshard.crlauncher.CRLauncher;
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.HttpRequest;
+import me.theentropyshard.crlauncher.network.download.DownloadScheduler;
+import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.json.Json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes parsed POMs by coordinate, in memory and on disk. Released POMs never change, so a disk entry
+ * is valid forever, snapshots are only memoized in memory. Concurrent requests for the same coordinate
+ * share a single fetch.
+ */
+public class PomCache {
+    private static final int NOT_FOUND = 404;
+
+    private final Path dir;
+    private final RepositoryRouter router;
+    private final Map<String, CompletableFuture<Pom>> poms;
+
+    public PomCache(Path dir, RepositoryRouter router) {
+        this.dir = dir;
+        this.router = router;
+        this.poms = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return parsed POM of the artifact, or null if every repository answered that it does not have it
+     * @throws IOException if a repository could not be asked, so it is not known whether the POM exists
+     */
+    public Pom get(MavenArtifact artifact) throws IOException {
+        String key = artifact.groupId() + ":" + artifact.artifactId() + ":" + artifact.version();
+
+        CompletableFuture<Pom> future = new CompletableFuture<>();
+        CompletableFuture<Pom> existing = this.poms.putIfAbsent(key, future);
+
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+
+                throw e;
+            }
+        }
+
+        try {
+            Pom pom = this.load(artifact);
+            future.complete(pom);
+
+            return pom;
+        } catch (IOException | RuntimeException e) {
+            this.poms.remove(key);
+            future.completeExceptionally(e);
+
+            throw e;
+        }
+    }
+
+    private Pom load(MavenArtifact artifact) throws IOException {
+        boolean snapshot = artifact.version().endsWith("-SNAPSHOT");
+        Path cacheFile = this.dir.resolve(artifact.groupId().replace('.', '/'))
+            .resolve(artifact.artifactId())
+            .resolve(artifact.version() + ".json");
+
+        if (!snapshot && Files.exists(cacheFile)) {
+            try {
+                Pom pom = Json.parse(FileUtils.readUtf8(cacheFile), Pom.class);
+
+                if (pom != null) {
+                    return pom;
+                }
+            } catch (Exception e) {
+                Log.warn("Could not read cached POM " + cacheFile + ": " + e.getMessage());
+            }
+        }
+
+        Pom pom = this.fetch(artifact);
+
+        if (pom != null && !snapshot) {
+            try {
+                FileUtils.createDirectoryIfNotExists(cacheFile.getParent());
+
+                Path tmpFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+                FileUtils.writeUtf8(tmpFile, Json.write(pom));
+                Files.move(tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | UncheckedIOException e) {
+                Log.warn("Could not cache POM of " + artifact + ": " + e.getMessage());
+            }
+        }
+
+        return pom;
+    }
+
+    private Pom fetch(MavenArtifact artifact) throws IOException {
+        String path = artifact.groupId().replace('.', '/') + "/" + artifact.artifactId() + "/" +
+            artifact.version() + "/" + artifact.pom();
+
+        String route = this.router.getRoute(artifact.groupId());
+
+        if (route != null) {
+            Pom pom = this.fetch(route, path);
+
+            if (pom != null) {
+                return pom;
+            }
+        }
+
+        String repository = this.router.probe(artifact.groupId(), path, route);
+
+        if (repository == null) {
+            return null;
+        }
+
+        return this.fetch(repository, path);
+    }
+
+    private Pom fetch(String repository, String path) throws IOException {
+        DownloadScheduler scheduler = CRLauncher.getInstance().getDownloadScheduler();
+        String host = DownloadScheduler.hostOf(repository);
+
+        scheduler.acquireConnection(host);
+
+        try (HttpRequest request = new HttpRequest(CRLauncher.getInstance().getHttpClient())) {
+            String content = request.asString(repository + path);
+
+            if (request.code() == PomCache.NOT_FOUND) {
+                return null;
+            }
+
+            // anything else, like 429 or 5xx, says nothing about whether the POM exists
+            if (request.code() / 100 != 2) {
+                throw new IOException("Could not get " + repository + path + ": HTTP " + request.code());
+            }
+
+            Pom pom = Pom.parse(content);
+            pom.setRepository(repository);
+
+            return pom;
+        } finally {
+            scheduler.releaseConnection(host);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.mods.cosmicquilt.maven;
+
+import com.google.gson.reflect.TypeToken;
+import me.theentropyshard.crlauncher.CRLauncher;
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.download.DownloadScheduler;
+import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.json.Json;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Remembers which repository serves which groupId. Known groups go straight to their repository,
+ * unknown ones are found by sending HEAD requests to all repositories at once and taking the first
+ * that answers with 2xx, the other requests are cancelled.
+ */
+public class RepositoryRouter {
+    private final Path routesFile;
+    private final String[] repositories;
+    private final Map<String, String> routes;
+
+    private volatile boolean dirty;
+
+    public RepositoryRouter(Path routesFile, String[] repositories) {
+        this.routesFile = routesFile;
+        this.repositories = repositories;
+        this.routes = new ConcurrentHashMap<>();
+    }
+
+    public void load() {
+        if (!Files.exists(this.routesFile)) {
+            return;
+        }
+
+        try {
+            Map<String, String> routes = Json.parse(FileUtils.readUtf8(this.routesFile),
+                new TypeToken<Map<String, String>>() {}.getType());
+
+            if (routes != null) {
+                this.routes.putAll(routes);
+            }
+        } catch (Exception e) {
+            Log.warn("Could not read repository routes from " + this.routesFile + ": " + e.getMessage());
+        }
+    }
+
+    public void save() throws IOException {
+        if (!this.dirty) {
+            return;
+        }
+
+        FileUtils.createDirectoryIfNotExists(this.routesFile.getParent());
+
+        Path tmpFile = this.routesFile.resolveSibling(this.routesFile.getFileName() + ".tmp");
+        FileUtils.writeUtf8(tmpFile, Json.write(this.routes));
+        Files.move(tmpFile, this.routesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        this.dirty = false;
+    }
+
+    /**
+     * @return repository that was last seen serving the group, or one of its parent groups
+     */
+    public String getRoute(String groupId) {
+        String group = groupId;
+
+        while (true) {
+            String repository = this.routes.get(group);
+            if (repository != null) {
+                return repository;
+            }
+
+            int lastDot = group.lastIndexOf('.');
+            if (lastDot == -1) {
+                return null;
+            }
+
+            group = group.substring(0, lastDot);
+        }
+    }
+
+    public void remember(String groupId, String repository) {
+        if (!repository.equals(this.routes.put(groupId, repository))) {
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Sends HEAD requests for the path to every repository except {@code exclude} at once
+     *
+     * @return the first repository that answered with 2xx, or null if every one of them answered with 404
+     * @throws IOException if no repository has the path, but some could not be asked
+     */
+    public String probe(String groupId, String path, String exclude) throws IOException {
+        OkHttpClient httpClient = CRLauncher.getInstance().getHttpClient();
+
+        List<Call> calls = new ArrayList<>();
+        for (String repository : this.repositories) {
+            if (repository.equals(exclude)) {
+                continue;
+            }
+
+            calls.add(httpClient.newCall(new Request.Builder().url(repository + path).head().build()));
+        }
+
+        if (calls.isEmpty()) {
+            return null;
+        }
+
+        DownloadScheduler scheduler = CRLauncher.getInstance().getDownloadScheduler();
+        CompletableFuture<String> winner = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(calls.size());
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        for (Call call : calls) {
+            String url = call.request().url().toString();
+            String repository = url.substring(0, url.length() - path.length());
+            String host = call.request().url().host();
+
+            // probes count against the same per-host limits as downloads, the connection is given back in the callback
+            try {
+                scheduler.acquireConnection(host);
+            } catch (InterruptedIOException e) {
+                calls.forEach(Call::cancel);
+
+                throw e;
+            }
+
+            call.enqueue(new Callback() {
+                @Override
+                public void onResponse(@NotNull Call call, @NotNull Response response) {
+                    response.close();
+                    scheduler.releaseConnection(host);
+
+                    if (response.isSuccessful()) {
+                        if (winner.complete(repository)) {
+                            calls.forEach(Call::cancel);
+                        }
+                    } else {
+                        if (response.code() != 404) {
+                            failure.compareAndSet(null, repository + path + ": HTTP " + response.code());
+                        }
+
+                        this.lost();
+                    }
+                }
+
+                @Override
+                public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                    scheduler.releaseConnection(host);
+
+                    if (!winner.isDone()) {
+                        failure.compareAndSet(null, repository + path + ": " + e.getMessage());
+                    }
+
+                    this.lost();
+                }
+
+                private void lost() {
+                    if (remaining.decrementAndGet() != 0) {
+                        return;
+                    }
+
+                    // a repository that could not be asked may have it, so that is not the same as not found
+                    String reason = failure.get();
+                    if (reason == null) {
+                        winner.complete(null);
+                    } else {
+                        winner.completeExceptionally(new IOException("Could not probe " + reason));
+                    }
+                }
+            });
+        }
+
+        String repository;
+
+        try {
+            repository = winner.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            calls.forEach(Call::cancel);
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while probing repositories for " + path);
+        }
+
+        if (repository != null) {
+            this.remember(groupId, repository);
+        }
+
+        return repository;
+    }
+}
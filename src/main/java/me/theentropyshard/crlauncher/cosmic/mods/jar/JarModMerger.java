@@ -0,0 +1,378 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.mods.jar;
+
+import me.theentropyshard.crlauncher.logging.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Merges zip files into one in a single pass. When several inputs contain an entry with the same name, the one from the
+ * last input wins, but it keeps the position of the first one. Entry data is copied raw, so nothing is decompressed
+ * or compressed again. ZIP64 and encrypted inputs are merged through {@link ZipOutputStream} instead.
+ */
+public final class JarModMerger {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int FLAG_ENCRYPTED = 1;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+
+    public static void merge(List<Path> inputs, Path output) throws IOException {
+        try {
+            JarModMerger.mergeRaw(inputs, output);
+        } catch (ZipException e) {
+            Log.warn("Could not merge jars raw, recompressing instead: " + e.getMessage());
+
+            JarModMerger.mergeRecompressing(inputs, output);
+        }
+    }
+
+    private static void mergeRaw(List<Path> inputs, Path output) throws IOException {
+        List<FileChannel> channels = new ArrayList<>();
+
+        try {
+            Map<String, Entry> entries = new LinkedHashMap<>();
+
+            for (Path input : inputs) {
+                FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+                channels.add(channel);
+
+                for (Entry entry : JarModMerger.readCentralDirectory(channel, input)) {
+                    entries.put(entry.name, entry);
+                }
+            }
+
+            if (entries.size() > JarModMerger.MAX_16) {
+                throw new ZipException("Too many entries: " + entries.size());
+            }
+
+            try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+                List<Long> offsets = new ArrayList<>(entries.size());
+
+                for (Entry entry : entries.values()) {
+                    long offset = out.position();
+                    if (offset > JarModMerger.MAX_32) {
+                        throw new ZipException("Output is too large");
+                    }
+
+                    offsets.add(offset);
+
+                    long dataOffset = JarModMerger.findData(entry);
+
+                    ByteBuffer header = JarModMerger.buffer(JarModMerger.LOCAL_HEADER_SIZE + entry.rawName.length);
+                    header.putInt(JarModMerger.LOCAL_HEADER_SIGNATURE);
+                    header.putShort((short) entry.versionNeeded);
+                    header.putShort((short) (entry.flags & ~JarModMerger.FLAG_DATA_DESCRIPTOR));
+                    header.putShort((short) entry.method);
+                    header.putShort((short) entry.time);
+                    header.putShort((short) entry.date);
+                    header.putInt((int) entry.crc);
+                    header.putInt((int) entry.compressedSize);
+                    header.putInt((int) entry.size);
+                    header.putShort((short) entry.rawName.length);
+                    header.putShort((short) 0);
+                    header.put(entry.rawName);
+                    JarModMerger.writeFully(out, header.flip());
+
+                    long position = dataOffset;
+                    long remaining = entry.compressedSize;
+
+                    while (remaining > 0) {
+                        long transferred = entry.channel.transferTo(position, remaining, out);
+                        if (transferred <= 0) {
+                            throw new IOException("Unexpected end of " + entry.source + " while copying " + entry.name);
+                        }
+
+                        position += transferred;
+                        remaining -= transferred;
+                    }
+                }
+
+                long centralDirectoryOffset = out.position();
+                if (centralDirectoryOffset > JarModMerger.MAX_32) {
+                    throw new ZipException("Output is too large");
+                }
+
+                int i = 0;
+                for (Entry entry : entries.values()) {
+                    ByteBuffer header = JarModMerger.buffer(JarModMerger.CENTRAL_HEADER_SIZE + entry.rawName.length + entry.extra.length);
+                    header.putInt(JarModMerger.CENTRAL_HEADER_SIGNATURE);
+                    header.putShort((short) entry.versionMadeBy);
+                    header.putShort((short) entry.versionNeeded);
+                    header.putShort((short) (entry.flags & ~JarModMerger.FLAG_DATA_DESCRIPTOR));
+                    header.putShort((short) entry.method);
+                    header.putShort((short) entry.time);
+                    header.putShort((short) entry.date);
+                    header.putInt((int) entry.crc);
+                    header.putInt((int) entry.compressedSize);
+                    header.putInt((int) entry.size);
+                    header.putShort((short) entry.rawName.length);
+                    header.putShort((short) entry.extra.length);
+                    header.putShort((short) 0);
+                    header.putShort((short) 0);
+                    header.putShort((short) entry.internalAttributes);
+                    header.putInt((int) entry.externalAttributes);
+                    header.putInt((int) (long) offsets.get(i++));
+                    header.put(entry.rawName);
+                    header.put(entry.extra);
+                    JarModMerger.writeFully(out, header.flip());
+                }
+
+                long centralDirectorySize = out.position() - centralDirectoryOffset;
+
+                ByteBuffer end = JarModMerger.buffer(JarModMerger.END_OF_CENTRAL_DIRECTORY_SIZE);
+                end.putInt(JarModMerger.END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+                end.putShort((short) 0);
+                end.putShort((short) 0);
+                end.putShort((short) entries.size());
+                end.putShort((short) entries.size());
+                end.putInt((int) centralDirectorySize);
+                end.putInt((int) centralDirectoryOffset);
+                end.putShort((short) 0);
+                JarModMerger.writeFully(out, end.flip());
+            }
+        } finally {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    private static List<Entry> readCentralDirectory(FileChannel channel, Path source) throws IOException {
+        long fileSize = channel.size();
+        int tailSize = (int) Math.min(fileSize, JarModMerger.END_OF_CENTRAL_DIRECTORY_SIZE + JarModMerger.MAX_COMMENT_SIZE);
+
+        ByteBuffer tail = JarModMerger.buffer(tailSize);
+        JarModMerger.readFully(channel, tail, fileSize - tailSize);
+
+        int endOffset = -1;
+        for (int i = tailSize - JarModMerger.END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == JarModMerger.END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                endOffset = i;
+                break;
+            }
+        }
+
+        if (endOffset == -1) {
+            throw new ZipException("End of central directory not found in " + source);
+        }
+
+        int totalEntries = Short.toUnsignedInt(tail.getShort(endOffset + 10));
+        long centralDirectorySize = Integer.toUnsignedLong(tail.getInt(endOffset + 12));
+        long centralDirectoryOffset = Integer.toUnsignedLong(tail.getInt(endOffset + 16));
+
+        if (totalEntries == JarModMerger.MAX_16 || centralDirectorySize == JarModMerger.MAX_32 ||
+            centralDirectoryOffset == JarModMerger.MAX_32) {
+
+            throw new ZipException(source + " is a ZIP64 archive");
+        }
+
+        ByteBuffer centralDirectory = JarModMerger.buffer((int) centralDirectorySize);
+        JarModMerger.readFully(channel, centralDirectory, centralDirectoryOffset);
+        centralDirectory.flip();
+
+        List<Entry> entries = new ArrayList<>(totalEntries);
+
+        for (int i = 0; i < totalEntries; i++) {
+            if (centralDirectory.remaining() < JarModMerger.CENTRAL_HEADER_SIZE ||
+                centralDirectory.getInt() != JarModMerger.CENTRAL_HEADER_SIGNATURE) {
+
+                throw new ZipException("Invalid central directory in " + source);
+            }
+
+            Entry entry = new Entry(source, channel);
+            entry.versionMadeBy = Short.toUnsignedInt(centralDirectory.getShort());
+            entry.versionNeeded = Short.toUnsignedInt(centralDirectory.getShort());
+            entry.flags = Short.toUnsignedInt(centralDirectory.getShort());
+            entry.method = Short.toUnsignedInt(centralDirectory.getShort());
+            entry.time = Short.toUnsignedInt(centralDirectory.getShort());
+            entry.date = Short.toUnsignedInt(centralDirectory.getShort());
+            entry.crc = Integer.toUnsignedLong(centralDirectory.getInt());
+            entry.compressedSize = Integer.toUnsignedLong(centralDirectory.getInt());
+            entry.size = Integer.toUnsignedLong(centralDirectory.getInt());
+            int nameLength = Short.toUnsignedInt(centralDirectory.getShort());
+            int extraLength = Short.toUnsignedInt(centralDirectory.getShort());
+            int commentLength = Short.toUnsignedInt(centralDirectory.getShort());
+            centralDirectory.getShort();
+            entry.internalAttributes = Short.toUnsignedInt(centralDirectory.getShort());
+            entry.externalAttributes = Integer.toUnsignedLong(centralDirectory.getInt());
+            entry.localHeaderOffset = Integer.toUnsignedLong(centralDirectory.getInt());
+
+            entry.rawName = new byte[nameLength];
+            centralDirectory.get(entry.rawName);
+            entry.extra = new byte[extraLength];
+            centralDirectory.get(entry.extra);
+            centralDirectory.position(centralDirectory.position() + commentLength);
+
+            if ((entry.flags & JarModMerger.FLAG_ENCRYPTED) != 0) {
+                throw new ZipException("Encrypted entries are not supported (" + source + ")");
+            }
+
+            if (entry.compressedSize == JarModMerger.MAX_32 || entry.size == JarModMerger.MAX_32 ||
+                entry.localHeaderOffset == JarModMerger.MAX_32) {
+
+                throw new ZipException(source + " is a ZIP64 archive");
+            }
+
+            entry.name = new String(entry.rawName, (entry.flags & JarModMerger.FLAG_UTF8) != 0 ?
+                StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+
+            entries.add(entry);
+        }
+
+        return entries;
+    }
+
+    private static long findData(Entry entry) throws IOException {
+        ByteBuffer header = JarModMerger.buffer(JarModMerger.LOCAL_HEADER_SIZE);
+        JarModMerger.readFully(entry.channel, header, entry.localHeaderOffset);
+
+        if (header.getInt(0) != JarModMerger.LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header of " + entry.name + " in " + entry.source);
+        }
+
+        int nameLength = Short.toUnsignedInt(header.getShort(26));
+        int extraLength = Short.toUnsignedInt(header.getShort(28));
+
+        return entry.localHeaderOffset + JarModMerger.LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    private static void mergeRecompressing(List<Path> inputs, Path output) throws IOException {
+        List<ZipFile> zipFiles = new ArrayList<>();
+
+        try {
+            Map<String, ZipFile> owners = new LinkedHashMap<>();
+
+            for (Path input : inputs) {
+                ZipFile zipFile = new ZipFile(input.toFile());
+                zipFiles.add(zipFile);
+
+                Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+                while (enumeration.hasMoreElements()) {
+                    owners.put(enumeration.nextElement().getName(), zipFile);
+                }
+            }
+
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(output));
+                 ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+
+                for (Map.Entry<String, ZipFile> owner : owners.entrySet()) {
+                    ZipEntry entry = owner.getValue().getEntry(owner.getKey());
+
+                    ZipEntry newEntry = new ZipEntry(entry.getName());
+                    newEntry.setTime(entry.getTime());
+                    zipOutputStream.putNextEntry(newEntry);
+
+                    try (InputStream inputStream = owner.getValue().getInputStream(entry)) {
+                        inputStream.transferTo(zipOutputStream);
+                    }
+
+                    zipOutputStream.closeEntry();
+                }
+            }
+        } finally {
+            for (ZipFile zipFile : zipFiles) {
+                zipFile.close();
+            }
+        }
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new ZipException("Unexpected end of file");
+            }
+
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static final class Entry {
+        private final Path source;
+        private final FileChannel channel;
+
+        private String name;
+        private byte[] rawName;
+        private byte[] extra;
+        private int versionMadeBy;
+        private int versionNeeded;
+        private int flags;
+        private int method;
+        private int time;
+        private int date;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private int internalAttributes;
+        private long externalAttributes;
+        private long localHeaderOffset;
+
+        private Entry(Path source, FileChannel channel) {
+            this.source = source;
+            this.channel = channel;
+        }
+    }
+
+    private JarModMerger() {
+        throw new UnsupportedOperationException();
+    }
+}
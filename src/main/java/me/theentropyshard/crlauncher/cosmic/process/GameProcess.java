@@ -0,0 +1,110 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.process;
+
+import me.theentropyshard.crlauncher.instance.Instance;
+
+/**
+ * A running game as seen by the {@link GameSupervisor}, with the resource usage from the last sample
+ */
+public class GameProcess {
+    private final Instance instance;
+    private final Process process;
+    private final long startTime;
+
+    private volatile double cpuPercent;
+    private volatile long rssBytes;
+    private volatile long peakRssBytes;
+    private volatile long cpuTimeNanos;
+    private volatile boolean stopping;
+
+    private long lastSampleNanos;
+
+    public GameProcess(Instance instance, Process process) {
+        this.instance = instance;
+        this.process = process;
+        this.startTime = System.currentTimeMillis();
+        this.rssBytes = -1L;
+        this.peakRssBytes = -1L;
+        this.cpuTimeNanos = -1L;
+    }
+
+    /**
+     * Records a sample, CPU usage is computed from the CPU time used since the previous one
+     *
+     * @param cpuTimeNanos total CPU time of the process, or -1 if unknown
+     * @param rssBytes     resident memory of the process, or -1 if unknown
+     */
+    void sample(long cpuTimeNanos, long rssBytes, long nowNanos) {
+        if (cpuTimeNanos >= 0L && this.cpuTimeNanos >= 0L && nowNanos > this.lastSampleNanos) {
+            this.cpuPercent = (cpuTimeNanos - this.cpuTimeNanos) * 100.0D / (nowNanos - this.lastSampleNanos);
+        }
+
+        if (cpuTimeNanos >= 0L) {
+            this.cpuTimeNanos = cpuTimeNanos;
+        }
+
+        this.lastSampleNanos = nowNanos;
+        this.rssBytes = rssBytes;
+        this.peakRssBytes = Math.max(this.peakRssBytes, rssBytes);
+    }
+
+    public Instance getInstance() {
+        return this.instance;
+    }
+
+    public Process getProcess() {
+        return this.process;
+    }
+
+    public long getPid() {
+        return this.process.pid();
+    }
+
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * @return CPU usage where 100 is one fully used core
+     */
+    public double getCpuPercent() {
+        return this.cpuPercent;
+    }
+
+    public long getRssBytes() {
+        return this.rssBytes;
+    }
+
+    public long getPeakRssBytes() {
+        return this.peakRssBytes;
+    }
+
+    public long getCpuTimeNanos() {
+        return this.cpuTimeNanos;
+    }
+
+    public boolean isStopping() {
+        return this.stopping;
+    }
+
+    void setStopping(boolean stopping) {
+        this.stopping = stopping;
+    }
+}
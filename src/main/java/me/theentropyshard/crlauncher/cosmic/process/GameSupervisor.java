@@ -0,0 +1,285 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.cosmic.process;
+
+import me.theentropyshard.crlauncher.instance.Instance;
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.MathUtils;
+import me.theentropyshard.crlauncher.utils.OperatingSystem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of all running games. While there are any, their CPU and memory usage is sampled every few seconds,
+ * from {@code /proc} on Linux, and through {@link ProcessHandle} elsewhere, where only CPU time is available.
+ * Also limits how many games may run at the same time.
+ */
+public class GameSupervisor {
+    private static final long SAMPLE_INTERVAL_MS = 2000L;
+    private static final long STOP_TIMEOUT_MS = 10_000L;
+
+    // the kernel reports CPU time in USER_HZ, which is 100 on every architecture we run on
+    private static final long CLOCK_TICKS_PER_SECOND = 100L;
+
+    private final List<GameProcess> processes;
+    private final List<Runnable> listeners;
+    private final ScheduledExecutorService scheduler;
+    private final boolean procAvailable;
+
+    private ScheduledFuture<?> sampling;
+    private int reserved;
+    private int maxConcurrentGames;
+
+    public GameSupervisor(int maxConcurrentGames) {
+        this.processes = new CopyOnWriteArrayList<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "CRL-GameSupervisor");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.procAvailable = OperatingSystem.isLinux() && Files.isDirectory(Paths.get("/proc/self"));
+        this.maxConcurrentGames = maxConcurrentGames;
+    }
+
+    /**
+     * Takes one of the slots for a running game, before anything for the launch is prepared
+     *
+     * @return false if as many games as allowed are already running or starting
+     */
+    public synchronized boolean tryReserve() {
+        if (this.maxConcurrentGames > 0 && this.reserved >= this.maxConcurrentGames) {
+            return false;
+        }
+
+        this.reserved++;
+
+        return true;
+    }
+
+    public synchronized void release() {
+        this.reserved = Math.max(0, this.reserved - 1);
+    }
+
+    public void register(Instance instance, Process process) {
+        GameProcess gameProcess = new GameProcess(instance, process);
+        this.processes.add(gameProcess);
+
+        Log.info("Supervising Cosmic Reach process " + process.pid() + " of instance " + instance.getName());
+
+        process.onExit().thenRun(() -> this.unregister(gameProcess));
+
+        synchronized (this) {
+            if (this.sampling == null && !this.processes.isEmpty()) {
+                this.sampling = this.scheduler.scheduleWithFixedDelay(this::sampleAll, 0L,
+                    GameSupervisor.SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        this.fireChanged();
+    }
+
+    private void unregister(GameProcess gameProcess) {
+        this.processes.remove(gameProcess);
+
+        synchronized (this) {
+            if (this.processes.isEmpty() && this.sampling != null) {
+                this.sampling.cancel(false);
+                this.sampling = null;
+            }
+        }
+
+        long lifetime = System.currentTimeMillis() - gameProcess.getStartTime();
+        StringBuilder message = new StringBuilder("Cosmic Reach process " + gameProcess.getPid() + " of instance " +
+            gameProcess.getInstance().getName() + " ran for " + lifetime / 1000L + " s");
+
+        if (gameProcess.getCpuTimeNanos() >= 0L) {
+            message.append(", used ").append(MathUtils.round(gameProcess.getCpuTimeNanos() / 1_000_000_000.0D, 1))
+                .append(" s of CPU time");
+        }
+
+        if (gameProcess.getPeakRssBytes() >= 0L) {
+            message.append(", peak memory ").append(GameSupervisor.toMiB(gameProcess.getPeakRssBytes())).append(" MiB");
+        }
+
+        Log.info(message.toString());
+
+        this.fireChanged();
+    }
+
+    /**
+     * Asks the game to exit, and kills it if it is still running after a timeout. On Windows there is
+     * no way to ask, so the game is terminated right away
+     */
+    public void stop(Instance instance) {
+        GameProcess gameProcess = this.getProcess(instance);
+        if (gameProcess == null || gameProcess.isStopping()) {
+            return;
+        }
+
+        Log.info("Stopping Cosmic Reach process " + gameProcess.getPid() + " of instance " + instance.getName());
+
+        gameProcess.setStopping(true);
+        gameProcess.getProcess().destroy();
+
+        this.scheduler.schedule(() -> {
+            if (gameProcess.getProcess().isAlive()) {
+                Log.warn("Cosmic Reach process " + gameProcess.getPid() + " did not exit in " +
+                    GameSupervisor.STOP_TIMEOUT_MS / 1000L + " s, killing it");
+
+                this.kill(gameProcess);
+            }
+        }, GameSupervisor.STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        this.fireChanged();
+    }
+
+    public void kill(Instance instance) {
+        GameProcess gameProcess = this.getProcess(instance);
+        if (gameProcess == null) {
+            return;
+        }
+
+        Log.info("Killing Cosmic Reach process " + gameProcess.getPid() + " of instance " + instance.getName());
+
+        this.kill(gameProcess);
+    }
+
+    private void kill(GameProcess gameProcess) {
+        gameProcess.setStopping(true);
+        gameProcess.getProcess().descendants().forEach(ProcessHandle::destroyForcibly);
+        gameProcess.getProcess().destroyForcibly();
+
+        this.fireChanged();
+    }
+
+    private void sampleAll() {
+        long now = System.nanoTime();
+
+        for (GameProcess gameProcess : this.processes) {
+            try {
+                this.sample(gameProcess, now);
+            } catch (IOException e) {
+                // the process exited between listing and sampling
+                if (gameProcess.getProcess().isAlive()) {
+                    Log.warn("Could not sample process " + gameProcess.getPid() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        this.fireChanged();
+    }
+
+    private void sample(GameProcess gameProcess, long now) throws IOException {
+        if (this.procAvailable) {
+            Path procDir = Paths.get("/proc", String.valueOf(gameProcess.getPid()));
+
+            gameProcess.sample(
+                GameSupervisor.readCpuTime(procDir.resolve("stat")),
+                GameSupervisor.readRss(procDir.resolve("status")),
+                now
+            );
+        } else {
+            Optional<Duration> cpuTime = gameProcess.getProcess().info().totalCpuDuration();
+
+            gameProcess.sample(cpuTime.map(Duration::toNanos).orElse(-1L), -1L, now);
+        }
+    }
+
+    /**
+     * Reads utime and stime from {@code /proc/<pid>/stat}. The process name in there may contain spaces
+     * and parentheses, so fields are counted from the last closing parenthesis
+     */
+    private static long readCpuTime(Path statFile) throws IOException {
+        String stat = Files.readString(statFile, StandardCharsets.US_ASCII);
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+
+        // fields 14 and 15 of the file, the state (field 3) is the first one after the name
+        long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+
+        return ticks * 1_000_000_000L / GameSupervisor.CLOCK_TICKS_PER_SECOND;
+    }
+
+    private static long readRss(Path statusFile) throws IOException {
+        for (String line : Files.readAllLines(statusFile, StandardCharsets.US_ASCII)) {
+            if (line.startsWith("VmRSS:")) {
+                String value = line.substring("VmRSS:".length()).trim();
+
+                return Long.parseLong(value.substring(0, value.indexOf(' '))) * 1024L;
+            }
+        }
+
+        return -1L;
+    }
+
+    public static double toMiB(long bytes) {
+        return MathUtils.round(bytes / 1024.0D / 1024.0D, 1);
+    }
+
+    private void fireChanged() {
+        this.listeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Adds a listener that is called when games start, stop or exit, and after every sample. It may be called from any thread
+     */
+    public void addListener(Runnable listener) {
+        this.listeners.add(listener);
+    }
+
+    public GameProcess getProcess(Instance instance) {
+        for (GameProcess gameProcess : this.processes) {
+            if (gameProcess.getInstance() == instance) {
+                return gameProcess;
+            }
+        }
+
+        return null;
+    }
+
+    public List<GameProcess> getProcesses() {
+        return new ArrayList<>(this.processes);
+    }
+
+    public synchronized void setMaxConcurrentGames(int maxConcurrentGames) {
+        this.maxConcurrentGames = maxConcurrentGames;
+    }
+
+    public synchronized int getMaxConcurrentGames() {
+        return this.maxConcurrentGames;
+    }
+
+    public void shutdown() {
+        this.scheduler.shutdownNow();
+    }
+}
@@ -20,11 +20,10 @@ package me.theentropyshard.crlauncher.github;
 
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.network.HttpRequest;
+import me.theentropyshard.crlauncher.network.download.DownloadPriority;
 import me.theentropyshard.crlauncher.network.download.HttpDownload;
 import me.theentropyshard.crlauncher.network.progress.ProgressListener;
-import me.theentropyshard.crlauncher.network.progress.ProgressNetworkInterceptor;
 import me.theentropyshard.crlauncher.utils.json.Json;
-import okhttp3.OkHttpClient;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -52,17 +51,14 @@ public class GithubApi {
     public void downloadRelease(Path saveAs, GithubRelease release, int index, ProgressListener listener) throws IOException {
         GithubRelease.Asset asset = release.assets.get(index);
 
-        OkHttpClient httpClient = CRLauncher.getInstance().getHttpClient().newBuilder()
-                .addNetworkInterceptor(new ProgressNetworkInterceptor(listener))
-                .build();
-
         HttpDownload download = new HttpDownload.Builder()
                 .url(asset.browser_download_url)
                 .saveAs(saveAs)
                 .expectedSize(asset.size)
-                .httpClient(httpClient)
+                .httpClient(CRLauncher.getInstance().getHttpClient())
+                .progressListener(listener)
                 .build();
 
-        download.execute();
+        CRLauncher.getInstance().getDownloadScheduler().download(download, DownloadPriority.FOREGROUND);
     }
 }
@@ -0,0 +1,463 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.gui;
+
+import java.awt.*;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Console lines packed into chunks of chars, with line starts and style runs kept as int arrays.
+ * When there are more lines than the retention cap, whole chunks are written to a spill file as plain text,
+ * so memory use does not grow with the length of the session, while export still has everything
+ */
+public class ConsoleLineStore {
+    private static final int CHUNK_CHARS = 64 * 1024;
+    private static final int CHUNK_LINES = 1024;
+    private static final int TAB_SIZE = 4;
+    private static final int STYLE_CACHE_SIZE = 64;
+
+    // System.err goes back into the console, so the store reports its own failures to the real stderr
+    private static final PrintStream STDERR = new PrintStream(new FileOutputStream(FileDescriptor.err), true);
+
+    private final Path spillFile;
+    private final List<Chunk> chunks;
+    private final List<Style> styles;
+    private final Map<Style, Integer> styleIds;
+    private final int[] styleCache;
+
+    private int maxLines;
+    private int lineCount;
+    private long evictedLines;
+    private boolean lineOpen;
+    private int maxLineLength;
+    private Writer spillWriter;
+    private boolean spillFailed;
+
+    public ConsoleLineStore(Path spillFile, int maxLines) {
+        this.spillFile = spillFile;
+        this.chunks = new ArrayList<>();
+        this.styles = new ArrayList<>();
+        this.styleIds = new HashMap<>();
+        this.styleCache = new int[ConsoleLineStore.STYLE_CACHE_SIZE];
+        this.maxLines = Math.max(1, maxLines);
+    }
+
+    public synchronized void append(ConsoleText text) {
+        for (int run = 0; run < text.getRunCount(); run++) {
+            int style = this.styleId(text.getColor(run), text.isBold(run), text.isItalic(run));
+            char[] chars = text.getChars();
+
+            for (int i = text.getStart(run), end = text.getEnd(run); i < end; i++) {
+                char c = chars[i];
+
+                if (c == '\n') {
+                    if (!this.lineOpen) {
+                        this.startLine();
+                    }
+
+                    this.lineOpen = false;
+
+                    continue;
+                }
+
+                if (c == '\r') {
+                    continue;
+                }
+
+                if (!this.lineOpen) {
+                    this.startLine();
+                }
+
+                Chunk chunk = this.lastChunk();
+                chunk.ensureRun(style);
+
+                if (c == '\t') {
+                    int spaces = ConsoleLineStore.TAB_SIZE - chunk.lastLineLength() % ConsoleLineStore.TAB_SIZE;
+                    for (int j = 0; j < spaces; j++) {
+                        chunk.append(' ');
+                    }
+                } else {
+                    chunk.append(c);
+                }
+
+                this.maxLineLength = Math.max(this.maxLineLength, chunk.lastLineLength());
+            }
+        }
+
+        this.evict();
+    }
+
+    private void startLine() {
+        Chunk chunk = this.chunks.isEmpty() ? null : this.lastChunk();
+
+        if (chunk == null || chunk.length >= ConsoleLineStore.CHUNK_CHARS || chunk.lines >= ConsoleLineStore.CHUNK_LINES) {
+            chunk = new Chunk(this.evictedLines + this.lineCount);
+            this.chunks.add(chunk);
+        }
+
+        chunk.startLine();
+        this.lineCount++;
+        this.lineOpen = true;
+    }
+
+    private void evict() {
+        while (this.lineCount > this.maxLines && this.chunks.size() > 1) {
+            Chunk chunk = this.chunks.get(0);
+
+            try {
+                this.spill(chunk);
+            } catch (IOException e) {
+                // the chunk stays in memory and is spilled again with the next eviction, nothing is lost
+                if (!this.spillFailed) {
+                    this.spillFailed = true;
+                    ConsoleLineStore.STDERR.println("Could not spill console lines to " + this.spillFile);
+                    e.printStackTrace(ConsoleLineStore.STDERR);
+                }
+
+                return;
+            }
+
+            this.chunks.remove(0);
+            this.spillFailed = false;
+            this.lineCount -= chunk.lines;
+            this.evictedLines += chunk.lines;
+        }
+    }
+
+    private void spill(Chunk chunk) throws IOException {
+        if (this.spillWriter == null) {
+            Files.createDirectories(this.spillFile.getParent());
+            this.spillWriter = Files.newBufferedWriter(this.spillFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        for (int line = 0; line < chunk.lines; line++) {
+            int start = chunk.lineStarts[line];
+            this.spillWriter.write(chunk.chars, start, chunk.lineEnd(line) - start);
+            this.spillWriter.write('\n');
+        }
+    }
+
+    private int styleId(Color color, boolean bold, boolean italic) {
+        // the same few styles come up run after run, so they are found without creating a key
+        int hash = (color == null ? 0 : color.getRGB()) * 31 + (bold ? 2 : 0) + (italic ? 1 : 0);
+        int slot = (hash ^ (hash >>> 16)) & (ConsoleLineStore.STYLE_CACHE_SIZE - 1);
+
+        int cached = this.styleCache[slot] - 1;
+        if (cached >= 0 && this.styles.get(cached).matches(color, bold, italic)) {
+            return cached;
+        }
+
+        Style style = new Style(color, bold, italic);
+        Integer id = this.styleIds.get(style);
+
+        if (id == null) {
+            id = this.styles.size();
+            this.styles.add(style);
+            this.styleIds.put(style, id);
+        }
+
+        this.styleCache[slot] = id + 1;
+
+        return id;
+    }
+
+    private Chunk lastChunk() {
+        return this.chunks.get(this.chunks.size() - 1);
+    }
+
+    private Chunk chunkOf(long line) {
+        int low = 0;
+        int high = this.chunks.size() - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (this.chunks.get(mid).firstLine <= line) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return this.chunks.get(low);
+    }
+
+    /**
+     * Calls the consumer for every style run of a line
+     *
+     * @param line index of the line among the lines that are kept in memory
+     */
+    public synchronized void forEachRun(int line, RunConsumer consumer) {
+        long absolute = this.evictedLines + line;
+        Chunk chunk = this.chunkOf(absolute);
+        int index = (int) (absolute - chunk.firstLine);
+
+        int lineStart = chunk.lineStarts[index];
+        int lineEnd = chunk.lineEnd(index);
+        int lastRun = index + 1 < chunk.lines ? chunk.lineFirstRun[index + 1] : chunk.runs;
+
+        for (int run = chunk.lineFirstRun[index]; run < lastRun; run++) {
+            int start = chunk.runStarts[run];
+            int end = run + 1 < lastRun ? chunk.runStarts[run + 1] : lineEnd;
+            Style style = this.styles.get(chunk.runStyles[run]);
+
+            consumer.accept(chunk.chars, start, end - start, start - lineStart, style.color, style.bold, style.italic);
+        }
+    }
+
+    public synchronized void appendLine(int line, StringBuilder builder, int from, int to) {
+        long absolute = this.evictedLines + line;
+        Chunk chunk = this.chunkOf(absolute);
+        int index = (int) (absolute - chunk.firstLine);
+
+        int start = chunk.lineStarts[index];
+        int length = chunk.lineEnd(index) - start;
+        int begin = Math.min(Math.max(0, from), length);
+        int end = Math.min(Math.max(begin, to), length);
+
+        builder.append(chunk.chars, start + begin, end - begin);
+    }
+
+    /**
+     * Writes spilled lines and lines in memory, without building the whole text first. Only a copy of the lines
+     * in memory is taken under the lock, the spill file is streamed without it, so the console keeps going
+     */
+    public void writeTo(Writer writer) throws IOException {
+        long spilledBytes = 0L;
+        List<char[]> kept = new ArrayList<>();
+
+        synchronized (this) {
+            if (this.spillWriter != null) {
+                this.spillWriter.flush();
+                spilledBytes = Files.size(this.spillFile);
+            }
+
+            for (Chunk chunk : this.chunks) {
+                kept.add(chunk.toText());
+            }
+        }
+
+        // lines spilled after the copy was taken are in the copy, so the file is only read up to where it was
+        if (spilledBytes > 0L) {
+            try (InputStream in = Files.newInputStream(this.spillFile);
+                 Reader reader = new InputStreamReader(new LimitedInputStream(in, spilledBytes), StandardCharsets.UTF_8)) {
+
+                reader.transferTo(writer);
+            }
+        }
+
+        for (char[] text : kept) {
+            writer.write(text);
+        }
+    }
+
+    public synchronized void clear() {
+        this.chunks.clear();
+        this.lineCount = 0;
+        this.evictedLines = 0L;
+        this.lineOpen = false;
+        this.maxLineLength = 0;
+
+        if (this.spillWriter != null) {
+            try {
+                this.spillWriter.close();
+                Files.deleteIfExists(this.spillFile);
+            } catch (IOException e) {
+                e.printStackTrace(ConsoleLineStore.STDERR);
+            }
+
+            this.spillWriter = null;
+            this.spillFailed = false;
+        }
+    }
+
+    public synchronized void setMaxLines(int maxLines) {
+        this.maxLines = Math.max(1, maxLines);
+        this.evict();
+    }
+
+    public synchronized int getLineCount() {
+        return this.lineCount;
+    }
+
+    public synchronized long getEvictedLines() {
+        return this.evictedLines;
+    }
+
+    public synchronized int getMaxLineLength() {
+        return this.maxLineLength;
+    }
+
+    public synchronized int getLineLength(int line) {
+        long absolute = this.evictedLines + line;
+        Chunk chunk = this.chunkOf(absolute);
+        int index = (int) (absolute - chunk.firstLine);
+
+        return chunk.lineEnd(index) - chunk.lineStarts[index];
+    }
+
+    @FunctionalInterface
+    public interface RunConsumer {
+        void accept(char[] chars, int offset, int length, int column, Color color, boolean bold, boolean italic);
+    }
+
+    private record Style(Color color, boolean bold, boolean italic) {
+        private boolean matches(Color color, boolean bold, boolean italic) {
+            return this.bold == bold && this.italic == italic && Objects.equals(this.color, color);
+        }
+    }
+
+    private static final class Chunk {
+        private final long firstLine;
+
+        private char[] chars;
+        private int length;
+
+        private int[] lineStarts;
+        private int[] lineFirstRun;
+        private int lines;
+
+        private int[] runStarts;
+        private int[] runStyles;
+        private int runs;
+
+        private Chunk(long firstLine) {
+            this.firstLine = firstLine;
+            this.chars = new char[1024];
+            this.lineStarts = new int[64];
+            this.lineFirstRun = new int[64];
+            this.runStarts = new int[64];
+            this.runStyles = new int[64];
+        }
+
+        private void startLine() {
+            if (this.lines == this.lineStarts.length) {
+                this.lineStarts = Arrays.copyOf(this.lineStarts, this.lines * 2);
+                this.lineFirstRun = Arrays.copyOf(this.lineFirstRun, this.lines * 2);
+            }
+
+            this.lineStarts[this.lines] = this.length;
+            this.lineFirstRun[this.lines] = this.runs;
+            this.lines++;
+        }
+
+        private void ensureRun(int style) {
+            if (this.runs > this.lineFirstRun[this.lines - 1] && this.runStyles[this.runs - 1] == style) {
+                return;
+            }
+
+            if (this.runs == this.runStarts.length) {
+                this.runStarts = Arrays.copyOf(this.runStarts, this.runs * 2);
+                this.runStyles = Arrays.copyOf(this.runStyles, this.runs * 2);
+            }
+
+            this.runStarts[this.runs] = this.length;
+            this.runStyles[this.runs] = style;
+            this.runs++;
+        }
+
+        private void append(char c) {
+            if (this.length == this.chars.length) {
+                this.chars = Arrays.copyOf(this.chars, this.length * 2);
+            }
+
+            this.chars[this.length++] = c;
+        }
+
+        private int lastLineLength() {
+            return this.length - this.lineStarts[this.lines - 1];
+        }
+
+        private int lineEnd(int line) {
+            return line + 1 < this.lines ? this.lineStarts[line + 1] : this.length;
+        }
+
+        private char[] toText() {
+            char[] text = new char[this.length + this.lines];
+            int position = 0;
+
+            for (int line = 0; line < this.lines; line++) {
+                int start = this.lineStarts[line];
+                int length = this.lineEnd(line) - start;
+
+                System.arraycopy(this.chars, start, text, position, length);
+                position += length;
+                text[position++] = '\n';
+            }
+
+            return text;
+        }
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining <= 0L) {
+                return -1;
+            }
+
+            int b = super.read();
+            if (b != -1) {
+                this.remaining--;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.remaining <= 0L) {
+                return -1;
+            }
+
+            int read = super.read(b, off, (int) Math.min(len, this.remaining));
+            if (read > 0) {
+                this.remaining -= read;
+            }
+
+            return read;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.gui;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Styled runs of text, collected off the EDT and appended to the console in one edit.
+ * The text is copied into one char buffer, and an instance is meant to be cleared and filled again
+ * instead of creating a new one every time
+ */
+public class ConsoleText {
+    private static final int BOLD = 1;
+    private static final int ITALIC = 2;
+
+    private char[] chars;
+    private int length;
+
+    private int[] runStarts;
+    private Color[] runColors;
+    private byte[] runFlags;
+    private int runs;
+
+    public ConsoleText() {
+        this.chars = new char[1024];
+        this.runStarts = new int[16];
+        this.runColors = new Color[16];
+        this.runFlags = new byte[16];
+    }
+
+    public ConsoleText append(String text, Color color, boolean bold) {
+        return this.append(text, color, bold, false);
+    }
+
+    public ConsoleText append(CharSequence text, Color color, boolean bold, boolean italic) {
+        return this.append(text, 0, text.length(), color, bold, italic);
+    }
+
+    public ConsoleText append(CharSequence text, int start, int end, Color color, boolean bold, boolean italic) {
+        if (start == end) {
+            return this;
+        }
+
+        this.startRun(end - start, color, ConsoleText.flags(bold, italic));
+
+        if (text instanceof String s) {
+            s.getChars(start, end, this.chars, this.length);
+        } else {
+            for (int i = start; i < end; i++) {
+                this.chars[this.length + i - start] = text.charAt(i);
+            }
+        }
+
+        this.length += end - start;
+
+        return this;
+    }
+
+    public ConsoleText append(char[] chars, int offset, int length, Color color, boolean bold, boolean italic) {
+        return this.append(chars, offset, length, color, ConsoleText.flags(bold, italic));
+    }
+
+    private ConsoleText append(char[] chars, int offset, int length, Color color, int flags) {
+        if (length == 0) {
+            return this;
+        }
+
+        this.startRun(length, color, flags);
+
+        System.arraycopy(chars, offset, this.chars, this.length, length);
+        this.length += length;
+
+        return this;
+    }
+
+    /**
+     * Makes room for the text and starts a new run for it, unless the last run has the same style
+     */
+    private void startRun(int length, Color color, int flags) {
+        if (this.length + length > this.chars.length) {
+            this.chars = Arrays.copyOf(this.chars, Math.max(this.chars.length * 2, this.length + length));
+        }
+
+        if (this.runs > 0 && this.runFlags[this.runs - 1] == flags && Objects.equals(this.runColors[this.runs - 1], color)) {
+            return;
+        }
+
+        if (this.runs == this.runStarts.length) {
+            int capacity = this.runs * 2;
+
+            this.runStarts = Arrays.copyOf(this.runStarts, capacity);
+            this.runColors = Arrays.copyOf(this.runColors, capacity);
+            this.runFlags = Arrays.copyOf(this.runFlags, capacity);
+        }
+
+        this.runStarts[this.runs] = this.length;
+        this.runColors[this.runs] = color;
+        this.runFlags[this.runs] = (byte) flags;
+        this.runs++;
+    }
+
+    public void append(ConsoleText other) {
+        for (int run = 0; run < other.runs; run++) {
+            int start = other.runStarts[run];
+
+            this.append(other.chars, start, other.getEnd(run) - start, other.runColors[run], other.runFlags[run]);
+        }
+    }
+
+    /**
+     * Forgets all text, keeping the buffers for the next fill
+     */
+    public void clear() {
+        Arrays.fill(this.runColors, 0, this.runs, null);
+
+        this.runs = 0;
+        this.length = 0;
+    }
+
+    public boolean isEmpty() {
+        return this.runs == 0;
+    }
+
+    public int length() {
+        return this.length;
+    }
+
+    public int getRunCount() {
+        return this.runs;
+    }
+
+    /**
+     * @return buffer holding the text of all runs, a run is from {@link #getStart(int)} to {@link #getEnd(int)}
+     */
+    public char[] getChars() {
+        return this.chars;
+    }
+
+    public int getStart(int run) {
+        return this.runStarts[run];
+    }
+
+    public int getEnd(int run) {
+        return run + 1 < this.runs ? this.runStarts[run + 1] : this.length;
+    }
+
+    public Color getColor(int run) {
+        return this.runColors[run];
+    }
+
+    public boolean isBold(int run) {
+        return (this.runFlags[run] & ConsoleText.BOLD) != 0;
+    }
+
+    public boolean isItalic(int run) {
+        return (this.runFlags[run] & ConsoleText.ITALIC) != 0;
+    }
+
+    private static int flags(boolean bold, boolean italic) {
+        return (bold ? ConsoleText.BOLD : 0) | (italic ? ConsoleText.ITALIC : 0);
+    }
+}
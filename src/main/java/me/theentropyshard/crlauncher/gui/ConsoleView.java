@@ -0,0 +1,300 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.gui;
+
+import me.theentropyshard.crlauncher.utils.OperatingSystem;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * Paints only the lines of a {@link ConsoleLineStore} that are inside the clip. Relies on a monospaced font,
+ * so that a column maps to an x coordinate directly. Selection is kept in absolute line numbers,
+ * so it stays in place when old lines are evicted
+ */
+public class ConsoleView extends JComponent implements Scrollable {
+    private static final int PADDING = 4;
+
+    private final ConsoleLineStore store;
+
+    private Font boldFont;
+    private Font italicFont;
+    private Font boldItalicFont;
+    private long anchorLine = -1L;
+    private int anchorColumn;
+    private long caretLine = -1L;
+    private int caretColumn;
+
+    public ConsoleView(ConsoleLineStore store, Font font) {
+        this.store = store;
+
+        this.setFont(font);
+        this.updateUI();
+        this.setOpaque(true);
+        this.setFocusable(true);
+        this.setCursor(Cursor.getPredefinedCursor(Cursor.TEXT_CURSOR));
+
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (!SwingUtilities.isLeftMouseButton(e)) {
+                    return;
+                }
+
+                ConsoleView.this.requestFocusInWindow();
+
+                ConsoleView.this.anchorLine = ConsoleView.this.lineAt(e.getY());
+                ConsoleView.this.anchorColumn = ConsoleView.this.columnAt(e.getX());
+                ConsoleView.this.caretLine = ConsoleView.this.anchorLine;
+                ConsoleView.this.caretColumn = ConsoleView.this.anchorColumn;
+                ConsoleView.this.repaint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (ConsoleView.this.anchorLine == -1L) {
+                    return;
+                }
+
+                ConsoleView.this.caretLine = ConsoleView.this.lineAt(e.getY());
+                ConsoleView.this.caretColumn = ConsoleView.this.columnAt(e.getX());
+                ConsoleView.this.scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+                ConsoleView.this.repaint();
+            }
+        };
+
+        this.addMouseListener(mouseAdapter);
+        this.addMouseMotionListener(mouseAdapter);
+
+        this.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_C, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()), "copy");
+        this.getActionMap().put("copy", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String text = ConsoleView.this.getSelectedText();
+
+                if (text != null) {
+                    OperatingSystem.copyToClipboard(text);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void updateUI() {
+        super.updateUI();
+
+        this.setBackground(UIManager.getColor("TextPane.background"));
+        this.setForeground(UIManager.getColor("TextPane.foreground"));
+    }
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+
+        this.boldFont = font.deriveFont(Font.BOLD);
+        this.italicFont = font.deriveFont(Font.ITALIC);
+        this.boldItalicFont = font.deriveFont(Font.BOLD | Font.ITALIC);
+        this.revalidate();
+        this.repaint();
+    }
+
+    /**
+     * Must be called on the EDT after lines were appended, evicted or cleared
+     */
+    public void linesChanged() {
+        this.revalidate();
+        this.repaint();
+    }
+
+    public void clearSelection() {
+        this.anchorLine = -1L;
+        this.caretLine = -1L;
+        this.repaint();
+    }
+
+    /**
+     * @return selected text, or null if nothing is selected
+     */
+    public String getSelectedText() {
+        if (this.anchorLine == -1L || (this.anchorLine == this.caretLine && this.anchorColumn == this.caretColumn)) {
+            return null;
+        }
+
+        long evicted = this.store.getEvictedLines();
+        int lineCount = this.store.getLineCount();
+
+        long startLine = Math.min(this.anchorLine, this.caretLine);
+        long endLine = Math.max(this.anchorLine, this.caretLine);
+        int startColumn = this.anchorLine < this.caretLine ? this.anchorColumn :
+            this.anchorLine > this.caretLine ? this.caretColumn : Math.min(this.anchorColumn, this.caretColumn);
+        int endColumn = this.anchorLine < this.caretLine ? this.caretColumn :
+            this.anchorLine > this.caretLine ? this.anchorColumn : Math.max(this.anchorColumn, this.caretColumn);
+
+        if (startLine < evicted) {
+            startLine = evicted;
+            startColumn = 0;
+        }
+
+        endLine = Math.min(endLine, evicted + lineCount - 1);
+
+        StringBuilder builder = new StringBuilder();
+
+        for (long line = startLine; line <= endLine; line++) {
+            int from = line == startLine ? startColumn : 0;
+            int to = line == endLine ? endColumn : Integer.MAX_VALUE;
+
+            this.store.appendLine((int) (line - evicted), builder, from, to);
+
+            if (line != endLine) {
+                builder.append('\n');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private long lineAt(int y) {
+        long line = Math.max(0, (y - ConsoleView.PADDING) / this.getLineHeight());
+        int lineCount = this.store.getLineCount();
+
+        return this.store.getEvictedLines() + Math.min(line, Math.max(0, lineCount - 1));
+    }
+
+    private int columnAt(int x) {
+        int charWidth = this.getCharWidth();
+
+        return Math.max(0, (x - ConsoleView.PADDING + charWidth / 2) / charWidth);
+    }
+
+    public int getLineHeight() {
+        return this.getFontMetrics(this.getFont()).getHeight();
+    }
+
+    private int getCharWidth() {
+        return Math.max(1, this.getFontMetrics(this.getFont()).charWidth('m'));
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(
+            ConsoleView.PADDING * 2 + this.store.getMaxLineLength() * this.getCharWidth(),
+            ConsoleView.PADDING * 2 + this.store.getLineCount() * this.getLineHeight()
+        );
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        Rectangle clip = g.getClipBounds();
+        g.setColor(this.getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        FontMetrics metrics = this.getFontMetrics(this.getFont());
+        int lineHeight = metrics.getHeight();
+        int ascent = metrics.getAscent();
+        int charWidth = this.getCharWidth();
+
+        int lineCount = this.store.getLineCount();
+        long evicted = this.store.getEvictedLines();
+
+        int first = Math.max(0, (clip.y - ConsoleView.PADDING) / lineHeight);
+        int last = Math.min(lineCount - 1, (clip.y + clip.height - ConsoleView.PADDING) / lineHeight);
+
+        Color foreground = this.getForeground();
+        Color selection = UIManager.getColor("TextArea.selectionBackground");
+
+        for (int line = first; line <= last; line++) {
+            int y = ConsoleView.PADDING + line * lineHeight;
+
+            this.paintSelection(g, evicted + line, y, lineHeight, charWidth, selection);
+
+            int baseline = y + ascent;
+
+            this.store.forEachRun(line, (chars, offset, length, column, color, bold, italic) -> {
+                g.setColor(color == null ? foreground : color);
+                g.setFont(this.getFont(bold, italic));
+                g.drawChars(chars, offset, length, ConsoleView.PADDING + column * charWidth, baseline);
+            });
+        }
+    }
+
+    private Font getFont(boolean bold, boolean italic) {
+        if (bold) {
+            return italic ? this.boldItalicFont : this.boldFont;
+        }
+
+        return italic ? this.italicFont : this.getFont();
+    }
+
+    private void paintSelection(Graphics g, long line, int y, int lineHeight, int charWidth, Color color) {
+        if (this.anchorLine == -1L || color == null) {
+            return;
+        }
+
+        long startLine = Math.min(this.anchorLine, this.caretLine);
+        long endLine = Math.max(this.anchorLine, this.caretLine);
+
+        if (line < startLine || line > endLine) {
+            return;
+        }
+
+        boolean forward = this.anchorLine < this.caretLine ||
+            (this.anchorLine == this.caretLine && this.anchorColumn <= this.caretColumn);
+        int startColumn = line == startLine ? (forward ? this.anchorColumn : this.caretColumn) : 0;
+        int endColumn = line == endLine ? (forward ? this.caretColumn : this.anchorColumn) : this.store.getMaxLineLength() + 1;
+
+        if (endColumn <= startColumn) {
+            return;
+        }
+
+        g.setColor(color);
+        g.fillRect(ConsoleView.PADDING + startColumn * charWidth, y, (endColumn - startColumn) * charWidth, lineHeight);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return this.getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? this.getLineHeight() : this.getCharWidth();
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return this.getParent() instanceof JViewport viewport && viewport.getWidth() > this.getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return this.getParent() instanceof JViewport viewport && viewport.getHeight() > this.getPreferredSize().height;
+    }
+}
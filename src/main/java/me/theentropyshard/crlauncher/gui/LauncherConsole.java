@@ -18,16 +18,30 @@
 
 package me.theentropyshard.crlauncher.gui;
 
+import com.formdev.flatlaf.FlatClientProperties;
 import com.formdev.flatlaf.ui.FlatScrollPaneUI;
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.Language;
+import me.theentropyshard.crlauncher.Settings;
+import me.theentropyshard.crlauncher.cosmic.logs.LogSearchIndex;
+import me.theentropyshard.crlauncher.gui.utils.MessageBox;
+import me.theentropyshard.crlauncher.gui.utils.Worker;
+import me.theentropyshard.crlauncher.logging.Log;
 import me.theentropyshard.crlauncher.utils.OperatingSystem;
 
 import javax.swing.*;
-import javax.swing.text.*;
 import java.awt.*;
 import java.awt.event.MouseWheelListener;
 import java.awt.event.WindowListener;
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class LauncherConsole {
     private static final int DEFAULT_X = 80;
@@ -36,42 +50,53 @@ public class LauncherConsole {
     private static final int INITIAL_HEIGHT = 280;
     private static final int INITIAL_FONT_SIZE = 14;
     private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, LauncherConsole.INITIAL_FONT_SIZE);
+    private static final int MAX_PENDING_CHARS = 1024 * 1024;
+    private static final int MAX_SEARCH_HITS = 50;
+    private static final DateTimeFormatter HIT_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+        .withZone(ZoneId.systemDefault());
 
     public static final String SCROLL_DOWN = "gui.console.scrollDown";
     public static final String COPY = "gui.console.copyButton";
     public static final String CLEAR = "gui.console.clearButton";
+    public static final String EXPORT = "gui.console.exportButton";
+    public static final String SEARCH = "gui.console.searchPlaceholder";
     public static final String TITLE = "gui.console.title";
 
     private final JCheckBox scrollDown;
     public static LauncherConsole instance;
-    private final JTextPane textPane;
-    private final SimpleAttributeSet attrs;
+    private final ConsoleLineStore store;
+    private final ConsoleView view;
+    private final Object pendingLock;
     private final JFrame frame;
     private final JScrollPane scrollPane;
     private final JButton copyButton;
     private final JButton clearButton;
+    private final JButton exportButton;
+    private final JTextField searchField;
+
+    private ConsoleText pending;
+    private ConsoleText flushing;
+    private boolean flushScheduled;
 
     public LauncherConsole() {
-        this.textPane = new JTextPane() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                ((Graphics2D) g).setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Settings settings = CRLauncher.getInstance().getSettings();
 
-                super.paintComponent(g);
-            }
-        };
-        this.textPane.setPreferredSize(new Dimension(LauncherConsole.INITIAL_WIDTH, LauncherConsole.INITIAL_HEIGHT));
-        this.textPane.setFont(LauncherConsole.FONT);
-        //this.textPane.setEditorKit(new WrapEditorKit());
-        this.textPane.setEditable(false);
+        this.store = new ConsoleLineStore(
+            CRLauncher.getInstance().getWorkDir().resolve("logs").resolve("console-spill.txt"),
+            settings.consoleMaxLines
+        );
+        this.view = new ConsoleView(this.store, LauncherConsole.FONT);
 
-        this.attrs = new SimpleAttributeSet();
+        this.pendingLock = new Object();
+        this.pending = new ConsoleText();
+        this.flushing = new ConsoleText();
 
         this.scrollPane = new JScrollPane(
-            this.textPane,
+            this.view,
             JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
             JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS
         );
+        this.scrollPane.setPreferredSize(new Dimension(LauncherConsole.INITIAL_WIDTH, LauncherConsole.INITIAL_HEIGHT));
         this.scrollPane.setUI(new FlatScrollPaneUI() {
             @Override
             protected MouseWheelListener createMouseWheelListener() {
@@ -91,8 +116,13 @@ public class LauncherConsole {
 
         Language language = CRLauncher.getInstance().getLanguage();
 
+        this.searchField = new JTextField(24);
+        this.searchField.putClientProperty(FlatClientProperties.PLACEHOLDER_TEXT, language.getString(LauncherConsole.SEARCH));
+        this.searchField.addActionListener(e -> this.search(this.searchField.getText()));
+        bottomPanel.add(this.searchField);
+
         this.scrollDown = new JCheckBox(language.getString(LauncherConsole.SCROLL_DOWN));
-        this.scrollDown.setSelected(CRLauncher.getInstance().getSettings().consoleScrollDown);
+        this.scrollDown.setSelected(settings.consoleScrollDown);
         this.scrollDown.addActionListener(e -> {
             CRLauncher.getInstance().getSettings().consoleScrollDown = this.scrollDown.isSelected();
             this.scrollToBottom();
@@ -102,13 +132,33 @@ public class LauncherConsole {
 
         this.copyButton = new JButton(language.getString(LauncherConsole.COPY));
         this.copyButton.addActionListener(e -> {
-            OperatingSystem.copyToClipboard(this.textPane.getText());
+            String text = this.view.getSelectedText();
+
+            if (text == null) {
+                StringBuilder builder = new StringBuilder();
+
+                int lineCount = this.store.getLineCount();
+                for (int line = 0; line < lineCount; line++) {
+                    this.store.appendLine(line, builder, 0, Integer.MAX_VALUE);
+                    builder.append('\n');
+                }
+
+                text = builder.toString();
+            }
+
+            OperatingSystem.copyToClipboard(text);
         });
         bottomPanel.add(this.copyButton);
 
+        this.exportButton = new JButton(language.getString(LauncherConsole.EXPORT));
+        this.exportButton.addActionListener(e -> this.export());
+        bottomPanel.add(this.exportButton);
+
         this.clearButton = new JButton(language.getString(LauncherConsole.CLEAR));
         this.clearButton.addActionListener(e -> {
-            this.textPane.setText("");
+            this.store.clear();
+            this.view.clearSelection();
+            this.view.linesChanged();
         });
         bottomPanel.add(this.clearButton);
 
@@ -138,84 +188,143 @@ public class LauncherConsole {
         this.frame.addWindowListener(listener);
     }
 
-    public LauncherConsole setColor(Color c) {
-        SwingUtilities.invokeLater(() -> {
-            StyleConstants.setForeground(this.attrs, c);
-        });
+    /**
+     * Queues text to be appended on the EDT. Everything written until the EDT gets to it is appended in one edit,
+     * and a writer that gets too far ahead of the EDT waits for it instead of growing the queue without bounds
+     */
+    public void write(ConsoleText text) {
+        synchronized (this.pendingLock) {
+            while (this.pending.length() >= LauncherConsole.MAX_PENDING_CHARS && !SwingUtilities.isEventDispatchThread()) {
+                try {
+                    this.pendingLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    break;
+                }
+            }
+
+            this.pending.append(text);
 
-        return this;
+            if (!this.flushScheduled) {
+                this.flushScheduled = true;
+                SwingUtilities.invokeLater(this::flush);
+            }
+        }
     }
 
-    public LauncherConsole setBold(boolean bold) {
-        SwingUtilities.invokeLater(() -> {
-            StyleConstants.setBold(this.attrs, bold);
-        });
+    private void flush() {
+        ConsoleText text;
 
-        return this;
-    }
+        synchronized (this.pendingLock) {
+            // the two texts take turns, one is filled by writers while the other is appended here
+            text = this.pending;
+            this.pending = this.flushing;
+            this.flushScheduled = false;
 
-    public void write(String line) {
-        SwingUtilities.invokeLater(() -> {
-            Document document = this.textPane.getDocument();
+            this.pendingLock.notifyAll();
+        }
 
-            try {
-                document.insertString(document.getLength(), line, this.attrs);
-            } catch (BadLocationException e) {
-                e.printStackTrace();
-            }
+        long evicted = this.store.getEvictedLines();
+        try {
+            this.store.append(text);
+        } finally {
+            text.clear();
+            this.flushing = text;
+        }
+        evicted = this.store.getEvictedLines() - evicted;
+
+        this.view.linesChanged();
+        this.scrollPane.validate();
 
+        if (this.scrollDown.isSelected()) {
             this.scrollToBottom();
-        });
+        } else if (evicted > 0) {
+            // keep the lines that are being looked at in place when the ones above them go away
+            JViewport viewport = this.scrollPane.getViewport();
+            Point position = viewport.getViewPosition();
+            position.y = (int) Math.max(0L, position.y - evicted * this.view.getLineHeight());
+            viewport.setViewPosition(position);
+        }
     }
 
-    public void reloadLanguage() {
-        Language language = CRLauncher.getInstance().getLanguage();
+    private void search(String query) {
+        if (query.isBlank()) {
+            return;
+        }
 
-        this.frame.setTitle(language.getString(LauncherConsole.TITLE));
-        this.scrollDown.setText(language.getString(LauncherConsole.SCROLL_DOWN));
-        this.copyButton.setText(language.getString(LauncherConsole.COPY));
-        this.clearButton.setText(language.getString(LauncherConsole.CLEAR));
+        new Worker<Void, Void>("searching logs") {
+            @Override
+            protected Void work() throws Exception {
+                long start = System.nanoTime();
+
+                List<LogSearchIndex.Hit> hits;
+                try {
+                    hits = CRLauncher.getInstance().getLogSearchIndex().search(query);
+                } catch (IllegalArgumentException e) {
+                    Log.console("Search: " + e.getMessage());
+
+                    return null;
+                }
+
+                long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+                Log.console("Search '" + query + "': " + hits.size() + " session(s) in " + (micros / 1000.0) + " ms");
+
+                for (int i = 0; i < Math.min(hits.size(), LauncherConsole.MAX_SEARCH_HITS); i++) {
+                    LogSearchIndex.Hit hit = hits.get(i);
+                    Log.console("  " + LauncherConsole.HIT_FORMATTER.format(Instant.ofEpochMilli(hit.time())) + "  " +
+                        hit.instanceName() + "  " + hit.sessionId());
+                }
+
+                if (hits.size() > LauncherConsole.MAX_SEARCH_HITS) {
+                    Log.console("  ... and " + (hits.size() - LauncherConsole.MAX_SEARCH_HITS) + " more");
+                }
+
+                return null;
+            }
+        }.execute();
     }
 
-    private static final class WrapEditorKit extends StyledEditorKit {
-        private final ViewFactory viewFactory;
+    private void export() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File("console.log"));
 
-        public WrapEditorKit() {
-            this.viewFactory = new WrapColumnFactory();
+        Settings settings = CRLauncher.getInstance().getSettings();
+        if (settings.lastDir != null && !settings.lastDir.isEmpty()) {
+            fileChooser.setCurrentDirectory(new File(settings.lastDir));
         }
 
-        @Override
-        public ViewFactory getViewFactory() {
-            return this.viewFactory;
+        if (fileChooser.showSaveDialog(this.frame) != JFileChooser.APPROVE_OPTION || fileChooser.getSelectedFile() == null) {
+            return;
         }
-    }
 
-    private static final class WrapColumnFactory implements ViewFactory {
-        public View create(Element elem) {
-            String kind = elem.getName();
-
-            return switch (kind) {
-                case AbstractDocument.ContentElementName -> new WrapLabelView(elem);
-                case AbstractDocument.ParagraphElementName -> new ParagraphView(elem);
-                case AbstractDocument.SectionElementName -> new BoxView(elem, View.Y_AXIS);
-                case StyleConstants.ComponentElementName -> new ComponentView(elem);
-                case StyleConstants.IconElementName -> new IconView(elem);
-                default -> new LabelView(elem);
-            };
-        }
+        settings.lastDir = fileChooser.getCurrentDirectory().getAbsolutePath();
+        File file = fileChooser.getSelectedFile();
+
+        new Worker<Void, Void>("exporting console") {
+            @Override
+            protected Void work() throws Exception {
+                try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                    LauncherConsole.this.store.writeTo(writer);
+                } catch (Exception e) {
+                    Log.error("Could not export console to " + file, e);
+
+                    MessageBox.showErrorMessage(LauncherConsole.this.frame, "Could not export console: " + e.getMessage());
+                }
+
+                return null;
+            }
+        }.execute();
     }
 
-    private static final class WrapLabelView extends LabelView {
-        public WrapLabelView(Element element) {
-            super(element);
-        }
+    public void reloadLanguage() {
+        Language language = CRLauncher.getInstance().getLanguage();
 
-        public float getMinimumSpan(int axis) {
-            return switch (axis) {
-                case View.X_AXIS -> 0;
-                case View.Y_AXIS -> super.getMinimumSpan(axis);
-                default -> throw new IllegalArgumentException("Invalid axis: " + axis);
-            };
-        }
+        this.frame.setTitle(language.getString(LauncherConsole.TITLE));
+        this.scrollDown.setText(language.getString(LauncherConsole.SCROLL_DOWN));
+        this.copyButton.setText(language.getString(LauncherConsole.COPY));
+        this.clearButton.setText(language.getString(LauncherConsole.CLEAR));
+        this.exportButton.setText(language.getString(LauncherConsole.EXPORT));
+        this.searchField.putClientProperty(FlatClientProperties.PLACEHOLDER_TEXT, language.getString(LauncherConsole.SEARCH));
     }
 }
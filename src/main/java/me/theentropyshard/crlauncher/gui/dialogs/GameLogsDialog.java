@@ -0,0 +1,255 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.gui.dialogs;
+
+import me.theentropyshard.crlauncher.CRLauncher;
+import me.theentropyshard.crlauncher.Language;
+import me.theentropyshard.crlauncher.cosmic.logs.GameLogStore;
+import me.theentropyshard.crlauncher.cosmic.logs.GameSession;
+import me.theentropyshard.crlauncher.gui.utils.Worker;
+import me.theentropyshard.crlauncher.instance.Instance;
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.TimeUtils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+public class GameLogsDialog extends AppDialog {
+    private static final int TAIL_LINES = 2000;
+    private static final int FOLLOW_INTERVAL_MS = 1000;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+        .withZone(ZoneId.systemDefault());
+
+    private final GameLogStore store;
+    private final DefaultListModel<GameSession> model;
+    private final JList<GameSession> sessionList;
+    private final JTextArea textArea;
+    private final Timer followTimer;
+
+    private GameSession shownSession;
+    private long position;
+    private boolean loading;
+
+    public GameLogsDialog(Instance instance) {
+        super(CRLauncher.frame,
+            CRLauncher.getInstance().getLanguage()
+                .getString("gui.gameLogsDialog.title")
+                .replace("$$INSTANCE_NAME$$", instance.getName()));
+
+        this.store = CRLauncher.getInstance().getGameLogStore();
+
+        JPanel root = new JPanel(new BorderLayout());
+        root.setPreferredSize(new Dimension(900, 480));
+
+        InputMap inputMap = root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "ESCAPE");
+
+        ActionMap actionMap = root.getActionMap();
+        actionMap.put("ESCAPE", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                GameLogsDialog.this.getDialog().dispose();
+            }
+        });
+
+        this.model = new DefaultListModel<>();
+        List<GameSession> sessions = this.store.getSessions(instance);
+        for (int i = sessions.size() - 1; i >= 0; i--) {
+            this.model.addElement(sessions.get(i));
+        }
+
+        Language language = CRLauncher.getInstance().getLanguage();
+        String runningText = language.getString("gui.gameLogsDialog.running");
+        String exitCodeText = language.getString("gui.gameLogsDialog.exitCode");
+
+        this.sessionList = new JList<>(this.model);
+        this.sessionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        this.sessionList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                GameSession session = (GameSession) value;
+
+                String text = GameLogsDialog.FORMATTER.format(Instant.ofEpochMilli(session.getStart()));
+                if (session.isRunning()) {
+                    text = text + " (" + runningText + ")";
+                } else {
+                    String duration = TimeUtils.getHoursMinutesSeconds(session.getDuration() / 1000L);
+                    if (!duration.trim().isEmpty()) {
+                        text = text + " - " + duration.trim();
+                    }
+
+                    text = text + " (" + exitCodeText + " " + session.getExitCode() + ")";
+                }
+
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        this.sessionList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                this.showSession(this.sessionList.getSelectedValue());
+            }
+        });
+
+        this.textArea = new JTextArea();
+        this.textArea.setEditable(false);
+        this.textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        JSplitPane splitPane = new JSplitPane(
+            JSplitPane.HORIZONTAL_SPLIT,
+            new JScrollPane(this.sessionList),
+            new JScrollPane(this.textArea)
+        );
+        splitPane.setDividerLocation(260);
+        root.add(splitPane, BorderLayout.CENTER);
+
+        this.followTimer = new Timer(GameLogsDialog.FOLLOW_INTERVAL_MS, e -> this.follow());
+        this.followTimer.start();
+
+        this.getDialog().addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                GameLogsDialog.this.followTimer.stop();
+            }
+        });
+
+        if (!this.model.isEmpty()) {
+            this.sessionList.setSelectedIndex(0);
+        }
+
+        this.setContent(root);
+        this.center(0);
+        this.setVisible(true);
+    }
+
+    private void showSession(GameSession session) {
+        this.shownSession = session;
+        this.textArea.setText("");
+
+        if (session == null) {
+            return;
+        }
+
+        this.loading = true;
+
+        new Worker<GameLogStore.Tail, Void>("reading game log of session " + session.getId()) {
+            @Override
+            protected GameLogStore.Tail work() throws Exception {
+                return GameLogsDialog.this.store.tail(session, GameLogsDialog.TAIL_LINES);
+            }
+
+            @Override
+            protected void done() {
+                GameLogsDialog.this.loading = false;
+
+                if (GameLogsDialog.this.shownSession != session) {
+                    return;
+                }
+
+                try {
+                    GameLogStore.Tail tail = this.get();
+                    if (tail == null) {
+                        return;
+                    }
+
+                    GameLogsDialog.this.textArea.setText(String.join("\n", tail.lines()));
+                    GameLogsDialog.this.position = tail.position();
+                } catch (InterruptedException | ExecutionException e) {
+                    Log.error(e);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Appends the lines a running game wrote since the last check
+     */
+    private void follow() {
+        GameSession session = this.shownSession;
+        if (session == null || !session.isRunning() || this.loading) {
+            return;
+        }
+
+        this.loading = true;
+        long from = this.position;
+
+        new Worker<List<String>, Void>("following game log of session " + session.getId()) {
+            private long to;
+            private GameSession updated;
+
+            @Override
+            protected List<String> work() throws Exception {
+                // checked before reading, so the lines written right before the game exited are not missed
+                this.updated = GameLogsDialog.this.store.getSession(session.getId());
+
+                List<String> lines = new ArrayList<>();
+                this.to = GameLogsDialog.this.store.read(session, from, lines::add);
+
+                return lines;
+            }
+
+            @Override
+            protected void done() {
+                GameLogsDialog.this.loading = false;
+
+                if (GameLogsDialog.this.shownSession != session) {
+                    return;
+                }
+
+                try {
+                    List<String> lines = this.get();
+                    if (lines == null) {
+                        return;
+                    }
+
+                    JTextArea textArea = GameLogsDialog.this.textArea;
+                    for (String line : lines) {
+                        if (textArea.getDocument().getLength() > 0) {
+                            textArea.append("\n");
+                        }
+
+                        textArea.append(line);
+                    }
+
+                    GameLogsDialog.this.position = this.to;
+
+                    if (this.updated != null && !this.updated.isRunning()) {
+                        GameLogsDialog.this.shownSession = this.updated;
+
+                        int index = GameLogsDialog.this.model.indexOf(session);
+                        if (index != -1) {
+                            GameLogsDialog.this.model.set(index, this.updated);
+                        }
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    Log.error(e);
+                }
+            }
+        }.execute();
+    }
+}
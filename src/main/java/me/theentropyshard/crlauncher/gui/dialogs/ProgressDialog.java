@@ -20,15 +20,30 @@ package me.theentropyshard.crlauncher.gui.dialogs;
 
 import com.formdev.flatlaf.FlatClientProperties;
 import me.theentropyshard.crlauncher.CRLauncher;
+import me.theentropyshard.crlauncher.gui.utils.WindowClosingListener;
 import me.theentropyshard.crlauncher.network.progress.ProgressListener;
+import me.theentropyshard.crlauncher.network.progress.ThroughputMeter;
 import me.theentropyshard.crlauncher.utils.MathUtils;
+import me.theentropyshard.crlauncher.utils.TimeUtils;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ProgressDialog extends AppDialog implements ProgressListener {
+    private static final int REFRESH_INTERVAL_MS = 33;
+
     private final JProgressBar progressBar;
     private final JLabel stageLabel;
+    private final Timer refreshTimer;
+    private final ThroughputMeter throughputMeter;
+    private final AtomicBoolean refreshing;
+
+    private volatile long contentLength;
+    private volatile long downloadedBytes;
+
+    private long shownContentLength = -1L;
+    private long shownDownloadedBytes = -1L;
 
     public ProgressDialog(String title) {
         super(CRLauncher.frame, title);
@@ -47,32 +62,99 @@ public class ProgressDialog extends AppDialog implements ProgressListener {
         this.progressBar.setStringPainted(true);
         root.add(this.progressBar, BorderLayout.SOUTH);
 
+        this.throughputMeter = new ThroughputMeter();
+        this.refreshing = new AtomicBoolean();
+
+        this.refreshTimer = new Timer(ProgressDialog.REFRESH_INTERVAL_MS, e -> this.refresh());
+        this.refreshTimer.setCoalesce(true);
+
         this.setResizable(false);
         this.setContent(root);
         this.center(0);
     }
 
+    /**
+     * Only records the latest values, which are then painted by a timer on the EDT at most ~30 times per second,
+     * so calling this for every chunk of every download does not flood the event queue
+     */
     @Override
     public void update(long contentLength, long downloadedBytes, long bytesThisTime, boolean done) {
+        this.contentLength = contentLength;
+        this.downloadedBytes = downloadedBytes;
+
+        // the timer picks up new values by itself, it only has to be started once
+        if (!this.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
         if (SwingUtilities.isEventDispatchThread()) {
-            this.updateProgress(contentLength, downloadedBytes);
+            this.startRefreshing();
         } else {
-            SwingUtilities.invokeLater(() -> {
-                this.updateProgress(contentLength, downloadedBytes);
-            });
+            SwingUtilities.invokeLater(this::startRefreshing);
         }
     }
 
+    private void startRefreshing() {
+        if (!this.refreshTimer.isRunning()) {
+            this.refresh();
+            this.refreshTimer.start();
+        }
+    }
+
+    private void refresh() {
+        if (!this.getDialog().isDisplayable()) {
+            this.refreshTimer.stop();
+            this.refreshing.set(false);
+
+            return;
+        }
+
+        long contentLength = this.contentLength;
+        long downloadedBytes = this.downloadedBytes;
+
+        this.throughputMeter.sample(downloadedBytes);
+
+        if (contentLength == this.shownContentLength && downloadedBytes == this.shownDownloadedBytes) {
+            return;
+        }
+
+        this.shownContentLength = contentLength;
+        this.shownDownloadedBytes = downloadedBytes;
+
+        this.updateProgress(contentLength, downloadedBytes);
+    }
+
     private void updateProgress(long contentLength, long downloadedBytes) {
+        // the bar only takes ints, so anything over 2 GiB is shown in KiB
+        long scale = contentLength > Integer.MAX_VALUE ? 1024L : 1L;
+
         this.progressBar.setMinimum(0);
-        this.progressBar.setMaximum((int) contentLength);
-        this.progressBar.setValue((int) downloadedBytes);
+        this.progressBar.setMaximum((int) (contentLength / scale));
+        this.progressBar.setValue((int) (downloadedBytes / scale));
 
         String current = String.valueOf(MathUtils.round(downloadedBytes / 1024.0D / 1024.0D, 2));
-        String total = contentLength == 0 ? "<unknown>" :
+        String total = contentLength <= 0 ? "<unknown>" :
                 String.valueOf(MathUtils.round(contentLength / 1024.0D / 1024.0D, 2));
 
-        this.progressBar.setString(current + " MiB / " + total + " MiB");
+        String text = current + " MiB / " + total + " MiB";
+
+        long bytesPerSecond = this.throughputMeter.getBytesPerSecond();
+        if (bytesPerSecond > 0) {
+            text = text + " (" + MathUtils.round(bytesPerSecond / 1024.0D / 1024.0D, 2) + " MiB/s";
+
+            long secondsLeft = contentLength <= 0 ? -1L : this.throughputMeter.getSecondsLeft(contentLength - downloadedBytes);
+            if (secondsLeft > 0) {
+                text = text + ", " + TimeUtils.getHoursMinutesSeconds(secondsLeft) + " left";
+            }
+
+            text = text + ")";
+        }
+
+        this.progressBar.setString(text);
+    }
+
+    public void addCancelListener(Runnable listener) {
+        this.getDialog().addWindowListener(new WindowClosingListener(e -> listener.run()));
     }
 
     public void setStage(String stage) {
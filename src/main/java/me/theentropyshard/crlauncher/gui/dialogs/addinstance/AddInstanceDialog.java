@@ -33,12 +33,14 @@ import me.theentropyshard.crlauncher.logging.Log;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.io.File;
 import java.io.IOException;
 
 public class AddInstanceDialog extends AppDialog {
@@ -49,6 +51,7 @@ public class AddInstanceDialog extends AppDialog {
     public static final String FILTER = "gui.addInstanceDialog.filter";
     public static final String REFRESH_BUTTON = "gui.addInstanceDialog.refreshButton";
     public static final String ADD_BUTTON = "gui.addInstanceDialog.addButton";
+    public static final String IMPORT_BUTTON = "gui.addInstanceDialog.importButton";
     public static final String CANCEL_BUTTON = "gui.addInstanceDialog.cancelButton";
     public static final String EMPTY_NAME_MESSAGE = "messages.gui.addInstanceDialog.instanceNameCannotBeEmpty";
     public static final String GROUP_NAME_EMPTY_MESSAGE = "messages.gui.addInstanceDialog.groupNameCannotBeEmpty";
@@ -211,6 +214,29 @@ public class AddInstanceDialog extends AppDialog {
         });
 
         leftButtonsPanel.add(refreshManifest);
+        leftButtonsPanel.add(Box.createHorizontalStrut(10));
+
+        JButton importButton = new JButton(language.getString(AddInstanceDialog.IMPORT_BUTTON));
+        importButton.addActionListener(e -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setFileFilter(new FileNameExtensionFilter("Archives (*.zip)", "zip"));
+
+            Settings settings = CRLauncher.getInstance().getSettings();
+            if (settings.lastDir != null && !settings.lastDir.isEmpty()) {
+                fileChooser.setCurrentDirectory(new File(settings.lastDir));
+            }
+
+            if (fileChooser.showOpenDialog(this.getDialog()) != JFileChooser.APPROVE_OPTION || fileChooser.getSelectedFile() == null) {
+                return;
+            }
+
+            settings.lastDir = fileChooser.getCurrentDirectory().getAbsolutePath();
+
+            this.getDialog().dispose();
+            playView.importInstance(fileChooser.getSelectedFile().toPath());
+        });
+
+        leftButtonsPanel.add(importButton);
 
         FlowLayout rightLayout = new FlowLayout(FlowLayout.RIGHT);
         rightLayout.setHgap(10);
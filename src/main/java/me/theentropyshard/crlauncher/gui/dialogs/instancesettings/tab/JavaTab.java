@@ -22,6 +22,9 @@ import com.formdev.flatlaf.FlatClientProperties;
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.Language;
 import me.theentropyshard.crlauncher.instance.Instance;
+import me.theentropyshard.crlauncher.java.gc.GcCollector;
+import me.theentropyshard.crlauncher.java.gc.HeapAdvisor;
+import me.theentropyshard.crlauncher.logging.Log;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
@@ -76,17 +79,73 @@ public class JavaTab extends Tab {
             language.getString("gui.instanceSettingsDialog.javaTab.memorySettings.borderName")
         ));
 
+        JPanel gcSettings = new JPanel(new GridLayout(0, 2));
+        JComboBox<GcCollector> collectorCombo = new JComboBox<>(GcCollector.values());
+        collectorCombo.setSelectedItem(instance.getGcCollector());
+        JCheckBox gcLoggingBox = new JCheckBox(
+            language.getString("gui.instanceSettingsDialog.javaTab.gcSettings.gcLogging"));
+        gcLoggingBox.setSelected(instance.isGcLogging());
+        JCheckBox autoTuneBox = new JCheckBox(
+            language.getString("gui.instanceSettingsDialog.javaTab.gcSettings.autoTuneMemory"));
+        autoTuneBox.setSelected(instance.isAutoTuneMemory());
+        JLabel recommendationLabel = new JLabel(
+            language.getString("gui.instanceSettingsDialog.javaTab.gcSettings.noRecommendation"));
+        JButton applyButton = new JButton(
+            language.getString("gui.instanceSettingsDialog.javaTab.gcSettings.applyRecommendation"));
+        applyButton.setEnabled(false);
+
+        HeapAdvisor.Recommendation recommendation = null;
+        try {
+            recommendation = HeapAdvisor.recommend(HeapAdvisor.loadHistory(instance), instance);
+        } catch (IOException e) {
+            Log.error("Could not load GC history of instance " + instance.getName(), e);
+        }
+
+        if (recommendation != null) {
+            HeapAdvisor.Recommendation finalRecommendation = recommendation;
+
+            recommendationLabel.setText(language.getString("gui.instanceSettingsDialog.javaTab.gcSettings.recommendation")
+                .replace("$$MIN$$", String.valueOf(recommendation.minimumMemory()))
+                .replace("$$MAX$$", String.valueOf(recommendation.maximumMemory()))
+                .replace("$$COLLECTOR$$", String.valueOf(recommendation.collector())));
+            recommendationLabel.setToolTipText(recommendation.reason());
+            applyButton.setEnabled(true);
+            applyButton.addActionListener(e -> {
+                minMemoryField.setText(String.valueOf(finalRecommendation.minimumMemory()));
+                maxMemoryField.setText(String.valueOf(finalRecommendation.maximumMemory()));
+                collectorCombo.setSelectedItem(finalRecommendation.collector());
+            });
+        }
+
+        gcSettings.add(new JLabel(
+            language.getString("gui.instanceSettingsDialog.javaTab.gcSettings.collector") + ":"));
+        gcSettings.add(collectorCombo);
+        gcSettings.add(gcLoggingBox);
+        gcSettings.add(autoTuneBox);
+        gcSettings.add(recommendationLabel);
+        gcSettings.add(applyButton);
+        gcSettings.setBorder(new TitledBorder(
+            language.getString("gui.instanceSettingsDialog.javaTab.gcSettings.borderName")
+        ));
+
         gbc.gridy++;
         root.add(javaInstallation, gbc);
 
         gbc.gridy++;
-        gbc.weighty = 1;
         root.add(memorySettings, gbc);
 
+        gbc.gridy++;
+        gbc.weighty = 1;
+        root.add(gcSettings, gbc);
+
         this.getDialog().addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
                 instance.setJavaPath(javaPathTextField.getText());
+                instance.setGcCollector((GcCollector) collectorCombo.getSelectedItem());
+                instance.setGcLogging(gcLoggingBox.isSelected());
+                instance.setAutoTuneMemory(autoTuneBox.isSelected());
+
                 String minMemory = minMemoryField.getText();
                 if (minMemory.isEmpty()) {
                     minMemory = "512";
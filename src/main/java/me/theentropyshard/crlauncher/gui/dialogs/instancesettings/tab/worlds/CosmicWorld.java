@@ -37,6 +37,11 @@ public class CosmicWorld {
      */
     private transient Path worldDir;
 
+    /**
+     * This is not present in worldInfo.json. Size of the world directory in bytes, or -1 if it is not known
+     */
+    private transient long size = -1L;
+
     public CosmicWorld() {
 
     }
@@ -49,6 +54,14 @@ public class CosmicWorld {
         this.worldDir = worldDir;
     }
 
+    public long getSize() {
+        return this.size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
     public int getLatestRegionFileVersion() {
         return this.latestRegionFileVersion;
     }
@@ -26,7 +26,6 @@ import me.theentropyshard.crlauncher.gui.utils.SwingUtils;
 import me.theentropyshard.crlauncher.gui.utils.Worker;
 import me.theentropyshard.crlauncher.instance.Instance;
 import me.theentropyshard.crlauncher.logging.Log;
-import me.theentropyshard.crlauncher.utils.FileUtils;
 import me.theentropyshard.crlauncher.utils.OperatingSystem;
 
 import javax.swing.*;
@@ -119,7 +118,8 @@ public class WorldsTab extends Tab {
                 @Override
                 protected Boolean work() throws Exception {
                     try {
-                        FileUtils.delete(worldDir);
+                        CRLauncher.getInstance().getTrash().discard(worldDir);
+                        CRLauncher.getInstance().getDiskUsage().invalidate(worldDir);
 
                         return true;
                     } catch (IOException ex) {
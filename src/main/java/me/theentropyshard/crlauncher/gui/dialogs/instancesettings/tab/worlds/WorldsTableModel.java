@@ -23,8 +23,10 @@ import me.theentropyshard.crlauncher.Language;
 import me.theentropyshard.crlauncher.gui.utils.SwingUtils;
 import me.theentropyshard.crlauncher.gui.utils.Worker;
 import me.theentropyshard.crlauncher.instance.Instance;
+import me.theentropyshard.crlauncher.utils.DiskUsage;
 import me.theentropyshard.crlauncher.utils.FileUtils;
 import me.theentropyshard.crlauncher.utils.SemanticVersion;
+import me.theentropyshard.crlauncher.utils.StringUtils;
 import me.theentropyshard.crlauncher.utils.json.Json;
 
 import javax.swing.*;
@@ -41,9 +43,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class WorldsTableModel extends AbstractTableModel {
-    private static final Class<?>[] COLUMN_CLASSES = {String.class, String.class, String.class, String.class};
+    private static final Class<?>[] COLUMN_CLASSES = {String.class, String.class, String.class, String.class, String.class};
 
-    private final String[] columnNames = {"Name", "Seed", "Last played", "Created"};
+    private final String[] columnNames = {"Name", "Seed", "Last played", "Created", "Size"};
     private final DateTimeFormatter formatter;
 
     private final List<CosmicWorld> worlds;
@@ -57,6 +59,7 @@ public class WorldsTableModel extends AbstractTableModel {
         this.columnNames[1] = language.getString("gui.instanceSettingsDialog.worldsTab.table.worldSeed");
         this.columnNames[2] = language.getString("gui.instanceSettingsDialog.worldsTab.table.lastPlayed");
         this.columnNames[3] = language.getString("gui.instanceSettingsDialog.worldsTab.table.createdAt");
+        this.columnNames[4] = language.getString("gui.instanceSettingsDialog.worldsTab.table.size");
 
         DateTimeFormatter formatter;
 
@@ -81,6 +84,8 @@ public class WorldsTableModel extends AbstractTableModel {
 
                 List<Path> worldDirs = FileUtils.list(worldsDir);
 
+                DiskUsage diskUsage = CRLauncher.getInstance().getDiskUsage();
+
                 for (Path worldDir : worldDirs) {
                     Path worldInfoFile = worldDir.resolve("worldInfo.json");
 
@@ -107,6 +112,7 @@ public class WorldsTableModel extends AbstractTableModel {
                     }
 
                     world.setWorldDir(worldDir);
+                    world.setSize(diskUsage.getSize(worldDir));
 
                     this.publish(world);
                 }
@@ -122,7 +128,7 @@ public class WorldsTableModel extends AbstractTableModel {
             @Override
             protected void done() {
                 WorldsTableModel.this.fireTableDataChanged();
-                SwingUtils.setJTableColumnsWidth(table, 45, 25, 15, 15);
+                SwingUtils.setJTableColumnsWidth(table, 35, 20, 15, 15, 15);
             }
         }.execute();
     }
@@ -166,6 +172,7 @@ public class WorldsTableModel extends AbstractTableModel {
                 this.formatter.format(
                     WorldsTableModel.fromEpochMillis(updatedWorld.getWorldCreatedEpochMillis())
                 ) : "N/A";
+            case 4 -> world.getSize() < 0L ? "N/A" : StringUtils.formatSize(world.getSize());
             default -> null;
         };
     }
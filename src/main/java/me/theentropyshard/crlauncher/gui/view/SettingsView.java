@@ -22,12 +22,21 @@ import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.Language;
 import me.theentropyshard.crlauncher.Settings;
 import me.theentropyshard.crlauncher.gui.Gui;
+import me.theentropyshard.crlauncher.gui.utils.Worker;
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.DiskUsage;
+import me.theentropyshard.crlauncher.utils.StringUtils;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.awt.event.ItemEvent;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class SettingsView extends JPanel {
 
@@ -51,6 +60,12 @@ public class SettingsView extends JPanel {
     public static final String EXIT_EXIT_LAUNCHER = "gui.settingsView.other.onGameExit.options.exitLauncher";
     public static final String CHECK_FOR_UPDATES = "gui.settingsView.other.checkForUpdatesAtStartup";
     public static final String LANGUAGE = "gui.settingsView.other.language";
+    public static final String MAX_CONCURRENT_GAMES = "gui.settingsView.other.maxConcurrentGames";
+    public static final String DISK_USAGE = "gui.settingsView.diskUsage";
+    public static final String DISK_USAGE_BORDER = "gui.settingsView.diskUsage.borderName";
+    public static final String DISK_USAGE_NOT_CALCULATED = "gui.settingsView.diskUsage.notCalculated";
+    public static final String DISK_USAGE_CALCULATE = "gui.settingsView.diskUsage.calculate";
+    private static final String TOTAL_GROUP = "total";
 
     private final TitledBorder themeSettingsBorder;
     private final JRadioButton darkThemeButton;
@@ -64,9 +79,16 @@ public class SettingsView extends JPanel {
     private final JLabel exitOptionLabel;
     private final JCheckBox checkUpdates;
     private final JLabel languageLabel;
+    private final JLabel maxGamesLabel;
     private final JComboBox<String> whenLaunchesBehavior;
     private final JComboBox<String> whenExitsBehavior;
     private final JComboBox<String> position;
+    private final TitledBorder diskUsageBorder;
+    private final Map<String, JLabel> diskUsageNameLabels;
+    private final Map<String, JLabel> diskUsageSizeLabels;
+    private final JButton calculateDiskUsage;
+
+    private Map<String, Long> diskUsage;
 
     public SettingsView() {
         this.setLayout(new GridBagLayout());
@@ -158,7 +180,7 @@ public class SettingsView extends JPanel {
         }
 
         {
-            JPanel otherSettings = new JPanel(new GridLayout(5, 3));
+            JPanel otherSettings = new JPanel(new GridLayout(6, 3));
             this.otherSettingsBorder = new TitledBorder(language.getString(SettingsView.OTHER_BORDER));
             otherSettings.setBorder(this.otherSettingsBorder);
 
@@ -236,10 +258,126 @@ public class SettingsView extends JPanel {
             });
             otherSettings.add(languageCombo);
 
+            this.maxGamesLabel = new JLabel(language.getString(SettingsView.MAX_CONCURRENT_GAMES) + ": ");
+            otherSettings.add(this.maxGamesLabel);
+
+            JSpinner maxGames = new JSpinner(new SpinnerNumberModel(
+                Math.max(0, CRLauncher.getInstance().getSettings().maxConcurrentGames), 0, 64, 1
+            ));
+            maxGames.addChangeListener(e -> {
+                int limit = (Integer) maxGames.getValue();
+
+                CRLauncher.getInstance().getSettings().maxConcurrentGames = limit;
+                CRLauncher.getInstance().getGameSupervisor().setMaxConcurrentGames(limit);
+            });
+            otherSettings.add(maxGames);
+
             gbc.gridy++;
-            gbc.weighty = 1;
             this.add(otherSettings, gbc);
         }
+
+        {
+            JPanel diskUsageSettings = new JPanel(new GridLayout(0, 2));
+            this.diskUsageBorder = new TitledBorder(language.getString(SettingsView.DISK_USAGE_BORDER));
+            diskUsageSettings.setBorder(this.diskUsageBorder);
+
+            this.diskUsageNameLabels = new LinkedHashMap<>();
+            this.diskUsageSizeLabels = new LinkedHashMap<>();
+
+            // only what is already known is shown here, walking everything is left to the button
+            DiskUsage diskUsage = CRLauncher.getInstance().getDiskUsage();
+            this.diskUsage = new LinkedHashMap<>();
+            CRLauncher.getInstance().getDiskUsageGroups().forEach((group, dirs) -> {
+                this.diskUsage.put(group, diskUsage.getCachedSize(dirs));
+            });
+
+            List<String> groups = new ArrayList<>(this.diskUsage.keySet());
+            groups.add(SettingsView.TOTAL_GROUP);
+
+            for (String group : groups) {
+                JLabel nameLabel = new JLabel();
+                this.diskUsageNameLabels.put(group, nameLabel);
+                diskUsageSettings.add(nameLabel);
+
+                JLabel sizeLabel = new JLabel();
+                this.diskUsageSizeLabels.put(group, sizeLabel);
+                diskUsageSettings.add(sizeLabel);
+            }
+
+            diskUsageSettings.add(Box.createHorizontalGlue());
+
+            this.calculateDiskUsage = new JButton(language.getString(SettingsView.DISK_USAGE_CALCULATE));
+            this.calculateDiskUsage.addActionListener(e -> this.calculateDiskUsage());
+            diskUsageSettings.add(this.calculateDiskUsage);
+
+            this.updateDiskUsageLabels();
+
+            gbc.gridy++;
+            gbc.weighty = 1;
+            this.add(diskUsageSettings, gbc);
+        }
+    }
+
+    private void calculateDiskUsage() {
+        this.calculateDiskUsage.setEnabled(false);
+
+        new Worker<Map<String, Long>, Void>("calculating disk usage") {
+            @Override
+            protected Map<String, Long> work() throws Exception {
+                DiskUsage diskUsage = CRLauncher.getInstance().getDiskUsage();
+
+                Map<String, Long> sizes = new LinkedHashMap<>();
+                for (Map.Entry<String, List<Path>> entry : CRLauncher.getInstance().getDiskUsageGroups().entrySet()) {
+                    // logs, journals and caches grow in place, which directory times do not show
+                    entry.getValue().forEach(diskUsage::invalidate);
+
+                    sizes.put(entry.getKey(), diskUsage.getSize(entry.getValue()));
+                }
+
+                return sizes;
+            }
+
+            @Override
+            protected void done() {
+                SettingsView.this.calculateDiskUsage.setEnabled(true);
+
+                Map<String, Long> sizes;
+                try {
+                    sizes = this.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    Log.error("Unexpected error", e);
+
+                    return;
+                }
+
+                if (sizes != null) {
+                    SettingsView.this.diskUsage = sizes;
+                    SettingsView.this.updateDiskUsageLabels();
+                }
+            }
+        }.execute();
+    }
+
+    private void updateDiskUsageLabels() {
+        Language language = CRLauncher.getInstance().getLanguage();
+
+        long total = 0L;
+        for (long size : this.diskUsage.values()) {
+            total = size < 0L || total < 0L ? -1L : total + size;
+        }
+
+        this.diskUsageNameLabels.forEach((group, label) -> {
+            label.setText(language.getString(SettingsView.DISK_USAGE + "." + group) + ": ");
+        });
+
+        this.diskUsageSizeLabels.forEach((group, label) -> {
+            long size = this.diskUsage.getOrDefault(group, -1L);
+            label.setText(size < 0L ? language.getString(SettingsView.DISK_USAGE_NOT_CALCULATED) :
+                StringUtils.formatSize(size));
+        });
+
+        this.diskUsageSizeLabels.get(SettingsView.TOTAL_GROUP).setText(total < 0L ?
+            language.getString(SettingsView.DISK_USAGE_NOT_CALCULATED) : StringUtils.formatSize(total));
     }
 
     public void reloadLanguage() {
@@ -294,5 +432,10 @@ public class SettingsView extends JPanel {
 
         this.checkUpdates.setText(language.getString(SettingsView.CHECK_FOR_UPDATES));
         this.languageLabel.setText(language.getString(SettingsView.LANGUAGE));
+        this.maxGamesLabel.setText(language.getString(SettingsView.MAX_CONCURRENT_GAMES) + ": ");
+
+        this.diskUsageBorder.setTitle(language.getString(SettingsView.DISK_USAGE_BORDER));
+        this.calculateDiskUsage.setText(language.getString(SettingsView.DISK_USAGE_CALCULATE));
+        this.updateDiskUsageLabels();
     }
 }
@@ -27,15 +27,16 @@ import me.theentropyshard.crlauncher.gui.dialogs.instancesettings.tab.mods.vanil
 import me.theentropyshard.crlauncher.gui.utils.Worker;
 import me.theentropyshard.crlauncher.instance.Instance;
 import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.download.DownloadPriority;
+import me.theentropyshard.crlauncher.network.download.DownloadTask;
 import me.theentropyshard.crlauncher.network.download.HttpDownload;
-import me.theentropyshard.crlauncher.network.progress.ProgressNetworkInterceptor;
 import me.theentropyshard.crlauncher.utils.FileUtils;
 import net.lingala.zip4j.ZipFile;
 import net.lingala.zip4j.model.FileHeader;
-import okhttp3.OkHttpClient;
 
 import javax.swing.*;
 import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 
 public class DataModDownloadWorkerSupplier implements WorkerSupplier {
@@ -56,23 +57,32 @@ public class DataModDownloadWorkerSupplier implements WorkerSupplier {
 
                 ProgressDialog progressDialog = new ProgressDialog("Downloading " + primaryFile.getName());
 
-                OkHttpClient httpClient = CRLauncher.getInstance().getHttpClient().newBuilder()
-                    .addNetworkInterceptor(new ProgressNetworkInterceptor(progressDialog))
-                    .build();
-
                 Path saveAs = DataModDownloadWorkerSupplier.this.instance.getDataModsDir()
                     .resolve(primaryFile.getName());
 
                 HttpDownload download = new HttpDownload.Builder()
                     .url(primaryFile.getUrl())
                     .expectedSize(primaryFile.getSize())
-                    .httpClient(httpClient)
+                    .sha1(primaryFile.getSha1())
+                    .sha512(primaryFile.getSha512())
+                    .httpClient(CRLauncher.getInstance().getHttpClient())
+                    .progressListener(progressDialog)
                     .saveAs(saveAs)
                     .build();
 
+                DownloadTask task = CRLauncher.getInstance().getDownloadScheduler().submit(download, DownloadPriority.USER);
+                progressDialog.addCancelListener(() -> task.cancel(true));
+
                 SwingUtilities.invokeLater(() -> progressDialog.setVisible(true));
-                download.execute();
-                SwingUtilities.invokeLater(() -> progressDialog.getDialog().dispose());
+                try {
+                    task.get();
+                } catch (CancellationException e) {
+                    Log.info("Download of " + primaryFile.getName() + " was cancelled");
+
+                    return null;
+                } finally {
+                    SwingUtilities.invokeLater(() -> progressDialog.getDialog().dispose());
+                }
 
                 String modName;
 
@@ -102,6 +112,10 @@ public class DataModDownloadWorkerSupplier implements WorkerSupplier {
                     return;
                 }
 
+                if (modName == null) {
+                    return;
+                }
+
                 JPanel modsView = DataModDownloadWorkerSupplier.this.modsTab.getModsView();
 
                 if (modsView instanceof DataModsView dataModsView) {
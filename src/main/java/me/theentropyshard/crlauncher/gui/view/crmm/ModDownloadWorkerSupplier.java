@@ -15,16 +15,17 @@ import me.theentropyshard.crlauncher.gui.utils.Worker;
 import me.theentropyshard.crlauncher.instance.Instance;
 import me.theentropyshard.crlauncher.instance.InstanceType;
 import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.download.DownloadPriority;
+import me.theentropyshard.crlauncher.network.download.DownloadTask;
 import me.theentropyshard.crlauncher.network.download.HttpDownload;
-import me.theentropyshard.crlauncher.network.progress.ProgressNetworkInterceptor;
 import me.theentropyshard.crlauncher.utils.StreamUtils;
 import me.theentropyshard.crlauncher.utils.json.Json;
 import net.lingala.zip4j.ZipFile;
 import net.lingala.zip4j.model.FileHeader;
-import okhttp3.OkHttpClient;
 
 import javax.swing.*;
 import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 
 @SuppressWarnings("rawtypes")
@@ -46,10 +47,6 @@ public class ModDownloadWorkerSupplier implements WorkerSupplier {
 
                 ProgressDialog progressDialog = new ProgressDialog("Downloading " + primaryFile.getName());
 
-                OkHttpClient httpClient = CRLauncher.getInstance().getHttpClient().newBuilder()
-                    .addNetworkInterceptor(new ProgressNetworkInterceptor(progressDialog))
-                    .build();
-
                 Path saveAs = switch (ModDownloadWorkerSupplier.this.instance.getType()) {
                     case VANILLA, FABRIC -> null;
                     case QUILT ->
@@ -65,13 +62,26 @@ public class ModDownloadWorkerSupplier implements WorkerSupplier {
                 HttpDownload download = new HttpDownload.Builder()
                     .url(primaryFile.getUrl())
                     .expectedSize(primaryFile.getSize())
-                    .httpClient(httpClient)
+                    .sha1(primaryFile.getSha1())
+                    .sha512(primaryFile.getSha512())
+                    .httpClient(CRLauncher.getInstance().getHttpClient())
+                    .progressListener(progressDialog)
                     .saveAs(saveAs)
                     .build();
 
+                DownloadTask task = CRLauncher.getInstance().getDownloadScheduler().submit(download, DownloadPriority.USER);
+                progressDialog.addCancelListener(() -> task.cancel(true));
+
                 SwingUtilities.invokeLater(() -> progressDialog.setVisible(true));
-                download.execute();
-                SwingUtilities.invokeLater(() -> progressDialog.getDialog().dispose());
+                try {
+                    task.get();
+                } catch (CancellationException e) {
+                    Log.info("Download of " + primaryFile.getName() + " was cancelled");
+
+                    return null;
+                } finally {
+                    SwingUtilities.invokeLater(() -> progressDialog.getDialog().dispose());
+                }
 
                 try (ZipFile file = new ZipFile(saveAs.toFile())) {
                     FileHeader fileHeader = file.getFileHeader(
@@ -120,6 +130,10 @@ public class ModDownloadWorkerSupplier implements WorkerSupplier {
                     return;
                 }
 
+                if (mod == null) {
+                    return;
+                }
+
                 JPanel modsView = ModDownloadWorkerSupplier.this.modsTab.getModsView();
 
                 if (modsView instanceof QuiltModsView quiltModsView) {
@@ -20,10 +20,15 @@ package me.theentropyshard.crlauncher.gui.view.playview;
 
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.Language;
+import me.theentropyshard.crlauncher.Settings;
 import me.theentropyshard.crlauncher.cosmic.CosmicRunner;
 import me.theentropyshard.crlauncher.cosmic.icon.IconManager;
+import me.theentropyshard.crlauncher.cosmic.process.GameProcess;
+import me.theentropyshard.crlauncher.cosmic.process.GameSupervisor;
 import me.theentropyshard.crlauncher.gui.components.AddInstanceItem;
 import me.theentropyshard.crlauncher.gui.components.InstanceItem;
+import me.theentropyshard.crlauncher.gui.dialogs.GameLogsDialog;
+import me.theentropyshard.crlauncher.gui.dialogs.ProgressDialog;
 import me.theentropyshard.crlauncher.gui.dialogs.SelectIconDialog;
 import me.theentropyshard.crlauncher.gui.dialogs.addinstance.AddInstanceDialog;
 import me.theentropyshard.crlauncher.gui.dialogs.instancesettings.InstanceSettingsDialog;
@@ -32,17 +37,25 @@ import me.theentropyshard.crlauncher.gui.utils.MouseClickListener;
 import me.theentropyshard.crlauncher.gui.utils.MouseEnterExitListener;
 import me.theentropyshard.crlauncher.gui.utils.Worker;
 import me.theentropyshard.crlauncher.instance.Instance;
+import me.theentropyshard.crlauncher.instance.InstanceAlreadyExistsException;
 import me.theentropyshard.crlauncher.instance.InstanceManager;
 import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.FileUtils;
 import me.theentropyshard.crlauncher.utils.OperatingSystem;
+import me.theentropyshard.crlauncher.utils.StringUtils;
 import me.theentropyshard.crlauncher.utils.TimeUtils;
+import me.theentropyshard.crlauncher.utils.Trash;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ItemEvent;
 import java.awt.event.MouseEvent;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +75,7 @@ public class PlayView extends JPanel {
     private final JLabel instanceInfoLabel;
 
     private InstancesPanel currentPanel;
+    private InstanceItem hoveredItem;
 
     public PlayView() {
         super(new BorderLayout());
@@ -106,51 +120,59 @@ public class PlayView extends JPanel {
 
         this.add(this.instanceInfoLabel, BorderLayout.SOUTH);
 
-        new Worker<List<Instance>, Void>("loading instances") {
+        CRLauncher.getInstance().getGameSupervisor().addListener(() -> SwingUtilities.invokeLater(this::updateInstanceInfo));
+        CRLauncher.getInstance().getTrash().addListener(() -> SwingUtilities.invokeLater(this::updateInstanceInfo));
+
+        new Worker<Void, Instance>("loading instances") {
+            private boolean groupRestored;
+
             @Override
-            protected List<Instance> work() throws Exception {
+            protected Void work() throws Exception {
                 InstanceManager instanceManager = CRLauncher.getInstance().getInstanceManager();
+                instanceManager.load(CRLauncher.getInstance()::doTask, instances -> {
+                    this.publish(instances.toArray(new Instance[0]));
+                });
+
+                return null;
+            }
 
-                List<Instance> instances = instanceManager.getInstances();
+            @Override
+            protected void process(List<Instance> instances) {
                 instances.sort((instance1, instance2) -> {
                     LocalDateTime lastTimePlayed1 = instance1.getLastTimePlayed();
                     LocalDateTime lastTimePlayed2 = instance2.getLastTimePlayed();
                     return lastTimePlayed2.compareTo(lastTimePlayed1);
                 });
 
-                return instances;
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    List<Instance> instances = this.get();
-
-                    IconManager iconManager = CRLauncher.getInstance().getIconManager();
+                IconManager iconManager = CRLauncher.getInstance().getIconManager();
 
-                    for (Instance instance : instances) {
-                        Icon icon;
-                        try {
-                            icon = iconManager.getIcon(instance.getIconFileName()).icon();
-                        } catch (Exception e) {
-                            Log.warn("Could not load icon '" + instance.getIconFileName() + "' for instance '" + instance.getName() + "'");
+                for (Instance instance : instances) {
+                    Icon icon;
+                    try {
+                        icon = iconManager.getIcon(instance.getIconFileName()).icon();
+                    } catch (Exception e) {
+                        Log.warn("Could not load icon '" + instance.getIconFileName() + "' for instance '" + instance.getName() + "'");
 
-                            String validIconPath = "cosmic_logo_x32.png";
-                            instance.setIconFileName(validIconPath);
-                            icon = iconManager.getIcon(validIconPath).icon();
-                        }
-                        InstanceItem item = new InstanceItem(icon, instance.getName());
-                        PlayView.this.addInstanceItem(item, instance.getGroupName());
+                        String validIconPath = "cosmic_logo_x32.png";
+                        instance.setIconFileName(validIconPath);
+                        icon = iconManager.getIcon(validIconPath).icon();
                     }
+                    InstanceItem item = new InstanceItem(icon, instance.getName());
+                    PlayView.this.addInstanceItem(item, instance.getGroupName());
+                }
 
-                    String group = CRLauncher.getInstance().getSettings().lastInstanceGroup;
-                    if (group != null && !group.isEmpty()) {
-                        PlayView.this.model.setSelectedItem(group);
-                    }
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
+                // the group may only show up with instances that come later
+                String group = CRLauncher.getInstance().getSettings().lastInstanceGroup;
+                if (!this.groupRestored && group != null && PlayView.this.groups.containsKey(group)) {
+                    PlayView.this.model.setSelectedItem(group);
+                    this.groupRestored = true;
                 }
             }
+
+            @Override
+            protected void done() {
+                PlayView.this.updateDiskUsage();
+            }
         }.execute();
     }
 
@@ -187,6 +209,23 @@ public class PlayView extends JPanel {
 
                 JPopupMenu popupMenu = new JPopupMenu();
 
+                GameSupervisor supervisor = CRLauncher.getInstance().getGameSupervisor();
+                if (supervisor.getProcess(instance) != null) {
+                    JMenuItem stopMenuItem = new JMenuItem(language.getString("gui.instanceItem.contextMenu.stop"));
+                    stopMenuItem.addActionListener(stop -> {
+                        supervisor.stop(instance);
+                    });
+                    popupMenu.add(stopMenuItem);
+
+                    JMenuItem killMenuItem = new JMenuItem(language.getString("gui.instanceItem.contextMenu.kill"));
+                    killMenuItem.addActionListener(kill -> {
+                        supervisor.kill(instance);
+                    });
+                    popupMenu.add(killMenuItem);
+
+                    popupMenu.addSeparator();
+                }
+
                 JMenuItem editMenuItem = new JMenuItem(language.getString("gui.instanceItem.contextMenu.edit"));
                 editMenuItem.addActionListener(edit -> {
                     new InstanceSettingsDialog(instance);
@@ -223,6 +262,18 @@ public class PlayView extends JPanel {
                 });
                 popupMenu.add(renameItem);
 
+                JMenuItem cloneItem = new JMenuItem(language.getString("gui.instanceItem.contextMenu.clone"));
+                cloneItem.addActionListener(clone -> {
+                    this.cloneInstance(item);
+                });
+                popupMenu.add(cloneItem);
+
+                JMenuItem exportItem = new JMenuItem(language.getString("gui.instanceItem.contextMenu.export"));
+                exportItem.addActionListener(export -> {
+                    this.exportInstance(instance);
+                });
+                popupMenu.add(exportItem);
+
                 popupMenu.addSeparator();
 
                 JMenuItem deleteMenuItem = new JMenuItem(language.getString("gui.instanceItem.contextMenu.delete"));
@@ -245,56 +296,139 @@ public class PlayView extends JPanel {
                 });
                 popupMenu.add(openCosmicFolder);
 
+                JMenuItem gameLogs = new JMenuItem(language.getString("gui.instanceItem.contextMenu.gameLogs"));
+                gameLogs.addActionListener(open -> {
+                    new GameLogsDialog(instance);
+                });
+                popupMenu.add(gameLogs);
+
                 popupMenu.show(item, e.getX(), e.getY());
             }
         }));
 
         item.addMouseListener(new MouseEnterExitListener(
             enter -> {
-                this.instanceInfoLabel.setVisible(true);
+                this.hoveredItem = item;
+                this.updateInstanceInfo();
+            },
 
-                Instance instance = item.getAssociatedInstance();
+            exit -> {
+                this.hoveredItem = null;
+                this.updateInstanceInfo();
+            }
+        ));
+    }
 
-                if (instance == null) {
-                    return;
-                }
+    /**
+     * Walks all instances in the background, only directories changed since the last walk are listed again
+     */
+    private void updateDiskUsage() {
+        List<Path> instanceDirs = CRLauncher.getInstance().getInstanceManager().getInstances().stream()
+            .map(Instance::getWorkDir)
+            .toList();
 
-                Language language = CRLauncher.getInstance().getLanguage();
-                String lastPlayedForText = language.getString("gui.playView.lastPlayedFor");
-                String totalPlayedForText = language.getString("gui.playView.totalPlayedFor");
-                String runningText = language.getString("gui.playView.running");
+        CRLauncher.getInstance().doTask(() -> {
+            try {
+                CRLauncher.getInstance().getDiskUsage().getSize(instanceDirs);
+            } catch (IOException e) {
+                Log.warn("Could not calculate the size of instances: " + e.getMessage());
+            }
 
-                String lastPlayedTime = TimeUtils.getHoursMinutesSecondsLocalized(instance.getLastPlaytime());
-                String totalPlayedTime = TimeUtils.getHoursMinutesSecondsLocalized(instance.getTotalPlaytime());
+            SwingUtilities.invokeLater(this::updateInstanceInfo);
+        });
+    }
 
-                String timeString = "";
+    /**
+     * Shows the hovered instance, or the resources used by all running games and files still being deleted when
+     * nothing is hovered
+     */
+    private void updateInstanceInfo() {
+        Language language = CRLauncher.getInstance().getLanguage();
+        GameSupervisor supervisor = CRLauncher.getInstance().getGameSupervisor();
 
-                if (!lastPlayedTime.isEmpty()) {
-                    timeString = " - " + lastPlayedForText + " " + lastPlayedTime;
-                }
+        Instance instance = this.hoveredItem == null ? null : this.hoveredItem.getAssociatedInstance();
 
-                if (!totalPlayedTime.isEmpty()) {
-                    if (lastPlayedTime.isEmpty()) {
-                        timeString = " - " + totalPlayedForText + " " + totalPlayedTime;
-                    } else {
-                        timeString = timeString + ", " + totalPlayedForText + " " + totalPlayedTime;
-                    }
-                }
+        if (instance == null) {
+            List<GameProcess> processes = supervisor.getProcesses();
+            Trash trash = CRLauncher.getInstance().getTrash();
 
-                timeString = instance.getName() + timeString;
+            List<String> parts = new ArrayList<>();
 
-                if (instance.isRunning()) {
-                    timeString = "[" + runningText + "] " + timeString;
+            if (!processes.isEmpty()) {
+                double cpuPercent = 0.0D;
+                long rssBytes = 0L;
+                for (GameProcess process : processes) {
+                    cpuPercent += process.getCpuPercent();
+                    rssBytes += Math.max(0L, process.getRssBytes());
                 }
 
-                this.instanceInfoLabel.setText(timeString);
-            },
+                parts.add(language.getString("gui.playView.gamesRunning")
+                    .replace("$$COUNT$$", String.valueOf(processes.size())) +
+                    PlayView.formatUsage(cpuPercent, processes.get(0).getRssBytes() < 0L ? -1L : rssBytes));
+            }
 
-            exit -> {
-                this.instanceInfoLabel.setVisible(false);
-                this.instanceInfoLabel.setText("");
+            if (trash.getPending() > 0) {
+                parts.add(language.getString("gui.playView.deletingFiles")
+                    .replace("$$PERCENT$$", String.valueOf(Math.round(trash.getProgress() * 100.0D))));
             }
-        ));
+
+            this.instanceInfoLabel.setText(String.join(" - ", parts));
+            this.instanceInfoLabel.setVisible(!parts.isEmpty());
+
+            return;
+        }
+
+        this.instanceInfoLabel.setVisible(true);
+
+        String lastPlayedForText = language.getString("gui.playView.lastPlayedFor");
+        String totalPlayedForText = language.getString("gui.playView.totalPlayedFor");
+        String runningText = language.getString("gui.playView.running");
+
+        String lastPlayedTime = TimeUtils.getHoursMinutesSecondsLocalized(instance.getLastPlaytime());
+        String totalPlayedTime = TimeUtils.getHoursMinutesSecondsLocalized(instance.getTotalPlaytime());
+
+        String timeString = "";
+
+        if (!lastPlayedTime.isEmpty()) {
+            timeString = " - " + lastPlayedForText + " " + lastPlayedTime;
+        }
+
+        if (!totalPlayedTime.isEmpty()) {
+            if (lastPlayedTime.isEmpty()) {
+                timeString = " - " + totalPlayedForText + " " + totalPlayedTime;
+            } else {
+                timeString = timeString + ", " + totalPlayedForText + " " + totalPlayedTime;
+            }
+        }
+
+        timeString = instance.getName() + timeString;
+
+        long size = CRLauncher.getInstance().getDiskUsage().getCachedSize(instance.getWorkDir());
+        if (size >= 0L) {
+            timeString = timeString + " - " + language.getString("gui.playView.diskUsage")
+                .replace("$$SIZE$$", StringUtils.formatSize(size));
+        }
+
+        if (instance.isRunning()) {
+            timeString = "[" + runningText + "] " + timeString;
+
+            GameProcess process = supervisor.getProcess(instance);
+            if (process != null) {
+                timeString = timeString + PlayView.formatUsage(process.getCpuPercent(), process.getRssBytes());
+            }
+        }
+
+        this.instanceInfoLabel.setText(timeString);
+    }
+
+    private static String formatUsage(double cpuPercent, long rssBytes) {
+        String usage = " - CPU " + Math.round(cpuPercent) + "%";
+
+        if (rssBytes >= 0L) {
+            usage = usage + ", RAM " + GameSupervisor.toMiB(rssBytes) + " MiB";
+        }
+
+        return usage;
     }
 
     public void deleteInstance(InstanceItem item) {
@@ -326,6 +460,163 @@ public class PlayView extends JPanel {
         }
     }
 
+    public void cloneInstance(InstanceItem item) {
+        Language language = CRLauncher.getInstance().getLanguage();
+
+        Instance instance = item.getAssociatedInstance();
+
+        String name = MessageBox.showInputMessage(CRLauncher.frame,
+            language.getString("gui.playView.cloneInstanceDialog.title"),
+            language.getString("gui.playView.cloneInstanceDialog.message"),
+            instance.getName() + " (2)");
+
+        if (name == null || name.trim().isEmpty()) {
+            return;
+        }
+
+        ProgressDialog dialog = new ProgressDialog(language.getString("gui.playView.cloneInstanceDialog.title"));
+        dialog.setStage(language.getString("gui.playView.cloneInstanceDialog.stage")
+            .replace("$$INSTANCE_NAME$$", instance.getName()));
+
+        new Worker<Instance, Void>("cloning instance " + instance.getName()) {
+            @Override
+            protected Instance work() throws Exception {
+                InstanceManager instanceManager = CRLauncher.getInstance().getInstanceManager();
+
+                try {
+                    return instanceManager.cloneInstance(instance, name, dialog);
+                } catch (InstanceAlreadyExistsException e) {
+                    MessageBox.showErrorMessage(CRLauncher.frame, e.getMessage());
+                } catch (IOException e) {
+                    Log.error("Could not clone instance " + instance.getName(), e);
+
+                    MessageBox.showErrorMessage(CRLauncher.frame, language.getString("messages.gui.playView.cannotCloneInstance")
+                        .replace("$$INSTANCE_NAME$$", instance.getName()));
+                }
+
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                dialog.getDialog().dispose();
+
+                try {
+                    Instance clone = this.get();
+
+                    if (clone != null) {
+                        InstanceItem cloneItem = new InstanceItem(item.getIconLabel().getIcon(), clone.getName());
+                        PlayView.this.addInstanceItem(cloneItem, clone.getGroupName());
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    Log.error("Could not clone instance " + instance.getName(), e);
+                }
+            }
+        }.execute();
+
+        dialog.setVisible(true);
+    }
+
+    public void exportInstance(Instance instance) {
+        Language language = CRLauncher.getInstance().getLanguage();
+
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new FileNameExtensionFilter("Archives (*.zip)", "zip"));
+        fileChooser.setSelectedFile(new File(FileUtils.sanitizeFileName(instance.getName()) + ".zip"));
+
+        Settings settings = CRLauncher.getInstance().getSettings();
+        if (settings.lastDir != null && !settings.lastDir.isEmpty()) {
+            fileChooser.setCurrentDirectory(new File(settings.lastDir));
+        }
+
+        if (fileChooser.showSaveDialog(CRLauncher.frame) != JFileChooser.APPROVE_OPTION || fileChooser.getSelectedFile() == null) {
+            return;
+        }
+
+        settings.lastDir = fileChooser.getCurrentDirectory().getAbsolutePath();
+        Path archive = fileChooser.getSelectedFile().toPath();
+
+        ProgressDialog dialog = new ProgressDialog(language.getString("gui.playView.exportInstanceDialog.title"));
+        dialog.setStage(language.getString("gui.playView.exportInstanceDialog.stage")
+            .replace("$$INSTANCE_NAME$$", instance.getName()));
+
+        new Worker<Void, Void>("exporting instance " + instance.getName()) {
+            @Override
+            protected Void work() throws Exception {
+                try {
+                    CRLauncher.getInstance().getInstanceManager().exportInstance(instance, archive, dialog);
+                } catch (IOException e) {
+                    Log.error("Could not export instance " + instance.getName(), e);
+
+                    MessageBox.showErrorMessage(CRLauncher.frame, language.getString("messages.gui.playView.cannotExportInstance")
+                        .replace("$$INSTANCE_NAME$$", instance.getName()));
+                }
+
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                dialog.getDialog().dispose();
+            }
+        }.execute();
+
+        dialog.setVisible(true);
+    }
+
+    public void importInstance(Path archive) {
+        Language language = CRLauncher.getInstance().getLanguage();
+
+        ProgressDialog dialog = new ProgressDialog(language.getString("gui.playView.importInstanceDialog.title"));
+        dialog.setStage(language.getString("gui.playView.importInstanceDialog.stage")
+            .replace("$$FILE$$", archive.getFileName().toString()));
+
+        new Worker<Instance, Void>("importing instance from " + archive) {
+            @Override
+            protected Instance work() throws Exception {
+                try {
+                    return CRLauncher.getInstance().getInstanceManager().importInstance(archive, dialog);
+                } catch (IOException e) {
+                    Log.error("Could not import instance from " + archive, e);
+
+                    MessageBox.showErrorMessage(CRLauncher.frame, language.getString("messages.gui.playView.cannotImportInstance")
+                        .replace("$$FILE$$", archive.toString()));
+                }
+
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                dialog.getDialog().dispose();
+
+                try {
+                    Instance instance = this.get();
+
+                    if (instance == null) {
+                        return;
+                    }
+
+                    IconManager iconManager = CRLauncher.getInstance().getIconManager();
+
+                    Icon icon;
+                    try {
+                        icon = iconManager.getIcon(instance.getIconFileName()).icon();
+                    } catch (Exception e) {
+                        instance.setIconFileName("cosmic_logo_x32.png");
+                        icon = iconManager.getIcon(instance.getIconFileName()).icon();
+                    }
+
+                    PlayView.this.addInstanceItem(new InstanceItem(icon, instance.getName()), instance.getGroupName());
+                } catch (InterruptedException | ExecutionException e) {
+                    Log.error("Could not import instance from " + archive, e);
+                }
+            }
+        }.execute();
+
+        dialog.setVisible(true);
+    }
+
     public void reloadLanguage() {
         this.header.reloadLanguage();
     }
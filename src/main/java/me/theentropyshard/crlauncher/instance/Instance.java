@@ -19,21 +19,24 @@
 package me.theentropyshard.crlauncher.instance;
 
 import me.theentropyshard.crlauncher.CRLauncher;
+import me.theentropyshard.crlauncher.cosmic.mods.Mod;
 import me.theentropyshard.crlauncher.cosmic.mods.cosmicquilt.QuiltMod;
 import me.theentropyshard.crlauncher.cosmic.mods.fabric.FabricMod;
 import me.theentropyshard.crlauncher.cosmic.mods.jar.JarMod;
 import me.theentropyshard.crlauncher.cosmic.mods.puzzle.PuzzleMod;
-import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.java.gc.GcCollector;
 import me.theentropyshard.crlauncher.utils.json.Json;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.StringJoiner;
 
 public class Instance {
-    private static final String INSTANCE_FILE_NAME = "instance.json";
+    static final String INSTANCE_FILE_NAME = "instance.json";
     private static final String COSMIC_DIR_NAME = "cosmic-reach";
     private static final String JARMODS_DIR_NAME = "jarmods";
     private static final String FABRIC_MODS_DIR_NAME = "fabricmods";
@@ -56,6 +59,9 @@ public class Instance {
     private String customWindowTitle;
     private int minimumMemoryInMegabytes = 512;
     private int maximumMemoryInMegabytes = 2048;
+    private GcCollector gcCollector = GcCollector.DEFAULT;
+    private boolean gcLogging;
+    private boolean autoTuneMemory;
     private LocalDateTime lastTimePlayed = LocalDateTime.MIN;
     private long lastPlaytime;
     private long totalPlaytime;
@@ -85,10 +91,28 @@ public class Instance {
         this.puzzleMods = new ArrayList<>();
     }
 
+    /**
+     * Queues the instance to be written, unchanged instances are not written at all
+     */
     public void save() throws IOException {
-        Path file = this.getWorkDir().resolve(Instance.INSTANCE_FILE_NAME);
+        CRLauncher.getInstance().getSaveQueue().submit(this.getInstanceFile(), this.toJson());
+    }
+
+    /**
+     * Tells the save queue that instance.json already matches this instance, e.g. right after it was loaded
+     */
+    public void markSaved() {
+        CRLauncher.getInstance().getSaveQueue().remember(this.getInstanceFile(), this.toJson());
+    }
+
+    private String toJson() {
         boolean pretty = CRLauncher.getInstance().getSettings().writePrettyJson;
-        FileUtils.writeUtf8(file, pretty ? Json.writePretty(this) : Json.write(this));
+
+        return pretty ? Json.writePretty(this) : Json.write(this);
+    }
+
+    public Path getInstanceFile() {
+        return this.workDir.resolve(Instance.INSTANCE_FILE_NAME);
     }
 
     public void updatePlaytime(long seconds) {
@@ -164,6 +188,64 @@ public class Instance {
         this.workDir = workDir;
     }
 
+    /**
+     * Points every mod that is inside {@code from} to the same file inside {@code to}. An empty {@code to} leaves
+     * the paths relative to the instance, and with an empty {@code from} relative paths are taken as inside the instance
+     */
+    public void rebaseModPaths(Path from, Path to) {
+        for (JarMod jarMod : this.jarMods) {
+            jarMod.setFullPath(Instance.rebase(jarMod.getFullPath(), from, to));
+        }
+
+        for (Mod mod : this.getAllMods()) {
+            mod.setFilePath(Instance.rebase(mod.getFilePath(), from, to));
+        }
+    }
+
+    private List<Mod> getAllMods() {
+        List<Mod> mods = new ArrayList<>(this.fabricMods);
+        mods.addAll(this.quiltMods);
+        mods.addAll(this.puzzleMods);
+
+        return mods;
+    }
+
+    private static String rebase(String filePath, Path from, Path to) {
+        if (filePath == null) {
+            return null;
+        }
+
+        Path path = Paths.get(filePath);
+        Path relative;
+
+        if (from.toString().isEmpty()) {
+            if (path.isAbsolute()) {
+                return filePath;
+            }
+
+            relative = path.normalize();
+        } else {
+            Path base = from.toAbsolutePath().normalize();
+            Path absolute = path.toAbsolutePath().normalize();
+
+            if (!absolute.startsWith(base)) {
+                return filePath;
+            }
+
+            relative = base.relativize(absolute);
+        }
+
+        if (to.toString().isEmpty()) {
+            // relative paths may be read on another system, so they always use forward slashes
+            StringJoiner joiner = new StringJoiner("/");
+            relative.forEach(part -> joiner.add(part.toString()));
+
+            return joiner.toString();
+        }
+
+        return to.resolve(relative).toString();
+    }
+
     public Path getCosmicDir() {
         return this.workDir.resolve(Instance.COSMIC_DIR_NAME);
     }
@@ -284,6 +366,30 @@ public class Instance {
         this.maximumMemoryInMegabytes = maximumMemoryInMegabytes;
     }
 
+    public GcCollector getGcCollector() {
+        return this.gcCollector == null ? GcCollector.DEFAULT : this.gcCollector;
+    }
+
+    public void setGcCollector(GcCollector gcCollector) {
+        this.gcCollector = gcCollector;
+    }
+
+    public boolean isGcLogging() {
+        return this.gcLogging;
+    }
+
+    public void setGcLogging(boolean gcLogging) {
+        this.gcLogging = gcLogging;
+    }
+
+    public boolean isAutoTuneMemory() {
+        return this.autoTuneMemory;
+    }
+
+    public void setAutoTuneMemory(boolean autoTuneMemory) {
+        this.autoTuneMemory = autoTuneMemory;
+    }
+
     public LocalDateTime getLastTimePlayed() {
         return this.lastTimePlayed;
     }
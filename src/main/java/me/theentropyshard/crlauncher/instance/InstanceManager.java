@@ -18,55 +18,191 @@
 
 package me.theentropyshard.crlauncher.instance;
 
+import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.java.JavaLocator;
 import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.progress.ProgressInputStream;
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
+import me.theentropyshard.crlauncher.utils.FileCloner;
 import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.ParallelZipWriter;
 import me.theentropyshard.crlauncher.utils.SemanticVersion;
 import me.theentropyshard.crlauncher.utils.StringUtils;
 import me.theentropyshard.crlauncher.utils.json.Json;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 public class InstanceManager {
-    
+    /**
+     * Files of an instance that only make sense for the instance itself
+     */
+    private static final Set<String> NOT_CLONED = Set.of(
+        Instance.INSTANCE_FILE_NAME, "launch-plan.json", "cds", "gc.log"
+    );
 
     private final Path workDir;
+    private final Path snapshotFile;
     private final List<Instance> instances;
     private final Map<String, Instance> instancesByName;
 
-    public InstanceManager(Path workDir) {
+    public InstanceManager(Path workDir, Path snapshotFile) {
         this.workDir = workDir;
-        this.instances = new ArrayList<>();
-        this.instancesByName = new HashMap<>();
+        this.snapshotFile = snapshotFile;
+        this.instances = new CopyOnWriteArrayList<>();
+        this.instancesByName = new ConcurrentHashMap<>();
     }
 
     public void load() throws IOException {
-        List<Path> paths = FileUtils.list(this.workDir);
+        this.load(Runnable::run, instances -> {});
+    }
 
-        for (Path path : paths) {
+    /**
+     * Takes instances whose instance.json did not change from the snapshot, and parses the rest on the given executor.
+     * The listener is called on the calling thread, first with everything taken from the snapshot, then with each
+     * instance as soon as it is parsed.
+     *
+     * @param executor executor to parse changed instances on
+     * @param listener listener to call with instances that were added
+     */
+    public void load(Executor executor, Consumer<List<Instance>> listener) throws IOException {
+        Map<String, InstanceSnapshot.Entry> entries = this.loadSnapshot().getEntriesByDirName();
+
+        List<Instance> unchanged = new ArrayList<>();
+        CompletionService<Instance> parsing = new ExecutorCompletionService<>(executor);
+        int parsingCount = 0;
+
+        for (Path path : FileUtils.list(this.workDir)) {
             if (!Files.isDirectory(path)) {
                 continue;
             }
 
-            Path instanceFile = path.resolve("instance.json");
-            if (!Files.exists(instanceFile)) {
+            Path instanceFile = path.resolve(Instance.INSTANCE_FILE_NAME);
+
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(instanceFile, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
                 continue;
             }
 
-            Instance instance = Json.parse(FileUtils.readUtf8(instanceFile), Instance.class);
-            instance.setWorkDir(path);
+            InstanceSnapshot.Entry entry = entries.get(path.getFileName().toString());
+
+            if (entry != null && entry.matches(attributes)) {
+                Instance instance = entry.getInstance();
+                instance.setWorkDir(path);
+
+                if (this.cacheInstance(instance)) {
+                    instance.markSaved();
+                    unchanged.add(instance);
+                }
+            } else {
+                parsing.submit(() -> {
+                    try {
+                        Instance instance = Json.parse(FileUtils.readUtf8(instanceFile), Instance.class);
+                        instance.setWorkDir(path);
+
+                        return instance;
+                    } catch (Exception e) {
+                        throw new IOException("Could not load instance from " + instanceFile, e);
+                    }
+                });
+
+                parsingCount++;
+            }
+        }
+
+        listener.accept(unchanged);
+
+        for (int i = 0; i < parsingCount; i++) {
+            try {
+                Instance instance = parsing.take().get();
+
+                if (this.cacheInstance(instance)) {
+                    instance.markSaved();
+                    listener.accept(Collections.singletonList(instance));
+                }
+            } catch (ExecutionException e) {
+                Log.error(e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                throw new IOException("Interrupted while loading instances", e);
+            }
+        }
+
+        Log.info("Loaded " + this.instances.size() + " instance(s), " + parsingCount + " of them changed since last time");
+
+        if (parsingCount != 0 || unchanged.size() != entries.size()) {
+            this.saveSnapshot();
+        }
+    }
 
-            this.cacheInstance(instance);
+    private InstanceSnapshot loadSnapshot() {
+        if (!Files.exists(this.snapshotFile)) {
+            return new InstanceSnapshot();
+        }
+
+        try {
+            InstanceSnapshot snapshot = Json.parse(FileUtils.readUtf8(this.snapshotFile), InstanceSnapshot.class);
+
+            if (snapshot != null && snapshot.isCompatible()) {
+                return snapshot;
+            }
+        } catch (Exception e) {
+            Log.warn("Could not read instance snapshot, all instances will be loaded again: " + e.getMessage());
+        }
+
+        return new InstanceSnapshot();
+    }
+
+    /**
+     * Remembers the instances as they are now, should be called right after the save queue is flushed, so that
+     * the snapshot does not hold changes that never made it to instance.json
+     */
+    public synchronized void saveSnapshot() throws IOException {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+
+        for (Instance instance : this.instances) {
+            Path instanceFile = instance.getWorkDir().resolve(Instance.INSTANCE_FILE_NAME);
+
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(instanceFile, BasicFileAttributes.class);
+                snapshot.add(instance.getWorkDir().getFileName().toString(), attributes, instance);
+            } catch (NoSuchFileException ignored) {
+
+            }
         }
+
+        FileUtils.writeUtf8Atomically(this.snapshotFile, Json.write(snapshot));
     }
 
     public void reload() throws IOException {
@@ -74,13 +210,20 @@ public class InstanceManager {
         this.load();
     }
 
-    private void cacheInstance(Instance instance) {
-        if (this.instancesByName.containsKey(instance.getName())) {
-            return;
+    private boolean cacheInstance(Instance instance) {
+        if (instance.getName() == null) {
+            Log.warn("Instance in " + instance.getWorkDir() + " has no name, skipping it");
+
+            return false;
+        }
+
+        if (this.instancesByName.putIfAbsent(instance.getName(), instance) != null) {
+            return false;
         }
 
         this.instances.add(instance);
-        this.instancesByName.put(instance.getName(), instance);
+
+        return true;
     }
 
     private void uncacheInstance(Instance instance) {
@@ -169,6 +312,233 @@ public class InstanceManager {
         instance.save();
     }
 
+    /**
+     * Creates a new instance with the same settings, mods and worlds. Mod archives are hard linked, since they are
+     * only ever replaced, never modified, everything else is reflinked or copied.
+     *
+     * @param source   instance to clone
+     * @param name     name of the new instance
+     * @param listener listener for cloning progress
+     * @return the new instance
+     */
+    public Instance cloneInstance(Instance source, String name, ProgressListener listener) throws IOException,
+        InstanceAlreadyExistsException {
+
+        if (this.instancesByName.containsKey(name)) {
+            throw new InstanceAlreadyExistsException(name);
+        }
+
+        Instance clone = Json.parse(Json.write(source), Instance.class);
+        clone.setName(name);
+        clone.setWorkDir(this.getInstanceWorkDir(name, source.getCosmicVersion()));
+        clone.setLastTimePlayed(LocalDateTime.MIN);
+        clone.setLastPlaytime(0L);
+        clone.setTotalPlaytime(0L);
+
+        Path sourceDir = source.getWorkDir();
+        List<Path> modDirs = List.of(
+            sourceDir.relativize(source.getJarModsDir()),
+            sourceDir.relativize(source.getDataModsDir()),
+            sourceDir.relativize(source.getFabricModsDir()),
+            sourceDir.relativize(source.getDisabledFabricModsDir()),
+            sourceDir.relativize(source.getQuiltModsDir()),
+            sourceDir.relativize(source.getDisabledQuiltModsDir()),
+            sourceDir.relativize(source.getPuzzleModsDir()),
+            sourceDir.relativize(source.getDisabledPuzzleModsDir())
+        );
+
+        FileCloner cloner = new FileCloner(sourceDir, clone.getWorkDir(),
+            path -> InstanceManager.isArchive(path) && modDirs.stream().anyMatch(path::startsWith),
+            InstanceManager::isNotCloned
+        );
+
+        long start = System.currentTimeMillis();
+
+        try {
+            cloner.clone(listener);
+        } catch (IOException e) {
+            if (Files.exists(clone.getWorkDir())) {
+                FileUtils.delete(clone.getWorkDir());
+            }
+
+            throw e;
+        }
+
+        Log.info("Cloned instance " + source.getName() + " to " + name + " in " + (System.currentTimeMillis() - start) +
+            " ms (" + (cloner.getTotalBytes() / 1024L / 1024L) + " MiB): " + cloner.getLinked() + " file(s) linked, " +
+            cloner.getReflinked() + " reflinked, " + cloner.getCopied() + " copied");
+
+        // otherwise the first launch of the clone would move the mods out of the source instance
+        clone.rebaseModPaths(sourceDir, clone.getWorkDir());
+
+        if (!this.cacheInstance(clone)) {
+            FileUtils.delete(clone.getWorkDir());
+
+            throw new InstanceAlreadyExistsException(name);
+        }
+
+        clone.save();
+
+        return clone;
+    }
+
+    /**
+     * Writes the instance and all of its files into a zip archive, which can be imported on another machine
+     *
+     * @param instance instance to export
+     * @param archive  zip file to write
+     * @param listener listener for export progress
+     */
+    public void exportInstance(Instance instance, Path archive, ProgressListener listener) throws IOException {
+        Path workDir = instance.getWorkDir();
+
+        // mod paths are stored relative to the instance, the archive is extracted somewhere else
+        Instance exported = Json.parse(Json.write(instance), Instance.class);
+        exported.rebaseModPaths(workDir, Paths.get(""));
+
+        ParallelZipWriter writer = new ParallelZipWriter();
+        writer.addBytes(Instance.INSTANCE_FILE_NAME, Json.writePretty(exported).getBytes(StandardCharsets.UTF_8));
+
+        Files.walkFileTree(workDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Path relative = workDir.relativize(dir);
+
+                if (relative.toString().isEmpty()) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                if (InstanceManager.isNotCloned(relative)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                writer.addDirectory(InstanceManager.toEntryName(relative));
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = workDir.relativize(file);
+
+                if (attrs.isRegularFile() && !InstanceManager.isNotCloned(relative)) {
+                    writer.addFile(InstanceManager.toEntryName(relative), file);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        long start = System.currentTimeMillis();
+
+        Path tmpFile = archive.resolveSibling(archive.getFileName() + ".tmp");
+
+        try {
+            writer.write(tmpFile, listener);
+            Files.move(tmpFile, archive, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+
+        Log.info("Exported instance " + instance.getName() + " to " + archive + " in " +
+            (System.currentTimeMillis() - start) + " ms (" + (Files.size(archive) / 1024L / 1024L) + " MiB)");
+    }
+
+    /**
+     * Extracts an exported instance straight from the archive into a new instance directory. If an instance with
+     * the same name exists, the imported one gets a number appended to its name.
+     *
+     * @param archive  zip file written by {@link #exportInstance(Instance, Path, ProgressListener)}
+     * @param listener listener for import progress
+     * @return the imported instance
+     */
+    public Instance importInstance(Path archive, ProgressListener listener) throws IOException {
+        Instance instance;
+        Path workDir = null;
+
+        try (InputStream in = new ProgressInputStream(Files.newInputStream(archive), Files.size(archive), listener);
+             ZipInputStream zip = new ZipInputStream(new BufferedInputStream(in, 1024 * 1024), StandardCharsets.UTF_8)) {
+
+            ZipEntry entry = zip.getNextEntry();
+            if (entry == null || !entry.getName().equals(Instance.INSTANCE_FILE_NAME)) {
+                throw new IOException(archive + " is not an exported instance");
+            }
+
+            instance = Json.parse(new String(zip.readAllBytes(), StandardCharsets.UTF_8), Instance.class);
+            if (instance == null || instance.getName() == null) {
+                throw new IOException(archive + " is not an exported instance");
+            }
+
+            String name = instance.getName();
+            for (int i = 2; this.instancesByName.containsKey(name); i++) {
+                name = instance.getName() + " (" + i + ")";
+            }
+
+            workDir = this.getInstanceWorkDir(name, instance.getCosmicVersion()).toAbsolutePath().normalize();
+            Files.createDirectories(workDir);
+
+            instance.setName(name);
+            instance.setWorkDir(workDir);
+            instance.setJavaPath(JavaLocator.getJavaPath());
+            instance.rebaseModPaths(Paths.get(""), workDir);
+
+            while ((entry = zip.getNextEntry()) != null) {
+                Path target = workDir.resolve(entry.getName()).normalize();
+                if (!target.startsWith(workDir) || target.equals(workDir)) {
+                    throw new IOException("Archive entry " + entry.getName() + " points outside of the instance");
+                }
+
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+
+                    continue;
+                }
+
+                Files.createDirectories(target.getParent());
+                Files.copy(zip, target, StandardCopyOption.REPLACE_EXISTING);
+
+                if (entry.getLastModifiedTime() != null) {
+                    Files.setLastModifiedTime(target, entry.getLastModifiedTime());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (workDir != null && Files.exists(workDir)) {
+                FileUtils.delete(workDir);
+            }
+
+            throw e;
+        }
+
+        this.cacheInstance(instance);
+        instance.save();
+
+        return instance;
+    }
+
+    private static boolean isNotCloned(Path relative) {
+        return relative.getNameCount() == 1 && InstanceManager.NOT_CLONED.contains(relative.toString());
+    }
+
+    private static String toEntryName(Path relative) {
+        StringBuilder name = new StringBuilder();
+
+        for (Path part : relative) {
+            if (!name.isEmpty()) {
+                name.append('/');
+            }
+
+            name.append(part);
+        }
+
+        return name.toString();
+    }
+
+    private static boolean isArchive(Path path) {
+        String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+
+        return fileName.endsWith(".jar") || fileName.endsWith(".zip");
+    }
+
     public void removeInstance(String name) throws IOException {
         Instance instance = this.getInstanceByName(name);
 
@@ -176,7 +546,9 @@ public class InstanceManager {
             return;
         }
 
-        FileUtils.delete(instance.getWorkDir());
+        CRLauncher.getInstance().getSaveQueue().discard(instance.getInstanceFile());
+        CRLauncher.getInstance().getTrash().discard(instance.getWorkDir());
+        CRLauncher.getInstance().getDiskUsage().invalidate(instance.getWorkDir());
 
         this.uncacheInstance(instance);
     }
@@ -186,7 +558,9 @@ public class InstanceManager {
 
         Path newInstanceDir = this.getInstanceWorkDir(newName, instance.getCosmicVersion());
 
+        CRLauncher.getInstance().getSaveQueue().discard(instance.getInstanceFile());
         Files.move(instance.getWorkDir(), newInstanceDir, StandardCopyOption.REPLACE_EXISTING);
+        CRLauncher.getInstance().getDiskUsage().invalidate(instance.getWorkDir());
 
         instance.setWorkDir(newInstanceDir);
 
@@ -199,6 +573,7 @@ public class InstanceManager {
         }
 
         this.cacheInstance(instance);
+        instance.save();
 
         return invalidName;
     }
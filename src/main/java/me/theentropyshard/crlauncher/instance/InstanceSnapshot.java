@@ -0,0 +1,88 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.instance;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All instances as they were when the launcher last saw them, in one file. An entry is only trusted while the
+ * instance.json it was taken from keeps its modification time and size, so edits made outside the launcher are
+ * still picked up.
+ */
+public class InstanceSnapshot {
+    public static final int VERSION = 1;
+
+    private int version;
+    private List<Entry> entries;
+
+    public InstanceSnapshot() {
+        this.version = InstanceSnapshot.VERSION;
+        this.entries = new ArrayList<>();
+    }
+
+    public boolean isCompatible() {
+        return this.version == InstanceSnapshot.VERSION && this.entries != null;
+    }
+
+    public void add(String dirName, BasicFileAttributes attributes, Instance instance) {
+        this.entries.add(new Entry(dirName, attributes.lastModifiedTime().toMillis(), attributes.size(), instance));
+    }
+
+    public Map<String, Entry> getEntriesByDirName() {
+        Map<String, Entry> entriesByDirName = new HashMap<>();
+
+        for (Entry entry : this.entries) {
+            entriesByDirName.put(entry.dirName, entry);
+        }
+
+        return entriesByDirName;
+    }
+
+    public static class Entry {
+        private String dirName;
+        private long modified;
+        private long size;
+        private Instance instance;
+
+        public Entry() {
+
+        }
+
+        public Entry(String dirName, long modified, long size, Instance instance) {
+            this.dirName = dirName;
+            this.modified = modified;
+            this.size = size;
+            this.instance = instance;
+        }
+
+        public boolean matches(BasicFileAttributes attributes) {
+            return this.instance != null &&
+                this.modified == attributes.lastModifiedTime().toMillis() &&
+                this.size == attributes.size();
+        }
+
+        public Instance getInstance() {
+            return this.instance;
+        }
+    }
+}
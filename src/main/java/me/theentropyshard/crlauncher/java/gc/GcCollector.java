@@ -0,0 +1,46 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.java.gc;
+
+public enum GcCollector {
+    DEFAULT("Default", null),
+    G1("G1", "-XX:+UseG1GC"),
+    PARALLEL("Parallel", "-XX:+UseParallelGC"),
+    ZGC("ZGC", "-XX:+UseZGC");
+
+    private final String displayName;
+    private final String jvmFlag;
+
+    GcCollector(String displayName, String jvmFlag) {
+        this.displayName = displayName;
+        this.jvmFlag = jvmFlag;
+    }
+
+    /**
+     * @return the flag that selects this collector, or null to let the JVM choose
+     */
+    public String getJvmFlag() {
+        return this.jvmFlag;
+    }
+
+    @Override
+    public String toString() {
+        return this.displayName;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.java.gc;
+
+import com.google.gson.reflect.TypeToken;
+import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.json.Json;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * GC statistics of the last sessions of an instance
+ */
+public class GcHistory {
+    private static final int MAX_SESSIONS = 20;
+
+    private final Path file;
+    private final List<GcSessionStats> sessions;
+
+    public GcHistory(Path file) {
+        this.file = file;
+        this.sessions = new ArrayList<>();
+    }
+
+    public void load() throws IOException {
+        this.sessions.clear();
+
+        if (!Files.exists(this.file)) {
+            return;
+        }
+
+        List<GcSessionStats> loaded = Json.parse(FileUtils.readUtf8(this.file), new TypeToken<List<GcSessionStats>>() {}.getType());
+        if (loaded != null) {
+            this.sessions.addAll(loaded);
+        }
+    }
+
+    public void add(GcSessionStats stats) {
+        this.sessions.add(stats);
+
+        while (this.sessions.size() > GcHistory.MAX_SESSIONS) {
+            this.sessions.remove(0);
+        }
+    }
+
+    public void save() throws IOException {
+        FileUtils.writeUtf8Atomically(this.file, Json.write(this.sessions));
+    }
+
+    /**
+     * @return at most {@code count} last sessions in which the GC ran at least once
+     */
+    public List<GcSessionStats> getLastSessions(int count) {
+        List<GcSessionStats> last = new ArrayList<>();
+
+        for (int i = this.sessions.size() - 1; i >= 0 && last.size() < count; i--) {
+            GcSessionStats stats = this.sessions.get(i);
+
+            if (stats.getGcCount() > 0) {
+                last.add(stats);
+            }
+        }
+
+        return last;
+    }
+
+    public List<GcSessionStats> getSessions() {
+        return Collections.unmodifiableList(this.sessions);
+    }
+}
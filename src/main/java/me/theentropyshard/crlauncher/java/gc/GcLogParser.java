@@ -0,0 +1,154 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.java.gc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a unified JVM log written with {@code -Xlog:gc*:file=...:uptime,tags}. Only the one line summaries
+ * every collector writes with the {@code gc} tag are used, plus the pause lines ZGC writes with {@code gc,phases}.
+ */
+public final class GcLogParser {
+    public static final String DECORATORS = "uptime,tags";
+
+    private static final Pattern PAUSE = Pattern.compile("^GC\\(\\d+\\) Pause .*?(\\d+(?:\\.\\d+)?)ms$");
+    private static final Pattern HEAP = Pattern.compile("(\\d+)([KMG])(?:\\(\\d+%\\))?->(\\d+)([KMG])(?:\\(\\d+%\\))?");
+
+    public static GcSessionStats parse(Path file, int maxHeapMegabytes) throws IOException {
+        String collector = null;
+        double uptime = 0.0D;
+        int gcCount = 0;
+        List<Double> pauses = new ArrayList<>();
+
+        double peakAfter = 0.0D;
+        double peakAfterMarking = 0.0D;
+        double previousAfter = 0.0D;
+        double allocated = 0.0D;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // [0.345s][gc] GC(0) Pause Young (Normal) (G1 Evacuation Pause) 24M->3M(256M) 3.456ms
+                if (!line.startsWith("[")) {
+                    continue;
+                }
+
+                int uptimeEnd = line.indexOf("s]");
+                int tagsEnd = line.indexOf(']', uptimeEnd + 2);
+                if (uptimeEnd == -1 || tagsEnd == -1) {
+                    continue;
+                }
+
+                try {
+                    uptime = Double.parseDouble(line.substring(1, uptimeEnd).replace(',', '.'));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+
+                String tags = line.substring(uptimeEnd + 3, tagsEnd).trim();
+                String message = line.substring(tagsEnd + 1).trim();
+
+                if (collector == null && message.startsWith("Using ")) {
+                    collector = message.substring("Using ".length()).trim();
+                }
+
+                if (!tags.equals("gc") && !tags.equals("gc,phases")) {
+                    continue;
+                }
+
+                Matcher pause = GcLogParser.PAUSE.matcher(message);
+                if (pause.find()) {
+                    pauses.add(Double.parseDouble(pause.group(1)));
+                }
+
+                if (!tags.equals("gc")) {
+                    continue;
+                }
+
+                Matcher heap = GcLogParser.HEAP.matcher(message);
+                if (heap.find()) {
+                    double before = GcLogParser.toMegabytes(heap.group(1), heap.group(2));
+                    double after = GcLogParser.toMegabytes(heap.group(3), heap.group(4));
+
+                    gcCount++;
+                    allocated += Math.max(0.0D, before - previousAfter);
+                    previousAfter = after;
+
+                    // young collections leave old garbage behind, so what is left after them is only an upper bound
+                    // of the live set, collections that went through the old generation tell it better
+                    peakAfter = Math.max(peakAfter, after);
+                    if (GcLogParser.isMarkingCollection(message)) {
+                        peakAfterMarking = Math.max(peakAfterMarking, after);
+                    }
+                }
+            }
+        }
+
+        Collections.sort(pauses);
+
+        double totalPause = 0.0D;
+        for (double pause : pauses) {
+            totalPause += pause;
+        }
+
+        double maxPause = pauses.isEmpty() ? 0.0D : pauses.get(pauses.size() - 1);
+        double p95Pause = pauses.isEmpty() ? 0.0D : pauses.get((int) Math.ceil(pauses.size() * 0.95D) - 1);
+
+        return new GcSessionStats(
+            System.currentTimeMillis(),
+            collector,
+            maxHeapMegabytes,
+            uptime,
+            gcCount,
+            totalPause,
+            maxPause,
+            p95Pause,
+            (int) Math.ceil(peakAfterMarking > 0.0D ? peakAfterMarking : peakAfter),
+            uptime > 0.0D ? allocated / uptime : 0.0D
+        );
+    }
+
+    private static boolean isMarkingCollection(String message) {
+        return message.contains("Pause Full") || message.contains("Pause Remark") || message.contains("Pause Cleanup") ||
+            message.contains("(Mixed)") || message.contains("Garbage Collection") || message.contains("Concurrent");
+    }
+
+    private static double toMegabytes(String value, String unit) {
+        double amount = Double.parseDouble(value);
+
+        return switch (unit) {
+            case "K" -> amount / 1024.0D;
+            case "G" -> amount * 1024.0D;
+            default -> amount;
+        };
+    }
+
+    private GcLogParser() {
+        throw new UnsupportedOperationException();
+    }
+}
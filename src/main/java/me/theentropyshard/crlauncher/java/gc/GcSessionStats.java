@@ -0,0 +1,94 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.java.gc;
+
+/**
+ * What the GC log of one game session says about the heap
+ */
+public class GcSessionStats {
+    private long time;
+    private String collector;
+    private int maxHeapMegabytes;
+    private double uptimeSeconds;
+    private int gcCount;
+    private double totalPauseMillis;
+    private double maxPauseMillis;
+    private double p95PauseMillis;
+    private int peakLiveSetMegabytes;
+    private double allocationRateMegabytesPerSecond;
+
+    public GcSessionStats() {
+
+    }
+
+    public GcSessionStats(long time, String collector, int maxHeapMegabytes, double uptimeSeconds, int gcCount,
+                          double totalPauseMillis, double maxPauseMillis, double p95PauseMillis,
+                          int peakLiveSetMegabytes, double allocationRateMegabytesPerSecond) {
+        this.time = time;
+        this.collector = collector;
+        this.maxHeapMegabytes = maxHeapMegabytes;
+        this.uptimeSeconds = uptimeSeconds;
+        this.gcCount = gcCount;
+        this.totalPauseMillis = totalPauseMillis;
+        this.maxPauseMillis = maxPauseMillis;
+        this.p95PauseMillis = p95PauseMillis;
+        this.peakLiveSetMegabytes = peakLiveSetMegabytes;
+        this.allocationRateMegabytesPerSecond = allocationRateMegabytesPerSecond;
+    }
+
+    public long getTime() {
+        return this.time;
+    }
+
+    public String getCollector() {
+        return this.collector;
+    }
+
+    public int getMaxHeapMegabytes() {
+        return this.maxHeapMegabytes;
+    }
+
+    public double getUptimeSeconds() {
+        return this.uptimeSeconds;
+    }
+
+    public int getGcCount() {
+        return this.gcCount;
+    }
+
+    public double getTotalPauseMillis() {
+        return this.totalPauseMillis;
+    }
+
+    public double getMaxPauseMillis() {
+        return this.maxPauseMillis;
+    }
+
+    public double getP95PauseMillis() {
+        return this.p95PauseMillis;
+    }
+
+    public int getPeakLiveSetMegabytes() {
+        return this.peakLiveSetMegabytes;
+    }
+
+    public double getAllocationRateMegabytesPerSecond() {
+        return this.allocationRateMegabytesPerSecond;
+    }
+}
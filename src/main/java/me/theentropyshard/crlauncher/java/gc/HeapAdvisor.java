@@ -0,0 +1,213 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.java.gc;
+
+import com.sun.management.OperatingSystemMXBean;
+import me.theentropyshard.crlauncher.instance.Instance;
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.MathUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Suggests heap sizes and a collector for an instance from the GC logs of its last sessions. The maximum heap is
+ * sized at a few times the peak live set, which keeps G1 from collecting all the time without reserving memory
+ * the game never uses. Long pauses on a large heap switch to ZGC.
+ */
+public final class HeapAdvisor {
+    public static final String GC_LOG_FILE_NAME = "gc.log";
+    public static final String HISTORY_FILE_NAME = "gc-history.json";
+
+    private static final int MIN_SESSIONS = 3;
+    private static final int SESSIONS_CONSIDERED = 5;
+    private static final int HEAP_STEP_MEGABYTES = 256;
+    private static final int MIN_HEAP_MEGABYTES = 512;
+    private static final int MIN_MAX_HEAP_MEGABYTES = 1024;
+    private static final double MAX_HEAP_TO_LIVE_SET = 3.0D;
+    private static final double MIN_HEAP_TO_LIVE_SET = 1.5D;
+    private static final double HEAP_PRESSURE = 0.5D;
+    private static final double LONG_PAUSE_MILLIS = 50.0D;
+    private static final double SHORT_PAUSE_MILLIS = 10.0D;
+    private static final int ZGC_MIN_HEAP_MEGABYTES = 4096;
+
+    /**
+     * @return arguments to put on the command line of the game: heap sizes, the collector and the GC log if enabled
+     */
+    public static List<String> getJvmArguments(Instance instance, Path runDir) {
+        List<String> arguments = new ArrayList<>();
+
+        arguments.add("-Xms" + instance.getMinimumMemoryInMegabytes() + "M");
+        arguments.add("-Xmx" + instance.getMaximumMemoryInMegabytes() + "M");
+
+        String collectorFlag = instance.getGcCollector().getJvmFlag();
+        if (collectorFlag != null) {
+            arguments.add(collectorFlag);
+        }
+
+        if (instance.isGcLogging() || instance.isAutoTuneMemory()) {
+            // relative to the working directory of the game, an absolute path on Windows has a colon in it,
+            // which would end the file name in the -Xlog option
+            String logPath = runDir.toAbsolutePath().relativize(HeapAdvisor.getGcLogFile(instance).toAbsolutePath())
+                .toString().replace('\\', '/');
+
+            arguments.add("-Xlog:gc*:file=" + logPath + ":" + GcLogParser.DECORATORS + ":filecount=0");
+        }
+
+        return arguments;
+    }
+
+    /**
+     * Adds the GC log of the session that just ended to the history of the instance, and applies or reports
+     * what the history suggests
+     */
+    public static void afterSession(Instance instance) {
+        Path gcLog = HeapAdvisor.getGcLogFile(instance);
+
+        if ((!instance.isGcLogging() && !instance.isAutoTuneMemory()) || !Files.exists(gcLog)) {
+            return;
+        }
+
+        try {
+            GcSessionStats stats = GcLogParser.parse(gcLog, instance.getMaximumMemoryInMegabytes());
+
+            Log.info("GC of this session: " + stats.getCollector() + ", " + stats.getGcCount() + " collection(s), " +
+                "pauses " + MathUtils.round(stats.getTotalPauseMillis(), 1) + " ms in total, " +
+                MathUtils.round(stats.getMaxPauseMillis(), 1) + " ms at most, peak live set ~" +
+                stats.getPeakLiveSetMegabytes() + " MiB, allocating " +
+                MathUtils.round(stats.getAllocationRateMegabytesPerSecond(), 1) + " MiB/s");
+
+            GcHistory history = HeapAdvisor.loadHistory(instance);
+            history.add(stats);
+            history.save();
+
+            Recommendation recommendation = HeapAdvisor.recommend(history, instance);
+            if (recommendation == null || recommendation.matches(instance)) {
+                return;
+            }
+
+            if (instance.isAutoTuneMemory()) {
+                instance.setMinimumMemoryInMegabytes(recommendation.minimumMemory());
+                instance.setMaximumMemoryInMegabytes(recommendation.maximumMemory());
+                instance.setGcCollector(recommendation.collector());
+
+                Log.info("Adjusted memory of instance " + instance.getName() + " to " + recommendation);
+            } else {
+                Log.info("Recommended memory for instance " + instance.getName() + ": " + recommendation);
+            }
+        } catch (IOException e) {
+            Log.error("Could not read GC log " + gcLog, e);
+        }
+    }
+
+    public static GcHistory loadHistory(Instance instance) throws IOException {
+        GcHistory history = new GcHistory(instance.getWorkDir().resolve(HeapAdvisor.HISTORY_FILE_NAME));
+        history.load();
+
+        return history;
+    }
+
+    /**
+     * @return what to use for the instance, or null if there are not enough sessions to tell yet
+     */
+    public static Recommendation recommend(GcHistory history, Instance instance) {
+        List<GcSessionStats> sessions = history.getLastSessions(HeapAdvisor.SESSIONS_CONSIDERED);
+        if (sessions.size() < HeapAdvisor.MIN_SESSIONS) {
+            return null;
+        }
+
+        int liveSet = 0;
+        double p95Pause = 0.0D;
+        double allocationRate = 0.0D;
+        for (GcSessionStats stats : sessions) {
+            liveSet = Math.max(liveSet, stats.getPeakLiveSetMegabytes());
+            p95Pause = Math.max(p95Pause, stats.getP95PauseMillis());
+            allocationRate = Math.max(allocationRate, stats.getAllocationRateMegabytesPerSecond());
+        }
+
+        int currentMax = instance.getMaximumMemoryInMegabytes();
+        int maxHeap = HeapAdvisor.roundUp(liveSet * HeapAdvisor.MAX_HEAP_TO_LIVE_SET);
+
+        // the live set estimate grows with the heap, so only grow it when the game actually fills it
+        if (maxHeap > currentMax && liveSet < currentMax * HeapAdvisor.HEAP_PRESSURE) {
+            maxHeap = currentMax;
+        }
+
+        maxHeap = Math.min(maxHeap, currentMax * 2);
+
+        GcCollector collector = GcCollector.G1;
+        boolean keepZgc = instance.getGcCollector() == GcCollector.ZGC && p95Pause < HeapAdvisor.SHORT_PAUSE_MILLIS;
+        if (keepZgc || (p95Pause > HeapAdvisor.LONG_PAUSE_MILLIS && maxHeap >= HeapAdvisor.ZGC_MIN_HEAP_MEGABYTES)) {
+            collector = GcCollector.ZGC;
+        }
+
+        maxHeap = Math.max(maxHeap, HeapAdvisor.MIN_MAX_HEAP_MEGABYTES);
+        maxHeap = Math.min(maxHeap, HeapAdvisor.getMemoryLimit());
+
+        int minHeap = HeapAdvisor.roundUp(liveSet * HeapAdvisor.MIN_HEAP_TO_LIVE_SET);
+        minHeap = Math.min(Math.max(minHeap, HeapAdvisor.MIN_HEAP_MEGABYTES), maxHeap);
+
+        String reason = "peak live set ~" + liveSet + " MiB, 95% of pauses under " + MathUtils.round(p95Pause, 1) +
+            " ms, allocating up to " + MathUtils.round(allocationRate, 1) + " MiB/s over " + sessions.size() + " sessions";
+
+        return new Recommendation(minHeap, maxHeap, collector, reason);
+    }
+
+    public static Path getGcLogFile(Instance instance) {
+        return instance.getWorkDir().resolve(HeapAdvisor.GC_LOG_FILE_NAME);
+    }
+
+    private static int roundUp(double megabytes) {
+        int step = HeapAdvisor.HEAP_STEP_MEGABYTES;
+
+        return (int) Math.ceil(megabytes / step) * step;
+    }
+
+    /**
+     * @return half of the physical memory, the rest is for the system, the game's native memory and the launcher
+     */
+    private static int getMemoryLimit() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof OperatingSystemMXBean bean) {
+            return (int) (bean.getTotalMemorySize() / 1024L / 1024L / 2L);
+        }
+
+        return Integer.MAX_VALUE;
+    }
+
+    public record Recommendation(int minimumMemory, int maximumMemory, GcCollector collector, String reason) {
+        public boolean matches(Instance instance) {
+            return instance.getMinimumMemoryInMegabytes() == this.minimumMemory &&
+                instance.getMaximumMemoryInMegabytes() == this.maximumMemory &&
+                instance.getGcCollector() == this.collector;
+        }
+
+        @Override
+        public String toString() {
+            return this.minimumMemory + "-" + this.maximumMemory + " MiB with " + this.collector + " (" + this.reason + ")";
+        }
+    }
+
+    private HeapAdvisor() {
+        throw new UnsupportedOperationException();
+    }
+}
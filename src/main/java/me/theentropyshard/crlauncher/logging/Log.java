@@ -19,6 +19,7 @@
 package me.theentropyshard.crlauncher.logging;
 
 import me.theentropyshard.crlauncher.cosmic.CosmicLogEvent;
+import me.theentropyshard.crlauncher.cosmic.CosmicLogSession;
 import me.theentropyshard.crlauncher.cosmic.TimeCosmicLogEvent;
 
 import java.io.CharArrayWriter;
@@ -27,11 +28,13 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
 public final class Log {
-    private static final BlockingQueue<LogEvent> EVENT_QUEUE = new ArrayBlockingQueue<>(128);
+    private static final int QUEUE_CAPACITY = 16384;
+    private static final BlockingQueue<LogEvent> EVENT_QUEUE = new ArrayBlockingQueue<>(Log.QUEUE_CAPACITY);
+    private static final LogMetrics METRICS = new LogMetrics();
     private static final boolean WRAP_ERR = true;
 
     public static void start() {
-        new LogQueueProcessor(Log.EVENT_QUEUE).start();
+        new LogQueueProcessor(Log.EVENT_QUEUE, Log.METRICS).start();
 
         //System.setOut(new SystemOutInterceptor(System.out, LogLevel.DEBUG));
 
@@ -43,19 +46,26 @@ public final class Log {
     }
 
     public static void info(String message) {
-        Log.EVENT_QUEUE.offer(new LogEvent(LogLevel.INFO, message));
+        Log.post(new LogEvent(LogLevel.INFO, message));
     }
 
     public static void warn(String message) {
-        Log.EVENT_QUEUE.offer(new LogEvent(LogLevel.WARN, message));
+        Log.post(new LogEvent(LogLevel.WARN, message));
     }
 
     public static void error(String message) {
-        Log.EVENT_QUEUE.offer(new LogEvent(LogLevel.ERROR, message));
+        Log.post(new LogEvent(LogLevel.ERROR, message));
     }
 
     public static void debug(String message) {
-        Log.EVENT_QUEUE.offer(new LogEvent(LogLevel.DEBUG, message));
+        Log.post(new LogEvent(LogLevel.DEBUG, message));
+    }
+
+    /**
+     * Shows a message in the console without writing it to the log file
+     */
+    public static void console(String message) {
+        Log.post(new LogEvent(LogLevel.INFO, message, LogEvent.APP_CONSOLE));
     }
 
     public static void error(String message, Throwable t) {
@@ -73,11 +83,35 @@ public final class Log {
         }
     }
 
-    public static void cosmicReachModded(String line) {
-        Log.EVENT_QUEUE.offer(new CosmicLogEvent(line));
+    public static void cosmicReachModded(String line, CosmicLogSession session) {
+        Log.postGameLine(new CosmicLogEvent(line, session));
+    }
+
+    public static void cosmicReachVanilla(String line, CosmicLogSession session) {
+        Log.postGameLine(new TimeCosmicLogEvent(line, session));
+    }
+
+    private static void post(LogEvent event) {
+        // launcher messages may come from the EDT, so they never wait for the log thread
+        if (!Log.EVENT_QUEUE.offer(event)) {
+            Log.METRICS.recordDropped();
+        }
+    }
+
+    private static void postGameLine(LogEvent event) {
+        Log.METRICS.recordGameLine();
+
+        // blocking here stops reading the game output, so the game waits instead of its lines being lost
+        try {
+            Log.EVENT_QUEUE.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            Log.METRICS.recordDropped();
+        }
     }
 
-    public static void cosmicReachVanilla(String line) {
-        Log.EVENT_QUEUE.offer(new TimeCosmicLogEvent(line));
+    public static LogMetrics getMetrics() {
+        return Log.METRICS;
     }
 }
\ No newline at end of file
@@ -18,9 +18,10 @@
 
 package me.theentropyshard.crlauncher.logging;
 
-import me.theentropyshard.crlauncher.gui.LauncherConsole;
+import me.theentropyshard.crlauncher.gui.ConsoleText;
 import org.apache.logging.log4j.Logger;
 
+import java.awt.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -35,14 +36,21 @@ public class LogEvent {
     private final int flags;
 
     public LogEvent(LogLevel level, String message) {
+        this(level, message, LogEvent.APP_CONSOLE | LogEvent.FILE_LOG4J);
+    }
+
+    public LogEvent(LogLevel level, String message, int flags) {
         this.level = level;
         this.message = message.endsWith("\n") ? message : message + "\n";
-        this.flags = LogEvent.APP_CONSOLE | LogEvent.FILE_LOG4J;
+        this.flags = flags;
     }
 
-    public void post(Logger log) {
-        if ((this.flags & LogEvent.APP_CONSOLE) == LogEvent.APP_CONSOLE) {
-            this.appConsole(this.message);
+    /**
+     * @param console text to append the console output to, or null if there is no console
+     */
+    public void post(Logger log, ConsoleText console) {
+        if (console != null && (this.flags & LogEvent.APP_CONSOLE) == LogEvent.APP_CONSOLE) {
+            this.appConsole(console, this.message);
         }
 
         if ((this.flags & LogEvent.FILE_LOG4J) == LogEvent.FILE_LOG4J) {
@@ -50,14 +58,10 @@ public class LogEvent {
         }
     }
 
-    public void appConsole(String message) {
-        if (LauncherConsole.instance == null) {
-            return;
-        }
-
-        LauncherConsole c = LauncherConsole.instance;
-        c.setColor(this.level.color()).setBold(true).write("[" + LogEvent.currentTime() + "]: ");
-        c.setColor(this.level.color()).setBold(false).write(message);
+    public void appConsole(ConsoleText console, String message) {
+        Color color = this.level.color();
+        console.append("[" + LogEvent.currentTime() + "]: ", color, true);
+        console.append(message, color, false);
     }
 
     public void fileLog4j(Logger log, String message) {
@@ -79,6 +83,10 @@ public class LogEvent {
         return this.level;
     }
 
+    public String getMessage() {
+        return this.message;
+    }
+
     public static String currentTime() {
         return LogEvent.FORMATTER.format(LocalDateTime.now());
     }
@@ -0,0 +1,72 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LogMetrics {
+    private final LongAdder processedEvents;
+    private final LongAdder batches;
+    private final LongAdder gameLines;
+    private final LongAdder droppedEvents;
+    private final AtomicLong largestBatch;
+
+    public LogMetrics() {
+        this.processedEvents = new LongAdder();
+        this.batches = new LongAdder();
+        this.gameLines = new LongAdder();
+        this.droppedEvents = new LongAdder();
+        this.largestBatch = new AtomicLong();
+    }
+
+    public void recordBatch(int size) {
+        this.processedEvents.add(size);
+        this.batches.increment();
+        this.largestBatch.accumulateAndGet(size, Math::max);
+    }
+
+    public void recordGameLine() {
+        this.gameLines.increment();
+    }
+
+    public void recordDropped() {
+        this.droppedEvents.increment();
+    }
+
+    public long getProcessedEvents() {
+        return this.processedEvents.sum();
+    }
+
+    public long getBatches() {
+        return this.batches.sum();
+    }
+
+    public long getGameLines() {
+        return this.gameLines.sum();
+    }
+
+    public long getDroppedEvents() {
+        return this.droppedEvents.sum();
+    }
+
+    public long getLargestBatch() {
+        return this.largestBatch.get();
+    }
+}
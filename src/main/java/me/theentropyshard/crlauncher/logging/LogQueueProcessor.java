@@ -18,18 +18,34 @@
 
 package me.theentropyshard.crlauncher.logging;
 
+import me.theentropyshard.crlauncher.gui.ConsoleText;
+import me.theentropyshard.crlauncher.gui.LauncherConsole;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Drains the log queue in batches, so a burst of lines costs one console update instead of one per line
+ */
 public final class LogQueueProcessor implements Runnable {
     private static final Logger LOG = LogManager.getLogger(LogQueueProcessor.class);
 
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final long DROP_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10L);
+
     private final BlockingQueue<LogEvent> queue;
+    private final LogMetrics metrics;
+
+    private long reportedDrops;
+    private long lastDropReport;
 
-    public LogQueueProcessor(BlockingQueue<LogEvent> queue) {
+    public LogQueueProcessor(BlockingQueue<LogEvent> queue, LogMetrics metrics) {
         this.queue = queue;
+        this.metrics = metrics;
     }
 
     public void start() {
@@ -38,18 +54,54 @@ public final class LogQueueProcessor implements Runnable {
 
     @Override
     public void run() {
-        while (true) {
-            LogEvent event;
+        List<LogEvent> batch = new ArrayList<>(LogQueueProcessor.MAX_BATCH_SIZE);
+        ConsoleText text = new ConsoleText();
 
+        while (true) {
             try {
-                event = this.queue.take();
+                batch.add(this.queue.take());
             } catch (InterruptedException ignored) {
                 Thread.currentThread().interrupt();
 
                 return;
             }
 
-            event.post(LOG);
+            this.queue.drainTo(batch, LogQueueProcessor.MAX_BATCH_SIZE - 1);
+
+            this.reportDrops(batch);
+
+            LauncherConsole console = LauncherConsole.instance;
+
+            for (LogEvent event : batch) {
+                event.post(LOG, console == null ? null : text);
+            }
+
+            if (!text.isEmpty()) {
+                // the console copies the text, so the same buffer is filled again with the next batch
+                console.write(text);
+                text.clear();
+            }
+
+            this.metrics.recordBatch(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void reportDrops(List<LogEvent> batch) {
+        long dropped = this.metrics.getDroppedEvents();
+        if (dropped == this.reportedDrops) {
+            return;
         }
+
+        long now = System.nanoTime();
+        if (this.lastDropReport != 0L && now - this.lastDropReport < LogQueueProcessor.DROP_REPORT_INTERVAL_NANOS) {
+            return;
+        }
+
+        batch.add(new LogEvent(LogLevel.WARN, "Log queue was full, dropped " + (dropped - this.reportedDrops) +
+            " launcher message(s) (" + dropped + " in total)"));
+
+        this.reportedDrops = dropped;
+        this.lastDropReport = now;
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.cache;
+
+/**
+ * Metadata of a cached response, the body is stored next to it
+ */
+public class HttpCacheEntry {
+    private String url;
+    private String etag;
+    private String lastModified;
+    private String contentType;
+    private long storedAt;
+
+    public HttpCacheEntry() {
+
+    }
+
+    public HttpCacheEntry(String url, String etag, String lastModified, String contentType, long storedAt) {
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+        this.storedAt = storedAt;
+    }
+
+    public long getAge() {
+        return System.currentTimeMillis() - this.storedAt;
+    }
+
+    public String getUrl() {
+        return this.url;
+    }
+
+    public String getEtag() {
+        return this.etag;
+    }
+
+    public String getLastModified() {
+        return this.lastModified;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    public long getStoredAt() {
+        return this.storedAt;
+    }
+
+    public void setStoredAt(long storedAt) {
+        this.storedAt = storedAt;
+    }
+}
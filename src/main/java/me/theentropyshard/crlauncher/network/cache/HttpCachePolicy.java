@@ -0,0 +1,88 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.cache;
+
+import okhttp3.HttpUrl;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Says how long responses of an endpoint may be served from the cache without asking the server,
+ * and for how long after that a stale copy may still be served while it is revalidated in the background
+ */
+public final class HttpCachePolicy {
+    public static final List<HttpCachePolicy> DEFAULTS = List.of(
+        new HttpCachePolicy("raw.githubusercontent.com", "/CRModders/CosmicArchive/main/versions.json", Duration.ofMinutes(10), Duration.ofDays(30)),
+        new HttpCachePolicy("api.github.com", "/repos/", Duration.ofMinutes(15), Duration.ofDays(30)),
+        new HttpCachePolicy("codeberg.org", "/api/v1/repos/", Duration.ofMinutes(15), Duration.ofDays(30)),
+        new HttpCachePolicy("api.crmm.tech", "/api/search", Duration.ofMinutes(2), Duration.ofDays(1)),
+        new HttpCachePolicy("api.crmm.tech", "/api/project/", Duration.ofMinutes(5), Duration.ofDays(7))
+    );
+
+    private final String host;
+    private final String pathPrefix;
+    private final Duration maxAge;
+    private final Duration staleWhileRevalidate;
+
+    public HttpCachePolicy(String host, String pathPrefix, Duration maxAge, Duration staleWhileRevalidate) {
+        this.host = host;
+        this.pathPrefix = pathPrefix;
+        this.maxAge = maxAge;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public static HttpCachePolicy find(List<HttpCachePolicy> policies, HttpUrl url) {
+        for (HttpCachePolicy policy : policies) {
+            if (policy.matches(url)) {
+                return policy;
+            }
+        }
+
+        return null;
+    }
+
+    public boolean matches(HttpUrl url) {
+        return this.host.equalsIgnoreCase(url.host()) && url.encodedPath().startsWith(this.pathPrefix);
+    }
+
+    public boolean isFresh(long ageMillis) {
+        return ageMillis < this.maxAge.toMillis();
+    }
+
+    public boolean isUsable(long ageMillis) {
+        return ageMillis < this.maxAge.plus(this.staleWhileRevalidate).toMillis();
+    }
+
+    public String getHost() {
+        return this.host;
+    }
+
+    public String getPathPrefix() {
+        return this.pathPrefix;
+    }
+
+    public Duration getMaxAge() {
+        return this.maxAge;
+    }
+
+    public Duration getStaleWhileRevalidate() {
+        return this.staleWhileRevalidate;
+    }
+}
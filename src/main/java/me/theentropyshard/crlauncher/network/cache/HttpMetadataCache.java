@@ -0,0 +1,123 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.cache;
+
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.FileUtils;
+import me.theentropyshard.crlauncher.utils.HashUtils;
+import me.theentropyshard.crlauncher.utils.json.Json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Disk store for small API responses. Every entry is a body file and a JSON metadata file named after
+ * the SHA-1 of the URL. Both are written to a temporary file first and moved into place,
+ * so a reader never sees a half-written entry.
+ */
+public class HttpMetadataCache {
+    private static final String BODY_EXTENSION = ".body";
+    private static final String META_EXTENSION = ".json";
+
+    private final Path dir;
+    private final Map<String, HttpCacheEntry> entries;
+
+    public HttpMetadataCache(Path dir) {
+        this.dir = dir;
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    public HttpCacheEntry getEntry(String url) {
+        String key = HttpMetadataCache.key(url);
+
+        HttpCacheEntry entry = this.entries.get(key);
+        if (entry != null) {
+            return entry;
+        }
+
+        Path metaFile = this.dir.resolve(key + HttpMetadataCache.META_EXTENSION);
+        if (!Files.exists(metaFile) || !Files.exists(this.dir.resolve(key + HttpMetadataCache.BODY_EXTENSION))) {
+            return null;
+        }
+
+        try {
+            entry = Json.parse(FileUtils.readUtf8(metaFile), HttpCacheEntry.class);
+        } catch (Exception e) {
+            Log.warn("Could not read cache entry for " + url + ": " + e.getMessage());
+
+            return null;
+        }
+
+        if (entry == null || !url.equals(entry.getUrl())) {
+            return null;
+        }
+
+        this.entries.put(key, entry);
+
+        return entry;
+    }
+
+    public byte[] getBody(HttpCacheEntry entry) throws IOException {
+        return Files.readAllBytes(this.dir.resolve(HttpMetadataCache.key(entry.getUrl()) + HttpMetadataCache.BODY_EXTENSION));
+    }
+
+    public synchronized void put(HttpCacheEntry entry, byte[] body) throws IOException {
+        String key = HttpMetadataCache.key(entry.getUrl());
+
+        FileUtils.createDirectoryIfNotExists(this.dir);
+
+        this.write(this.dir.resolve(key + HttpMetadataCache.BODY_EXTENSION), body);
+        this.write(this.dir.resolve(key + HttpMetadataCache.META_EXTENSION), Json.write(entry).getBytes(StandardCharsets.UTF_8));
+
+        this.entries.put(key, entry);
+    }
+
+    /**
+     * Marks a cached entry as fresh again, used when the server answers 304 Not Modified
+     */
+    public synchronized void touch(HttpCacheEntry entry) throws IOException {
+        entry.setStoredAt(System.currentTimeMillis());
+
+        Path metaFile = this.dir.resolve(HttpMetadataCache.key(entry.getUrl()) + HttpMetadataCache.META_EXTENSION);
+        this.write(metaFile, Json.write(entry).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(Path file, byte[] bytes) throws IOException {
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmpFile, bytes);
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String key(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+            return HashUtils.toHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.cache;
+
+import me.theentropyshard.crlauncher.CRLauncher;
+import me.theentropyshard.crlauncher.logging.Log;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves GET requests of known API endpoints from {@link HttpMetadataCache}. A fresh entry is returned without
+ * touching the network, a stale one is returned immediately and revalidated in the background with
+ * If-None-Match/If-Modified-Since, so a 304 costs no body and does not count against GitHub's rate limit.
+ * If the network fails, a cached copy is served no matter how old it is. In offline mode no request
+ * leaves the launcher at all.
+ */
+public class MetadataCacheInterceptor implements Interceptor {
+    public static final String CACHE_STATUS_HEADER = "X-CRL-Cache";
+
+    private static final long MAX_BODY_SIZE = 8L * 1024L * 1024L;
+
+    private final HttpMetadataCache cache;
+    private final List<HttpCachePolicy> policies;
+    private final Set<String> revalidating;
+    private final ExecutorService revalidationExecutor;
+
+    private volatile boolean offline;
+
+    public MetadataCacheInterceptor(HttpMetadataCache cache, List<HttpCachePolicy> policies) {
+        this.cache = cache;
+        this.policies = policies;
+        this.revalidating = ConcurrentHashMap.newKeySet();
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.revalidationExecutor = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "CRL-Cache-Revalidate-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        String url = request.url().toString();
+
+        HttpCachePolicy policy = "GET".equals(request.method()) ?
+            HttpCachePolicy.find(this.policies, request.url()) : null;
+
+        if (policy == null) {
+            if (this.offline) {
+                throw new IOException("Offline mode is enabled, not requesting " + url);
+            }
+
+            return chain.proceed(request);
+        }
+
+        HttpCacheEntry entry = this.cache.getEntry(url);
+
+        if (request.tag(Revalidation.class) != null) {
+            return this.fetch(chain, request, entry);
+        }
+
+        if (entry != null) {
+            long age = entry.getAge();
+
+            if (this.offline || policy.isFresh(age)) {
+                Response response = this.cachedResponse(request, entry, "HIT");
+
+                if (response != null) {
+                    return response;
+                }
+            } else if (policy.isUsable(age)) {
+                Response response = this.cachedResponse(request, entry, "STALE");
+
+                if (response != null) {
+                    this.revalidateInBackground(request);
+
+                    return response;
+                }
+            }
+        }
+
+        if (this.offline) {
+            throw new IOException("Offline mode is enabled and there is no cached response for " + url);
+        }
+
+        return this.fetch(chain, request, entry);
+    }
+
+    private Response fetch(Chain chain, Request request, HttpCacheEntry entry) throws IOException {
+        Request.Builder builder = request.newBuilder();
+
+        if (entry != null) {
+            if (entry.getEtag() != null) {
+                builder.header("If-None-Match", entry.getEtag());
+            }
+
+            if (entry.getLastModified() != null) {
+                builder.header("If-Modified-Since", entry.getLastModified());
+            }
+        }
+
+        Response response;
+
+        try {
+            response = chain.proceed(builder.build());
+        } catch (IOException e) {
+            Response cached = entry == null ? null : this.cachedResponse(request, entry, "STALE");
+
+            if (cached == null) {
+                throw e;
+            }
+
+            Log.warn("Could not reach " + request.url() + ", using cached response: " + e.getMessage());
+
+            return cached;
+        }
+
+        int code = response.code();
+
+        if (code == 304 && entry != null) {
+            Response cached = this.cachedResponse(request, entry, "REVALIDATED");
+
+            if (cached != null) {
+                response.close();
+                this.cache.touch(entry);
+
+                return cached;
+            }
+        }
+
+        if (entry != null && (code == 403 || code == 429 || code >= 500)) {
+            Response cached = this.cachedResponse(request, entry, "STALE");
+
+            if (cached != null) {
+                Log.warn("Got HTTP " + code + " from " + request.url() + ", using cached response");
+                response.close();
+
+                return cached;
+            }
+        }
+
+        ResponseBody body = response.body();
+
+        if (code != 200 || body == null || body.contentLength() > MetadataCacheInterceptor.MAX_BODY_SIZE) {
+            return response;
+        }
+
+        MediaType contentType = body.contentType();
+        byte[] bytes = body.bytes();
+
+        HttpCacheEntry newEntry = new HttpCacheEntry(
+            request.url().toString(), response.header("ETag"), response.header("Last-Modified"),
+            contentType == null ? null : contentType.toString(), System.currentTimeMillis()
+        );
+
+        try {
+            this.cache.put(newEntry, bytes);
+        } catch (IOException e) {
+            Log.warn("Could not cache response of " + request.url() + ": " + e.getMessage());
+        }
+
+        return response.newBuilder()
+            .header(MetadataCacheInterceptor.CACHE_STATUS_HEADER, "MISS")
+            .body(ResponseBody.create(bytes, contentType))
+            .build();
+    }
+
+    private void revalidateInBackground(Request request) {
+        String url = request.url().toString();
+
+        if (!this.revalidating.add(url)) {
+            return;
+        }
+
+        Request revalidation = request.newBuilder()
+            .tag(Revalidation.class, Revalidation.INSTANCE)
+            .build();
+
+        this.revalidationExecutor.execute(() -> {
+            try (Response ignored = CRLauncher.getInstance().getHttpClient().newCall(revalidation).execute()) {
+                Log.debug("Revalidated cached response of " + url);
+            } catch (IOException e) {
+                Log.warn("Could not revalidate cached response of " + url + ": " + e.getMessage());
+            } finally {
+                this.revalidating.remove(url);
+            }
+        });
+    }
+
+    private Response cachedResponse(Request request, HttpCacheEntry entry, String status) {
+        byte[] body;
+
+        try {
+            body = this.cache.getBody(entry);
+        } catch (IOException e) {
+            Log.warn("Could not read cached body of " + entry.getUrl() + ": " + e.getMessage());
+
+            return null;
+        }
+
+        String contentType = entry.getContentType();
+
+        Response.Builder builder = new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .header(MetadataCacheInterceptor.CACHE_STATUS_HEADER, status)
+            .sentRequestAtMillis(entry.getStoredAt())
+            .receivedResponseAtMillis(entry.getStoredAt())
+            .body(ResponseBody.create(body, contentType == null ? null : MediaType.parse(contentType)));
+
+        if (contentType != null) {
+            builder.header("Content-Type", contentType);
+        }
+
+        return builder.build();
+    }
+
+    public boolean isOffline() {
+        return this.offline;
+    }
+
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    private enum Revalidation {
+        INSTANCE
+    }
+}
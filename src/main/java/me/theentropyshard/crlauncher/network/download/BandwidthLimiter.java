@@ -0,0 +1,88 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.download;
+
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by all transfers. Plugged into the HTTP client as a progress listener,
+ * so every read from a response body is accounted for
+ */
+public class BandwidthLimiter implements ProgressListener {
+    private static final long UNLIMITED = 0L;
+
+    private volatile long bytesPerSecond;
+
+    private long available;
+    private long lastRefill;
+
+    public BandwidthLimiter(long bytesPerSecond) {
+        this.setBytesPerSecond(bytesPerSecond);
+    }
+
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(BandwidthLimiter.UNLIMITED, bytesPerSecond);
+        this.available = this.bytesPerSecond;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public void acquire(long bytes) {
+        if (this.bytesPerSecond == BandwidthLimiter.UNLIMITED || bytes <= 0) {
+            return;
+        }
+
+        long waitNanos;
+
+        synchronized (this) {
+            long rate = this.bytesPerSecond;
+            long now = System.nanoTime();
+
+            long refill = (now - this.lastRefill) * rate / TimeUnit.SECONDS.toNanos(1);
+            if (refill > 0) {
+                this.available = Math.min(rate, this.available + refill);
+                this.lastRefill = now;
+            }
+
+            this.available -= bytes;
+
+            if (this.available >= 0) {
+                return;
+            }
+
+            waitNanos = -this.available * TimeUnit.SECONDS.toNanos(1) / rate;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void update(long contentLength, long totalBytesRead, long bytesReadThisTime, boolean done) {
+        this.acquire(bytesReadThisTime);
+    }
+
+    public long getBytesPerSecond() {
+        return this.bytesPerSecond;
+    }
+}
@@ -20,44 +20,44 @@ package me.theentropyshard.crlauncher.network.download;
 
 import me.theentropyshard.crlauncher.CRLauncher;
 import me.theentropyshard.crlauncher.logging.Log;
-import me.theentropyshard.crlauncher.network.progress.ProgressNetworkInterceptor;
-import okhttp3.OkHttpClient;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import me.theentropyshard.crlauncher.network.progress.ProgressAggregator;
+import me.theentropyshard.crlauncher.utils.MathUtils;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class DownloadList {
-    
-
-    public static final int MAX_CONNECTIONS = 8;
-
-    private final DownloadListener downloadListener;
+    private final DownloadPriority priority;
     private final List<HttpDownload> downloads;
-    private final AtomicLong downloadedBytes;
+    private final List<DownloadTask> tasks;
+    private final ProgressAggregator progressAggregator;
     private long totalSize;
 
     private boolean finished;
 
     public DownloadList(DownloadListener downloadListener) {
-        this.downloadListener = downloadListener;
+        this(downloadListener, DownloadPriority.FOREGROUND);
+    }
+
+    public DownloadList(DownloadListener downloadListener, DownloadPriority priority) {
+        this.priority = priority;
         this.downloads = new ArrayList<>();
-        this.downloadedBytes = new AtomicLong(0);
+        this.tasks = new CopyOnWriteArrayList<>();
+        this.progressAggregator = new ProgressAggregator(downloadListener);
     }
 
     public synchronized void add(HttpDownload download) {
         long totalSize = download.expectedSize();
         this.totalSize += totalSize > 0 ? totalSize : 0;
+        this.progressAggregator.setTotalSize(this.totalSize);
 
         if (download.size() != -1L) {
-            this.downloadedBytes.addAndGet(download.size());
+            this.progressAggregator.addDownloadedBytes(download.size());
         }
 
         this.downloads.removeIf(d -> d.getSaveAs().equals(download.getSaveAs()));
@@ -85,39 +85,49 @@ public class DownloadList {
             return;
         }
 
-        ExecutorService executorService = Executors.newFixedThreadPool(DownloadList.MAX_CONNECTIONS);
+        DownloadScheduler scheduler = CRLauncher.getInstance().getDownloadScheduler();
 
-        OkHttpClient parent = CRLauncher.getInstance().getHttpClient();
+        long startTime = System.nanoTime();
+        long alreadyDownloaded = this.progressAggregator.getDownloadedBytes();
+
+        this.progressAggregator.start();
 
         for (HttpDownload download : this.downloads) {
-            OkHttpClient httpClient = parent.newBuilder()
-                    .addNetworkInterceptor(new ProgressNetworkInterceptor((
-                            (contentLength, bytesRead, bytesThisTime, done) -> {
-                        this.downloadListener.updateProgress(this.totalSize, this.downloadedBytes.addAndGet(bytesThisTime));
-                    })))
-                    .build();
-            download.setHttpClient(httpClient);
-
-            Runnable runnable = () -> {
-                try {
-                    download.execute();
-                } catch (IOException e) {
-                    Log.error("Download failed", e);
-                }
-            };
-
-            executorService.execute(runnable);
+            download.setProgressListener(this.progressAggregator.track());
+
+            this.tasks.add(scheduler.submit(download, this.priority));
         }
 
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(15, TimeUnit.MINUTES)) {
-                executorService.shutdownNow();
+        for (DownloadTask task : this.tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                Log.error("Download failed", e.getCause());
+            } catch (CancellationException ignored) {
+
+            } catch (InterruptedException e) {
+                this.cancel();
+                Thread.currentThread().interrupt();
+
+                break;
             }
-        } catch (InterruptedException ex) {
-            executorService.shutdownNow();
         }
 
+        this.progressAggregator.stop();
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        long downloaded = this.progressAggregator.getDownloadedBytes() - alreadyDownloaded;
+
+        Log.info("Downloaded " + MathUtils.round(downloaded / 1024.0D / 1024.0D, 2) + " MiB for " +
+            this.downloads.size() + " file(s) in " + elapsed + " ms");
+
         this.finished = true;
     }
+
+    /**
+     * Cancels every download of this list that has not finished yet, including the ones in progress
+     */
+    public void cancel() {
+        this.tasks.forEach(task -> task.cancel(true));
+    }
 }
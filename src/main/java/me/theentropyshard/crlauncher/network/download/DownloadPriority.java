@@ -16,27 +16,21 @@
  * along with this program. If not, see <https://www.gnu.org/licenses/>.
  */
 
-package me.theentropyshard.crlauncher.utils.ansi;
+package me.theentropyshard.crlauncher.network.download;
 
-public class AnsiPart {
-    private final AnsiColor color;
-    private final String text;
+public enum DownloadPriority {
+    /**
+     * Downloads a game launch is waiting for
+     */
+    FOREGROUND,
 
-    AnsiPart(AnsiColor color, String text) {
-        this.color = color;
-        this.text = text;
-    }
+    /**
+     * Downloads started by the user, like installing a mod
+     */
+    USER,
 
-    @Override
-    public String toString() {
-        return this.color.getCode() + this.text;
-    }
-
-    public AnsiColor getColor() {
-        return this.color;
-    }
-
-    public String getText() {
-        return this.text;
-    }
-}
\ No newline at end of file
+    /**
+     * Prefetching that nobody is waiting for
+     */
+    BACKGROUND
+}
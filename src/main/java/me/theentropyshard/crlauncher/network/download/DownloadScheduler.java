@@ -0,0 +1,299 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.download;
+
+import me.theentropyshard.crlauncher.logging.Log;
+import okhttp3.HttpUrl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Launcher-wide download queue. Downloads are started in priority order, while keeping the total
+ * number of connections and the number of connections to each host under their limits
+ */
+public class DownloadScheduler {
+    public static final int MAX_CONNECTIONS = 8;
+    public static final int MAX_CONNECTIONS_PER_HOST = 4;
+
+    private static final Map<String, Integer> HOST_LIMITS = Map.of(
+        "jitpack.io", 2,
+        "maven.quiltmc.org", 4,
+        "api.github.com", 2,
+        "github.com", 4,
+        "objects.githubusercontent.com", 4
+    );
+
+    private static final Comparator<DownloadTask> ORDER = Comparator
+        .comparing(DownloadTask::getPriority)
+        .thenComparingLong(DownloadTask::getSequence);
+
+    private final int maxConnections;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final ExecutorService executorService;
+    private final NavigableSet<DownloadTask> pending;
+    private final Map<String, Integer> runningPerHost;
+
+    private int running;
+    private long sequence;
+    private boolean shutdown;
+
+    public DownloadScheduler(int maxConnections, long bytesPerSecond) {
+        this.maxConnections = maxConnections;
+        this.bandwidthLimiter = new BandwidthLimiter(bytesPerSecond);
+        this.pending = new TreeSet<>(DownloadScheduler.ORDER);
+        this.runningPerHost = new HashMap<>();
+
+        AtomicInteger threadCount = new AtomicInteger(0);
+        this.executorService = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "CRL-Download-Thread-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    public DownloadTask submit(HttpDownload download, DownloadPriority priority) {
+        String host = DownloadScheduler.hostOf(download.getUrl());
+
+        DownloadTask task;
+
+        synchronized (this) {
+            task = new DownloadTask(this, download, priority, host, this.sequence++);
+
+            if (this.shutdown) {
+                task.cancel(false);
+
+                return task;
+            }
+
+            this.pending.add(task);
+        }
+
+        this.promote();
+
+        return task;
+    }
+
+    /**
+     * Submits the download and blocks until it has finished. Interrupting the calling thread cancels the download
+     */
+    public void download(HttpDownload download, DownloadPriority priority) throws IOException {
+        DownloadTask task = this.submit(download, priority);
+
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+
+            throw new IOException(e.getCause());
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Download of '" + download.getUrl() + "' was cancelled");
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while downloading '" + download.getUrl() + "'");
+        }
+    }
+
+    private void promote() {
+        List<DownloadTask> ready = new ArrayList<>();
+
+        synchronized (this) {
+            if (this.shutdown) {
+                return;
+            }
+
+            Iterator<DownloadTask> iterator = this.pending.iterator();
+
+            while (iterator.hasNext() && this.running < this.maxConnections) {
+                DownloadTask task = iterator.next();
+
+                int hostRunning = this.runningPerHost.getOrDefault(task.getHost(), 0);
+                if (hostRunning >= DownloadScheduler.hostLimit(task.getHost())) {
+                    continue;
+                }
+
+                iterator.remove();
+
+                this.running++;
+                this.runningPerHost.put(task.getHost(), hostRunning + 1);
+
+                ready.add(task);
+            }
+        }
+
+        for (DownloadTask task : ready) {
+            this.executorService.execute(task);
+        }
+    }
+
+    void finished(DownloadTask task) {
+        this.releaseConnection(task.getHost());
+    }
+
+    /**
+     * Takes connections to the host for extra requests of a download that is already running, as many as are free
+     * right now. It never waits, so downloads that all want more connections can not hold each other up
+     *
+     * @return number of connections taken, at most {@code count}
+     */
+    public int tryAcquireConnections(String host, int count) {
+        synchronized (this) {
+            if (this.shutdown) {
+                return 0;
+            }
+
+            int hostRunning = this.runningPerHost.getOrDefault(host, 0);
+            int taken = Math.min(count, Math.min(
+                this.maxConnections - this.running,
+                DownloadScheduler.hostLimit(host) - hostRunning
+            ));
+
+            if (taken <= 0) {
+                return 0;
+            }
+
+            this.running += taken;
+            this.runningPerHost.put(host, hostRunning + taken);
+
+            return taken;
+        }
+    }
+
+    /**
+     * Takes a connection to the host for a request that is not a download, like a metadata lookup,
+     * waiting until the host is under its limits. It has to be given back with {@link #releaseConnection(String)}
+     */
+    public void acquireConnection(String host) throws InterruptedIOException {
+        synchronized (this) {
+            while (true) {
+                if (this.shutdown) {
+                    throw new InterruptedIOException("Download scheduler is stopped");
+                }
+
+                int hostRunning = this.runningPerHost.getOrDefault(host, 0);
+                if (this.running < this.maxConnections && hostRunning < DownloadScheduler.hostLimit(host)) {
+                    this.running++;
+                    this.runningPerHost.put(host, hostRunning + 1);
+
+                    return;
+                }
+
+                try {
+                    this.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                    throw new InterruptedIOException("Interrupted while waiting for a connection to " + host);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a request on the download threads, using a connection taken with {@link #tryAcquireConnections(String, int)}.
+     * The connection is given back when the request is done, or right away if it can not be started
+     */
+    public Future<Void> runOnConnection(String host, Callable<Void> request) {
+        FutureTask<Void> task = new FutureTask<>(request) {
+            @Override
+            public void run() {
+                try {
+                    super.run();
+                } finally {
+                    DownloadScheduler.this.releaseConnection(host);
+                }
+            }
+        };
+
+        try {
+            this.executorService.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.cancel(false);
+            this.releaseConnection(host);
+        }
+
+        return task;
+    }
+
+    public void releaseConnection(String host) {
+        synchronized (this) {
+            this.running--;
+            this.runningPerHost.merge(host, -1, Integer::sum);
+            this.runningPerHost.remove(host, 0);
+
+            this.notifyAll();
+        }
+
+        this.promote();
+    }
+
+    synchronized void remove(DownloadTask task) {
+        this.pending.remove(task);
+    }
+
+    public void shutdown() {
+        List<DownloadTask> cancelled;
+
+        synchronized (this) {
+            this.shutdown = true;
+            this.notifyAll();
+
+            cancelled = new ArrayList<>(this.pending);
+            this.pending.clear();
+        }
+
+        cancelled.forEach(task -> task.cancel(true));
+
+        this.executorService.shutdownNow();
+
+        Log.info("Download scheduler stopped, " + cancelled.size() + " pending downloads cancelled");
+    }
+
+    /**
+     * @return host of the url, or an empty string if it can not be parsed, so it still falls under the default limit
+     */
+    public static String hostOf(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+
+        return httpUrl == null ? "" : httpUrl.host();
+    }
+
+    private static int hostLimit(String host) {
+        return DownloadScheduler.HOST_LIMITS.getOrDefault(host, DownloadScheduler.MAX_CONNECTIONS_PER_HOST);
+    }
+
+    public BandwidthLimiter getBandwidthLimiter() {
+        return this.bandwidthLimiter;
+    }
+}
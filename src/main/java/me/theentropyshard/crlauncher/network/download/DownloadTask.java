@@ -0,0 +1,81 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.download;
+
+import java.util.concurrent.FutureTask;
+
+public class DownloadTask extends FutureTask<Void> {
+    private final DownloadScheduler scheduler;
+    private final HttpDownload download;
+    private final DownloadPriority priority;
+    private final String host;
+    private final long sequence;
+
+    DownloadTask(DownloadScheduler scheduler, HttpDownload download, DownloadPriority priority, String host, long sequence) {
+        super(() -> {
+            download.execute();
+
+            return null;
+        });
+
+        this.scheduler = scheduler;
+        this.download = download;
+        this.download.setScheduler(scheduler);
+        this.priority = priority;
+        this.host = host;
+        this.sequence = sequence;
+    }
+
+    @Override
+    public void run() {
+        try {
+            super.run();
+        } finally {
+            this.scheduler.finished(this);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+        if (cancelled) {
+            this.scheduler.remove(this);
+            this.download.cancel();
+        }
+
+        return cancelled;
+    }
+
+    public HttpDownload getDownload() {
+        return this.download;
+    }
+
+    public DownloadPriority getPriority() {
+        return this.priority;
+    }
+
+    public String getHost() {
+        return this.host;
+    }
+
+    long getSequence() {
+        return this.sequence;
+    }
+}
@@ -19,8 +19,11 @@
 package me.theentropyshard.crlauncher.network.download;
 
 import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
 import me.theentropyshard.crlauncher.utils.FileUtils;
 import me.theentropyshard.crlauncher.utils.HashUtils;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -30,69 +33,122 @@ import org.apache.logging.log4j.Logger;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.channels.Channels;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class HttpDownload {
     
 
     private static final long EXPECTED_SIZE_NOT_SET = -1L;
+    private static final long SEGMENTED_THRESHOLD = 8L * 1024L * 1024L;
+    private static final int DEFAULT_SEGMENTS = 4;
+    private static final int BUFFER_SIZE = 65536;
 
     private OkHttpClient httpClient;
     private final String url;
     private final Path saveAs;
     private final Path copyTo;
     private final boolean forceDownload;
+    private final String sha1;
     private final String sha256;
+    private final String sha512;
     private final boolean executable;
     private final long expectedSize;
+    private final int segments;
+    private final List<Call> calls;
 
-    private HttpDownload(OkHttpClient httpClient, String url, Path saveAs, Path copyTo, boolean forceDownload, String sha256, boolean executable, long expectedSize) {
+    private ProgressListener progressListener;
+    private DownloadScheduler scheduler;
+    private long progressFloor;
+
+    private volatile boolean cancelled;
+
+    private HttpDownload(OkHttpClient httpClient, String url, Path saveAs, Path copyTo, boolean forceDownload,
+                         String sha1, String sha256, String sha512, boolean executable, long expectedSize,
+                         int segments, ProgressListener progressListener) {
         this.httpClient = Objects.requireNonNull(httpClient, "httpClient == null");
         this.url = Objects.requireNonNull(url, "url == null");
         this.saveAs = Objects.requireNonNull(saveAs, "saveAs == null");
         this.copyTo = copyTo;
         this.forceDownload = forceDownload;
+        this.sha1 = sha1;
         this.sha256 = sha256;
+        this.sha512 = sha512;
         this.executable = executable;
         this.expectedSize = expectedSize;
+        this.segments = segments;
+        this.progressListener = progressListener;
+        this.calls = new CopyOnWriteArrayList<>();
     }
 
     public Path getSaveAs() {
         return this.saveAs;
     }
 
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * Cancels the requests that are in flight and prevents new ones from being made
+     */
+    public void cancel() {
+        this.cancelled = true;
+        this.calls.forEach(Call::cancel);
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    private Call newCall(OkHttpClient httpClient, Request request) throws IOException {
+        if (this.cancelled) {
+            throw new InterruptedIOException("Download of '" + this.url + "' was cancelled");
+        }
+
+        Call call = httpClient.newCall(request);
+        this.calls.add(call);
+
+        if (this.cancelled) {
+            call.cancel();
+        }
+
+        return call;
+    }
+
     public void execute() throws IOException {
+        this.calls.clear();
+
         boolean needsDownload = false;
 
         if (Files.exists(this.saveAs)) {
             long size = Files.size(this.saveAs);
-            boolean hashMatches = HashUtils.sha256(this.saveAs).equals(this.sha256);
 
             if (this.expectedSize == size) {
-                if (this.sha256 == null) {
+                if (this.sha256 == null || HashUtils.sha256(this.saveAs).equalsIgnoreCase(this.sha256)) {
                     return;
-                } else {
-                    if (hashMatches) {
-                        return;
-                    } else {
-                        Log.debug("File '" + this.saveAs + "' exists, size matches, but SHA-256 does not match");
-                    }
-
-                    needsDownload = true;
                 }
+
+                Log.debug("File '" + this.saveAs + "' exists, size matches, but SHA-256 does not match");
+
+                needsDownload = true;
             } else if (this.expectedSize != HttpDownload.EXPECTED_SIZE_NOT_SET) {
-                if (hashMatches) {
-                    Log.debug("File '" + this.saveAs + "' exists, SHA-256 matches, but size does not match");
-                } else {
-                    Log.debug("File '" + this.saveAs + "' exists, but size and SHA-256 do not match");
-                }
+                Log.debug("File '" + this.saveAs + "' exists, but size does not match");
 
                 needsDownload = true;
             }
@@ -112,8 +168,19 @@ public class HttpDownload {
 
             FileUtils.createDirectoryIfNotExists(this.saveAs.getParent());
 
-            this.downloadFile(builder.build(), partiallyDownloaded, size);
-            this.checkHash();
+            boolean segmented = !partiallyDownloaded && this.segments > 1 && this.tryDownloadSegmented();
+
+            VerifyingSink sink;
+
+            if (segmented) {
+                // segments are written out of order, so the assembled file is hashed once when all of them are done
+                sink = new VerifyingSink(OutputStream.nullOutputStream(), this.algorithms());
+                sink.prime(this.saveAs, this.expectedSize);
+            } else {
+                sink = this.downloadFile(builder.build(), partiallyDownloaded, size);
+            }
+
+            this.verify(sink);
 
             if (this.executable) {
                 new File(this.saveAs.toString()).setExecutable(true);
@@ -123,27 +190,261 @@ public class HttpDownload {
         }
     }
 
-    public void downloadFile(Request request, boolean partiallyDownloaded, long size) throws IOException {
-        try (Response response = this.httpClient.newCall(request).execute();
+    public VerifyingSink downloadFile(Request request, boolean partiallyDownloaded, long size) throws IOException {
+        try (Response response = this.newCall(this.httpClient, request).execute();
              InputStream is = Objects.requireNonNull(response.body()).byteStream()) {
-            if (partiallyDownloaded && size >= 0) {
-                try (FileChannel fileChannel = FileChannel.open(this.saveAs, StandardOpenOption.APPEND);
-                     ReadableByteChannel src = Channels.newChannel(is)) {
-                    fileChannel.transferFrom(src, size, Long.MAX_VALUE);
+            if (!response.isSuccessful()) {
+                throw new IOException("Could not download '" + this.url + "': HTTP " + response.code());
+            }
+
+            boolean resume = partiallyDownloaded && size >= 0 && response.code() == 206;
+
+            OutputStream outputStream = resume ?
+                Files.newOutputStream(this.saveAs, StandardOpenOption.APPEND) :
+                Files.newOutputStream(this.saveAs);
+
+            try (VerifyingSink sink = new VerifyingSink(outputStream, this.algorithms())) {
+                if (resume) {
+                    sink.prime(this.saveAs, size);
                 }
-            } else {
-                Files.copy(is, this.saveAs, StandardCopyOption.REPLACE_EXISTING);
+
+                long offset = resume ? size : 0L;
+                long contentLength = Objects.requireNonNull(response.body()).contentLength();
+                long length = contentLength == -1L ? -1L : offset + contentLength;
+
+                byte[] buffer = new byte[HttpDownload.BUFFER_SIZE];
+                long total = offset;
+
+                int numRead;
+                while ((numRead = is.read(buffer)) != -1) {
+                    sink.write(buffer, 0, numRead);
+                    total += numRead;
+
+                    if (this.progressListener != null) {
+                        // after a failed segmented attempt the progress holds still until this stream catches up
+                        this.progressListener.update(length, Math.max(total, this.progressFloor), numRead, false);
+                    }
+                }
+
+                if (this.progressListener != null) {
+                    this.progressListener.update(length, Math.max(total, this.progressFloor), 0, true);
+                }
+
+                return sink;
             }
         }
     }
 
-    public void checkHash() throws IOException {
-        if (this.sha256 != null) {
-            String sha256 = HashUtils.sha256(this.saveAs);
-            if (!this.sha256.equals(sha256)) {
-                FileUtils.delete(this.saveAs);
-                throw new IOException("SHA-256 does not match for file '" + this.saveAs + "'. Bad file was deleted");
+    private boolean tryDownloadSegmented() throws IOException {
+        if (this.scheduler == null || this.expectedSize < HttpDownload.SEGMENTED_THRESHOLD) {
+            return false;
+        }
+
+        HttpUrl url;
+        long length;
+
+        Request request = new Request.Builder()
+            .url(this.url)
+            .head()
+            .build();
+
+        try (Response response = this.newCall(this.httpClient, request).execute()) {
+            if (!response.isSuccessful() || !"bytes".equalsIgnoreCase(response.header("Accept-Ranges"))) {
+                return false;
+            }
+
+            String contentLength = response.header("Content-Length");
+            if (contentLength == null) {
+                return false;
             }
+
+            length = Long.parseLong(contentLength);
+            url = response.request().url();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        if (length != this.expectedSize) {
+            return false;
+        }
+
+        // this download already has a connection, the other segments only use the ones that are free right now
+        int extraConnections = this.scheduler.tryAcquireConnections(url.host(), this.segments - 1);
+        if (extraConnections == 0) {
+            return false;
+        }
+
+        Path partFile = this.saveAs.resolveSibling(this.saveAs.getFileName() + ".part");
+        AtomicLong downloaded = new AtomicLong(0);
+
+        try {
+            this.downloadSegments(url, length, partFile, extraConnections, downloaded);
+        } catch (IOException e) {
+            FileUtils.delete(partFile);
+
+            if (this.cancelled) {
+                throw e;
+            }
+
+            Log.warn("Segmented download of '" + this.url + "' failed, falling back to a single stream: " + e.getMessage());
+
+            this.progressFloor = downloaded.get();
+
+            return false;
+        }
+
+        Files.move(partFile, this.saveAs, StandardCopyOption.REPLACE_EXISTING);
+
+        return true;
+    }
+
+    private void downloadSegments(HttpUrl url, long length, Path partFile, int extraConnections,
+                                  AtomicLong downloaded) throws IOException {
+        int segments = extraConnections + 1;
+        long segmentSize = (length + segments - 1) / segments;
+
+        List<Call> calls = new ArrayList<>();
+        List<Future<Void>> futures = new ArrayList<>();
+        int unused = extraConnections;
+
+        try (RandomAccessFile file = new RandomAccessFile(partFile.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+
+            file.setLength(length);
+
+            for (int segment = 0; segment < segments; segment++) {
+                long from = segment * segmentSize;
+                long to = Math.min(length, from + segmentSize) - 1;
+
+                Request request = new Request.Builder()
+                    .url(url)
+                    .header("Range", "bytes=" + from + "-" + to)
+                    .get()
+                    .build();
+
+                Call call = this.newCall(this.httpClient, request);
+                calls.add(call);
+
+                if (segment == 0) {
+                    continue;
+                }
+
+                futures.add(this.scheduler.runOnConnection(url.host(), () -> {
+                    this.downloadSegment(call, channel, from, to, length, downloaded);
+
+                    return null;
+                }));
+                unused--;
+            }
+
+            try {
+                // the first segment goes over the connection this download already has
+                this.downloadSegment(calls.get(0), channel, 0L, Math.min(length, segmentSize) - 1, length, downloaded);
+
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (IOException e) {
+                calls.forEach(Call::cancel);
+
+                throw e;
+            } catch (ExecutionException e) {
+                calls.forEach(Call::cancel);
+
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+
+                throw new IOException(e.getCause());
+            } catch (CancellationException e) {
+                calls.forEach(Call::cancel);
+
+                throw new IOException("Segment of '" + this.url + "' could not be started");
+            } catch (InterruptedException e) {
+                calls.forEach(Call::cancel);
+                Thread.currentThread().interrupt();
+
+                throw new InterruptedIOException("Interrupted while downloading '" + this.url + "'");
+            }
+        } finally {
+            for (int i = 0; i < unused; i++) {
+                this.scheduler.releaseConnection(url.host());
+            }
+        }
+    }
+
+    private void downloadSegment(Call call, FileChannel channel, long from, long to, long length, AtomicLong downloaded) throws IOException {
+        try (Response response = call.execute();
+             InputStream is = Objects.requireNonNull(response.body()).byteStream()) {
+
+            if (response.code() != 206) {
+                throw new IOException("Range request was not honored: HTTP " + response.code());
+            }
+
+            byte[] buffer = new byte[HttpDownload.BUFFER_SIZE];
+            long position = from;
+
+            int numRead;
+            while ((numRead = is.read(buffer)) != -1) {
+                if (position + numRead > to + 1) {
+                    throw new IOException("Server sent more bytes than requested for range " + from + "-" + to);
+                }
+
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, numRead);
+                while (byteBuffer.hasRemaining()) {
+                    position += channel.write(byteBuffer, position);
+                }
+
+                long total = downloaded.addAndGet(numRead);
+
+                if (this.progressListener != null) {
+                    this.progressListener.update(length, total, numRead, total == length);
+                }
+            }
+
+            if (position != to + 1) {
+                throw new IOException("Range " + from + "-" + to + " ended early at " + position);
+            }
+        }
+    }
+
+    private String[] algorithms() {
+        List<String> algorithms = new ArrayList<>();
+        algorithms.add(VerifyingSink.SHA_256);
+
+        if (this.sha1 != null) {
+            algorithms.add(VerifyingSink.SHA_1);
+        }
+
+        if (this.sha512 != null) {
+            algorithms.add(VerifyingSink.SHA_512);
+        }
+
+        return algorithms.toArray(new String[0]);
+    }
+
+    public void verify(VerifyingSink sink) throws IOException {
+        if (this.expectedSize > 0 && this.expectedSize != sink.getCount()) {
+            FileUtils.delete(this.saveAs);
+            throw new IOException("Size does not match for file '" + this.saveAs + "', expected " +
+                this.expectedSize + ", got " + sink.getCount() + ". Bad file was deleted");
+        }
+
+        this.verifyDigest(sink, VerifyingSink.SHA_1, this.sha1);
+        this.verifyDigest(sink, VerifyingSink.SHA_256, this.sha256);
+        this.verifyDigest(sink, VerifyingSink.SHA_512, this.sha512);
+
+        HashUtils.remember(this.saveAs, VerifyingSink.SHA_256, HashUtils.fromHex(sink.digest(VerifyingSink.SHA_256)));
+    }
+
+    private void verifyDigest(VerifyingSink sink, String algorithm, String expected) throws IOException {
+        if (expected == null) {
+            return;
+        }
+
+        if (!expected.equalsIgnoreCase(sink.digest(algorithm))) {
+            FileUtils.delete(this.saveAs);
+            throw new IOException(algorithm + " does not match for file '" + this.saveAs + "'. Bad file was deleted");
         }
     }
 
@@ -152,7 +453,7 @@ public class HttpDownload {
             return;
         }
 
-        if (Files.exists(this.copyTo) && Files.size(this.copyTo) == this.expectedSize && HashUtils.sha256(this.copyTo).equals(this.sha256)) {
+        if (Files.exists(this.copyTo) && Files.size(this.copyTo) == this.expectedSize && HashUtils.sha256(this.copyTo).equalsIgnoreCase(this.sha256)) {
             return;
         }
 
@@ -175,6 +476,17 @@ public class HttpDownload {
         this.httpClient = httpClient;
     }
 
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * @param scheduler scheduler running this download, extra connections for segments are taken from it
+     */
+    void setScheduler(DownloadScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
     public long expectedSize() {
         return this.expectedSize;
     }
@@ -184,10 +496,14 @@ public class HttpDownload {
         private String url;
         private Path saveAs;
         private Path copyTo;
+        private String sha1;
         private String sha256;
+        private String sha512;
         private boolean forceDownload;
         private boolean executable;
         private long expectedSize = HttpDownload.EXPECTED_SIZE_NOT_SET;
+        private int segments = HttpDownload.DEFAULT_SEGMENTS;
+        private ProgressListener progressListener;
 
         public Builder() {
 
@@ -223,21 +539,42 @@ public class HttpDownload {
             return this;
         }
 
+        public Builder sha1(String sha1) {
+            this.sha1 = sha1;
+            return this;
+        }
+
         public Builder sha256(String sha256) {
             this.sha256 = sha256;
             return this;
         }
 
+        public Builder sha512(String sha512) {
+            this.sha512 = sha512;
+            return this;
+        }
+
         public Builder expectedSize(long expectedSize) {
             this.expectedSize = expectedSize;
             return this;
         }
 
+        public Builder segments(int segments) {
+            this.segments = Math.max(1, segments);
+            return this;
+        }
+
+        public Builder progressListener(ProgressListener progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
         public HttpDownload build() {
             return new HttpDownload(
                     this.httpClient, this.url, this.saveAs,
-                    this.copyTo, this.forceDownload, this.sha256,
-                    this.executable, this.expectedSize
+                    this.copyTo, this.forceDownload, this.sha1,
+                    this.sha256, this.sha512, this.executable,
+                    this.expectedSize, this.segments, this.progressListener
             );
         }
     }
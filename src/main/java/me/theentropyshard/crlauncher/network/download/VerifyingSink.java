@@ -0,0 +1,134 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.download;
+
+import me.theentropyshard.crlauncher.utils.HashUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Output stream that computes digests and counts bytes while they are being written,
+ * so a downloaded file does not have to be read back to be verified
+ */
+public class VerifyingSink extends OutputStream {
+    public static final String SHA_1 = "SHA-1";
+    public static final String SHA_256 = "SHA-256";
+    public static final String SHA_512 = "SHA-512";
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final OutputStream out;
+    private final Map<String, MessageDigest> digests;
+    private final Map<String, String> results;
+
+    private long count;
+
+    public VerifyingSink(OutputStream out, String... algorithms) throws IOException {
+        this.out = out;
+        this.digests = new LinkedHashMap<>();
+        this.results = new HashMap<>();
+
+        for (String algorithm : algorithms) {
+            try {
+                this.digests.put(algorithm, MessageDigest.getInstance(algorithm));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(algorithm + " algorithm is not available in your JRE", e);
+            }
+        }
+    }
+
+    /**
+     * Feeds the first {@code length} bytes of an already existing file into the digests without writing them,
+     * used when resuming a partial download
+     */
+    public void prime(Path file, long length) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            byte[] buffer = new byte[VerifyingSink.BUFFER_SIZE];
+
+            long remaining = length;
+            int numRead;
+            while (remaining > 0 && (numRead = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                this.update(buffer, 0, numRead);
+                remaining -= numRead;
+            }
+        }
+    }
+
+    private void update(byte[] b, int off, int len) {
+        for (MessageDigest digest : this.digests.values()) {
+            digest.update(b, off, len);
+        }
+
+        this.count += len;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.out.write(b);
+
+        for (MessageDigest digest : this.digests.values()) {
+            digest.update((byte) b);
+        }
+
+        this.count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        this.out.write(b, off, len);
+        this.update(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+    /**
+     * Returns the digest as a hex string, or null if the algorithm was not requested.
+     * Nothing must be written after this has been called
+     */
+    public String digest(String algorithm) {
+        MessageDigest digest = this.digests.get(algorithm);
+
+        if (digest == null) {
+            return null;
+        }
+
+        return this.results.computeIfAbsent(algorithm, a -> HashUtils.toHex(digest.digest()));
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+}
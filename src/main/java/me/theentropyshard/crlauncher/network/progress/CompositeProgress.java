@@ -0,0 +1,71 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.progress;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Presents several transfers running at the same time as one, by summing the latest progress of each part
+ */
+public class CompositeProgress {
+    private final ProgressListener listener;
+    private final List<Part> parts;
+
+    public CompositeProgress(ProgressListener listener) {
+        this.listener = listener;
+        this.parts = new CopyOnWriteArrayList<>();
+    }
+
+    public ProgressListener part() {
+        Part part = new Part();
+        this.parts.add(part);
+
+        return part;
+    }
+
+    private synchronized void publish(long bytesThisTime) {
+        long contentLength = 0L;
+        long downloadedBytes = 0L;
+        boolean done = true;
+
+        for (Part part : this.parts) {
+            contentLength += Math.max(part.contentLength, part.downloadedBytes);
+            downloadedBytes += part.downloadedBytes;
+            done &= part.done;
+        }
+
+        this.listener.update(contentLength, downloadedBytes, bytesThisTime, done);
+    }
+
+    private final class Part implements ProgressListener {
+        private volatile long contentLength;
+        private volatile long downloadedBytes;
+        private volatile boolean done;
+
+        @Override
+        public void update(long contentLength, long totalBytesRead, long bytesReadThisTime, boolean done) {
+            this.contentLength = contentLength;
+            this.downloadedBytes = totalBytesRead;
+            this.done = done;
+
+            CompositeProgress.this.publish(bytesReadThisTime);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.progress;
+
+import me.theentropyshard.crlauncher.network.download.DownloadListener;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects progress of many concurrent transfers in striped counters, and publishes the aggregate
+ * to a listener from a ticker at a fixed rate, instead of on every socket read
+ */
+public class ProgressAggregator {
+    private static final long TICK_INTERVAL_MS = 33L;
+
+    private static final ScheduledExecutorService TICKER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "CRL-Progress-Ticker");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final DownloadListener listener;
+    private final LongAdder downloadedBytes;
+
+    private volatile long totalSize;
+
+    private ScheduledFuture<?> tick;
+    private long lastPublished = -1L;
+
+    public ProgressAggregator(DownloadListener listener) {
+        this.listener = listener;
+        this.downloadedBytes = new LongAdder();
+    }
+
+    /**
+     * @return listener for one transfer, adding what it reads to the aggregate
+     */
+    public ProgressListener track() {
+        return new Counter();
+    }
+
+    public void addDownloadedBytes(long bytes) {
+        this.downloadedBytes.add(bytes);
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public synchronized void start() {
+        if (this.tick != null) {
+            return;
+        }
+
+        this.tick = ProgressAggregator.TICKER.scheduleAtFixedRate(
+            this::tick, 0L, ProgressAggregator.TICK_INTERVAL_MS, TimeUnit.MILLISECONDS
+        );
+    }
+
+    public synchronized void stop() {
+        if (this.tick != null) {
+            this.tick.cancel(false);
+            this.tick = null;
+        }
+
+        this.tick();
+    }
+
+    private synchronized void tick() {
+        long downloaded = this.downloadedBytes.sum();
+
+        if (downloaded != this.lastPublished) {
+            this.lastPublished = downloaded;
+            this.listener.updateProgress(this.totalSize, downloaded);
+        }
+    }
+
+    public long getDownloadedBytes() {
+        return this.downloadedBytes.sum();
+    }
+
+    private final class Counter implements ProgressListener {
+        @Override
+        public void update(long contentLength, long totalBytesRead, long bytesReadThisTime, boolean done) {
+            if (bytesReadThisTime > 0) {
+                ProgressAggregator.this.downloadedBytes.add(bytesReadThisTime);
+            }
+        }
+    }
+}
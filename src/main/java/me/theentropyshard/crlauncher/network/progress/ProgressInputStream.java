@@ -0,0 +1,62 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.progress;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class ProgressInputStream extends FilterInputStream {
+    private final long contentLength;
+    private final ProgressListener progressListener;
+
+    private long totalBytesRead;
+
+    public ProgressInputStream(InputStream in, long contentLength, ProgressListener progressListener) {
+        super(in);
+
+        this.contentLength = contentLength;
+        this.progressListener = progressListener;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+
+        this.progress(b == -1 ? -1 : 1);
+
+        return b;
+    }
+
+    @Override
+    public int read(@NotNull byte[] b, int off, int len) throws IOException {
+        int bytesRead = super.read(b, off, len);
+
+        this.progress(bytesRead);
+
+        return bytesRead;
+    }
+
+    private void progress(int bytesRead) {
+        this.totalBytesRead += bytesRead != -1 ? bytesRead : 0;
+        this.progressListener.update(this.contentLength, this.totalBytesRead, bytesRead, bytesRead == -1);
+    }
+}
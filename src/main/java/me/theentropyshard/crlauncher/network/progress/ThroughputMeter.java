@@ -0,0 +1,81 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.network.progress;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponentially smoothed transfer rate, fed with samples of the total amount of bytes transferred
+ */
+public class ThroughputMeter {
+    private static final long MIN_SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final double SMOOTHING = 0.3D;
+
+    private long lastBytes;
+    private long lastTime;
+    private double bytesPerSecond;
+
+    public ThroughputMeter() {
+
+    }
+
+    public synchronized void sample(long totalBytes) {
+        long now = System.nanoTime();
+
+        if (this.lastTime == 0L) {
+            this.lastTime = now;
+            this.lastBytes = totalBytes;
+
+            return;
+        }
+
+        long elapsed = now - this.lastTime;
+        if (elapsed < ThroughputMeter.MIN_SAMPLE_INTERVAL) {
+            return;
+        }
+
+        double rate = (totalBytes - this.lastBytes) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+
+        if (this.bytesPerSecond == 0.0D) {
+            this.bytesPerSecond = rate;
+        } else {
+            this.bytesPerSecond += ThroughputMeter.SMOOTHING * (rate - this.bytesPerSecond);
+        }
+
+        this.lastTime = now;
+        this.lastBytes = totalBytes;
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return Math.max(0L, Math.round(this.bytesPerSecond));
+    }
+
+    /**
+     * @return estimated seconds until {@code remainingBytes} are transferred, or -1 if the rate is not known yet
+     */
+    public long getSecondsLeft(long remainingBytes) {
+        long bytesPerSecond = this.getBytesPerSecond();
+
+        if (bytesPerSecond == 0L) {
+            return -1L;
+        }
+
+        return (Math.max(0L, remainingBytes) + bytesPerSecond - 1) / bytesPerSecond;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.utils;
+
+import me.theentropyshard.crlauncher.logging.Log;
+import me.theentropyshard.crlauncher.utils.json.Json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes of directory trees, walked in parallel and remembered per directory together with its modification time.
+ * A directory is only listed again once its modification time changes, which happens when entries are added,
+ * removed or renamed in it, but not when a file is rewritten in place, so trees that are known to be written to,
+ * like an instance after the game exits, have to be invalidated. Sizes are apparent sizes, a hard linked file is
+ * counted once for every path it has.
+ */
+public class DiskUsage {
+    private static final int VERSION = 1;
+
+    // a directory that changed this recently may change again within the same timestamp, so it is not trusted
+    private static final long RACY_MILLIS = 2000L;
+
+    // never matches a real modification time, so the directory is listed again on the next walk
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final Path cacheFile;
+    private final Map<String, Entry> entries;
+    private final ForkJoinPool pool;
+
+    public DiskUsage(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        this.entries = new ConcurrentHashMap<>();
+
+        // the walk mostly waits for the file system, so it gets more threads than there are cores
+        this.pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    public void load() {
+        if (!Files.exists(this.cacheFile)) {
+            return;
+        }
+
+        try {
+            Cache cache = Json.parse(FileUtils.readUtf8(this.cacheFile), Cache.class);
+
+            if (cache != null && cache.version == DiskUsage.VERSION && cache.dirs != null) {
+                this.entries.putAll(cache.dirs);
+            }
+        } catch (Exception e) {
+            Log.warn("Could not read disk usage cache, sizes will be calculated again: " + e.getMessage());
+        }
+    }
+
+    public void save() throws IOException {
+        Cache cache = new Cache();
+        cache.version = DiskUsage.VERSION;
+        cache.dirs = new HashMap<>(this.entries);
+
+        FileUtils.writeUtf8Atomically(this.cacheFile, Json.write(cache));
+    }
+
+    public long getSize(Path dir) throws IOException {
+        return this.getSize(List.of(dir));
+    }
+
+    /**
+     * Walks the given trees in parallel, listing only directories that changed since they were last seen
+     *
+     * @return the total size of all trees in bytes
+     */
+    public long getSize(List<Path> dirs) throws IOException {
+        try {
+            return this.pool.invoke(new RecursiveTask<Long>() {
+                @Override
+                protected Long compute() {
+                    return DiskUsage.sum(dirs.stream().map(SizeTask::new).toList());
+                }
+            });
+        } catch (RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof UncheckedIOException unchecked) {
+                    throw unchecked.getCause();
+                }
+            }
+
+            throw e;
+        }
+    }
+
+    public long getCachedSize(Path dir) {
+        return this.getCachedSize(List.of(dir));
+    }
+
+    /**
+     * Adds up what is remembered about the given trees without touching the disk
+     *
+     * @return the total size of all trees in bytes, or -1 if some part of them was never walked
+     */
+    public long getCachedSize(List<Path> dirs) {
+        long size = 0L;
+
+        for (Path dir : dirs) {
+            Entry entry = this.entries.get(DiskUsage.key(dir));
+
+            if (entry == null) {
+                return -1L;
+            }
+
+            size += entry.size;
+
+            long childrenSize = this.getCachedSize(entry.children.stream().map(dir::resolve).toList());
+
+            if (childrenSize < 0L) {
+                return -1L;
+            }
+
+            size += childrenSize;
+        }
+
+        return size;
+    }
+
+    /**
+     * Forgets the tree, so that every directory in it is listed again on the next walk
+     */
+    public void invalidate(Path dir) {
+        String key = DiskUsage.key(dir);
+        String prefix = key + dir.getFileSystem().getSeparator();
+
+        this.entries.keySet().removeIf(path -> path.equals(key) || path.startsWith(prefix));
+    }
+
+    private Entry list(Path dir, long modified, Entry previous) throws IOException {
+        long size = 0L;
+        List<String> children = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes;
+
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException ignored) {
+                    continue;
+                }
+
+                if (attributes.isDirectory()) {
+                    children.add(path.getFileName().toString());
+                } else if (attributes.isRegularFile()) {
+                    size += attributes.size();
+                }
+            }
+        }
+
+        if (previous != null) {
+            Set<String> current = new HashSet<>(children);
+
+            for (String child : previous.children) {
+                if (!current.contains(child)) {
+                    this.invalidate(dir.resolve(child));
+                }
+            }
+        }
+
+        if (System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(modified) <= DiskUsage.RACY_MILLIS) {
+            modified = DiskUsage.UNKNOWN;
+        }
+
+        Entry entry = new Entry(modified, size, children);
+        this.entries.put(DiskUsage.key(dir), entry);
+
+        return entry;
+    }
+
+    private static long sum(List<SizeTask> tasks) {
+        long size = 0L;
+
+        for (SizeTask task : ForkJoinTask.invokeAll(tasks)) {
+            size += task.join();
+        }
+
+        return size;
+    }
+
+    private static String key(Path dir) {
+        return dir.toAbsolutePath().normalize().toString();
+    }
+
+    private final class SizeTask extends RecursiveTask<Long> {
+        private final Path dir;
+
+        public SizeTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected Long compute() {
+            try {
+                return this.walk();
+            } catch (NoSuchFileException | NotDirectoryException e) {
+                // gone, or replaced by a file, while being walked
+                DiskUsage.this.invalidate(this.dir);
+                DiskUsage.this.entries.put(DiskUsage.key(this.dir), new Entry(DiskUsage.UNKNOWN, 0L, new ArrayList<>()));
+
+                return 0L;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private long walk() throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(this.dir, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+
+            if (!attributes.isDirectory()) {
+                return attributes.isRegularFile() ? attributes.size() : 0L;
+            }
+
+            long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+
+            Entry entry = DiskUsage.this.entries.get(DiskUsage.key(this.dir));
+            if (entry == null || entry.modified != modified) {
+                entry = DiskUsage.this.list(this.dir, modified, entry);
+            }
+
+            List<SizeTask> tasks = new ArrayList<>(entry.children.size());
+            for (String child : entry.children) {
+                tasks.add(new SizeTask(this.dir.resolve(child)));
+            }
+
+            return entry.size + DiskUsage.sum(tasks);
+        }
+    }
+
+    private static final class Cache {
+        private int version;
+        private Map<String, Entry> dirs;
+    }
+
+    private static final class Entry {
+        private long modified;
+        private long size;
+        private List<String> children;
+
+        public Entry() {
+
+        }
+
+        public Entry(long modified, long size, List<String> children) {
+            this.modified = modified;
+            this.size = size;
+            this.children = children;
+        }
+    }
+}
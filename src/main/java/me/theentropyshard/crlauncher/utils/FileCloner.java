@@ -0,0 +1,264 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.utils;
+
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Clones a directory tree as cheaply as the file system allows. Files that never change in place are hard linked,
+ * the rest are reflinked, and only when neither works they are copied, with large files split into chunks that
+ * are copied in parallel.
+ */
+public class FileCloner {
+    private static final long CHUNK_SIZE = 32L * 1024L * 1024L;
+    private static final int THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private final Path source;
+    private final Path target;
+    private final Predicate<Path> linkable;
+    private final Predicate<Path> excluded;
+
+    private final AtomicLong totalBytes;
+    private final AtomicLong clonedBytes;
+    private final AtomicInteger linked;
+    private final AtomicInteger reflinked;
+    private final AtomicInteger copied;
+
+    private volatile boolean canLink;
+    private volatile boolean canReflink;
+    private ProgressListener listener;
+
+    /**
+     * @param source   directory to clone
+     * @param target   directory to clone into
+     * @param linkable tells which files (relative to source) are never modified in place and can be hard linked
+     * @param excluded tells which files and directories (relative to source) should not be cloned
+     */
+    public FileCloner(Path source, Path target, Predicate<Path> linkable, Predicate<Path> excluded) {
+        this.source = source;
+        this.target = target;
+        this.linkable = linkable;
+        this.excluded = excluded;
+
+        this.totalBytes = new AtomicLong();
+        this.clonedBytes = new AtomicLong();
+        this.linked = new AtomicInteger();
+        this.reflinked = new AtomicInteger();
+        this.copied = new AtomicInteger();
+
+        this.canLink = true;
+        this.canReflink = Reflink.isAvailable();
+    }
+
+    public void clone(ProgressListener listener) throws IOException {
+        this.listener = listener;
+
+        List<Path> files = new ArrayList<>();
+
+        Files.walkFileTree(this.source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Path relative = FileCloner.this.source.relativize(dir);
+
+                if (!relative.toString().isEmpty() && FileCloner.this.excluded.test(relative)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                Files.createDirectories(FileCloner.this.target.resolve(relative.toString()));
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = FileCloner.this.source.relativize(file);
+
+                if (FileCloner.this.excluded.test(relative)) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                if (attrs.isRegularFile()) {
+                    files.add(relative);
+                    FileCloner.this.totalBytes.addAndGet(attrs.size());
+                } else {
+                    Files.copy(file, FileCloner.this.target.resolve(relative.toString()),
+                        LinkOption.NOFOLLOW_LINKS, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(FileCloner.THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (Path relative : files) {
+                Path from = this.source.resolve(relative);
+                Path to = this.target.resolve(relative.toString());
+                long size = Files.size(from);
+
+                if (this.linkable.test(relative) && this.link(from, to)) {
+                    this.linked.incrementAndGet();
+                    this.progress(size);
+                } else if (size < FileCloner.CHUNK_SIZE * 2L) {
+                    futures.add(executor.submit(() -> {
+                        this.reflinkOrCopy(from, to, size);
+
+                        return null;
+                    }));
+                } else if (this.canReflink && Reflink.clone(from, to)) {
+                    this.reflinked.incrementAndGet();
+                    this.progress(size);
+                } else {
+                    this.canReflink = false;
+                    this.copyInChunks(executor, futures, from, to, size);
+                }
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted while cloning " + this.source, e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        this.listener.update(this.totalBytes.get(), this.clonedBytes.get(), 0L, true);
+    }
+
+    private boolean link(Path from, Path to) {
+        if (!this.canLink) {
+            return false;
+        }
+
+        try {
+            Files.createLink(to, from);
+
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            // most likely another file system, no point in trying again
+            this.canLink = false;
+
+            return false;
+        }
+    }
+
+    private void reflinkOrCopy(Path from, Path to, long size) throws IOException {
+        if (this.canReflink) {
+            if (Reflink.clone(from, to)) {
+                this.reflinked.incrementAndGet();
+                this.progress(size);
+
+                return;
+            }
+
+            this.canReflink = false;
+        }
+
+        Files.copy(from, to, StandardCopyOption.COPY_ATTRIBUTES);
+        this.copied.incrementAndGet();
+        this.progress(size);
+    }
+
+    private void copyInChunks(ExecutorService executor, List<Future<?>> futures, Path from, Path to, long size) throws IOException {
+        FileTime lastModified = Files.getLastModifiedTime(from);
+
+        Files.createFile(to);
+
+        int chunks = (int) ((size + FileCloner.CHUNK_SIZE - 1) / FileCloner.CHUNK_SIZE);
+        AtomicInteger chunksLeft = new AtomicInteger(chunks);
+
+        for (int i = 0; i < chunks; i++) {
+            long position = i * FileCloner.CHUNK_SIZE;
+            long length = Math.min(FileCloner.CHUNK_SIZE, size - position);
+
+            futures.add(executor.submit(() -> {
+                try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(to, StandardOpenOption.WRITE)) {
+
+                    long done = 0L;
+                    while (done < length) {
+                        long transferred = in.transferTo(position + done, length - done, out.position(position + done));
+                        if (transferred <= 0L) {
+                            throw new IOException("Could not copy " + from + ", it got shorter while copying");
+                        }
+
+                        done += transferred;
+                        this.progress(transferred);
+                    }
+                }
+
+                if (chunksLeft.decrementAndGet() == 0) {
+                    Files.setLastModifiedTime(to, lastModified);
+                    this.copied.incrementAndGet();
+                }
+
+                return null;
+            }));
+        }
+    }
+
+    private void progress(long bytes) {
+        long cloned = this.clonedBytes.addAndGet(bytes);
+        this.listener.update(this.totalBytes.get(), cloned, bytes, false);
+    }
+
+    public int getLinked() {
+        return this.linked.get();
+    }
+
+    public int getReflinked() {
+        return this.reflinked.get();
+    }
+
+    public int getCopied() {
+        return this.copied.get();
+    }
+
+    public long getTotalBytes() {
+        return this.totalBytes.get();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.utils;
+
+import me.theentropyshard.crlauncher.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent index of file hashes, keyed by absolute path, size, modification time and file key (inode).
+ * The index file is an append-only journal, so a crash can lose at most the record being written.
+ */
+public class FileHashIndex implements AutoCloseable {
+    private static final char SEPARATOR = '\t';
+    private static final int FIELDS = 6;
+
+    private final Path indexFile;
+    private final Map<String, Entry> entries;
+
+    private Writer journal;
+    private int journalRecords;
+
+    public FileHashIndex(Path indexFile) {
+        this.indexFile = indexFile;
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    public synchronized void load() throws IOException {
+        this.entries.clear();
+        this.journalRecords = 0;
+
+        if (Files.exists(this.indexFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(this.indexFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    this.journalRecords++;
+
+                    Entry entry = Entry.parse(line);
+                    if (entry == null) {
+                        continue;
+                    }
+
+                    this.entries.put(FileHashIndex.key(entry.path(), entry.algorithm()), entry);
+                }
+            }
+        }
+
+        this.entries.values().removeIf(entry -> !Files.exists(Path.of(entry.path())));
+
+        if (this.journalRecords > this.entries.size() * 2) {
+            this.compact();
+        }
+    }
+
+    public byte[] hash(Path file, String algorithm) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+
+        Entry entry = this.entries.get(FileHashIndex.key(absolute.toString(), algorithm));
+        if (entry != null && entry.matches(attributes)) {
+            return HashUtils.fromHex(entry.hash());
+        }
+
+        byte[] hash = HashUtils.computeHash(absolute, algorithm);
+
+        this.put(absolute, algorithm, hash, attributes);
+
+        return hash;
+    }
+
+    public void remember(Path file, String algorithm, byte[] hash) {
+        Path absolute = file.toAbsolutePath().normalize();
+
+        try {
+            this.put(absolute, algorithm, hash, Files.readAttributes(absolute, BasicFileAttributes.class));
+        } catch (NoSuchFileException ignored) {
+
+        } catch (IOException e) {
+            Log.warn("Could not remember hash of '" + absolute + "': " + e.getMessage());
+        }
+    }
+
+    private void put(Path absolute, String algorithm, byte[] hash, BasicFileAttributes attributes) {
+        String path = absolute.toString();
+
+        if (path.indexOf('\n') != -1 || path.indexOf('\r') != -1) {
+            return;
+        }
+
+        Entry entry = new Entry(
+            algorithm,
+            attributes.size(),
+            attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS),
+            FileHashIndex.fileKey(attributes),
+            HashUtils.toHex(hash),
+            path
+        );
+
+        Entry previous = this.entries.put(FileHashIndex.key(path, algorithm), entry);
+        if (entry.equals(previous)) {
+            return;
+        }
+
+        this.append(entry);
+    }
+
+    private synchronized void append(Entry entry) {
+        try {
+            if (this.journal == null) {
+                FileUtils.createDirectoryIfNotExists(this.indexFile.getParent());
+                this.journal = Files.newBufferedWriter(this.indexFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+
+            this.journal.write(entry.toLine());
+            this.journal.write('\n');
+            this.journal.flush();
+
+            this.journalRecords++;
+        } catch (IOException e) {
+            Log.warn("Could not write to hash index '" + this.indexFile + "': " + e.getMessage());
+        }
+    }
+
+    private void compact() throws IOException {
+        this.closeJournal();
+
+        Path tmpFile = this.indexFile.resolveSibling(this.indexFile.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            for (Entry entry : this.entries.values()) {
+                writer.write(entry.toLine());
+                writer.write('\n');
+            }
+        }
+
+        Files.move(tmpFile, this.indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        this.journalRecords = this.entries.size();
+    }
+
+    private void closeJournal() throws IOException {
+        if (this.journal != null) {
+            this.journal.close();
+            this.journal = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.closeJournal();
+    }
+
+    private static String key(String path, String algorithm) {
+        return algorithm + FileHashIndex.SEPARATOR + path;
+    }
+
+    private static String fileKey(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+
+        return fileKey == null ? "-" : fileKey.toString().replace(FileHashIndex.SEPARATOR, ' ');
+    }
+
+    private record Entry(String algorithm, long size, long modified, String fileKey, String hash, String path) {
+        public boolean matches(BasicFileAttributes attributes) {
+            return this.size == attributes.size() &&
+                this.modified == attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS) &&
+                this.fileKey.equals(FileHashIndex.fileKey(attributes));
+        }
+
+        public String toLine() {
+            return String.join(String.valueOf(FileHashIndex.SEPARATOR),
+                this.algorithm, String.valueOf(this.size), String.valueOf(this.modified), this.fileKey, this.hash, this.path);
+        }
+
+        public static Entry parse(String line) {
+            String[] parts = line.split(String.valueOf(FileHashIndex.SEPARATOR), FileHashIndex.FIELDS);
+
+            if (parts.length != FileHashIndex.FIELDS) {
+                return null;
+            }
+
+            try {
+                return new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3], parts[4], parts[5]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
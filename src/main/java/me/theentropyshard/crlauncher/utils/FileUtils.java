@@ -18,32 +18,31 @@
 
 package me.theentropyshard.crlauncher.utils;
 
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
+
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public final class FileUtils {
-    private static final FileVisitor<Path> DELETE_VISITOR = new SimpleFileVisitor<Path>() {
-        @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-            Files.delete(file);
-
-            return FileVisitResult.CONTINUE;
-        }
-
-        @Override
-        public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
-            Files.delete(dir);
-
-            return FileVisitResult.CONTINUE;
-        }
-    };
+    // a few threads keep the disk busy, more of them only make it seek
+    private static final int TREE_PARALLELISM = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final ForkJoinPool TREE_POOL = new ForkJoinPool(FileUtils.TREE_PARALLELISM);
 
     public static int countFiles(Path dir) throws IOException {
         if (!Files.isDirectory(dir)) {
@@ -64,19 +63,53 @@ public final class FileUtils {
         return count.get();
     }
 
+    public static boolean isEmptyDirectory(Path dir) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            return !stream.iterator().hasNext();
+        }
+    }
+
     public static String sanitizeFileName(String dirtyName) {
         return dirtyName.replaceAll("[^a-zA-Z0-9_.]", "");
     }
 
     public static void delete(Path path) throws IOException {
-        if (!Files.exists(path)) {
+        FileUtils.delete(path, null);
+    }
+
+    /**
+     * Deletes a file or a whole tree, subdirectories are deleted in parallel. Symbolic links are deleted, not followed
+     *
+     * @param path     file or directory to delete
+     * @param listener gets the number of deleted entries out of all entries, may be null
+     */
+    public static void delete(Path path, ProgressListener listener) throws IOException {
+        if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            Files.deleteIfExists(path);
+
             return;
         }
 
-        if (Files.isDirectory(path)) {
-            Files.walkFileTree(path, FileUtils.DELETE_VISITOR);
-        } else {
-            Files.delete(path);
+        // the tree is only counted when someone wants to see the progress
+        TreeProgress progress = new TreeProgress(listener,
+            listener == null ? -1L : FileUtils.invoke(new CountTask(path)));
+
+        FileUtils.invoke(new DeleteTask(path, progress));
+
+        progress.finish();
+    }
+
+    private static <T> T invoke(ForkJoinTask<T> task) throws IOException {
+        try {
+            return FileUtils.TREE_POOL.invoke(task);
+        } catch (RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof UncheckedIOException unchecked) {
+                    throw unchecked.getCause();
+                }
+            }
+
+            throw e;
         }
     }
 
@@ -110,6 +143,45 @@ public final class FileUtils {
         Files.write(file, s.getBytes(StandardCharsets.UTF_8));
     }
 
+    /**
+     * Writes the file so that it either has the old content or the new one, even if the launcher or the system dies
+     * in the middle: the content goes to a temporary file next to it, which is synced and then renamed over the file.
+     */
+    public static void writeUtf8Atomically(Path file, String s) throws IOException {
+        if (FileUtils.existsButIsNotAFile(file)) {
+            throw new IOException(file + " exists, but is not a file");
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+
+        Path tmpFile = dir.resolve(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tmpFile,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer buffer = ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            channel.force(true);
+        }
+
+        try {
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // the rename itself is only durable once the directory is synced, which is not possible on Windows
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+
+        }
+    }
+
     public static String readUtf8(Path file) throws IOException {
         return FileUtils.read(file, StandardCharsets.UTF_8);
     }
@@ -146,6 +218,99 @@ public final class FileUtils {
         return Files.exists(path) && !Files.isDirectory(path);
     }
 
+    private static final class TreeProgress {
+        private final ProgressListener listener;
+        private final long total;
+        private final AtomicLong done;
+
+        public TreeProgress(ProgressListener listener, long total) {
+            this.listener = listener;
+            this.total = total;
+            this.done = new AtomicLong();
+        }
+
+        public void step() {
+            long done = this.done.incrementAndGet();
+
+            if (this.listener != null) {
+                this.listener.update(this.total, done, 1L, false);
+            }
+        }
+
+        public void finish() {
+            if (this.listener != null) {
+                this.listener.update(this.total, this.done.get(), 0L, true);
+            }
+        }
+    }
+
+    private static final class CountTask extends RecursiveTask<Long> {
+        private final Path dir;
+
+        public CountTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected Long compute() {
+            long count = 1L;
+            List<CountTask> tasks = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.dir)) {
+                for (Path path : stream) {
+                    if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        tasks.add(new CountTask(path));
+                    } else {
+                        count++;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            for (CountTask task : ForkJoinTask.invokeAll(tasks)) {
+                count += task.join();
+            }
+
+            return count;
+        }
+    }
+
+    private static final class DeleteTask extends RecursiveAction {
+        private final Path dir;
+        private final TreeProgress progress;
+
+        public DeleteTask(Path dir, TreeProgress progress) {
+            this.dir = dir;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            List<DeleteTask> tasks = new ArrayList<>();
+
+            try {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.dir)) {
+                    for (Path path : stream) {
+                        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                            tasks.add(new DeleteTask(path, this.progress));
+                        } else {
+                            Files.deleteIfExists(path);
+                            this.progress.step();
+                        }
+                    }
+                }
+
+                ForkJoinTask.invokeAll(tasks);
+
+                Files.deleteIfExists(this.dir);
+                this.progress.step();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
     private FileUtils() {
         throw new UnsupportedOperationException();
     }
@@ -20,13 +20,38 @@ package me.theentropyshard.crlauncher.utils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 public final class HashUtils {
+    private static volatile FileHashIndex index;
+
+    public static void setIndex(FileHashIndex index) {
+        HashUtils.index = index;
+    }
+
     public static byte[] hash(Path file, String algorithm) throws IOException {
+        FileHashIndex index = HashUtils.index;
+
+        if (index != null) {
+            return index.hash(file, algorithm);
+        }
+
+        return HashUtils.computeHash(file, algorithm);
+    }
+
+    public static void remember(Path file, String algorithm, byte[] hash) {
+        FileHashIndex index = HashUtils.index;
+
+        if (index != null) {
+            index.remember(file, algorithm, hash);
+        }
+    }
+
+    static byte[] computeHash(Path file, String algorithm) throws IOException {
         try (InputStream inputStream = Files.newInputStream(file)) {
             MessageDigest md = MessageDigest.getInstance(algorithm);
 
@@ -49,6 +74,14 @@ public final class HashUtils {
         return HashUtils.toHex(mdBytes);
     }
 
+    public static String sha256(String s) {
+        try {
+            return HashUtils.toHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static String toHex(byte[] bytes) {
         StringBuilder sb = new StringBuilder();
         for (byte b : bytes) {
@@ -58,6 +91,15 @@ public final class HashUtils {
         return sb.toString();
     }
 
+    public static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex, i * 2, i * 2 + 2, 16);
+        }
+
+        return bytes;
+    }
+
     private HashUtils() {
         throw new UnsupportedOperationException();
     }
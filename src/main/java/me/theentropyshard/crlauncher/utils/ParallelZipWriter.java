@@ -0,0 +1,550 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.utils;
+
+import me.theentropyshard.crlauncher.network.progress.ProgressListener;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a zip archive with entries compressed on a fork-join pool. Small files are deflated as a whole by one task,
+ * large ones are cut into blocks which are deflated independently and joined with sync flushes, the way pigz does it.
+ * Results are written in order, so the archive is an ordinary zip (zip64 when needed) that any tool can open.
+ * Files that are compressed already are stored as they are.
+ */
+public class ParallelZipWriter {
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    // several times faster than the default level on world data, for archives only a few percent larger
+    private static final int LEVEL = Deflater.BEST_SPEED;
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP64_ENTRY_LIMIT = 0xFFFF;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+        "jar", "zip", "gz", "xz", "7z", "png", "jpg", "jpeg", "ogg", "mp3"
+    );
+
+    private final List<Source> sources;
+    private final List<CentralEntry> centralEntries;
+    private final int parallelism;
+
+    private long totalBytes;
+    private long writtenBytes;
+    private ProgressListener listener;
+
+    public ParallelZipWriter() {
+        this.sources = new ArrayList<>();
+        this.centralEntries = new ArrayList<>();
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    public void addFile(String name, Path file) throws IOException {
+        long size = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+
+        this.sources.add(new Source(name, file, null, size, lastModified));
+        this.totalBytes += size;
+    }
+
+    public void addBytes(String name, byte[] data) {
+        this.sources.add(new Source(name, null, data, data.length, System.currentTimeMillis()));
+        this.totalBytes += data.length;
+    }
+
+    public void addDirectory(String name) {
+        this.sources.add(new Source(name.endsWith("/") ? name : name + "/", null, null, 0L, System.currentTimeMillis()));
+    }
+
+    public void write(Path archive, ProgressListener listener) throws IOException {
+        this.listener = listener;
+
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        Deque<Future<Part>> inFlight = new ArrayDeque<>();
+        TaskIterator tasks = new TaskIterator(pool);
+
+        try (Output out = new Output(new BufferedOutputStream(Files.newOutputStream(archive), 1024 * 1024))) {
+            EntryState state = null;
+
+            while (true) {
+                while (inFlight.size() < this.parallelism * 4 && tasks.hasNext()) {
+                    inFlight.add(tasks.next());
+                }
+
+                Future<Part> next = inFlight.poll();
+                if (next == null) {
+                    break;
+                }
+
+                state = this.writePart(out, next.get(), state);
+            }
+
+            this.writeCentralDirectory(out);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted while writing " + archive, e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        this.listener.update(this.totalBytes, this.writtenBytes, 0L, true);
+    }
+
+    private EntryState writePart(Output out, Part part, EntryState state) throws IOException {
+        Source source = part.source;
+
+        if (part.block == -1) {
+            long offset = out.position;
+            boolean zip64 = part.size >= ParallelZipWriter.ZIP64_LIMIT || part.compressedSize >= ParallelZipWriter.ZIP64_LIMIT;
+
+            this.writeLocalHeader(out, source, ParallelZipWriter.FLAG_UTF8, part.method, part.crc,
+                part.compressedSize, part.size, zip64);
+
+            if (part.data != null) {
+                out.write(part.data, 0, part.data.length);
+            } else if (part.size > 0) {
+                try (InputStream in = Files.newInputStream(source.file)) {
+                    if (in.transferTo(out) != part.size) {
+                        throw new IOException(source.file + " changed while it was being archived");
+                    }
+                }
+            }
+
+            this.centralEntries.add(new CentralEntry(source, ParallelZipWriter.FLAG_UTF8, part.method, part.crc,
+                part.compressedSize, part.size, offset));
+            this.progress(part.size);
+
+            return null;
+        }
+
+        if (part.block == 0) {
+            boolean zip64 = source.size >= ParallelZipWriter.ZIP64_LIMIT;
+            state = new EntryState(out.position, zip64);
+
+            this.writeLocalHeader(out, source, ParallelZipWriter.FLAG_UTF8 | ParallelZipWriter.FLAG_DATA_DESCRIPTOR,
+                ParallelZipWriter.METHOD_DEFLATED, 0L, 0L, 0L, zip64);
+        }
+
+        out.write(part.data, 0, part.data.length);
+        state.crc.update(part.raw, 0, part.rawLength);
+        state.compressedSize += part.data.length;
+        state.size += part.rawLength;
+        this.progress(part.rawLength);
+
+        if (!part.last) {
+            return state;
+        }
+
+        long crc = state.crc.getValue();
+
+        ByteBuffer descriptor = ParallelZipWriter.buffer(state.zip64 ? 24 : 16);
+        descriptor.putInt(0x08074b50);
+        descriptor.putInt((int) crc);
+        if (state.zip64) {
+            descriptor.putLong(state.compressedSize);
+            descriptor.putLong(state.size);
+        } else {
+            descriptor.putInt((int) state.compressedSize);
+            descriptor.putInt((int) state.size);
+        }
+        out.write(descriptor);
+
+        this.centralEntries.add(new CentralEntry(source, ParallelZipWriter.FLAG_UTF8 | ParallelZipWriter.FLAG_DATA_DESCRIPTOR,
+            ParallelZipWriter.METHOD_DEFLATED, crc, state.compressedSize, state.size, state.offset));
+
+        return null;
+    }
+
+    private void writeLocalHeader(Output out, Source source, int flags, int method, long crc, long compressedSize,
+                                  long size, boolean zip64) throws IOException {
+
+        byte[] name = source.name.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer header = ParallelZipWriter.buffer(30 + name.length + (zip64 ? 20 : 0));
+        header.putInt(0x04034b50);
+        header.putShort((short) (zip64 ? 45 : 20));
+        header.putShort((short) flags);
+        header.putShort((short) method);
+        header.putInt(ParallelZipWriter.toDosTime(source.lastModified));
+        header.putInt((int) crc);
+        header.putInt(zip64 ? -1 : (int) compressedSize);
+        header.putInt(zip64 ? -1 : (int) size);
+        header.putShort((short) name.length);
+        header.putShort((short) (zip64 ? 20 : 0));
+        header.put(name);
+
+        if (zip64) {
+            header.putShort((short) 0x0001);
+            header.putShort((short) 16);
+            header.putLong(size);
+            header.putLong(compressedSize);
+        }
+
+        out.write(header);
+    }
+
+    private void writeCentralDirectory(Output out) throws IOException {
+        long start = out.position;
+
+        for (CentralEntry entry : this.centralEntries) {
+            byte[] name = entry.source.name.getBytes(StandardCharsets.UTF_8);
+
+            boolean sizeOverflow = entry.size >= ParallelZipWriter.ZIP64_LIMIT;
+            boolean compressedOverflow = entry.compressedSize >= ParallelZipWriter.ZIP64_LIMIT;
+            boolean offsetOverflow = entry.offset >= ParallelZipWriter.ZIP64_LIMIT;
+            int extraLength = (sizeOverflow ? 8 : 0) + (compressedOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+            boolean zip64 = extraLength > 0;
+
+            ByteBuffer header = ParallelZipWriter.buffer(46 + name.length + (zip64 ? 4 + extraLength : 0));
+            header.putInt(0x02014b50);
+            header.putShort((short) (zip64 ? 45 : 20));
+            header.putShort((short) (zip64 ? 45 : 20));
+            header.putShort((short) entry.flags);
+            header.putShort((short) entry.method);
+            header.putInt(ParallelZipWriter.toDosTime(entry.source.lastModified));
+            header.putInt((int) entry.crc);
+            header.putInt(compressedOverflow ? -1 : (int) entry.compressedSize);
+            header.putInt(sizeOverflow ? -1 : (int) entry.size);
+            header.putShort((short) name.length);
+            header.putShort((short) (zip64 ? 4 + extraLength : 0));
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putInt(entry.source.isDirectory() ? 0x10 : 0);
+            header.putInt(offsetOverflow ? -1 : (int) entry.offset);
+            header.put(name);
+
+            if (zip64) {
+                header.putShort((short) 0x0001);
+                header.putShort((short) extraLength);
+                if (sizeOverflow) {
+                    header.putLong(entry.size);
+                }
+                if (compressedOverflow) {
+                    header.putLong(entry.compressedSize);
+                }
+                if (offsetOverflow) {
+                    header.putLong(entry.offset);
+                }
+            }
+
+            out.write(header);
+        }
+
+        long end = out.position;
+        long size = end - start;
+        int count = this.centralEntries.size();
+
+        if (count >= ParallelZipWriter.ZIP64_ENTRY_LIMIT || start >= ParallelZipWriter.ZIP64_LIMIT || size >= ParallelZipWriter.ZIP64_LIMIT) {
+            ByteBuffer record = ParallelZipWriter.buffer(56 + 20);
+            record.putInt(0x06064b50);
+            record.putLong(44L);
+            record.putShort((short) 45);
+            record.putShort((short) 45);
+            record.putInt(0);
+            record.putInt(0);
+            record.putLong(count);
+            record.putLong(count);
+            record.putLong(size);
+            record.putLong(start);
+
+            record.putInt(0x07064b50);
+            record.putInt(0);
+            record.putLong(end);
+            record.putInt(1);
+
+            out.write(record);
+        }
+
+        ByteBuffer record = ParallelZipWriter.buffer(22);
+        record.putInt(0x06054b50);
+        record.putShort((short) 0);
+        record.putShort((short) 0);
+        record.putShort((short) Math.min(count, ParallelZipWriter.ZIP64_ENTRY_LIMIT));
+        record.putShort((short) Math.min(count, ParallelZipWriter.ZIP64_ENTRY_LIMIT));
+        record.putInt((int) Math.min(size, ParallelZipWriter.ZIP64_LIMIT));
+        record.putInt((int) Math.min(start, ParallelZipWriter.ZIP64_LIMIT));
+        record.putShort((short) 0);
+
+        out.write(record);
+    }
+
+    private void progress(long bytes) {
+        if (bytes == 0L) {
+            return;
+        }
+
+        this.writtenBytes += bytes;
+        this.listener.update(this.totalBytes, this.writtenBytes, bytes, false);
+    }
+
+    private static Part compressWhole(Source source) throws IOException {
+        if (source.isDirectory()) {
+            return Part.whole(source, ParallelZipWriter.METHOD_STORED, 0L, new byte[0], 0L);
+        }
+
+        if (ParallelZipWriter.isCompressed(source.name) && source.data == null) {
+            // stored files are streamed from disk by the writer, only their checksum is needed up front
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[64 * 1024];
+
+            try (InputStream in = Files.newInputStream(source.file)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                }
+            }
+
+            return Part.whole(source, ParallelZipWriter.METHOD_STORED, crc.getValue(), null, source.size);
+        }
+
+        byte[] raw = source.data != null ? source.data : Files.readAllBytes(source.file);
+
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+
+        byte[] compressed = ParallelZipWriter.deflate(raw, raw.length, true);
+
+        if (compressed.length >= raw.length) {
+            return Part.whole(source, ParallelZipWriter.METHOD_STORED, crc.getValue(), raw, raw.length);
+        }
+
+        return Part.whole(source, ParallelZipWriter.METHOD_DEFLATED, crc.getValue(), compressed, raw.length);
+    }
+
+    private static Part compressBlock(Source source, int block, boolean last) throws IOException {
+        long position = (long) block * ParallelZipWriter.BLOCK_SIZE;
+        int length = (int) Math.min(ParallelZipWriter.BLOCK_SIZE, source.size - position);
+
+        byte[] raw = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(raw);
+
+        try (FileChannel channel = FileChannel.open(source.file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) == -1) {
+                    throw new IOException(source.file + " changed while it was being archived");
+                }
+            }
+        }
+
+        return new Part(source, block, last, ParallelZipWriter.METHOD_DEFLATED, 0L,
+            ParallelZipWriter.deflate(raw, length, last), raw, length);
+    }
+
+    /**
+     * Deflates without a zlib wrapper, blocks that are not last end with a sync flush so they can be concatenated
+     */
+    private static byte[] deflate(byte[] raw, int length, boolean last) {
+        Deflater deflater = new Deflater(ParallelZipWriter.LEVEL, true);
+
+        try {
+            deflater.setInput(raw, 0, length);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 2));
+            byte[] buffer = new byte[64 * 1024];
+
+            if (last) {
+                deflater.finish();
+
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    out.write(buffer, 0, count);
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static boolean isCompressed(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot == -1) {
+            return false;
+        }
+
+        return ParallelZipWriter.COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static int toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16 |
+            time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Hands out compression tasks in archive order, large files one block at a time
+     */
+    private class TaskIterator {
+        private final ForkJoinPool pool;
+
+        private int sourceIndex;
+        private int block;
+
+        public TaskIterator(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+
+        public boolean hasNext() {
+            return this.sourceIndex < ParallelZipWriter.this.sources.size();
+        }
+
+        public Future<Part> next() {
+            Source source = ParallelZipWriter.this.sources.get(this.sourceIndex);
+
+            boolean blocks = source.file != null && source.size > ParallelZipWriter.BLOCK_SIZE &&
+                !ParallelZipWriter.isCompressed(source.name);
+
+            if (!blocks) {
+                this.sourceIndex++;
+
+                return this.pool.submit(() -> ParallelZipWriter.compressWhole(source));
+            }
+
+            int block = this.block;
+            boolean last = (long) (block + 1) * ParallelZipWriter.BLOCK_SIZE >= source.size;
+
+            if (last) {
+                this.sourceIndex++;
+                this.block = 0;
+            } else {
+                this.block++;
+            }
+
+            return this.pool.submit(() -> ParallelZipWriter.compressBlock(source, block, last));
+        }
+    }
+
+    private record Source(String name, Path file, byte[] data, long size, long lastModified) {
+        public boolean isDirectory() {
+            return this.file == null && this.data == null;
+        }
+    }
+
+    private record Part(Source source, int block, boolean last, int method, long crc, byte[] data, byte[] raw,
+                        int rawLength, long size, long compressedSize) {
+
+        public Part(Source source, int block, boolean last, int method, long crc, byte[] data, byte[] raw, int rawLength) {
+            this(source, block, last, method, crc, data, raw, rawLength, rawLength, data.length);
+        }
+
+        public static Part whole(Source source, int method, long crc, byte[] data, long size) {
+            return new Part(source, -1, true, method, crc, data, null, 0, size, data == null ? size : data.length);
+        }
+    }
+
+    private record CentralEntry(Source source, int flags, int method, long crc, long compressedSize, long size,
+                                long offset) {
+
+    }
+
+    private static final class EntryState {
+        private final long offset;
+        private final boolean zip64;
+        private final CRC32 crc;
+
+        private long compressedSize;
+        private long size;
+
+        public EntryState(long offset, boolean zip64) {
+            this.offset = offset;
+            this.zip64 = zip64;
+            this.crc = new CRC32();
+        }
+    }
+
+    private static final class Output extends OutputStream {
+        private final OutputStream out;
+
+        private long position;
+
+        public Output(OutputStream out) {
+            this.out = out;
+        }
+
+        public void write(ByteBuffer buffer) throws IOException {
+            this.write(buffer.array(), 0, buffer.position());
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.position += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.close();
+        }
+    }
+}
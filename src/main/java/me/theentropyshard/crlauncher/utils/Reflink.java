@@ -0,0 +1,130 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.utils;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import me.theentropyshard.crlauncher.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Copy-on-write file copies: FICLONE on Linux (btrfs, xfs, bcachefs), clonefile on macOS (APFS). The copy shares
+ * blocks with the original until either of them is changed, so it takes no time and no space.
+ */
+public final class Reflink {
+    private static final long FICLONE = 0x40049409L;
+    private static final int O_RDONLY = 0;
+    private static final int O_WRONLY_CREAT_EXCL = 01 | 0100 | 0200;
+    private static final int MODE = 0644;
+
+    private static final LibC LIBC = Reflink.loadLibC();
+
+    public static boolean isAvailable() {
+        return Reflink.LIBC != null;
+    }
+
+    /**
+     * Clones the file if the file system can do that
+     *
+     * @param source file to clone
+     * @param target file to create, must not exist
+     * @return true if the file was cloned, false if it has to be copied instead
+     */
+    public static boolean clone(Path source, Path target) {
+        if (Reflink.LIBC == null) {
+            return false;
+        }
+
+        String sourcePath = source.toAbsolutePath().toString();
+        String targetPath = target.toAbsolutePath().toString();
+
+        if (Platform.isMac()) {
+            return Reflink.LIBC.clonefile(sourcePath, targetPath, 0) == 0;
+        }
+
+        int sourceFd = Reflink.LIBC.open(sourcePath, Reflink.O_RDONLY, 0);
+        if (sourceFd < 0) {
+            return false;
+        }
+
+        boolean created = false;
+        boolean cloned = false;
+
+        try {
+            int targetFd = Reflink.LIBC.open(targetPath, Reflink.O_WRONLY_CREAT_EXCL, Reflink.MODE);
+            if (targetFd < 0) {
+                // e.g. the target already exists, it is not ours to delete
+                return false;
+            }
+
+            created = true;
+
+            try {
+                cloned = Reflink.LIBC.ioctl(targetFd, new NativeLong(Reflink.FICLONE), sourceFd) == 0;
+            } finally {
+                Reflink.LIBC.close(targetFd);
+            }
+        } finally {
+            Reflink.LIBC.close(sourceFd);
+
+            if (created && !cloned) {
+                try {
+                    Files.deleteIfExists(target);
+                } catch (IOException ignored) {
+
+                }
+            }
+        }
+
+        return cloned;
+    }
+
+    private static LibC loadLibC() {
+        if (!Platform.isLinux() && !Platform.isMac()) {
+            return null;
+        }
+
+        try {
+            return Native.load(Platform.C_LIBRARY_NAME, LibC.class);
+        } catch (Throwable t) {
+            Log.warn("Could not load C library, files will always be copied: " + t.getMessage());
+        }
+
+        return null;
+    }
+
+    private interface LibC extends Library {
+        int open(String path, int flags, int mode);
+
+        int close(int fd);
+
+        int ioctl(int fd, NativeLong request, int argument);
+
+        int clonefile(String source, String target, int flags);
+    }
+
+    private Reflink() {
+        throw new UnsupportedOperationException();
+    }
+}
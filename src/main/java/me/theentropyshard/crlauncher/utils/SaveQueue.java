@@ -0,0 +1,151 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.utils;
+
+import me.theentropyshard.crlauncher.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes files on a background thread a little after they were submitted, so that a burst of changes to the same
+ * object ends up as a single write. Content that is already on disk is not written again, which makes it cheap to
+ * submit everything on shutdown.
+ */
+public class SaveQueue {
+    private final long delayMillis;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService executor;
+    private final Map<Path, String> pending;
+    private final Map<Path, String> written;
+    private final Object writeLock;
+
+    private ScheduledFuture<?> scheduledWrite;
+    private long firstPendingMillis;
+
+    public SaveQueue(long delayMillis, long maxDelayMillis) {
+        this.delayMillis = delayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Save queue");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.pending = new LinkedHashMap<>();
+        this.written = new ConcurrentHashMap<>();
+        this.writeLock = new Object();
+    }
+
+    /**
+     * Queues a write of the file, replacing content that was queued for it before
+     *
+     * @param file    file to write
+     * @param content what the file should contain
+     */
+    public synchronized void submit(Path file, String content) {
+        Path key = file.toAbsolutePath().normalize();
+
+        if (!this.pending.containsKey(key) && content.equals(this.written.get(key))) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (this.pending.isEmpty()) {
+            this.firstPendingMillis = now;
+        }
+
+        this.pending.put(key, content);
+
+        if (this.scheduledWrite != null) {
+            this.scheduledWrite.cancel(false);
+        }
+
+        // each change pushes the write back, but not further than the max delay from the first one
+        long delay = Math.min(this.delayMillis, this.firstPendingMillis + this.maxDelayMillis - now);
+        this.scheduledWrite = this.executor.schedule(this::flush, Math.max(0L, delay), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tells the queue what a file contains right now, so that submitting the same content does not write it
+     */
+    public void remember(Path file, String content) {
+        this.written.put(file.toAbsolutePath().normalize(), content);
+    }
+
+    /**
+     * Drops a queued write of the file, for when the file is about to be moved or deleted and must not come back
+     */
+    public void discard(Path file) {
+        Path key = file.toAbsolutePath().normalize();
+
+        synchronized (this.writeLock) {
+            synchronized (this) {
+                this.pending.remove(key);
+            }
+
+            this.written.remove(key);
+        }
+    }
+
+    /**
+     * Writes everything that is queued on the calling thread, waiting for a write that is already in progress
+     */
+    public void flush() {
+        synchronized (this.writeLock) {
+            Map<Path, String> batch;
+
+            synchronized (this) {
+                if (this.pending.isEmpty()) {
+                    return;
+                }
+
+                batch = new LinkedHashMap<>(this.pending);
+                this.pending.clear();
+
+                if (this.scheduledWrite != null) {
+                    this.scheduledWrite.cancel(false);
+                    this.scheduledWrite = null;
+                }
+            }
+
+            for (Map.Entry<Path, String> entry : batch.entrySet()) {
+                try {
+                    FileUtils.writeUtf8Atomically(entry.getKey(), entry.getValue());
+                    this.written.put(entry.getKey(), entry.getValue());
+                } catch (IOException e) {
+                    Log.error("Could not save " + entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        this.flush();
+        this.executor.shutdown();
+    }
+}
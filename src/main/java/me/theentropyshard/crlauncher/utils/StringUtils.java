@@ -20,6 +20,7 @@ package me.theentropyshard.crlauncher.utils;
 
 public final class StringUtils {
     private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+    private static final String[] SIZE_UNITS = {"KiB", "MiB", "GiB", "TiB"};
 
     public static String getRandomString(int length) {
         StringBuilder builder = new StringBuilder();
@@ -37,6 +38,22 @@ public final class StringUtils {
         return Character.toUpperCase(s.charAt(0)) + s.substring(1);
     }
 
+    public static String formatSize(long bytes) {
+        if (bytes < 1024L) {
+            return bytes + " B";
+        }
+
+        double size = bytes;
+        int unit = -1;
+
+        while (size >= 1024.0D && unit < StringUtils.SIZE_UNITS.length - 1) {
+            size = size / 1024.0D;
+            unit++;
+        }
+
+        return MathUtils.round(size, 1) + " " + StringUtils.SIZE_UNITS[unit];
+    }
+
     public StringUtils() {
         throw new UnsupportedOperationException();
     }
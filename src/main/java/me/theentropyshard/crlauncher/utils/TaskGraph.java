@@ -0,0 +1,184 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.utils;
+
+import me.theentropyshard.crlauncher.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs a set of tasks, each one as soon as the tasks it depends on are done, and logs how long every task took.
+ * Tasks must be added after their dependencies, so the graph cannot contain cycles
+ */
+public class TaskGraph {
+    private final String name;
+    private final List<Node> nodes;
+    private final List<String> running;
+    private final AtomicReference<Exception> failure;
+
+    private Consumer<List<String>> runningTasksListener;
+
+    public TaskGraph(String name) {
+        this.name = name;
+        this.nodes = new ArrayList<>();
+        this.running = new CopyOnWriteArrayList<>();
+        this.failure = new AtomicReference<>();
+    }
+
+    public Node add(String name, Task task, Node... dependencies) {
+        for (Node dependency : dependencies) {
+            if (!this.nodes.contains(dependency)) {
+                throw new IllegalArgumentException("Task '" + name + "' depends on '" + dependency.name + "' from another graph");
+            }
+        }
+
+        Node node = new Node(name, task, dependencies);
+        this.nodes.add(node);
+
+        return node;
+    }
+
+    /**
+     * Blocks until every task has finished or was skipped because something failed
+     *
+     * @throws Exception the first exception thrown by a task
+     */
+    public void run() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "CRL-" + this.name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long start = System.nanoTime();
+
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+            for (Node node : this.nodes) {
+                CompletableFuture<?>[] dependencies = new CompletableFuture<?>[node.dependencies.length];
+                for (int i = 0; i < dependencies.length; i++) {
+                    dependencies[i] = node.dependencies[i].future;
+                }
+
+                node.future = CompletableFuture.allOf(dependencies).thenRunAsync(() -> this.execute(node), executor);
+                futures.add(node.future);
+            }
+
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException ignored) {
+                // the original exception is kept in this.failure
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        this.logTimings(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        Exception exception = this.failure.get();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void execute(Node node) {
+        if (this.failure.get() != null) {
+            return;
+        }
+
+        this.running.add(node.name);
+        this.fireRunningTasksChanged();
+
+        long start = System.nanoTime();
+
+        try {
+            node.task.run();
+        } catch (Exception e) {
+            this.failure.compareAndSet(null, e);
+
+            throw new CompletionException(e);
+        } finally {
+            node.millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            this.running.remove(node.name);
+            this.fireRunningTasksChanged();
+        }
+    }
+
+    private void fireRunningTasksChanged() {
+        Consumer<List<String>> listener = this.runningTasksListener;
+
+        if (listener != null) {
+            listener.accept(List.copyOf(this.running));
+        }
+    }
+
+    private void logTimings(long totalMillis) {
+        StringBuilder builder = new StringBuilder(this.name).append(" took ").append(totalMillis).append(" ms");
+
+        for (Node node : this.nodes) {
+            builder.append(", ").append(node.name).append(": ");
+
+            if (node.millis == -1L) {
+                builder.append("skipped");
+            } else {
+                builder.append(node.millis).append(" ms");
+            }
+        }
+
+        Log.info(builder.toString());
+    }
+
+    public void setRunningTasksListener(Consumer<List<String>> runningTasksListener) {
+        this.runningTasksListener = runningTasksListener;
+    }
+
+    public static final class Node {
+        private final String name;
+        private final Task task;
+        private final Node[] dependencies;
+
+        private CompletableFuture<Void> future;
+        private volatile long millis = -1L;
+
+        private Node(String name, Task task, Node[] dependencies) {
+            this.name = name;
+            this.task = task;
+            this.dependencies = dependencies;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+}
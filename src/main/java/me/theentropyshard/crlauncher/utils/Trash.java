@@ -0,0 +1,159 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.utils;
+
+import me.theentropyshard.crlauncher.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Directory that files and trees are moved into before they are deleted. Moving is a single rename, so a deleted
+ * instance or world is gone for the user at once, while the files themselves are deleted in the background.
+ * Whatever is still in the trash when the launcher exits is deleted on the next start.
+ */
+public class Trash {
+    // listeners are not told about every deleted entry, that would flood the event queue
+    private static final int NOTIFY_EVERY = 256;
+
+    private final Path dir;
+    private final ExecutorService executor;
+    private final List<Runnable> listeners;
+    private final AtomicInteger pending;
+
+    private volatile long total;
+    private volatile long deleted;
+
+    public Trash(Path dir) {
+        this.dir = dir;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "CRL-Trash");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.pending = new AtomicInteger();
+    }
+
+    /**
+     * Deletes what a previous run of the launcher left in the trash
+     */
+    public void emptyLater() {
+        if (!Files.isDirectory(this.dir)) {
+            return;
+        }
+
+        try {
+            for (Path path : FileUtils.list(this.dir)) {
+                this.deleteLater(path);
+            }
+        } catch (IOException e) {
+            Log.warn("Could not list trash '" + this.dir + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the file or directory to the trash and deletes it in the background. If it cannot be moved there,
+     * because the trash is on another file system, it is deleted right away
+     *
+     * @param path file or directory to delete
+     */
+    public void discard(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+
+        FileUtils.createDirectoryIfNotExists(this.dir);
+
+        Path trashed = this.dir.resolve(path.getFileName() + "-" + UUID.randomUUID());
+
+        try {
+            Files.move(path, trashed, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            FileUtils.delete(path);
+
+            return;
+        }
+
+        this.deleteLater(trashed);
+    }
+
+    private void deleteLater(Path path) {
+        this.pending.incrementAndGet();
+        this.fireChanged();
+
+        this.executor.execute(() -> {
+            try {
+                FileUtils.delete(path, (total, deleted, deletedThisTime, done) -> {
+                    this.total = total;
+                    this.deleted = deleted;
+
+                    if (deleted % Trash.NOTIFY_EVERY == 0) {
+                        this.fireChanged();
+                    }
+                });
+            } catch (IOException e) {
+                Log.error("Could not delete '" + path + "', will try again on the next start", e);
+            } finally {
+                this.total = 0L;
+                this.deleted = 0L;
+                this.pending.decrementAndGet();
+
+                this.fireChanged();
+            }
+        });
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : this.listeners) {
+            listener.run();
+        }
+    }
+
+    public void addListener(Runnable listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * @return number of files and directories in the trash that are not deleted yet
+     */
+    public int getPending() {
+        return this.pending.get();
+    }
+
+    /**
+     * @return how much of the tree that is being deleted now is gone, from 0 to 1
+     */
+    public double getProgress() {
+        long total = this.total;
+
+        return total <= 0L ? 0.0D : Math.min(1.0D, (double) this.deleted / total);
+    }
+}
@@ -19,8 +19,6 @@
 package me.theentropyshard.crlauncher.utils.ansi;
 
 import java.awt.*;
-import java.util.HashMap;
-import java.util.Map;
 
 public enum AnsiColor {
     RESET("\u001B[0m", null),
@@ -62,14 +60,6 @@ public enum AnsiColor {
 
     NONE("", null);
 
-    private static final Map<String, AnsiColor> lookup = new HashMap<>();
-
-    static {
-        for (AnsiColor color : AnsiColor.values()) {
-            lookup.put(color.getCode(), color);
-        }
-    }
-
     private final String code;
     private final Color color;
 
@@ -78,16 +68,6 @@ public enum AnsiColor {
         this.color = color;
     }
 
-    public static AnsiColor of(String code) {
-        AnsiColor color = lookup.get(code);
-
-        if (color == null) {
-            throw new IllegalArgumentException("Unknown ANSI code");
-        }
-
-        return color;
-    }
-
     public String getCode() {
         return this.code;
     }
@@ -95,8 +75,4 @@ public enum AnsiColor {
     public Color getColor() {
         return this.color;
     }
-
-    public static String stripAnsiCodes(String input) {
-        return input.replaceAll("\u001B\\[[;\\d]*m", "");
-    }
 }
\ No newline at end of file
@@ -18,46 +18,193 @@
 
 package me.theentropyshard.crlauncher.utils.ansi;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+/**
+ * Streaming parser for ANSI escape sequences. State is kept between calls, so a sequence or a style
+ * may span several lines. SGR sequences change the current style, all other sequences are dropped.
+ * Supports 16 colors, 256 colors, truecolor, bold and italic
+ */
 public class AnsiParser {
-    private static final String ANSI_COLOR_REGEX = "\\u001B\\[(\\d+;)?\\d+m";
+    private static final char ESC = '\u001B';
+    private static final char BEL = '\u0007';
+    private static final int MAX_PARAMS = 16;
+
+    private static final int STATE_TEXT = 0;
+    private static final int STATE_ESCAPE = 1;
+    private static final int STATE_CSI = 2;
+    private static final int STATE_OSC = 3;
 
-    public static List<AnsiPart> parseAnsiString(String input) {
-        List<AnsiPart> parts = new ArrayList<>();
-        Pattern pattern = Pattern.compile(AnsiParser.ANSI_COLOR_REGEX);
-        Matcher matcher = pattern.matcher(input);
+    private static final int[] PALETTE = AnsiParser.createPalette();
 
-        AnsiColor currentColor = AnsiColor.NONE;
+    private final int[] params;
 
-        int lastEnd = 0;
+    private int state;
+    private int paramCount;
+    private int colonMask;
+    private int currentParam;
+    private boolean hasCurrentParam;
+    private int style;
+
+    public AnsiParser() {
+        this.params = new int[AnsiParser.MAX_PARAMS];
+        this.state = AnsiParser.STATE_TEXT;
+        this.style = AnsiStyle.DEFAULT;
+    }
 
-        while (matcher.find()) {
-            // Append text before the current match
-            if (lastEnd < matcher.start()) {
-                String textSegment = input.substring(lastEnd, matcher.start());
-                if (!textSegment.isEmpty()) {
-                    parts.add(new AnsiPart(currentColor, textSegment));
+    public void parse(CharSequence input, AnsiRuns out) {
+        this.parse(input, 0, input.length(), out);
+    }
+
+    public void parse(CharSequence input, int start, int end, AnsiRuns out) {
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+
+            switch (this.state) {
+                case AnsiParser.STATE_TEXT -> {
+                    if (c == AnsiParser.ESC) {
+                        this.state = AnsiParser.STATE_ESCAPE;
+                    } else {
+                        out.append(c, this.style);
+                    }
+                }
+                case AnsiParser.STATE_ESCAPE -> {
+                    if (c == '[') {
+                        this.state = AnsiParser.STATE_CSI;
+                        this.paramCount = 0;
+                        this.colonMask = 0;
+                        this.currentParam = 0;
+                        this.hasCurrentParam = false;
+                    } else if (c == ']') {
+                        this.state = AnsiParser.STATE_OSC;
+                    } else {
+                        // two character escape sequence, nothing to show
+                        this.state = AnsiParser.STATE_TEXT;
+                    }
+                }
+                case AnsiParser.STATE_CSI -> this.consumeCsi(c);
+                case AnsiParser.STATE_OSC -> {
+                    // operating system command, like a window title, ends with BEL or ESC \
+                    if (c == AnsiParser.BEL) {
+                        this.state = AnsiParser.STATE_TEXT;
+                    } else if (c == '\n') {
+                        // unterminated, do not let it swallow the following lines
+                        this.state = AnsiParser.STATE_TEXT;
+                        out.append(c, this.style);
+                    } else if (c == AnsiParser.ESC) {
+                        this.state = AnsiParser.STATE_ESCAPE;
+                    }
                 }
             }
+        }
+    }
 
-            // Update the current color based on the ANSI code
-            currentColor = AnsiColor.of(matcher.group());
+    private void consumeCsi(char c) {
+        if (c >= '0' && c <= '9') {
+            this.currentParam = Math.min(this.currentParam * 10 + (c - '0'), 0xFFFFFF);
+            this.hasCurrentParam = true;
+        } else if (c == ';') {
+            this.pushParam();
+        } else if (c == ':') {
+            this.pushParam();
+            this.colonMask |= 1 << (this.paramCount - 1);
+        } else if (c >= 0x40 && c <= 0x7E) {
+            this.pushParam();
+
+            if (c == 'm') {
+                this.applySgr();
+            }
 
-            lastEnd = matcher.end();
+            this.state = AnsiParser.STATE_TEXT;
+        } else if (c < 0x20 || c > 0x7E) {
+            // not a valid CSI byte, give up on the sequence
+            this.state = AnsiParser.STATE_TEXT;
         }
+    }
+
+    private void pushParam() {
+        if (this.paramCount < AnsiParser.MAX_PARAMS) {
+            this.params[this.paramCount++] = this.hasCurrentParam ? this.currentParam : 0;
+        }
+
+        this.currentParam = 0;
+        this.hasCurrentParam = false;
+    }
+
+    private void applySgr() {
+        int[] p = this.params;
+        int count = this.paramCount;
+
+        for (int i = 0; i < count; i++) {
+            int code = p[i];
 
-        // Append any remaining text after the last match
-        if (lastEnd < input.length()) {
-            String textSegment = input.substring(lastEnd);
-            if (!textSegment.isEmpty()) {
-                parts.add(new AnsiPart(currentColor, textSegment));
+            if (code == 0) {
+                this.style = AnsiStyle.DEFAULT;
+            } else if (code == 1) {
+                this.style = AnsiStyle.withBold(this.style, true);
+            } else if (code == 3) {
+                this.style = AnsiStyle.withItalic(this.style, true);
+            } else if (code == 22) {
+                this.style = AnsiStyle.withBold(this.style, false);
+            } else if (code == 23) {
+                this.style = AnsiStyle.withItalic(this.style, false);
+            } else if (code >= 30 && code <= 37) {
+                this.style = AnsiStyle.withColor(this.style, AnsiParser.PALETTE[code - 30]);
+            } else if (code >= 90 && code <= 97) {
+                this.style = AnsiStyle.withColor(this.style, AnsiParser.PALETTE[code - 90 + 8]);
+            } else if (code == 39) {
+                this.style = AnsiStyle.withoutColor(this.style);
+            } else if (code == 38 || code == 48) {
+                int rgb = -1;
+
+                if (i + 2 < count && p[i + 1] == 5) {
+                    rgb = AnsiParser.PALETTE[p[i + 2] & 0xFF];
+                    i += 2;
+                } else if (i + 5 < count && p[i + 1] == 2 && this.isColonSeparated(i + 1, 4)) {
+                    // 38:2:<color space>:r:g:b
+                    rgb = (p[i + 3] & 0xFF) << 16 | (p[i + 4] & 0xFF) << 8 | (p[i + 5] & 0xFF);
+                    i += 5;
+                } else if (i + 4 < count && p[i + 1] == 2) {
+                    rgb = (p[i + 2] & 0xFF) << 16 | (p[i + 3] & 0xFF) << 8 | (p[i + 4] & 0xFF);
+                    i += 4;
+                } else {
+                    // malformed extended color, the rest of the parameters cannot be trusted
+                    return;
+                }
+
+                // background colors are not shown, but their parameters must still be skipped
+                if (code == 38) {
+                    this.style = AnsiStyle.withColor(this.style, rgb);
+                }
             }
         }
+    }
+
+    private boolean isColonSeparated(int from, int count) {
+        int mask = ((1 << count) - 1) << from;
+
+        return (this.colonMask & mask) == mask;
+    }
+
+    /**
+     * @return the 256 color xterm palette as RGB, the first 16 entries are the colors of {@link AnsiColor}
+     */
+    private static int[] createPalette() {
+        int[] palette = new int[256];
+
+        AnsiColor[] colors = AnsiColor.values();
+        for (int i = 0; i < 16; i++) {
+            palette[i] = colors[i + 1].getColor().getRGB() & 0xFFFFFF;
+        }
+
+        int[] levels = {0, 95, 135, 175, 215, 255};
+        for (int i = 0; i < 216; i++) {
+            palette[16 + i] = levels[i / 36] << 16 | levels[i / 6 % 6] << 8 | levels[i % 6];
+        }
+
+        for (int i = 0; i < 24; i++) {
+            int level = 8 + i * 10;
+            palette[232 + i] = level << 16 | level << 8 | level;
+        }
 
-        return parts;
+        return palette;
     }
 }
@@ -0,0 +1,120 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.utils.ansi;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Reusable buffer of text with escape sequences removed, split into runs of the same {@link AnsiStyle}.
+ * Not thread safe, meant to be cleared and filled again for every line
+ */
+public class AnsiRuns {
+    private static final int COLOR_CACHE_SIZE = 256;
+
+    private final int[] cachedRgb;
+    private final Color[] cachedColors;
+
+    private char[] chars;
+    private int length;
+
+    private int[] runStarts;
+    private int[] runStyles;
+    private int runs;
+
+    public AnsiRuns() {
+        this.chars = new char[256];
+        this.runStarts = new int[16];
+        this.runStyles = new int[16];
+
+        this.cachedRgb = new int[AnsiRuns.COLOR_CACHE_SIZE];
+        this.cachedColors = new Color[AnsiRuns.COLOR_CACHE_SIZE];
+    }
+
+    public void clear() {
+        this.length = 0;
+        this.runs = 0;
+    }
+
+    void append(char c, int style) {
+        if (this.runs == 0 || this.runStyles[this.runs - 1] != style) {
+            if (this.runs == this.runStarts.length) {
+                this.runStarts = Arrays.copyOf(this.runStarts, this.runs * 2);
+                this.runStyles = Arrays.copyOf(this.runStyles, this.runs * 2);
+            }
+
+            this.runStarts[this.runs] = this.length;
+            this.runStyles[this.runs] = style;
+            this.runs++;
+        }
+
+        if (this.length == this.chars.length) {
+            this.chars = Arrays.copyOf(this.chars, this.length * 2);
+        }
+
+        this.chars[this.length++] = c;
+    }
+
+    public int size() {
+        return this.runs;
+    }
+
+    public char[] getChars() {
+        return this.chars;
+    }
+
+    public int getStart(int run) {
+        return this.runStarts[run];
+    }
+
+    public int getEnd(int run) {
+        return run + 1 < this.runs ? this.runStarts[run + 1] : this.length;
+    }
+
+    public int getStyle(int run) {
+        return this.runStyles[run];
+    }
+
+    /**
+     * @return color of the run, or null if the run uses the default color
+     */
+    public Color getColor(int run) {
+        int style = this.runStyles[run];
+
+        if (!AnsiStyle.hasColor(style)) {
+            return null;
+        }
+
+        int rgb = AnsiStyle.getRgb(style);
+        int slot = (rgb ^ (rgb >>> 8) ^ (rgb >>> 16)) & (AnsiRuns.COLOR_CACHE_SIZE - 1);
+
+        Color color = this.cachedColors[slot];
+        if (color == null || this.cachedRgb[slot] != rgb) {
+            color = new Color(rgb);
+            this.cachedColors[slot] = color;
+            this.cachedRgb[slot] = rgb;
+        }
+
+        return color;
+    }
+
+    public String toPlainString() {
+        return new String(this.chars, 0, this.length);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * CRLauncher - https://github.com/CRLauncher/CRLauncher
+ * Copyright (C) 2024 CRLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package me.theentropyshard.crlauncher.utils.ansi;
+
+/**
+ * Text style packed into an int: 24 bits of RGB foreground, then flags
+ */
+public final class AnsiStyle {
+    public static final int DEFAULT = 0;
+
+    private static final int RGB_MASK = 0xFFFFFF;
+    private static final int HAS_COLOR = 1 << 24;
+    private static final int BOLD = 1 << 25;
+    private static final int ITALIC = 1 << 26;
+
+    public static boolean hasColor(int style) {
+        return (style & AnsiStyle.HAS_COLOR) != 0;
+    }
+
+    public static int getRgb(int style) {
+        return style & AnsiStyle.RGB_MASK;
+    }
+
+    public static boolean isBold(int style) {
+        return (style & AnsiStyle.BOLD) != 0;
+    }
+
+    public static boolean isItalic(int style) {
+        return (style & AnsiStyle.ITALIC) != 0;
+    }
+
+    static int withColor(int style, int rgb) {
+        return (style & ~AnsiStyle.RGB_MASK) | AnsiStyle.HAS_COLOR | (rgb & AnsiStyle.RGB_MASK);
+    }
+
+    static int withoutColor(int style) {
+        return style & ~(AnsiStyle.RGB_MASK | AnsiStyle.HAS_COLOR);
+    }
+
+    static int withBold(int style, boolean bold) {
+        return bold ? style | AnsiStyle.BOLD : style & ~AnsiStyle.BOLD;
+    }
+
+    static int withItalic(int style, boolean italic) {
+        return italic ? style | AnsiStyle.ITALIC : style & ~AnsiStyle.ITALIC;
+    }
+
+    private AnsiStyle() {
+        throw new UnsupportedOperationException();
+    }
+}